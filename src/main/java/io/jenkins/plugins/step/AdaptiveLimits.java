@@ -0,0 +1,87 @@
+package io.jenkins.plugins.step;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.XmlFile;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+
+/**
+ * Sizes of the batches of firewall calls learned per project by {@link AimdLimit}, kept on the controller so the next
+ * builds start from them instead of learning the quotas of the project again. A smaller limit is saved right away, a
+ * larger one once {@link #SAVE_PERIOD_MILLIS} passed since the previous save.
+ */
+@Extension
+public class AdaptiveLimits {
+
+    static final long SAVE_PERIOD_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private static final Logger LOGGER = Logger.getLogger(AdaptiveLimits.class.getName());
+
+    private Map<String, Integer> batchLimits = new TreeMap<>();
+    private final transient XmlFile file;
+    private transient long savedAt;
+    private transient boolean unsaved;
+
+    public AdaptiveLimits() {
+        this(new XmlFile(new File(Jenkins.get().getRootDir(), AdaptiveLimits.class.getName() + ".xml")));
+    }
+
+    /**
+     * @param file where the limits are kept, or {@code null} to keep them in memory
+     */
+    AdaptiveLimits(final XmlFile file) {
+        this.file = file;
+        if (file != null && file.exists()) {
+            try {
+                file.unmarshal(this);
+            } catch (final IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to load the learned limits from " + file, e);
+            }
+        }
+    }
+
+    /**
+     * @return the limits of the running controller, or limits kept in memory outside of Jenkins
+     */
+    static AdaptiveLimits get() {
+        return Jenkins.getInstanceOrNull() == null
+                ? new AdaptiveLimits(null)
+                : ExtensionList.lookupSingleton(AdaptiveLimits.class);
+    }
+
+    synchronized int getBatchLimit(final String project) {
+        return batchLimits.getOrDefault(project, AimdLimit.INITIAL);
+    }
+
+    void setBatchLimit(final String project, final int limit) {
+        setBatchLimit(project, limit, System.currentTimeMillis());
+    }
+
+    /**
+     * Steps outside of {@code withGCP} share {@link GcpMetrics#UNKNOWN_PROJECT}, their limits are not learned.
+     */
+    synchronized void setBatchLimit(final String project, final int limit, final long now) {
+        if (GcpMetrics.UNKNOWN_PROJECT.equals(project)) {
+            return;
+        }
+        final var previous = getBatchLimit(project);
+        batchLimits.put(project, limit);
+        unsaved |= limit != previous;
+        if (file != null && unsaved && (limit < previous || now - savedAt >= SAVE_PERIOD_MILLIS)) {
+            try {
+                file.write(this);
+                savedAt = now;
+                unsaved = false;
+            } catch (final IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to save the learned limits to " + file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package io.jenkins.plugins.step;
+
+/**
+ * Concurrency limit adapted with additive increase and multiplicative decrease, like TCP congestion control: it grows
+ * by a constant step after every round of calls GCP accepted, and is halved as soon as GCP rate limits a call.
+ */
+final class AimdLimit {
+
+    static final int INITIAL = 100;
+    static final int INCREASE = 10;
+
+    private final int min;
+    private final int max;
+    private final int increase;
+    private int limit;
+
+    AimdLimit(final int limit, final int max) {
+        this(limit, 1, max, INCREASE);
+    }
+
+    private AimdLimit(final int limit, final int min, final int max, final int increase) {
+        this.min = min;
+        this.max = max;
+        this.increase = increase;
+        this.limit = Math.max(min, Math.min(limit, max));
+    }
+
+    static AimdLimit fixed(final int limit) {
+        return new AimdLimit(limit, limit, limit, 0);
+    }
+
+    synchronized int get() {
+        return limit;
+    }
+
+    synchronized void onSuccess() {
+        limit = Math.min(max, limit + increase);
+    }
+
+    synchronized void onRateLimited() {
+        limit = Math.max(min, limit / 2);
+    }
+}
@@ -0,0 +1,66 @@
+package io.jenkins.plugins.step;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.TreeSet;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Serializes JSON with object keys in sorted order, so that equal content always produces equal text and hash.
+ */
+final class CanonicalJson {
+
+    private CanonicalJson() {}
+
+    static String toString(final Object value) {
+        final var builder = new StringBuilder();
+        append(builder, value);
+        return builder.toString();
+    }
+
+    static String sha256(final String text) {
+        try {
+            final var digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            final var hex = new StringBuilder(digest.length * 2);
+            for (final var b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void append(final StringBuilder builder, final Object value) {
+        if (value instanceof JSONObject) {
+            final var object = (JSONObject) value;
+            builder.append('{');
+            var first = true;
+            for (final var key : new TreeSet<>(object.keySet())) {
+                if (!first) {
+                    builder.append(',');
+                }
+                first = false;
+                builder.append(JSONObject.quote(key)).append(':');
+                append(builder, object.get(key));
+            }
+            builder.append('}');
+        } else if (value instanceof JSONArray) {
+            final var array = (JSONArray) value;
+            builder.append('[');
+            for (int i = 0; i < array.length(); i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                append(builder, array.get(i));
+            }
+            builder.append(']');
+        } else if (value instanceof String) {
+            builder.append(JSONObject.quote((String) value));
+        } else {
+            builder.append(JSONObject.valueToString(value));
+        }
+    }
+}
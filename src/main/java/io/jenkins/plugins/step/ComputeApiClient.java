@@ -0,0 +1,207 @@
+package io.jenkins.plugins.step;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Minimal client of the firewalls collection of the Compute API, keeping its HTTP connections open between requests.
+ */
+final class ComputeApiClient {
+
+    static final String DEFAULT_ENDPOINT = "https://compute.googleapis.com/compute/v1/";
+
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+    private static final long ORGANIZATION_OPERATION_POLL_MILLIS = 1000;
+
+    private final HttpClient httpClient =
+            HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(30)).build();
+    private final String endpoint;
+
+    ComputeApiClient(final String endpoint) {
+        this.endpoint = endpoint == null ? DEFAULT_ENDPOINT : endpoint.endsWith("/") ? endpoint : endpoint + "/";
+    }
+
+    String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * @return the batch endpoint of the Compute API, {@code batch/compute/v1} next to {@code compute/v1}
+     */
+    URI getBatchEndpoint() {
+        return URI.create(endpoint).resolve("../../batch/compute/v1");
+    }
+
+    JSONArray listFirewalls(final String project, final String token) throws IOException, InterruptedException {
+        final var rules = new JSONArray();
+        String pageToken = null;
+        do {
+            var path = firewalls(project) + "?maxResults=500";
+            if (pageToken != null) {
+                path += "&pageToken=" + URLEncoder.encode(pageToken, StandardCharsets.UTF_8);
+            }
+            final var page = send("GET", path, null, token);
+            final var items = page.optJSONArray("items");
+            if (items != null) {
+                for (int i = 0; i < items.length(); i++) {
+                    rules.put(items.get(i));
+                }
+            }
+            pageToken = page.optString("nextPageToken", null);
+        } while (pageToken != null);
+        return rules;
+    }
+
+    void deleteFirewall(final String project, final String name, final String token)
+            throws IOException, InterruptedException {
+        waitFor(project, send("DELETE", firewalls(project) + "/" + encode(name), null, token), token);
+    }
+
+    JSONObject getFirewallPolicy(final String policy, final String token) throws IOException, InterruptedException {
+        return send("GET", firewallPolicy(policy), null, token);
+    }
+
+    /**
+     * Patches a hierarchical firewall policy and waits for its operation.
+     *
+     * @return the name of the operation
+     * @throws PreconditionFailedException if the fingerprint in the patch is not the one of the policy anymore
+     */
+    String patchFirewallPolicy(final String policy, final JSONObject patch, final String token)
+            throws IOException, InterruptedException {
+        var operation = send("PATCH", firewallPolicy(policy), patch, token);
+        // organization operations have no wait method
+        while (!"DONE".equals(operation.optString("status", "DONE"))) {
+            Thread.sleep(ORGANIZATION_OPERATION_POLL_MILLIS);
+            operation = send(
+                    "GET", "locations/global/operations/" + encode(operation.getString("name")), null, token);
+        }
+        if (operation.has("error")) {
+            throw new IOException("Operation failed: " + operation.get("error"));
+        }
+        return operation.optString("name", null);
+    }
+
+    /**
+     * Waits for a global operation to be done, like gcloud does before returning.
+     */
+    private void waitFor(final String project, final JSONObject operation, final String token)
+            throws IOException, InterruptedException {
+        var current = operation;
+        while (!"DONE".equals(current.optString("status", "DONE"))) {
+            current = send(
+                    "POST",
+                    "projects/" + encode(project) + "/global/operations/" + encode(current.getString("name")) + "/wait",
+                    null,
+                    token);
+        }
+        if (current.has("error")) {
+            throw new IOException("Operation failed: " + current.get("error"));
+        }
+    }
+
+    JSONObject send(final String method, final String path, final JSONObject body, final String token)
+            throws IOException, InterruptedException {
+        final var request = HttpRequest.newBuilder(URI.create(endpoint + path))
+                .timeout(TIMEOUT)
+                .header("Authorization", "Bearer " + token)
+                .header("Accept", "application/json")
+                .method(
+                        method,
+                        body == null
+                                ? HttpRequest.BodyPublishers.noBody()
+                                : HttpRequest.BodyPublishers.ofString(body.toString()));
+        if (body != null) {
+            request.header("Content-Type", "application/json");
+        }
+        final var response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() == 401) {
+            throw new UnauthorizedException(method + " " + path);
+        }
+        if (response.statusCode() == 412) {
+            throw new PreconditionFailedException(method + " " + path);
+        }
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException(
+                    method + " " + path + " returned " + response.statusCode() + ": " + response.body().trim());
+        }
+        try {
+            return response.body().isBlank() ? new JSONObject() : new JSONObject(response.body());
+        } catch (final JSONException e) {
+            throw new IOException(method + " " + path + " returned an invalid response", e);
+        }
+    }
+
+    BatchResponse sendBatch(final URI uri, final String contentType, final String body, final String token)
+            throws IOException, InterruptedException {
+        final var request = HttpRequest.newBuilder(uri)
+                .timeout(TIMEOUT)
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        final var response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() == 401) {
+            throw new UnauthorizedException("POST " + uri);
+        }
+        return new BatchResponse(
+                response.statusCode(),
+                response.headers().firstValue("Content-Type").orElse(null),
+                response.body());
+    }
+
+    private static String firewalls(final String project) {
+        return "projects/" + encode(project) + "/global/firewalls";
+    }
+
+    private static String firewallPolicy(final String policy) {
+        return "locations/global/firewallPolicies/" + encode(policy);
+    }
+
+    private static String encode(final String segment) {
+        return URLEncoder.encode(segment, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    static final class BatchResponse {
+        final int status;
+        final String contentType;
+        final String body;
+
+        BatchResponse(final int status, final String contentType, final String body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+
+    /**
+     * The access token was rejected, it should be refreshed before retrying.
+     */
+    static final class UnauthorizedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        UnauthorizedException(final String request) {
+            super(request + " was not authorized");
+        }
+    }
+
+    /**
+     * The resource changed since it was read, it should be read again before retrying.
+     */
+    static final class PreconditionFailedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        PreconditionFailedException(final String request) {
+            super(request + " failed because the resource changed in the meantime");
+        }
+    }
+}
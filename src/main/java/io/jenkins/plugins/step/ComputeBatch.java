@@ -0,0 +1,316 @@
+package io.jenkins.plugins.step;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Sends many calls of the Compute API in multipart batch requests, at most {@value #MAX_CALLS} calls per request. The
+ * calls of a batch succeed or fail independently: calls failing with a transient error are sent again in the next
+ * batch, the others fail alone. GCP runs the calls of a batch concurrently, so the size of the batches follows an
+ * {@link AimdLimit} when the calls are rate limited.
+ */
+final class ComputeBatch {
+
+    /**
+     * Limit of the batch endpoint of Google APIs.
+     */
+    static final int MAX_CALLS = 1000;
+
+    private static final int MAX_ATTEMPTS = 8;
+    private static final long BACKOFF_MILLIS = 250;
+    private static final String CRLF = "\r\n";
+    private static final Pattern CONTENT_ID = Pattern.compile("<(?:response-)?item(\\d+)>");
+
+    private final ComputeApiClient client;
+    private final AimdLimit limit;
+
+    ComputeBatch(final ComputeApiClient client) {
+        this(client, MAX_CALLS);
+    }
+
+    ComputeBatch(final ComputeApiClient client, final int maxCalls) {
+        this(client, AimdLimit.fixed(Math.max(1, Math.min(maxCalls, MAX_CALLS))));
+    }
+
+    ComputeBatch(final ComputeApiClient client, final AimdLimit limit) {
+        this.client = client;
+        this.limit = limit;
+    }
+
+    /**
+     * Applies firewall deletions, then waits for their operations like gcloud does.
+     *
+     * @throws IOException listing every call that failed, once the others completed
+     */
+    void apply(final List<Call> calls, final String token) throws IOException, InterruptedException {
+        final var failures = new ArrayList<String>();
+        var pending = new ArrayList<Call>();
+        var responses = execute(calls, token);
+        var sent = calls;
+        while (true) {
+            for (int i = 0; i < sent.size(); i++) {
+                final var call = sent.get(i);
+                final var response = responses.get(i);
+                if (!response.isSuccessful()) {
+                    failures.add(call + " returned " + response.status + ": " + response.body);
+                } else if (response.body.has("error")) {
+                    failures.add(call + " failed: " + response.body.get("error"));
+                } else if (!"DONE".equals(response.body.optString("status", "DONE"))) {
+                    pending.add(Call.waitOperation(call.project, response.body.getString("name")));
+                }
+            }
+            if (pending.isEmpty()) {
+                break;
+            }
+            sent = pending;
+            responses = execute(pending, token);
+            pending = new ArrayList<>();
+        }
+        if (!failures.isEmpty()) {
+            throw new IOException(
+                    failures.size() + " of " + calls.size() + " calls failed:" + System.lineSeparator()
+                            + String.join(System.lineSeparator(), failures));
+        }
+    }
+
+    /**
+     * @return the responses, in the order of the calls
+     */
+    List<Response> execute(final List<Call> calls, final String token) throws IOException, InterruptedException {
+        final var responses = new Response[calls.size()];
+        var pending = new ArrayList<Integer>();
+        for (int i = 0; i < calls.size(); i++) {
+            pending.add(i);
+        }
+        for (int attempt = 1; !pending.isEmpty(); attempt++) {
+            final var retry = new ArrayList<Integer>();
+            for (int from = 0; from < pending.size(); ) {
+                final var chunk = pending.subList(from, Math.min(from + limit.get(), pending.size()));
+                final var chunkCalls = new ArrayList<Call>();
+                chunk.forEach(index -> chunkCalls.add(calls.get(index)));
+                final var chunkResponses = send(chunkCalls, token);
+                var rateLimited = false;
+                var failed = false;
+                for (int i = 0; i < chunk.size(); i++) {
+                    final var response = chunkResponses.get(i);
+                    responses[chunk.get(i)] = response;
+                    rateLimited |= response.isRateLimited();
+                    failed |= response.isTransient();
+                    if (response.isTransient() && attempt < MAX_ATTEMPTS) {
+                        retry.add(chunk.get(i));
+                    }
+                }
+                if (rateLimited) {
+                    limit.onRateLimited();
+                } else if (!failed) {
+                    limit.onSuccess();
+                }
+                from += chunk.size();
+            }
+            if (!retry.isEmpty()) {
+                Thread.sleep(BACKOFF_MILLIS * attempt);
+            }
+            pending = retry;
+        }
+        return Arrays.asList(responses);
+    }
+
+    private List<Response> send(final List<Call> calls, final String token) throws IOException, InterruptedException {
+        final var boundary = "batch_" + UUID.randomUUID();
+        final var basePath = URI.create(client.getEndpoint()).getPath();
+        final var response = client.sendBatch(
+                client.getBatchEndpoint(),
+                "multipart/mixed; boundary=" + boundary,
+                encode(boundary, basePath, calls),
+                token);
+        if (response.status == 429 || response.status / 100 == 5) {
+            // the whole batch failed, all its calls are sent again
+            final var responses = new ArrayList<Response>();
+            calls.forEach(call -> responses.add(new Response(response.status, new JSONObject())));
+            return responses;
+        }
+        if (response.status / 100 != 2) {
+            throw new IOException("Batch request returned " + response.status + ": " + response.body.trim());
+        }
+        return decode(response.contentType, response.body, calls.size());
+    }
+
+    static String encode(final String boundary, final String basePath, final List<Call> calls) {
+        final var body = new StringBuilder();
+        for (int i = 0; i < calls.size(); i++) {
+            final var call = calls.get(i);
+            body.append("--").append(boundary).append(CRLF);
+            body.append("Content-Type: application/http").append(CRLF);
+            body.append("Content-ID: <item").append(i).append('>').append(CRLF);
+            body.append(CRLF);
+            body.append(call.method).append(' ').append(basePath).append(call.path).append(" HTTP/1.1").append(CRLF);
+            body.append(CRLF);
+        }
+        body.append("--").append(boundary).append("--").append(CRLF);
+        return body.toString();
+    }
+
+    /**
+     * @return the responses in the order of the calls, a call missing from the batch response is reported as a
+     *     transient failure to be sent again
+     */
+    static List<Response> decode(final String contentType, final String body, final int calls) throws IOException {
+        final var responses = new Response[calls];
+        for (final var part : parts(contentType, body)) {
+            final var contentId = part.headers.get("content-id");
+            final var matcher = contentId == null ? null : CONTENT_ID.matcher(contentId);
+            if (matcher == null || !matcher.matches()) {
+                throw new IOException("Unexpected part in batch response: " + contentId);
+            }
+            final var index = Integer.parseInt(matcher.group(1));
+            if (index >= calls) {
+                throw new IOException("Unexpected part in batch response: " + contentId);
+            }
+            final var statusLine = part.content.split(CRLF + "|\n", 2)[0].split(" ", 3);
+            if (statusLine.length < 2 || !statusLine[0].startsWith("HTTP/")) {
+                throw new IOException("Unexpected status line in batch response: " + String.join(" ", statusLine));
+            }
+            final var separator = part.content.indexOf(CRLF + CRLF);
+            final var json = separator < 0 ? "" : part.content.substring(separator + 4).trim();
+            try {
+                responses[index] = new Response(
+                        Integer.parseInt(statusLine[1]), json.isEmpty() ? new JSONObject() : new JSONObject(json));
+            } catch (final NumberFormatException | JSONException e) {
+                throw new IOException("Unexpected response in batch response: " + part.content, e);
+            }
+        }
+        for (int i = 0; i < calls; i++) {
+            if (responses[i] == null) {
+                responses[i] = new Response(503, new JSONObject());
+            }
+        }
+        return Arrays.asList(responses);
+    }
+
+    /**
+     * Splits a multipart body, used for both the requests and the responses.
+     */
+    static List<Part> parts(final String contentType, final String body) throws IOException {
+        final var index = contentType == null ? -1 : contentType.indexOf("boundary=");
+        if (index < 0) {
+            throw new IOException("Batch response without boundary: " + contentType);
+        }
+        final var boundary = "--" + contentType.substring(index + "boundary=".length()).replace("\"", "");
+        final var parts = new ArrayList<Part>();
+        for (final var chunk : body.split(Pattern.quote(boundary))) {
+            if (chunk.isBlank() || chunk.startsWith("--")) {
+                continue;
+            }
+            final var content = chunk.startsWith(CRLF) ? chunk.substring(2) : chunk;
+            final var separator = content.indexOf(CRLF + CRLF);
+            if (separator < 0) {
+                throw new IOException("Batch part without headers: " + content);
+            }
+            final var headers = new LinkedHashMap<String, String>();
+            for (final var line : content.substring(0, separator).split(CRLF)) {
+                final var colon = line.indexOf(':');
+                if (colon > 0) {
+                    headers.put(
+                            line.substring(0, colon).trim().toLowerCase(Locale.ROOT),
+                            line.substring(colon + 1).trim());
+                }
+            }
+            parts.add(new Part(headers, content.substring(separator + 4)));
+        }
+        return parts;
+    }
+
+    static final class Part {
+        final Map<String, String> headers;
+        final String content;
+
+        Part(final Map<String, String> headers, final String content) {
+            this.headers = headers;
+            this.content = content;
+        }
+    }
+
+    /**
+     * A call of the Compute API, relative to the endpoint.
+     */
+    static final class Call {
+        private final String project;
+        private final String method;
+        private final String path;
+
+        private Call(final String project, final String method, final String path) {
+            this.project = project;
+            this.method = method;
+            this.path = path;
+        }
+
+        static Call deleteFirewall(final String project, final String name) {
+            return new Call(project, "DELETE", "projects/" + encode(project) + "/global/firewalls/" + encode(name));
+        }
+
+        static Call waitOperation(final String project, final String operation) {
+            return new Call(
+                    project,
+                    "POST",
+                    "projects/" + encode(project) + "/global/operations/" + encode(operation) + "/wait");
+        }
+
+        private static String encode(final String segment) {
+            return URLEncoder.encode(segment, StandardCharsets.UTF_8).replace("+", "%20");
+        }
+
+        @Override
+        public String toString() {
+            return method + " " + path;
+        }
+    }
+
+    static final class Response {
+        final int status;
+        final JSONObject body;
+
+        Response(final int status, final JSONObject body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        boolean isSuccessful() {
+            return status / 100 == 2;
+        }
+
+        boolean isTransient() {
+            return status / 100 == 5 || isRateLimited();
+        }
+
+        /**
+         * @return whether the call was rejected by a rate quota, with 429 or with the 403 and {@code rateLimitExceeded}
+         *     reason of the Compute API
+         */
+        boolean isRateLimited() {
+            if (status == 429) {
+                return true;
+            }
+            final var error = status == 403 ? body.optJSONObject("error") : null;
+            final var errors = error == null ? null : error.optJSONArray("errors");
+            for (int i = 0; errors != null && i < errors.length(); i++) {
+                final var reason = errors.getJSONObject(i).optString("reason");
+                if ("rateLimitExceeded".equals(reason) || "userRateLimitExceeded".equals(reason)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
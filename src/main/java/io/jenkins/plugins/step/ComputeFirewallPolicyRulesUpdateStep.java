@@ -0,0 +1,131 @@
+package io.jenkins.plugins.step;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.Launcher;
+import hudson.Util;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.json.JSONObject;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+public class ComputeFirewallPolicyRulesUpdateStep extends Step {
+
+    private final String policy;
+    private List<ComputeFirewallRulesCreateStep> rules = List.of();
+    private String remove;
+    private boolean replace;
+
+    @DataBoundConstructor
+    public ComputeFirewallPolicyRulesUpdateStep(final String policy) {
+        this.policy = policy;
+    }
+
+    @DataBoundSetter
+    public void setRules(final List<ComputeFirewallRulesCreateStep> rules) {
+        this.rules = rules == null ? List.of() : rules;
+    }
+
+    @DataBoundSetter
+    public void setRemove(final String remove) {
+        this.remove = remove;
+    }
+
+    @DataBoundSetter
+    public void setReplace(final boolean replace) {
+        this.replace = replace;
+    }
+
+    public String getPolicy() {
+        return policy;
+    }
+
+    public List<ComputeFirewallRulesCreateStep> getRules() {
+        return rules;
+    }
+
+    public String getRemove() {
+        return remove;
+    }
+
+    public boolean isReplace() {
+        return replace;
+    }
+
+    @Extension
+    public static class Descriptor extends StepDescriptor {
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return Set.of(Run.class, EnvVars.class, TaskListener.class);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "computeFirewallPolicyRulesUpdate";
+        }
+
+        @Override
+        @NonNull
+        public String getDisplayName() {
+            return "Update the rules of a firewall policy";
+        }
+    }
+
+    @Override
+    public StepExecution start(final StepContext context) {
+        return new ComputeFirewallPolicyRulesUpdateStepExecution(context, this);
+    }
+
+    static final class ComputeFirewallPolicyRulesUpdateStepExecution extends GcpStepExecution<Void> {
+
+        private static final long serialVersionUID = 1L;
+        private final transient ComputeFirewallPolicyRulesUpdateStep step;
+
+        ComputeFirewallPolicyRulesUpdateStepExecution(
+                final StepContext context, final ComputeFirewallPolicyRulesUpdateStep step) {
+            super(context, "computeFirewallPolicyRulesUpdate");
+            this.step = step;
+        }
+
+        @Override
+        protected Void execute() throws Exception {
+            if (step.getPolicy() == null || step.getPolicy().isBlank()) {
+                throw new IllegalArgumentException("The ID of the firewall policy should be specified!");
+            }
+
+            final var removed = new ArrayList<Integer>();
+            for (final var priority : Util.tokenize(Util.fixNull(step.getRemove()), " ,")) {
+                try {
+                    removed.add(Integer.parseInt(priority));
+                } catch (final NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid priority to remove: " + priority, e);
+                }
+            }
+            final var rules = FirewallPolicyRules.toRules(step.getRules());
+
+            final var context = getContext();
+            final var output = new JSONObject(callComputeApi(
+                    context.get(Launcher.class),
+                    context.get(EnvVars.class),
+                    new GcloudWorker.UpdateFirewallPolicy(step.getPolicy(), rules, removed, step.isReplace())));
+
+            final var listener = context.get(TaskListener.class);
+            if (listener != null) {
+                listener.getLogger()
+                        .println("Firewall policy " + step.getPolicy() + " has " + output.getInt("rules")
+                                + " rules after operation " + output.optString("operation"));
+            }
+            return null;
+        }
+    }
+}
@@ -5,13 +5,19 @@ import hudson.EnvVars;
 import hudson.Extension;
 import hudson.Launcher;
 import hudson.model.Run;
+import hudson.model.TaskListener;
 import hudson.util.ArgumentListBuilder;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
 import java.util.Set;
+import java.util.regex.Pattern;
 import org.jenkinsci.plugins.workflow.steps.Step;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
 import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
 import org.jenkinsci.plugins.workflow.steps.StepExecution;
-import org.jenkinsci.plugins.workflow.steps.SynchronousStepExecution;
+import org.json.JSONException;
+import org.json.JSONObject;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
 
@@ -38,6 +44,8 @@ public class ComputeFirewallRulesCreateStep extends Step {
     private String sourceTags;
     private String targetServiceAccounts;
     private String targetTags;
+    private int memoizeFor;
+    private boolean ensure;
 
     @DataBoundConstructor
     public ComputeFirewallRulesCreateStep(final String name) {
@@ -124,6 +132,16 @@ public class ComputeFirewallRulesCreateStep extends Step {
         this.targetTags = targetTags;
     }
 
+    @DataBoundSetter
+    public void setEnsure(final boolean ensure) {
+        this.ensure = ensure;
+    }
+
+    @DataBoundSetter
+    public void setMemoizeFor(final int memoizeFor) {
+        this.memoizeFor = memoizeFor;
+    }
+
     public String getName() {
         return name;
     }
@@ -192,6 +210,14 @@ public class ComputeFirewallRulesCreateStep extends Step {
         return targetTags;
     }
 
+    public int getMemoizeFor() {
+        return memoizeFor;
+    }
+
+    public boolean isEnsure() {
+        return ensure;
+    }
+
     @Extension
     public static class Descriptor extends StepDescriptor {
 
@@ -217,19 +243,22 @@ public class ComputeFirewallRulesCreateStep extends Step {
         return new ComputeFirewallRulesCreateRuleStepExecution(context, this);
     }
 
-    static final class ComputeFirewallRulesCreateRuleStepExecution extends SynchronousStepExecution<Void> {
+    static final class ComputeFirewallRulesCreateRuleStepExecution extends GcpStepExecution<Void> {
 
         private static final long serialVersionUID = 1L;
+        private static final Pattern STAMP = Pattern.compile("\\[spec:([0-9a-f]+)]$");
+        private static final String DEFAULT_RANGE = "0.0.0.0/0";
+        private static final Pattern NOT_FOUND = Pattern.compile("The resource '[^']*' was not found");
         private final transient ComputeFirewallRulesCreateStep step;
 
         ComputeFirewallRulesCreateRuleStepExecution(
                 final StepContext context, final ComputeFirewallRulesCreateStep step) {
-            super(context);
+            super(context, "computeFirewallRulesCreate");
             this.step = step;
         }
 
         @Override
-        protected Void run() throws Exception {
+        protected Void execute() throws Exception {
             final var context = getContext();
 
             final var action = step.getAction();
@@ -238,19 +267,55 @@ public class ComputeFirewallRulesCreateStep extends Step {
             if (action == null && allow == null) {
                 throw new IllegalArgumentException("Either 'action' or 'allow' should be specified!");
             }
+            if (step.isEnsure() && action != null && step.getRules() == null) {
+                throw new IllegalArgumentException("'rules' should be specified with 'action'!");
+            }
+
+            final var envVars = context.get(EnvVars.class);
+            final var launcher = firewallLauncher(context.get(Launcher.class), envVars);
+            final var fingerprint = step.isEnsure() ? fingerprint(create(step.getDescription())) : null;
+            final var cmd =
+                    create(fingerprint == null ? step.getDescription() : stamp(step.getDescription(), fingerprint));
+
+            if (recall(step.getMemoizeFor(), String.join("\n", cmd.toList()), false) != null) {
+                return null;
+            }
+
+            if (fingerprint != null) {
+                final var existing = describe(launcher, envVars);
+                if (existing != null) {
+                    ensure(launcher, envVars, existing, fingerprint);
+                    remember(null);
+                    return null;
+                }
+            }
+
+            final var starter = launch(launcher, cmd, envVars);
+            final var result = join(starter);
+
+            if (result != 0) {
+                throw new IllegalArgumentException("Failed to create a firewall rule with this command: " + cmd);
+            }
+
+            remember(null);
+            if (usesGcloud()) {
+                FirewallMirror.ruleCreated(envVars, step.getName());
+            }
+            return null;
+        }
 
-            final var launcher = context.get(Launcher.class);
+        private ArgumentListBuilder create(final String description) {
             final var cmd = new ArgumentListBuilder();
             cmd.add("gcloud", "compute", "firewall-rules", "create", step.getName());
 
-            if (action == null) {
-                cmd.add("--allow=" + allow);
+            if (step.getAction() == null) {
+                cmd.add("--allow=" + step.getAllow());
             } else {
-                cmd.add("--action=" + action);
+                cmd.add("--action=" + step.getAction());
             }
 
-            if (step.getDescription() != null) {
-                cmd.add("--description=" + step.getDescription());
+            if (description != null) {
+                cmd.add("--description=" + description);
             }
 
             if (step.getDestinationRanges() != null) {
@@ -303,19 +368,145 @@ public class ComputeFirewallRulesCreateStep extends Step {
             if (step.getTargetTags() != null) {
                 cmd.add("--target-tags=" + step.getTargetTags());
             }
+            return cmd;
+        }
 
-            final var envVars = context.get(EnvVars.class);
-            final var starter = launcher.launch().cmds(cmd).quiet(true);
-            if (envVars != null) {
-                starter.envs(envVars);
+        /**
+         * @return the rule with the name of the step, or {@code null} if it does not exist
+         */
+        private JSONObject describe(final Launcher launcher, final EnvVars envVars) throws Exception {
+            final var cmd = new ArgumentListBuilder();
+            cmd.add("gcloud", "compute", "firewall-rules", "describe", step.getName(), "--format=json");
+            final var starter = launch(launcher, cmd, envVars);
+            final var outputStream = new ByteArrayOutputStream();
+            final var errorStream = new ByteArrayOutputStream();
+            starter.stdout(outputStream);
+            starter.stderr(errorStream);
+            if (join(starter) != 0) {
+                final var error = errorStream.toString(StandardCharsets.UTF_8).trim();
+                if (NOT_FOUND.matcher(error).find()) {
+                    return null;
+                }
+                throw new IllegalArgumentException(
+                        "Failed to describe a firewall rule with this command: " + cmd + ": " + error);
+            }
+            observeOutput(outputStream.size());
+            try {
+                return new JSONObject(outputStream.toString(StandardCharsets.UTF_8));
+            } catch (final JSONException e) {
+                throw new IllegalArgumentException(
+                        "Failed to parse the firewall rule described with this command: " + cmd, e);
+            }
+        }
+
+        /**
+         * Updates the existing rule unless it was stamped with the same fingerprint. The fields gcloud cannot update
+         * have to match.
+         */
+        private void ensure(
+                final Launcher launcher, final EnvVars envVars, final JSONObject existing, final String fingerprint)
+                throws Exception {
+            final var listener = getContext().get(TaskListener.class);
+            final var matcher = STAMP.matcher(existing.optString("description"));
+            if (matcher.find() && matcher.group(1).equals(fingerprint)) {
+                if (listener != null) {
+                    listener.getLogger().println("Firewall rule " + step.getName() + " is up to date");
+                }
+                return;
             }
-            final var result = starter.join();
 
+            final var action = step.getAction() == null ? "ALLOW" : step.getAction().toUpperCase(Locale.ROOT);
+            immutable("action", existing.has("denied") ? "DENY" : "ALLOW", action);
+            final var direction =
+                    step.getDirection() == null ? "INGRESS" : step.getDirection().toUpperCase(Locale.ROOT);
+            immutable("direction", existing.optString("direction", "INGRESS"), direction);
+            immutable(
+                    "network",
+                    lastSegment(existing.optString("network")),
+                    step.getNetwork() == null ? "default" : lastSegment(step.getNetwork()));
+
+            final var cmd = new ArgumentListBuilder();
+            cmd.add("gcloud", "compute", "firewall-rules", "update", step.getName());
+            cmd.add(step.getAction() == null ? "--allow=" + step.getAllow() : "--rules=" + step.getRules());
+            cmd.add("--description=" + stamp(step.getDescription(), fingerprint));
+            cmd.add(step.isDisabled() ? "--disabled" : "--no-disabled");
+            if (step.isEnableLogging()) {
+                cmd.add("--enable-logging");
+                if (step.getLoggingMetadata() != null) {
+                    cmd.add("--logging-metadata=" + step.getLoggingMetadata());
+                }
+            } else {
+                cmd.add("--no-enable-logging");
+            }
+            if (step.getPriority() >= 0 && step.getPriority() <= 65535) {
+                cmd.add("--priority=" + step.getPriority());
+            }
+            // GCP fills in the range a rule cannot go without: it is set back to that default, never cleared
+            final var ingress = "INGRESS".equals(direction);
+            final var sourceRanges = ingress
+                            && step.getSourceRanges() == null
+                            && step.getSourceTags() == null
+                            && step.getSourceServiceAccounts() == null
+                    ? DEFAULT_RANGE
+                    : step.getSourceRanges();
+            final var destinationRanges =
+                    !ingress && step.getDestinationRanges() == null ? DEFAULT_RANGE : step.getDestinationRanges();
+            list(cmd, existing, "destinationRanges", "--destination-ranges", destinationRanges);
+            list(cmd, existing, "sourceRanges", "--source-ranges", sourceRanges);
+            list(cmd, existing, "sourceServiceAccounts", "--source-service-accounts", step.getSourceServiceAccounts());
+            list(cmd, existing, "sourceTags", "--source-tags", step.getSourceTags());
+            list(cmd, existing, "targetServiceAccounts", "--target-service-accounts", step.getTargetServiceAccounts());
+            list(cmd, existing, "targetTags", "--target-tags", step.getTargetTags());
+
+            final var result = join(launch(launcher, cmd, envVars));
             if (result != 0) {
-                throw new IllegalArgumentException("Failed to create a firewall rule with this command: " + cmd);
+                throw new IllegalArgumentException("Failed to update a firewall rule with this command: " + cmd);
+            }
+            if (listener != null) {
+                listener.getLogger().println("Firewall rule " + step.getName() + " was updated");
+            }
+            if (usesGcloud()) {
+                FirewallMirror.ruleCreated(envVars, step.getName());
+            }
+        }
+
+        private void immutable(final String field, final String existing, final String requested) {
+            if (!existing.equalsIgnoreCase(requested)) {
+                throw new IllegalArgumentException("Firewall rule " + step.getName() + " exists with the " + field + " "
+                        + existing + " instead of " + requested + ", which cannot be updated");
             }
+        }
 
-            return null;
+        private static String lastSegment(final String url) {
+            return url.substring(url.lastIndexOf('/') + 1);
         }
+
+        /**
+         * Sets a list field, or clears it when the existing rule has values the step does not specify.
+         */
+        private static void list(
+                final ArgumentListBuilder cmd,
+                final JSONObject existing,
+                final String field,
+                final String flag,
+                final String value) {
+            if (value != null) {
+                cmd.add(flag + "=" + value);
+            } else if (existing.has(field)) {
+                cmd.add(flag + "=");
+            }
+        }
+    }
+
+    /**
+     * @return the hash of the arguments of the create command, which describe the whole rule
+     */
+    static String fingerprint(final ArgumentListBuilder create) {
+        return CanonicalJson.sha256(String.join("\n", create.toList())).substring(0, 16);
+    }
+
+    static String stamp(final String description, final String fingerprint) {
+        final var stamp = "[spec:" + fingerprint + "]";
+        return description == null || description.isEmpty() ? stamp : description + " " + stamp;
     }
 }
@@ -4,35 +4,48 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.EnvVars;
 import hudson.Extension;
 import hudson.Launcher;
+import hudson.Util;
 import hudson.model.Run;
 import hudson.util.ArgumentListBuilder;
+import java.util.List;
 import java.util.Set;
 import org.jenkinsci.plugins.workflow.steps.Step;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
 import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
 import org.jenkinsci.plugins.workflow.steps.StepExecution;
-import org.jenkinsci.plugins.workflow.steps.SynchronousStepExecution;
+import org.json.JSONObject;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
 public class ComputeFirewallRulesDeleteStep extends Step {
 
     private final String name;
+    private int memoizeFor;
 
     @DataBoundConstructor
     public ComputeFirewallRulesDeleteStep(final String name) {
         this.name = name;
     }
 
+    @DataBoundSetter
+    public void setMemoizeFor(final int memoizeFor) {
+        this.memoizeFor = memoizeFor;
+    }
+
     public String getName() {
         return name;
     }
 
+    public int getMemoizeFor() {
+        return memoizeFor;
+    }
+
     @Extension
     public static class Descriptor extends StepDescriptor {
 
         @Override
         public Set<? extends Class<?>> getRequiredContext() {
-            return Set.of(Run.class, Launcher.class, EnvVars.class);
+            return Set.of(Run.class, EnvVars.class);
         }
 
         @Override
@@ -49,36 +62,56 @@ public class ComputeFirewallRulesDeleteStep extends Step {
 
     @Override
     public StepExecution start(final StepContext context) {
-        return new ComputeFirewallRulesDeleteRuleStepExecution(context, name);
+        return new ComputeFirewallRulesDeleteRuleStepExecution(context, name, memoizeFor);
     }
 
-    static final class ComputeFirewallRulesDeleteRuleStepExecution extends SynchronousStepExecution<Void> {
+    static final class ComputeFirewallRulesDeleteRuleStepExecution extends GcpStepExecution<Void> {
 
         private static final long serialVersionUID = 1L;
         private final String name;
+        private final int memoizeFor;
 
-        ComputeFirewallRulesDeleteRuleStepExecution(final StepContext context, final String name) {
-            super(context);
+        ComputeFirewallRulesDeleteRuleStepExecution(
+                final StepContext context, final String name, final int memoizeFor) {
+            super(context, "computeFirewallRulesDelete");
             this.name = name;
+            this.memoizeFor = memoizeFor;
         }
 
         @Override
-        protected Void run() throws Exception {
+        protected Void execute() throws Exception {
             final var context = getContext();
-            final var launcher = context.get(Launcher.class);
-            final var cmd = new ArgumentListBuilder();
-            cmd.add("gcloud", "compute", "firewall-rules", "delete").addTokenized(name);
             final var envVars = context.get(EnvVars.class);
-            final var starter = launcher.launch().cmds(cmd).quiet(true);
-            if (envVars != null) {
-                starter.envs(envVars);
+            final var launcher = firewallLauncher(context.get(Launcher.class), envVars);
+            final var names = List.of(Util.tokenize(name));
+            if (recall(memoizeFor, String.join("\n", names), false) != null) {
+                return null;
             }
-            final var result = starter.join();
 
-            if (result != 0) {
-                throw new IllegalArgumentException("Failed to delete a firewall rule with this command: " + cmd);
+            final var limits = AdaptiveLimits.get();
+            final var output = callWorker(
+                    launcher, envVars, new GcloudWorker.DeleteFirewalls(names, limits.getBatchLimit(getProject())));
+            if (output == null) {
+                final var cmd = new ArgumentListBuilder();
+                cmd.add("gcloud", "compute", "firewall-rules", "delete").addTokenized(name);
+                final var starter = launch(launcher, cmd, envVars);
+                final var result = join(starter);
+
+                if (result != 0) {
+                    throw new IllegalArgumentException("Failed to delete a firewall rule with this command: " + cmd);
+                }
+            } else if (!output.isEmpty()) {
+                final var json = new JSONObject(output);
+                limits.setBatchLimit(getProject(), json.getInt("batchLimit"));
+                if (json.has("error")) {
+                    throw new IllegalArgumentException("Failed to call the Compute API: " + json.getString("error"));
+                }
             }
 
+            remember(null);
+            if (usesGcloud()) {
+                FirewallMirror.rulesDeleted(envVars, names);
+            }
             return null;
         }
     }
@@ -0,0 +1,143 @@
+package io.jenkins.plugins.step;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.json.JSONObject;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+public class ComputeFirewallRulesDiffStep extends Step {
+
+    private final String target;
+    private String base;
+    private boolean printOutput = true;
+
+    @DataBoundConstructor
+    public ComputeFirewallRulesDiffStep(final String target) {
+        this.target = target;
+    }
+
+    @DataBoundSetter
+    public void setBase(final String base) {
+        this.base = base;
+    }
+
+    @DataBoundSetter
+    public void setPrintOutput(final boolean printOutput) {
+        this.printOutput = printOutput;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public String getBase() {
+        return base;
+    }
+
+    public boolean isPrintOutput() {
+        return printOutput;
+    }
+
+    @Extension
+    public static class Descriptor extends StepDescriptor {
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return Set.of(Run.class, TaskListener.class, FilePath.class);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "computeFirewallRulesDiff";
+        }
+
+        @Override
+        @NonNull
+        public String getDisplayName() {
+            return "Compare two firewall rules snapshots";
+        }
+    }
+
+    @Override
+    public StepExecution start(final StepContext context) {
+        return new ComputeFirewallRulesDiffStepExecution(context, this);
+    }
+
+    static final class ComputeFirewallRulesDiffStepExecution extends GcpStepExecution<Map<String, Object>> {
+
+        private static final long serialVersionUID = 1L;
+        private final transient ComputeFirewallRulesDiffStep step;
+
+        ComputeFirewallRulesDiffStepExecution(final StepContext context, final ComputeFirewallRulesDiffStep step) {
+            super(context, "computeFirewallRulesDiff");
+            this.step = step;
+        }
+
+        @Override
+        protected Map<String, Object> execute() throws Exception {
+            final var context = getContext();
+            final var listener = context.get(TaskListener.class);
+            final var workspace = context.get(FilePath.class);
+
+            final FirewallSnapshot.Diff diff;
+            try (var baseStream = openBase(context, workspace, listener);
+                    var targetStream = workspace.child(step.getTarget()).read()) {
+                diff = FirewallSnapshot.diff(baseStream, targetStream);
+            }
+
+            if (step.isPrintOutput()) {
+                diff.getAdded().forEach(rule -> listener.getLogger().println("+ " + rule.getString("name")));
+                diff.getRemoved().forEach(rule -> listener.getLogger().println("- " + rule.getString("name")));
+                diff.getChanged().forEach(rule -> listener.getLogger().println("~ " + rule.getString("name")));
+            }
+
+            final var result = new LinkedHashMap<String, Object>();
+            result.put("added", toMaps(diff.getAdded()));
+            result.put("removed", toMaps(diff.getRemoved()));
+            result.put("changed", toMaps(diff.getChanged()));
+            return result;
+        }
+
+        /**
+         * Without an explicit base the snapshot archived under the same name by the last successful build is used.
+         */
+        private InputStream openBase(final StepContext context, final FilePath workspace, final TaskListener listener)
+                throws Exception {
+            if (step.getBase() != null) {
+                return workspace.child(step.getBase()).read();
+            }
+
+            final var previousBuild = context.get(Run.class).getPreviousSuccessfulBuild();
+            if (previousBuild != null) {
+                final var artifact = previousBuild.getArtifactManager().root().child(step.getTarget());
+                if (artifact.exists()) {
+                    return artifact.open();
+                }
+            }
+            listener.getLogger()
+                    .println("No snapshot " + step.getTarget()
+                            + " archived by the last successful build, every rule is reported as added");
+            return null;
+        }
+
+        private static List<Map<String, Object>> toMaps(final List<JSONObject> rules) {
+            final var maps = new ArrayList<Map<String, Object>>(rules.size());
+            rules.forEach(rule -> maps.add(rule.toMap()));
+            return maps;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package io.jenkins.plugins.step;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Computer;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.ArgumentListBuilder;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.json.JSONArray;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+public class ComputeFirewallRulesListProjectsStep extends Step {
+
+    static final int DEFAULT_CONCURRENCY = 10;
+
+    private final List<GcpProject> projects;
+    private String filter;
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private boolean printOutput = true;
+
+    @DataBoundConstructor
+    public ComputeFirewallRulesListProjectsStep(final List<GcpProject> projects) {
+        this.projects = projects;
+    }
+
+    @DataBoundSetter
+    public void setFilter(final String filter) {
+        this.filter = filter;
+    }
+
+    @DataBoundSetter
+    public void setConcurrency(final int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    @DataBoundSetter
+    public void setPrintOutput(final boolean printOutput) {
+        this.printOutput = printOutput;
+    }
+
+    public List<GcpProject> getProjects() {
+        return projects;
+    }
+
+    public String getFilter() {
+        return filter;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public boolean isPrintOutput() {
+        return printOutput;
+    }
+
+    @Extension
+    public static class Descriptor extends StepDescriptor {
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return Set.of(Run.class, Launcher.class, EnvVars.class, TaskListener.class, FilePath.class);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "computeFirewallRulesListProjects";
+        }
+
+        @Override
+        @NonNull
+        public String getDisplayName() {
+            return "List firewall rules of several projects";
+        }
+    }
+
+    @Override
+    public StepExecution start(final StepContext context) {
+        return new ComputeFirewallRulesListProjectsStepExecution(context, this);
+    }
+
+    static final class ComputeFirewallRulesListProjectsStepExecution extends GcpStepExecution<Map<String, Object>> {
+
+        private static final long serialVersionUID = 1L;
+        private final transient ComputeFirewallRulesListProjectsStep step;
+
+        ComputeFirewallRulesListProjectsStepExecution(
+                final StepContext context, final ComputeFirewallRulesListProjectsStep step) {
+            super(context, "computeFirewallRulesListProjects");
+            this.step = step;
+        }
+
+        @Override
+        protected Map<String, Object> execute() throws Exception {
+            final var projects = step.getProjects();
+            if (projects == null || projects.isEmpty()) {
+                throw new IllegalArgumentException("At least one project should be specified!");
+            }
+            if (projects.stream().map(GcpProject::getProject).distinct().count() != projects.size()) {
+                throw new IllegalArgumentException("Every project should be specified only once!");
+            }
+            if (step.getConcurrency() < 1) {
+                throw new IllegalArgumentException("'concurrency' should be a positive number!");
+            }
+            final var filter = FirewallRulesFilter.combine(null, null, step.getFilter());
+            if (filter != null) {
+                FirewallRulesFilter.validate(filter);
+            }
+
+            final var context = getContext();
+            final var listener = context.get(TaskListener.class);
+            final var launcher = context.get(Launcher.class);
+            final var envVars = context.get(EnvVars.class);
+            final var profile = GcloudProfile.of(context.get(Computer.class), launcher, envVars);
+            final var accounts = new HashMap<String, String>();
+            final var credentialsErrors = new HashMap<String, String>();
+            activateAccounts(context, profile, launcher, envVars, projects, accounts, credentialsErrors);
+
+            final var pool = Executors.newFixedThreadPool(
+                    Math.min(step.getConcurrency(), projects.size()),
+                    new NamingThreadFactory(new DaemonThreadFactory(), "computeFirewallRulesListProjects"));
+            try {
+                final var completionService = new ExecutorCompletionService<ProjectResult>(pool);
+                final var results = new HashMap<String, ProjectResult>();
+                var submitted = 0;
+                for (final var project : projects) {
+                    final var credentialsId = project.getCredentialsId();
+                    if (credentialsId != null && credentialsErrors.containsKey(credentialsId)) {
+                        final var result = ProjectResult.failure(
+                                project.getProject(), System.nanoTime(), credentialsErrors.get(credentialsId));
+                        results.put(result.project, result);
+                        if (step.isPrintOutput()) {
+                            listener.getLogger().println(result);
+                        }
+                        continue;
+                    }
+                    final var account = credentialsId == null ? null : accounts.get(credentialsId);
+                    completionService.submit(
+                            () -> list(profile, launcher, envVars, project.getProject(), account, filter));
+                    submitted++;
+                }
+
+                for (int i = 0; i < submitted; i++) {
+                    final var result = completionService.take().get();
+                    results.put(result.project, result);
+                    if (step.isPrintOutput()) {
+                        listener.getLogger().println(result);
+                    }
+                }
+                return merge(projects, results);
+            } finally {
+                pool.shutdownNow();
+                pool.awaitTermination(1, TimeUnit.MINUTES);
+            }
+        }
+
+        /**
+         * Activates every distinct service account once upfront, so the concurrent list calls only have to pick one
+         * with {@code --account}. Credentials that can't be found or activated are reported as the error of the
+         * projects using them, the other projects are still listed.
+         */
+        private static void activateAccounts(
+                final StepContext context,
+                final GcloudProfile profile,
+                final Launcher launcher,
+                final EnvVars envVars,
+                final List<GcpProject> projects,
+                final Map<String, String> accounts,
+                final Map<String, String> errors)
+                throws IOException, InterruptedException {
+            for (final var project : projects) {
+                final var credentialsId = project.getCredentialsId();
+                if (credentialsId == null || accounts.containsKey(credentialsId) || errors.containsKey(credentialsId)) {
+                    continue;
+                }
+                final var fileCreds = GcpCredentials.lookup(credentialsId);
+                if (fileCreds == null) {
+                    errors.put(credentialsId, "Couldn't find credentials file with id " + credentialsId);
+                    continue;
+                }
+
+                try {
+                    final var publicValues = GcpCredentials.authenticate(
+                            fileCreds, profile, launcher, envVars, context.get(FilePath.class));
+                    accounts.put(credentialsId, publicValues == null ? null : publicValues.getEmail());
+                } catch (final IOException | RuntimeException e) {
+                    errors.put(credentialsId, e.getMessage());
+                }
+            }
+        }
+
+        private ProjectResult list(
+                final GcloudProfile profile,
+                final Launcher launcher,
+                final EnvVars envVars,
+                final String project,
+                final String account,
+                final String filter) {
+            final var cmd = new ArgumentListBuilder();
+            cmd.add("gcloud", "compute", "firewall-rules", "list", "--format=json", "--project=" + project);
+
+            if (account != null) {
+                cmd.add("--account=" + account);
+            }
+
+            if (filter != null) {
+                cmd.add("--filter=" + filter);
+            }
+
+            final var start = System.nanoTime();
+            try {
+                final var starter = profile.launch(launcher, cmd, envVars);
+                final var outputStream = new ByteArrayOutputStream();
+                final var errorStream = new ByteArrayOutputStream();
+                starter.stdout(outputStream);
+                starter.stderr(errorStream);
+                final var exitCode = join(starter, project);
+
+                if (exitCode != 0) {
+                    final var error = errorStream.toString(StandardCharsets.UTF_8).trim();
+                    return ProjectResult.failure(project, start, "exit code " + exitCode + ": " + error);
+                }
+                observeOutput(project, outputStream.size());
+                final var output = outputStream.toString(StandardCharsets.UTF_8);
+                return ProjectResult.success(project, start, new JSONArray(output.isBlank() ? "[]" : output));
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return ProjectResult.failure(project, start, "interrupted");
+            } catch (final Exception e) {
+                return ProjectResult.failure(project, start, e.toString());
+            }
+        }
+
+        private static Map<String, Object> merge(
+                final List<GcpProject> projects, final Map<String, ProjectResult> results) {
+            final var rules = new ArrayList<Map<String, Object>>();
+            final var summaries = new ArrayList<Map<String, Object>>();
+            for (final var project : projects) {
+                final var result = results.get(project.getProject());
+                if (result.rules != null) {
+                    for (int i = 0; i < result.rules.length(); i++) {
+                        final var rule = result.rules.getJSONObject(i).toMap();
+                        rule.put("project", result.project);
+                        rules.add(rule);
+                    }
+                }
+
+                final var summary = new LinkedHashMap<String, Object>();
+                summary.put("project", result.project);
+                summary.put("durationMillis", result.durationMillis);
+                summary.put("count", result.rules == null ? 0 : result.rules.length());
+                summary.put("error", result.error);
+                summaries.add(summary);
+            }
+
+            final var merged = new LinkedHashMap<String, Object>();
+            merged.put("rules", rules);
+            merged.put("projects", summaries);
+            return merged;
+        }
+    }
+
+    private static final class ProjectResult {
+        private final String project;
+        private final long durationMillis;
+        private final JSONArray rules;
+        private final String error;
+
+        private ProjectResult(final String project, final long start, final JSONArray rules, final String error) {
+            this.project = project;
+            this.durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            this.rules = rules;
+            this.error = error;
+        }
+
+        private static ProjectResult success(final String project, final long start, final JSONArray rules) {
+            return new ProjectResult(project, start, rules, null);
+        }
+
+        private static ProjectResult failure(final String project, final long start, final String error) {
+            return new ProjectResult(project, start, null, error);
+        }
+
+        @Override
+        public String toString() {
+            if (error != null) {
+                return project + ": failed after " + durationMillis + " ms (" + error + ")";
+            }
+            return project + ": " + rules.length() + " firewall rules in " + durationMillis + " ms";
+        }
+    }
+}
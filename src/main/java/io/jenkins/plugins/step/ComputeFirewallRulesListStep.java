@@ -3,18 +3,32 @@ package io.jenkins.plugins.step;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.EnvVars;
 import hudson.Extension;
+import hudson.FilePath;
 import hudson.Launcher;
+import hudson.Util;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.util.ArgumentListBuilder;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.input.CountingInputStream;
 import org.jenkinsci.plugins.workflow.steps.Step;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
 import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
 import org.jenkinsci.plugins.workflow.steps.StepExecution;
-import org.jenkinsci.plugins.workflow.steps.SynchronousStepExecution;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
 
@@ -28,6 +42,13 @@ public class ComputeFirewallRulesListStep extends Step {
     private String sortBy;
     private boolean uri;
     private String format;
+    private String fields;
+    private boolean allowClientSideFilter;
+    private int stopAfter;
+    private String outputFile;
+    private int maxStaleness;
+    private boolean returnHandle;
+    private int memoizeFor;
     private boolean printOutput = true;
 
     @DataBoundConstructor
@@ -73,6 +94,41 @@ public class ComputeFirewallRulesListStep extends Step {
         this.format = format;
     }
 
+    @DataBoundSetter
+    public void setFields(final String fields) {
+        this.fields = fields;
+    }
+
+    @DataBoundSetter
+    public void setAllowClientSideFilter(final boolean allowClientSideFilter) {
+        this.allowClientSideFilter = allowClientSideFilter;
+    }
+
+    @DataBoundSetter
+    public void setStopAfter(final int stopAfter) {
+        this.stopAfter = stopAfter;
+    }
+
+    @DataBoundSetter
+    public void setOutputFile(final String outputFile) {
+        this.outputFile = outputFile;
+    }
+
+    @DataBoundSetter
+    public void setMaxStaleness(final int maxStaleness) {
+        this.maxStaleness = maxStaleness;
+    }
+
+    @DataBoundSetter
+    public void setReturnHandle(final boolean returnHandle) {
+        this.returnHandle = returnHandle;
+    }
+
+    @DataBoundSetter
+    public void setMemoizeFor(final int memoizeFor) {
+        this.memoizeFor = memoizeFor;
+    }
+
     @DataBoundSetter
     public void setPrintOutput(final boolean printOutput) {
         this.printOutput = printOutput;
@@ -110,6 +166,73 @@ public class ComputeFirewallRulesListStep extends Step {
         return format;
     }
 
+    public String getFields() {
+        return fields;
+    }
+
+    public boolean isAllowClientSideFilter() {
+        return allowClientSideFilter;
+    }
+
+    public int getStopAfter() {
+        return stopAfter;
+    }
+
+    public String getOutputFile() {
+        return outputFile;
+    }
+
+    boolean isIncremental() {
+        return stopAfter > 0 || outputFile != null;
+    }
+
+    public int getMaxStaleness() {
+        return maxStaleness;
+    }
+
+    boolean isMirrorable() {
+        return maxStaleness > 0 && isPlainJson();
+    }
+
+    /**
+     * The mirror and the agent worker hold whole rules, so they can only answer plain JSON listings, optionally
+     * restricted by name.
+     */
+    boolean isPlainJson() {
+        return "json".equalsIgnoreCase(format)
+                && regexp == null
+                && filter == null
+                && limit == null
+                && sortBy == null
+                && !uri
+                && fields == null
+                && !isIncremental();
+    }
+
+    public boolean isReturnHandle() {
+        return returnHandle;
+    }
+
+    public int getMemoizeFor() {
+        return memoizeFor;
+    }
+
+    /**
+     * The arguments changing the listed rules, identifying the listing when it is memoized.
+     */
+    String memoArguments() {
+        return CanonicalJson.toString(new JSONObject()
+                .put("name", name)
+                .put("regexp", regexp)
+                .put("filter", filter)
+                .put("limit", limit)
+                .put("sortBy", sortBy)
+                .put("uri", uri)
+                .put("format", format)
+                .put("fields", fields)
+                .put("allowClientSideFilter", allowClientSideFilter));
+    }
+
     public boolean isPrintOutput() {
         return printOutput;
     }
@@ -119,7 +242,7 @@ public class ComputeFirewallRulesListStep extends Step {
 
         @Override
         public Set<? extends Class<?>> getRequiredContext() {
-            return Set.of(Run.class, Launcher.class, EnvVars.class, TaskListener.class);
+            return Set.of(Run.class, EnvVars.class, TaskListener.class);
         }
 
         @Override
@@ -139,34 +262,69 @@ public class ComputeFirewallRulesListStep extends Step {
         return new ComputeFirewallRulesListRuleStepExecution(context, this);
     }
 
-    static final class ComputeFirewallRulesListRuleStepExecution extends SynchronousStepExecution<String> {
+    static final class ComputeFirewallRulesListRuleStepExecution extends GcpStepExecution<Object> {
 
         private static final long serialVersionUID = 1L;
         private final transient ComputeFirewallRulesListStep step;
+        private final boolean returnHandle;
 
         ComputeFirewallRulesListRuleStepExecution(final StepContext context, final ComputeFirewallRulesListStep step) {
-            super(context);
+            super(context, "computeFirewallRulesList");
             this.step = step;
+            this.returnHandle = step.isReturnHandle();
         }
 
         @Override
-        protected String run() throws Exception {
+        protected Object execute() throws Exception {
+            if (step.isIncremental() && (step.getFormat() != null || step.isUri() || step.getSortBy() != null)) {
+                throw new IllegalArgumentException(
+                        "'format', 'uri' and 'sortBy' can't be combined with 'stopAfter' or 'outputFile'!");
+            }
+
             final var context = getContext();
             final var listener = context.get(TaskListener.class);
-            final var launcher = context.get(Launcher.class);
-            final var cmd = new ArgumentListBuilder();
-            cmd.add("gcloud", "compute", "firewall-rules", "list");
+            if (!step.isIncremental()) {
+                final var entry = recall(step.getMemoizeFor(), step.memoArguments(), true);
+                if (entry != null) {
+                    if (step.isPrintOutput()) {
+                        listener.getLogger().println(entry.getResult().getText());
+                    }
+                    return resume(entry);
+                }
+            }
 
-            if (step.getName() != null) {
-                cmd.add("--filter=name=(" + step.getName() + ")");
+            final var envVars = context.get(EnvVars.class);
+            final var launcher = firewallLauncher(context.get(Launcher.class), envVars);
+            if (step.isMirrorable() && usesGcloud()) {
+                final var output = readMirror(context, listener);
+                if (output != null) {
+                    observeCacheHit("mirror");
+                    return print(listener, output);
+                }
             }
 
-            if (step.getRegexp() != null) {
-                cmd.add("--filter=name~" + step.getRegexp());
+            if (step.isPlainJson()) {
+                final var output = callWorker(launcher, envVars, new GcloudWorker.ListFirewalls());
+                if (output != null) {
+                    observeOutput(output.length());
+                    final var rules = new JSONArray(output);
+                    final var filtered = new ArrayList<JSONObject>();
+                    for (int i = 0; i < rules.length(); i++) {
+                        filtered.add(rules.getJSONObject(i));
+                    }
+                    return print(listener, byName(filtered).toString(2));
+                }
             }
 
-            if (step.getFilter() != null) {
-                cmd.add("--filter=" + step.getFilter());
+            final var cmd = new ArgumentListBuilder();
+            cmd.add("gcloud", "compute", "firewall-rules", "list");
+
+            final var filter = FirewallRulesFilter.combine(step.getName(), step.getRegexp(), step.getFilter());
+            if (filter != null) {
+                if (!step.isAllowClientSideFilter()) {
+                    FirewallRulesFilter.validate(filter);
+                }
+                cmd.add("--filter=" + filter);
             }
 
             if (step.getLimit() != null) {
@@ -185,28 +343,217 @@ public class ComputeFirewallRulesListStep extends Step {
                 cmd.add("--uri");
             }
 
-            if (step.getFormat() != null) {
-                cmd.add("--format=" + step.getFormat());
+            final var format =
+                    FirewallRulesFilter.format(step.isIncremental() ? "json" : step.getFormat(), step.getFields());
+            if (format != null) {
+                cmd.add("--format=" + format);
             }
 
-            final var envVars = context.get(EnvVars.class);
-            final var starter = launcher.launch().cmds(cmd).quiet(true);
-            if (envVars != null) {
-                starter.envs(envVars);
+            if (step.isIncremental()) {
+                final var result = runIncrementally(context, listener, launcher, cmd);
+                return result instanceof String ? handle(context, (String) result) : result;
             }
+
+            final var starter = launch(launcher, cmd, envVars);
             final var outputStream = new ByteArrayOutputStream();
             starter.stdout(outputStream);
-            final var result = starter.join();
+            final var result = join(starter);
 
             if (result != 0) {
-                throw new IllegalArgumentException("Failed to create a firewall rule with this command: " + cmd);
+                throw new IllegalArgumentException("Failed to list firewall rules with this command: " + cmd);
             }
 
-            final var output = outputStream.toString(StandardCharsets.UTF_8);
+            observeOutput(outputStream.size());
+            return print(listener, outputStream.toString(StandardCharsets.UTF_8));
+        }
+
+        private Object print(final TaskListener listener, final String output) throws Exception {
             if (step.isPrintOutput()) {
                 listener.getLogger().println(output);
             }
-            return output;
+            return handle(getContext(), output);
+        }
+
+        private Object handle(final StepContext context, final String output) throws Exception {
+            if (!returnHandle && !isMemoized()) {
+                return output;
+            }
+            final var handle = GcpResultHandle.store(context.get(Run.class), output);
+            remember(handle);
+            return returnHandle ? handle : output;
+        }
+
+        @Override
+        protected Object resume(final GcpMemoAction.Entry entry) throws Exception {
+            return returnHandle ? entry.getResult() : entry.getResult().getText();
+        }
+
+        private JSONArray byName(final Collection<JSONObject> rules) {
+            final var names = step.getName() == null ? null : Set.copyOf(List.of(Util.tokenize(step.getName())));
+            final var result = new JSONArray();
+            rules.stream()
+                    .filter(rule -> names == null || names.contains(rule.getString("name")))
+                    .forEach(result::put);
+            return result;
+        }
+
+        private String readMirror(final StepContext context, final TaskListener listener) throws Exception {
+            final var mirror = FirewallMirror.getOrNull();
+            final var envVars = context.get(EnvVars.class);
+            final var project = envVars == null ? null : envVars.get("CLOUDSDK_CORE_PROJECT");
+            final var configuration = GcpPluginConfiguration.getOrNull();
+            final var mirrored =
+                    mirror == null || configuration == null ? null : configuration.getMirroredProject(project);
+            if (mirrored == null) {
+                listener.getLogger().println("Firewall rules of " + project + " are not mirrored, listing from GCP");
+                return null;
+            }
+            if (!FirewallMirror.isServedTo(mirrored, context.get(Run.class), envVars)) {
+                listener.getLogger()
+                        .println("The mirror of " + project + " is only served to builds authenticated with its "
+                                + "credentials, listing from GCP");
+                return null;
+            }
+            final var now = System.currentTimeMillis();
+            final var maxStalenessMillis = TimeUnit.SECONDS.toMillis(step.getMaxStaleness());
+            final var listing = mirror.lookup(project, maxStalenessMillis, now);
+            if (listing == null) {
+                listener.getLogger().println("No mirror of " + project + " fresh enough, listing from GCP");
+                return null;
+            }
+
+            final var rules = byName(listing.getRules());
+            final var age = TimeUnit.MILLISECONDS.toSeconds(now - listing.getFetchedAt());
+            listener.getLogger()
+                    .println("Listed firewall rules from the mirror of " + project + ", generation "
+                            + listing.getGeneration() + " fetched " + age + "s ago");
+            return rules.toString(2);
+        }
+
+        /**
+         * gcloud prints every rule of a JSON listing as soon as its page arrives and only requests the next page when
+         * it runs out of rules to print, so parsing the output as a stream and killing the process once enough rules
+         * have been seen stops the listing early.
+         */
+        private Object runIncrementally(
+                final StepContext context,
+                final TaskListener listener,
+                final Launcher launcher,
+                final ArgumentListBuilder cmd)
+                throws Exception {
+            OutputStream fileStream = null;
+            if (step.getOutputFile() != null) {
+                final var workspace = context.get(FilePath.class);
+                if (workspace == null) {
+                    throw new IllegalArgumentException(
+                            "'outputFile' requires a workspace, use it inside a node block!");
+                }
+                final var target = workspace.child(step.getOutputFile());
+                target.getParent().mkdirs();
+                fileStream = new BufferedOutputStream(target.write());
+            }
+
+            final var envVars = context.get(EnvVars.class);
+            final var starter = launch(launcher, cmd, envVars);
+            starter.readStdout();
+            final var listing = new IncrementalListing(
+                    starter, fileStream, step.isPrintOutput() ? listener : null, step.getStopAfter());
+            final int result;
+            try {
+                result = join(starter, GcpMetrics.project(envVars), listing);
+            } finally {
+                if (fileStream != null) {
+                    fileStream.close();
+                }
+            }
+            observeOutput(listing.bytes);
+
+            if (result != 0) {
+                throw new IllegalArgumentException("Failed to list firewall rules with this command: " + cmd);
+            }
+            if (listing.unexpectedOutput != null) {
+                throw new IllegalArgumentException("Unexpected output of command: " + cmd, listing.unexpectedOutput);
+            }
+            return fileStream == null ? listing.rules.toString(2) : listing.count;
+        }
+
+        /**
+         * Reads the rules one by one while gcloud prints them, keeping them or writing them to the output file. Output
+         * that can't be parsed is only reported once gcloud exited successfully, a failing gcloud may stop mid-rule.
+         */
+        private static final class IncrementalListing implements GcloudProcess {
+            private final Launcher.ProcStarter starter;
+            private final OutputStream fileStream;
+            private final TaskListener listener;
+            private final int stopAfter;
+            private final JSONArray rules = new JSONArray();
+            private int count;
+            private long bytes;
+            private JSONException unexpectedOutput;
+
+            private IncrementalListing(
+                    final Launcher.ProcStarter starter,
+                    final OutputStream fileStream,
+                    final TaskListener listener,
+                    final int stopAfter) {
+                this.starter = starter;
+                this.fileStream = fileStream;
+                this.listener = listener;
+                this.stopAfter = stopAfter;
+            }
+
+            @Override
+            public int run() throws IOException, InterruptedException {
+                final var proc = starter.start();
+                final var stdout = new CountingInputStream(proc.getStdout());
+                try (var reader = new InputStreamReader(stdout, StandardCharsets.UTF_8)) {
+                    if (read(new JSONTokener(reader))) {
+                        proc.kill();
+                        return 0;
+                    }
+                } catch (final JSONException e) {
+                    unexpectedOutput = e;
+                } finally {
+                    bytes = stdout.getByteCount();
+                }
+                return proc.join();
+            }
+
+            /**
+             * @return whether the listing stopped after {@code stopAfter} rules
+             */
+            private boolean read(final JSONTokener tokener) throws IOException {
+                if (tokener.nextClean() != '[' || tokener.nextClean() == ']') {
+                    return false;
+                }
+                tokener.back();
+                while (true) {
+                    final var value = tokener.nextValue();
+                    if (!(value instanceof JSONObject)) {
+                        throw tokener.syntaxError("A firewall rule must be a JSON object");
+                    }
+                    count++;
+                    if (fileStream == null) {
+                        rules.put(value);
+                    } else {
+                        fileStream.write((value + "\n").getBytes(StandardCharsets.UTF_8));
+                    }
+                    if (listener != null) {
+                        listener.getLogger().println(value);
+                    }
+
+                    if (stopAfter > 0 && count >= stopAfter) {
+                        return true;
+                    }
+                    final var next = tokener.nextClean();
+                    if (next == ']') {
+                        return false;
+                    }
+                    if (next != ',') {
+                        throw tokener.syntaxError("Expected a ',' or ']'");
+                    }
+                }
+            }
         }
     }
 }
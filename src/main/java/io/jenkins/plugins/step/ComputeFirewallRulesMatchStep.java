@@ -0,0 +1,148 @@
+package io.jenkins.plugins.step;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.Launcher;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.ArgumentListBuilder;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+public class ComputeFirewallRulesMatchStep extends Step {
+
+    private final List<String> queries;
+    private String filter;
+    private boolean printOutput = true;
+
+    @DataBoundConstructor
+    public ComputeFirewallRulesMatchStep(final List<String> queries) {
+        this.queries = queries;
+    }
+
+    @DataBoundSetter
+    public void setFilter(final String filter) {
+        this.filter = filter;
+    }
+
+    @DataBoundSetter
+    public void setPrintOutput(final boolean printOutput) {
+        this.printOutput = printOutput;
+    }
+
+    public List<String> getQueries() {
+        return queries;
+    }
+
+    public String getFilter() {
+        return filter;
+    }
+
+    public boolean isPrintOutput() {
+        return printOutput;
+    }
+
+    @Extension
+    public static class Descriptor extends StepDescriptor {
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return Set.of(Run.class, Launcher.class, EnvVars.class, TaskListener.class);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "computeFirewallRulesMatch";
+        }
+
+        @Override
+        @NonNull
+        public String getDisplayName() {
+            return "Find firewall rules matching a packet";
+        }
+    }
+
+    @Override
+    public StepExecution start(final StepContext context) {
+        return new ComputeFirewallRulesMatchStepExecution(context, this);
+    }
+
+    static final class ComputeFirewallRulesMatchStepExecution extends GcpStepExecution<List<Map<String, Object>>> {
+
+        private static final long serialVersionUID = 1L;
+        private final transient ComputeFirewallRulesMatchStep step;
+
+        ComputeFirewallRulesMatchStepExecution(final StepContext context, final ComputeFirewallRulesMatchStep step) {
+            super(context, "computeFirewallRulesMatch");
+            this.step = step;
+        }
+
+        @Override
+        protected List<Map<String, Object>> execute() throws Exception {
+            if (step.getQueries() == null || step.getQueries().isEmpty()) {
+                throw new IllegalArgumentException("At least one query should be specified!");
+            }
+            // parse everything upfront so that a typo fails before the rules are fetched
+            final var queries = new ArrayList<FirewallRuleIndex.Query>();
+            for (final var query : step.getQueries()) {
+                queries.add(FirewallRuleIndex.Query.parse(query));
+            }
+
+            final var context = getContext();
+            final var listener = context.get(TaskListener.class);
+            final var launcher = context.get(Launcher.class);
+            final var cmd = new ArgumentListBuilder();
+            cmd.add("gcloud", "compute", "firewall-rules", "list", "--format=json");
+
+            final var filter = FirewallRulesFilter.combine(null, null, step.getFilter());
+            if (filter != null) {
+                FirewallRulesFilter.validate(filter);
+                cmd.add("--filter=" + filter);
+            }
+
+            final var envVars = context.get(EnvVars.class);
+            final var starter = launch(launcher, cmd, envVars);
+            final var outputStream = new ByteArrayOutputStream();
+            starter.stdout(outputStream);
+            final var result = join(starter);
+
+            if (result != 0) {
+                throw new IllegalArgumentException("Failed to list firewall rules with this command: " + cmd);
+            }
+
+            observeOutput(outputStream.size());
+            final var index =
+                    new FirewallRuleIndex(FirewallRule.fromJsonArray(outputStream.toString(StandardCharsets.UTF_8)));
+
+            final var matches = new ArrayList<Map<String, Object>>(queries.size());
+            for (final var query : queries) {
+                final var rules = index.match(query);
+                final var ruleNames = new ArrayList<String>(rules.size());
+                rules.forEach(rule -> ruleNames.add(rule.getName()));
+
+                final var match = new LinkedHashMap<String, Object>();
+                match.put("query", query.toString());
+                match.put("action", FirewallRuleIndex.effectiveAction(query, rules));
+                match.put("rules", ruleNames);
+                matches.add(match);
+
+                if (step.isPrintOutput()) {
+                    listener.getLogger().println(query + " -> " + match.get("action") + " " + ruleNames);
+                }
+            }
+            return matches;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package io.jenkins.plugins.step;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Run;
+import hudson.model.StreamBuildListener;
+import hudson.model.TaskListener;
+import hudson.util.ArgumentListBuilder;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.json.JSONArray;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+public class ComputeFirewallRulesSnapshotStep extends Step {
+
+    private final String file;
+    private String filter;
+    private boolean archive = true;
+
+    @DataBoundConstructor
+    public ComputeFirewallRulesSnapshotStep(final String file) {
+        this.file = file;
+    }
+
+    @DataBoundSetter
+    public void setFilter(final String filter) {
+        this.filter = filter;
+    }
+
+    @DataBoundSetter
+    public void setArchive(final boolean archive) {
+        this.archive = archive;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public String getFilter() {
+        return filter;
+    }
+
+    public boolean isArchive() {
+        return archive;
+    }
+
+    @Extension
+    public static class Descriptor extends StepDescriptor {
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return Set.of(Run.class, Launcher.class, EnvVars.class, TaskListener.class, FilePath.class);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "computeFirewallRulesSnapshot";
+        }
+
+        @Override
+        @NonNull
+        public String getDisplayName() {
+            return "Store a snapshot of firewall rules";
+        }
+    }
+
+    @Override
+    public StepExecution start(final StepContext context) {
+        return new ComputeFirewallRulesSnapshotStepExecution(context, this);
+    }
+
+    static final class ComputeFirewallRulesSnapshotStepExecution extends GcpStepExecution<Integer> {
+
+        private static final long serialVersionUID = 1L;
+        private final transient ComputeFirewallRulesSnapshotStep step;
+
+        ComputeFirewallRulesSnapshotStepExecution(
+                final StepContext context, final ComputeFirewallRulesSnapshotStep step) {
+            super(context, "computeFirewallRulesSnapshot");
+            this.step = step;
+        }
+
+        @Override
+        protected Integer execute() throws Exception {
+            final var context = getContext();
+            final var listener = context.get(TaskListener.class);
+            final var launcher = context.get(Launcher.class);
+            final var workspace = context.get(FilePath.class);
+            final var cmd = new ArgumentListBuilder();
+            cmd.add("gcloud", "compute", "firewall-rules", "list", "--format=json");
+
+            final var filter = FirewallRulesFilter.combine(null, null, step.getFilter());
+            if (filter != null) {
+                FirewallRulesFilter.validate(filter);
+                cmd.add("--filter=" + filter);
+            }
+
+            final var envVars = context.get(EnvVars.class);
+            final var starter = launch(launcher, cmd, envVars);
+            final var outputStream = new ByteArrayOutputStream();
+            starter.stdout(outputStream);
+            final var result = join(starter);
+
+            if (result != 0) {
+                throw new IllegalArgumentException("Failed to list firewall rules with this command: " + cmd);
+            }
+
+            observeOutput(outputStream.size());
+            final var output = outputStream.toString(StandardCharsets.UTF_8);
+            final var rules = new JSONArray(output.isBlank() ? "[]" : output);
+            final var target = workspace.child(step.getFile());
+            target.getParent().mkdirs();
+            final int count;
+            try (var snapshotStream = target.write()) {
+                count = FirewallSnapshot.write(rules, snapshotStream);
+            }
+            listener.getLogger().println("Stored a snapshot of " + count + " firewall rules in " + step.getFile());
+
+            if (step.isArchive()) {
+                context.get(Run.class)
+                        .getArtifactManager()
+                        .archive(
+                                workspace,
+                                launcher,
+                                new StreamBuildListener(listener.getLogger(), StandardCharsets.UTF_8),
+                                Map.of(step.getFile(), step.getFile()));
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package io.jenkins.plugins.step;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * In-memory, thread-safe stand-in of the firewalls collection of the Compute API. Rules are validated, inserted ones
+ * are completed with the defaults of GCP, every change is recorded as a done operation, and listings are filtered and
+ * paginated by name like the API does.
+ */
+final class FakeCompute {
+
+    static final String SELF_LINK_PREFIX = "https://www.googleapis.com/compute/v1/";
+    static final int MAX_RESULTS = 500;
+    static final int MAX_OPERATIONS = 10_000;
+
+    private static final Pattern NAME = Pattern.compile("[a-z]([-a-z0-9]{0,61}[a-z0-9])?");
+    private static final List<String> PORT_PROTOCOLS = List.of("tcp", "udp", "sctp", "all");
+
+    private final Map<String, Project> projects = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong(1_000_000);
+
+    /**
+     * @return the operation of the insertion
+     */
+    JSONObject insert(final String project, final JSONObject rule) throws ApiException {
+        return project(project).insert(rule);
+    }
+
+    JSONObject get(final String project, final String name) throws ApiException {
+        return project(project).get(name);
+    }
+
+    /**
+     * Replaces the fields of the rule present in the patch, an empty list clears a field.
+     *
+     * @return the operation of the patch
+     */
+    JSONObject patch(final String project, final String name, final JSONObject patch) throws ApiException {
+        return project(project).patch(name, patch);
+    }
+
+    /**
+     * @return the operation of the deletion
+     */
+    JSONObject delete(final String project, final String name) throws ApiException {
+        return project(project).delete(name);
+    }
+
+    /**
+     * @param pageToken the {@code nextPageToken} of the previous page, or {@code null} for the first one
+     * @return a page of at most {@code maxResults} rules matching the filter, sorted by name
+     */
+    JSONObject list(
+            final String project, final Predicate<JSONObject> filter, final int maxResults, final String pageToken) {
+        final var pageSize = maxResults <= 0 ? MAX_RESULTS : Math.min(maxResults, MAX_RESULTS);
+        return project(project).list(filter, pageSize, pageToken);
+    }
+
+    /**
+     * @return the last {@link #MAX_OPERATIONS} operations of the project, oldest first
+     */
+    List<JSONObject> getOperations(final String project) {
+        return project(project).getOperations();
+    }
+
+    void reset() {
+        projects.clear();
+    }
+
+    static String selfLink(final String project, final String name) {
+        return SELF_LINK_PREFIX + "projects/" + project + "/global/firewalls/" + name;
+    }
+
+    private Project project(final String name) {
+        return projects.computeIfAbsent(name, Project::new);
+    }
+
+    private final class Project {
+        private final String name;
+        private final TreeMap<String, JSONObject> rules = new TreeMap<>();
+        private final ArrayDeque<JSONObject> operations = new ArrayDeque<>();
+
+        private Project(final String name) {
+            this.name = name;
+        }
+
+        synchronized JSONObject insert(final JSONObject rule) throws ApiException {
+            final var ruleName = rule.optString("name");
+            if (!NAME.matcher(ruleName).matches()) {
+                throw new ApiException(400, "Invalid value for field 'resource.name': '" + ruleName
+                        + "'. Must be a match of regex '" + NAME + "'");
+            }
+            if (rules.containsKey(ruleName)) {
+                throw new ApiException(409, "The resource '" + resource(ruleName) + "' already exists");
+            }
+            final var created = complete(new JSONObject(rule.toMap()));
+            created.put("id", String.valueOf(ids.incrementAndGet()))
+                    .put("creationTimestamp", OffsetDateTime.now(ZoneOffset.UTC).toString());
+            rules.put(ruleName, created);
+            return operation("insert", ruleName);
+        }
+
+        synchronized JSONObject get(final String ruleName) throws ApiException {
+            return new JSONObject(existing(ruleName).toMap());
+        }
+
+        synchronized JSONObject patch(final String ruleName, final JSONObject patch) throws ApiException {
+            final var existing = existing(ruleName);
+            for (final var field : List.of("name", "direction")) {
+                if (patch.has(field) && !patch.getString(field).equalsIgnoreCase(existing.getString(field))) {
+                    throw immutable(field);
+                }
+            }
+            if (patch.has("network") && !network(patch.getString("network")).equals(existing.getString("network"))) {
+                throw immutable("network");
+            }
+            if (patch.has("allowed") && existing.has("denied") || patch.has("denied") && existing.has("allowed")) {
+                throw new ApiException(400, "The action of a firewall rule cannot be changed");
+            }
+            final var patched = new JSONObject(existing.toMap());
+            for (final var field : patch.keySet()) {
+                final var value = patch.get(field);
+                if (value instanceof JSONArray && ((JSONArray) value).isEmpty()) {
+                    patched.remove(field);
+                } else {
+                    patched.put(field, value);
+                }
+            }
+            final var direction = check(patched);
+            if (FirewallRule.INGRESS.equals(direction)
+                    && !patched.has("sourceRanges")
+                    && !patched.has("sourceTags")
+                    && !patched.has("sourceServiceAccounts")) {
+                throw new ApiException(
+                        400, "One of sourceRanges, sourceTags or sourceServiceAccounts must be specified for INGRESS");
+            }
+            if (FirewallRule.EGRESS.equals(direction) && !patched.has("destinationRanges")) {
+                throw new ApiException(400, "destinationRanges must be specified for EGRESS");
+            }
+            rules.put(ruleName, patched);
+            return operation("patch", ruleName);
+        }
+
+        synchronized JSONObject delete(final String ruleName) throws ApiException {
+            existing(ruleName);
+            rules.remove(ruleName);
+            return operation("delete", ruleName);
+        }
+
+        synchronized JSONObject list(final Predicate<JSONObject> filter, final int maxResults, final String pageToken) {
+            final var items = new JSONArray();
+            final var iterator = (pageToken == null ? rules : rules.tailMap(pageToken, false))
+                    .values()
+                    .iterator();
+            String last = null;
+            while (iterator.hasNext() && items.length() < maxResults) {
+                final var rule = iterator.next();
+                if (filter.test(rule)) {
+                    items.put(new JSONObject(rule.toMap()));
+                    last = rule.getString("name");
+                }
+            }
+            final var page = new JSONObject()
+                    .put("kind", "compute#firewallList")
+                    .put("items", items)
+                    .put("selfLink", SELF_LINK_PREFIX + "projects/" + name + "/global/firewalls");
+            if (last != null && hasMatch(iterator, filter)) {
+                page.put("nextPageToken", last);
+            }
+            return page;
+        }
+
+        synchronized List<JSONObject> getOperations() {
+            return new ArrayList<>(operations);
+        }
+
+        private boolean hasMatch(final Iterator<JSONObject> iterator, final Predicate<JSONObject> filter) {
+            while (iterator.hasNext()) {
+                if (filter.test(iterator.next())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private JSONObject existing(final String ruleName) throws ApiException {
+            final var rule = rules.get(ruleName);
+            if (rule == null) {
+                throw new ApiException(404, "The resource '" + resource(ruleName) + "' was not found");
+            }
+            return rule;
+        }
+
+        /**
+         * Validates a new rule and fills the fields GCP defaults, which it only does on insertion.
+         */
+        private JSONObject complete(final JSONObject rule) throws ApiException {
+            final var direction = check(rule);
+            final var sourced = rule.has("sourceTags") || rule.has("sourceServiceAccounts");
+            rule.put("kind", "compute#firewall")
+                    .put("priority", rule.optInt("priority", FirewallRule.DEFAULT_PRIORITY))
+                    .put("direction", direction)
+                    .put("network", network(rule.optString("network", "default")))
+                    .put("disabled", rule.optBoolean("disabled"))
+                    .put("description", rule.optString("description"))
+                    .put("selfLink", selfLink(name, rule.getString("name")));
+            if (!rule.has("logConfig")) {
+                rule.put("logConfig", new JSONObject().put("enable", false));
+            }
+            if (FirewallRule.INGRESS.equals(direction) && !sourced && !rule.has("sourceRanges")) {
+                rule.put("sourceRanges", new JSONArray().put("0.0.0.0/0"));
+            }
+            if (FirewallRule.EGRESS.equals(direction) && !rule.has("destinationRanges")) {
+                rule.put("destinationRanges", new JSONArray().put("0.0.0.0/0"));
+            }
+            return rule;
+        }
+
+        /**
+         * @return the direction of the rule
+         */
+        private String check(final JSONObject rule) throws ApiException {
+            final var ruleName = rule.getString("name");
+            final var allowed = rule.optJSONArray("allowed");
+            final var denied = rule.optJSONArray("denied");
+            if ((allowed == null || allowed.isEmpty()) == (denied == null || denied.isEmpty())) {
+                throw new ApiException(400, "Exactly one of 'allowed' or 'denied' must be specified for " + ruleName);
+            }
+            validate(allowed == null || allowed.isEmpty() ? denied : allowed);
+
+            final var priority = rule.optInt("priority", FirewallRule.DEFAULT_PRIORITY);
+            if (priority < 0 || priority > 65535) {
+                throw new ApiException(400, "Invalid value for field 'resource.priority': '" + priority
+                        + "'. Must be greater than or equal to 0 and less than or equal to 65535");
+            }
+            final var direction = rule.optString("direction", FirewallRule.INGRESS).toUpperCase(Locale.ROOT);
+            if (!FirewallRule.INGRESS.equals(direction) && !FirewallRule.EGRESS.equals(direction)) {
+                throw new ApiException(400, "Invalid value for field 'resource.direction': '" + direction + "'");
+            }
+            final var sourced = rule.has("sourceTags") || rule.has("sourceServiceAccounts");
+            if (FirewallRule.EGRESS.equals(direction) && sourced) {
+                throw new ApiException(400, "Source tags and service accounts cannot be used with EGRESS rules");
+            }
+            if (rule.has("sourceTags") && rule.has("sourceServiceAccounts")) {
+                throw new ApiException(400, "Source tags cannot be combined with source service accounts");
+            }
+            if (rule.has("targetTags") && rule.has("targetServiceAccounts")) {
+                throw new ApiException(400, "Target tags cannot be combined with target service accounts");
+            }
+            return direction;
+        }
+
+        private void validate(final JSONArray permissions) throws ApiException {
+            for (int i = 0; i < permissions.length(); i++) {
+                final var permission = permissions.getJSONObject(i);
+                final var protocol = permission.optString("IPProtocol");
+                if (protocol.isEmpty()) {
+                    throw new ApiException(400, "Required field 'IPProtocol' not specified");
+                }
+                final var ports = permission.optJSONArray("ports");
+                if (ports == null) {
+                    continue;
+                }
+                if (!PORT_PROTOCOLS.contains(protocol.toLowerCase(Locale.ROOT))) {
+                    throw new ApiException(400, "Ports can only be specified for TCP, UDP and SCTP, not " + protocol);
+                }
+                for (int j = 0; j < ports.length(); j++) {
+                    final int[] range;
+                    try {
+                        range = FirewallRule.Permission.parsePortRange(ports.getString(j));
+                    } catch (final NumberFormatException e) {
+                        throw new ApiException(400, "Invalid port " + ports.get(j));
+                    }
+                    if (range[0] < 0 || range[1] > 65535 || range[0] > range[1]) {
+                        throw new ApiException(400, "Invalid port " + ports.get(j));
+                    }
+                }
+            }
+        }
+
+        private String network(final String network) {
+            if (network.startsWith("https://")) {
+                return network;
+            }
+            return SELF_LINK_PREFIX + "projects/" + name + "/global/networks/"
+                    + network.substring(network.lastIndexOf('/') + 1);
+        }
+
+        private JSONObject operation(final String type, final String ruleName) {
+            final var id = ids.incrementAndGet();
+            final var now = OffsetDateTime.now(ZoneOffset.UTC).toString();
+            final var operation = new JSONObject()
+                    .put("kind", "compute#operation")
+                    .put("id", String.valueOf(id))
+                    .put("name", "operation-" + id)
+                    .put("operationType", type)
+                    .put("targetLink", selfLink(name, ruleName))
+                    .put("status", "DONE")
+                    .put("progress", 100)
+                    .put("insertTime", now)
+                    .put("endTime", now)
+                    .put("selfLink", SELF_LINK_PREFIX + "projects/" + name + "/global/operations/operation-" + id);
+            operations.add(operation);
+            if (operations.size() > MAX_OPERATIONS) {
+                operations.removeFirst();
+            }
+            return operation;
+        }
+
+        private ApiException immutable(final String field) {
+            return new ApiException(
+                    400,
+                    "Invalid value for field 'resource." + field + "': the " + field
+                            + " of a firewall rule cannot be changed");
+        }
+
+        private String resource(final String ruleName) {
+            return "projects/" + name + "/global/firewalls/" + ruleName;
+        }
+    }
+
+    /**
+     * Error response of the fake API, with the HTTP status the Compute API would return.
+     */
+    static final class ApiException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        ApiException(final int status, final String message) {
+            super(message);
+            this.status = status;
+        }
+
+        int getStatus() {
+            return status;
+        }
+    }
+}
@@ -0,0 +1,609 @@
+package io.jenkins.plugins.step;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.Proc;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.remoting.Channel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Runs the gcloud commands of the firewall steps against {@link FakeCompute}, in memory, so pipelines using the steps
+ * can be tested without GCP: {@code withEnv(['GCP_FIREWALL_BACKEND=fake']) { ... }}. Every build has its own fake, in
+ * which every project, taken from {@code CLOUDSDK_CORE_PROJECT}, starts without rules.
+ */
+@Extension
+public class FakeComputeBackend extends FirewallBackend {
+
+    static final String ID = "fake";
+    static final String DEFAULT_PROJECT = "fake-project";
+
+    /**
+     * Fakes of the running builds, by {@link #build(EnvVars)}, discarded when the build completes.
+     */
+    private static final Map<String, FakeCompute> COMPUTES = new ConcurrentHashMap<>();
+
+    static FakeCompute getCompute(final EnvVars envVars) {
+        return COMPUTES.computeIfAbsent(build(envVars), build -> new FakeCompute());
+    }
+
+    /**
+     * @return the build of the variables, e.g. {@code folder/job#42}, or an empty string outside of builds
+     */
+    static String build(final EnvVars envVars) {
+        final var job = envVars == null ? null : envVars.get("JOB_NAME");
+        final var number = envVars == null ? null : envVars.get("BUILD_NUMBER");
+        return job == null || number == null ? "" : job + "#" + number;
+    }
+
+    @NonNull
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    @NonNull
+    @Override
+    public String getDisplayName() {
+        return "In-memory fake of the Compute API, for pipeline tests";
+    }
+
+    @Override
+    public Launcher getLauncher(final TaskListener listener, final EnvVars envVars) {
+        return new FakeGcloud(getCompute(envVars), listener == null ? TaskListener.NULL : listener);
+    }
+
+    /**
+     * Discards the fake of a build once it completes, the next build starts without rules again.
+     */
+    @Extension
+    public static class Listener extends RunListener<Run<?, ?>> {
+
+        @Override
+        public void onFinalized(final Run<?, ?> run) {
+            COMPUTES.remove(run.getParent().getFullName() + "#" + run.getNumber());
+        }
+    }
+
+    /**
+     * Launcher interpreting {@code gcloud compute firewall-rules} commands, answering with the output and exit code
+     * gcloud would have, without starting any process. Describe and list only print JSON, value and table formats.
+     */
+    static final class FakeGcloud extends Launcher {
+
+        private final FakeCompute compute;
+
+        FakeGcloud(final FakeCompute compute, final TaskListener listener) {
+            super(listener, null);
+            this.compute = compute;
+        }
+
+        @Override
+        public Proc launch(@NonNull final ProcStarter starter) throws IOException {
+            final var stdout = new ByteArrayOutputStream();
+            final var stderr = new ByteArrayOutputStream();
+            final int result;
+            try (var out = new PrintStream(stdout, true, StandardCharsets.UTF_8);
+                    var err = new PrintStream(stderr, true, StandardCharsets.UTF_8)) {
+                result = run(starter.cmds(), project(starter.envs()), out, err);
+            }
+            if (starter.stdout() != null) {
+                stdout.writeTo(starter.stdout());
+            }
+            stderr.writeTo(starter.stderr() != null ? starter.stderr() : listener.getLogger());
+            return new FinishedProc(result, stdout.toByteArray());
+        }
+
+        @Override
+        public Channel launchChannel(
+                @NonNull final String[] cmd,
+                @NonNull final OutputStream out,
+                final FilePath workDir,
+                @NonNull final Map<String, String> envVars) {
+            throw new UnsupportedOperationException("The fake backend only runs gcloud commands");
+        }
+
+        @Override
+        public void kill(final Map<String, String> modelEnvVars) {}
+
+        private static String project(final String[] envs) {
+            if (envs != null) {
+                for (final var env : envs) {
+                    if (env.startsWith("CLOUDSDK_CORE_PROJECT=")) {
+                        return env.substring("CLOUDSDK_CORE_PROJECT=".length());
+                    }
+                }
+            }
+            return DEFAULT_PROJECT;
+        }
+
+        /**
+         * @return the exit code of gcloud, 1 for errors of the API and 2 for invalid arguments
+         */
+        int run(final List<String> cmd, final String defaultProject, final PrintStream out, final PrintStream err) {
+            final var command = "gcloud.compute.firewall-rules." + (cmd.size() > 3 ? cmd.get(3) : "");
+            try {
+                final var executable = cmd.isEmpty() ? "" : cmd.get(0);
+                if (cmd.size() < 4
+                        || !executable.matches("(.*[/\\\\])?gcloud(\\.cmd)?")
+                        || !cmd.get(1).equals("compute")
+                        || !cmd.get(2).equals("firewall-rules")) {
+                    throw new IllegalArgumentException("only gcloud compute firewall-rules commands are supported");
+                }
+                final var arguments = new Arguments(cmd.subList(4, cmd.size()));
+                final var project = arguments.flags.getOrDefault("project", defaultProject);
+                arguments.flags.remove("project");
+                switch (cmd.get(3)) {
+                    case "create":
+                        create(project, arguments, out, err);
+                        break;
+                    case "describe":
+                        describe(project, arguments, out);
+                        break;
+                    case "update":
+                        update(project, arguments, err);
+                        break;
+                    case "delete":
+                        return delete(project, arguments, err);
+                    case "list":
+                        list(project, arguments, out);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unsupported command " + cmd.get(3));
+                }
+                return 0;
+            } catch (final FakeCompute.ApiException e) {
+                err.println("ERROR: (" + command + ") " + e.getMessage());
+                return 1;
+            } catch (final IllegalArgumentException e) {
+                err.println("ERROR: (" + command + ") " + e.getMessage());
+                return 2;
+            }
+        }
+
+        private void create(
+                final String project, final Arguments arguments, final PrintStream out, final PrintStream err)
+                throws FakeCompute.ApiException {
+            final var name = arguments.name();
+            final var rule = new JSONObject().put("name", name);
+            arguments.apply(rule, null);
+            compute.insert(project, rule);
+            err.println("Created [" + FakeCompute.selfLink(project, name) + "].");
+            print(List.of(compute.get(project, name)), null, out);
+        }
+
+        private void describe(final String project, final Arguments arguments, final PrintStream out)
+                throws FakeCompute.ApiException {
+            final var name = arguments.name();
+            final var format = arguments.flags.remove("format");
+            arguments.checkConsumed();
+            final var parsed = Format.parse(format);
+            if (parsed != null && !parsed.name.equals("json")) {
+                throw new IllegalArgumentException("the fake backend only describes rules in JSON");
+            }
+            final var rule = compute.get(project, name);
+            out.println(select(rule, parsed == null ? null : parsed.fields).toString(2));
+        }
+
+        private void update(final String project, final Arguments arguments, final PrintStream err)
+                throws FakeCompute.ApiException {
+            final var name = arguments.name();
+            final var existing = compute.get(project, name);
+            final var patch = new JSONObject();
+            arguments.apply(patch, existing);
+            compute.patch(project, name, patch);
+            err.println("Updated [" + FakeCompute.selfLink(project, name) + "].");
+        }
+
+        /**
+         * Deletes every rule that exists, like gcloud, failing if any did not.
+         */
+        private int delete(final String project, final Arguments arguments, final PrintStream err) {
+            arguments.checkConsumed();
+            if (arguments.names.isEmpty()) {
+                throw new IllegalArgumentException("argument NAME [NAME ...]: Must be specified.");
+            }
+            final var failures = new ArrayList<String>();
+            for (final var name : arguments.names) {
+                try {
+                    compute.delete(project, name);
+                    err.println("Deleted [" + FakeCompute.selfLink(project, name) + "].");
+                } catch (final FakeCompute.ApiException e) {
+                    failures.add(" - " + e.getMessage());
+                }
+            }
+            if (!failures.isEmpty()) {
+                err.println("ERROR: (gcloud.compute.firewall-rules.delete) Could not fetch resource:");
+                failures.forEach(err::println);
+                return 1;
+            }
+            return 0;
+        }
+
+        /**
+         * Lists page by page, stopping once the limit is reached unless the rules have to be sorted first.
+         */
+        private void list(final String project, final Arguments arguments, final PrintStream out) {
+            final var filter = arguments.flags.remove("filter");
+            final var limit = arguments.integer("limit", Integer.MAX_VALUE);
+            final var pageSize = arguments.integer("page-size", FakeCompute.MAX_RESULTS);
+            final var sortBy = arguments.flags.remove("sort-by");
+            final var uri = arguments.switches.remove("uri");
+            final var format = Format.parse(arguments.flags.remove("format"));
+            arguments.checkConsumed();
+
+            final Predicate<JSONObject> predicate = filter == null ? rule -> true : FirewallRulesFilter.matcher(filter);
+            final var rules = new ArrayList<JSONObject>();
+            String pageToken = null;
+            do {
+                final var page = compute.list(project, predicate, pageSize, pageToken);
+                final var items = page.getJSONArray("items");
+                for (int i = 0; i < items.length(); i++) {
+                    rules.add(items.getJSONObject(i));
+                }
+                pageToken = page.optString("nextPageToken", null);
+            } while (pageToken != null && (sortBy != null || rules.size() < limit));
+
+            if (sortBy != null) {
+                rules.sort(comparator(sortBy));
+            }
+            final var listed = rules.subList(0, Math.min(limit, rules.size()));
+            if (uri) {
+                listed.forEach(rule -> out.println(rule.getString("selfLink")));
+            } else {
+                print(listed, format, out);
+            }
+        }
+
+        private static Comparator<JSONObject> comparator(final String sortBy) {
+            Comparator<JSONObject> comparator = (first, second) -> 0;
+            for (final var key : sortBy.split(",")) {
+                final var descending = key.startsWith("~");
+                final var field = descending ? key.substring(1) : key;
+                Comparator<JSONObject> byField = (first, second) -> compare(
+                        String.join(",", FirewallRulesFilter.values(first, field)),
+                        String.join(",", FirewallRulesFilter.values(second, field)));
+                comparator = comparator.thenComparing(descending ? byField.reversed() : byField);
+            }
+            return comparator;
+        }
+
+        private static int compare(final String first, final String second) {
+            try {
+                return Double.compare(Double.parseDouble(first), Double.parseDouble(second));
+            } catch (final NumberFormatException e) {
+                return first.compareTo(second);
+            }
+        }
+
+        private static void print(final List<JSONObject> rules, final Format format, final PrintStream out) {
+            final var fields = format == null ? null : format.fields;
+            if (format != null && format.name.equals("json")) {
+                final var array = new JSONArray();
+                rules.forEach(rule -> array.put(select(rule, fields)));
+                out.println(array.toString(2));
+            } else if (format != null && format.name.equals("value")) {
+                for (final var rule : rules) {
+                    out.println(fields.stream()
+                            .map(field -> String.join(";", FirewallRulesFilter.values(rule, field)))
+                            .collect(Collectors.joining("\t")));
+                }
+            } else {
+                table(rules, fields == null ? Format.TABLE : fields, out);
+            }
+        }
+
+        private static void table(final List<JSONObject> rules, final List<String> fields, final PrintStream out) {
+            final var rows = new ArrayList<List<String>>();
+            rows.add(fields.stream()
+                    .map(field -> field.substring(field.lastIndexOf('.') + 1).toUpperCase(Locale.ROOT))
+                    .collect(Collectors.toList()));
+            for (final var rule : rules) {
+                rows.add(fields.stream()
+                        .map(field -> FirewallRulesFilter.values(rule, field).stream()
+                                .map(value -> field.equals("network") ? lastSegment(value) : value)
+                                .collect(Collectors.joining(",")))
+                        .collect(Collectors.toList()));
+            }
+            final var widths = new int[fields.size()];
+            rows.forEach(row -> {
+                for (int i = 0; i < widths.length; i++) {
+                    widths[i] = Math.max(widths[i], row.get(i).length());
+                }
+            });
+            for (final var row : rows) {
+                final var line = new StringBuilder();
+                for (int i = 0; i < widths.length; i++) {
+                    line.append(row.get(i)).append(" ".repeat(widths[i] + 2 - row.get(i).length()));
+                }
+                out.println(line.toString().stripTrailing());
+            }
+        }
+
+        private static String lastSegment(final String url) {
+            return url.substring(url.lastIndexOf('/') + 1);
+        }
+
+        /**
+         * @return the rule restricted to the dotted fields, or the whole rule without fields
+         */
+        static JSONObject select(final JSONObject rule, final List<String> fields) {
+            if (fields == null || fields.isEmpty()) {
+                return rule;
+            }
+            final var projected = new JSONObject();
+            for (final var field : fields) {
+                copy(rule, projected, field.split("\\."), 0);
+            }
+            return projected;
+        }
+
+        private static void copy(
+                final JSONObject source, final JSONObject target, final String[] path, final int index) {
+            final var value = source.opt(path[index]);
+            if (value == null) {
+                return;
+            }
+            if (index == path.length - 1) {
+                target.put(path[index], value);
+            } else if (value instanceof JSONObject) {
+                final var child = target.optJSONObject(path[index]);
+                final var copy = child == null ? new JSONObject() : child;
+                copy((JSONObject) value, copy, path, index + 1);
+                target.put(path[index], copy);
+            } else if (value instanceof JSONArray) {
+                final var array = (JSONArray) value;
+                final var existing = target.optJSONArray(path[index]);
+                final var copies = existing == null ? new JSONArray() : existing;
+                for (int i = 0; i < array.length(); i++) {
+                    final var element = array.optJSONObject(i);
+                    if (element != null) {
+                        final var copy = copies.optJSONObject(i) == null ? new JSONObject() : copies.getJSONObject(i);
+                        copy(element, copy, path, index + 1);
+                        copies.put(i, copy);
+                    }
+                }
+                target.put(path[index], copies);
+            }
+        }
+    }
+
+    /**
+     * Output format of gcloud, e.g. {@code json(name,priority)}.
+     */
+    private static final class Format {
+        private static final List<String> TABLE = List.of("name", "network", "direction", "priority", "disabled");
+
+        private final String name;
+        private final List<String> fields;
+
+        private Format(final String name, final List<String> fields) {
+            this.name = name;
+            this.fields = fields;
+        }
+
+        static Format parse(final String format) {
+            if (format == null) {
+                return null;
+            }
+            final var open = format.indexOf('(');
+            final var name = open < 0 ? format : format.substring(0, open);
+            if (!List.of("json", "value", "table").contains(name) || open >= 0 && !format.endsWith(")")) {
+                throw new IllegalArgumentException("format " + format + " is not supported by the fake backend");
+            }
+            final var fields = open < 0
+                    ? null
+                    : Arrays.stream(format.substring(open + 1, format.length() - 1).split(","))
+                            .map(String::trim)
+                            .filter(field -> !field.isEmpty())
+                            .collect(Collectors.toList());
+            if (name.equals("value") && (fields == null || fields.isEmpty())) {
+                throw new IllegalArgumentException("format value requires fields, e.g. value(name)");
+            }
+            return new Format(name, fields);
+        }
+    }
+
+    /**
+     * Positional arguments and {@code --flag=value} or {@code --switch} flags of a command, consumed as they are used.
+     */
+    private static final class Arguments {
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, String> flags = new LinkedHashMap<>();
+        private final Map<String, Boolean> switches = new LinkedHashMap<>();
+
+        private Arguments(final List<String> arguments) {
+            for (final var argument : arguments) {
+                if (!argument.startsWith("--")) {
+                    names.add(argument);
+                } else if (argument.contains("=")) {
+                    final var separator = argument.indexOf('=');
+                    flags.put(argument.substring(2, separator), argument.substring(separator + 1));
+                } else if (argument.startsWith("--no-")) {
+                    switches.put(argument.substring(5), false);
+                } else {
+                    switches.put(argument.substring(2), true);
+                }
+            }
+        }
+
+        String name() {
+            if (names.size() != 1) {
+                throw new IllegalArgumentException("exactly one NAME must be specified, not " + names);
+            }
+            return names.get(0);
+        }
+
+        int integer(final String flag, final int defaultValue) {
+            final var value = flags.remove(flag);
+            try {
+                return value == null ? defaultValue : Integer.parseInt(value);
+            } catch (final NumberFormatException e) {
+                throw new IllegalArgumentException("--" + flag + ": invalid int value: '" + value + "'");
+            }
+        }
+
+        void checkConsumed() {
+            final var unknown = new ArrayList<String>();
+            flags.keySet().forEach(flag -> unknown.add("--" + flag));
+            switches.keySet().forEach(flag -> unknown.add("--" + flag));
+            if (!unknown.isEmpty()) {
+                throw new IllegalArgumentException("unrecognized arguments: " + String.join(" ", unknown));
+            }
+        }
+
+        /**
+         * Sets the fields of a rule from the flags of create, or of update when the existing rule is given.
+         */
+        void apply(final JSONObject rule, final JSONObject existing) {
+            final var allow = flags.remove("allow");
+            final var action = flags.remove("action");
+            final var rules = flags.remove("rules");
+            if (allow != null) {
+                rule.put("allowed", permissions(allow));
+            } else if (rules != null) {
+                final var denied = action == null
+                        ? existing != null && existing.has("denied")
+                        : action.equalsIgnoreCase(FirewallRule.DENY);
+                rule.put(denied ? "denied" : "allowed", permissions(rules));
+            } else if (action != null) {
+                throw new IllegalArgumentException("--rules is required with --action");
+            } else if (existing == null) {
+                throw new IllegalArgumentException("exactly one of --allow or --action must be specified");
+            }
+
+            final var direction = flags.remove("direction");
+            if (direction != null) {
+                final var upper = direction.toUpperCase(Locale.ROOT);
+                rule.put("direction", upper.equals("IN") ? "INGRESS" : upper.equals("OUT") ? "EGRESS" : upper);
+            }
+            final var priority = integer("priority", Integer.MIN_VALUE);
+            if (priority != Integer.MIN_VALUE) {
+                rule.put("priority", priority);
+            }
+            for (final var field : List.of("description", "network")) {
+                final var value = flags.remove(field);
+                if (value != null) {
+                    rule.put(field, value);
+                }
+            }
+            for (final var field : List.of(
+                    "destinationRanges",
+                    "sourceRanges",
+                    "sourceServiceAccounts",
+                    "sourceTags",
+                    "targetServiceAccounts",
+                    "targetTags")) {
+                final var value = flags.remove(field.replaceAll("([A-Z])", "-$1").toLowerCase(Locale.ROOT));
+                if (value != null) {
+                    final var values = new JSONArray();
+                    Arrays.stream(value.split(",")).filter(v -> !v.isEmpty()).forEach(values::put);
+                    rule.put(field, values);
+                }
+            }
+
+            final var disabled = switches.remove("disabled");
+            if (disabled != null) {
+                rule.put("disabled", disabled);
+            }
+            final var logging = switches.remove("enable-logging");
+            final var metadata = flags.remove("logging-metadata");
+            if (logging != null) {
+                final var logConfig = new JSONObject().put("enable", logging);
+                if (logging && metadata != null) {
+                    logConfig.put("metadata", metadata.toUpperCase(Locale.ROOT).replace('-', '_') + "_METADATA");
+                }
+                rule.put("logConfig", logConfig);
+            }
+            checkConsumed();
+        }
+
+        /**
+         * @return the permissions of {@code PROTOCOL[:PORT[-PORT]],...}, the ports of a protocol being grouped
+         */
+        private static JSONArray permissions(final String value) {
+            final var ports = new LinkedHashMap<String, List<String>>();
+            for (final var entry : value.split(",")) {
+                final var separator = entry.indexOf(':');
+                final var protocol = (separator < 0 ? entry : entry.substring(0, separator)).toLowerCase(Locale.ROOT);
+                if (protocol.isEmpty()) {
+                    throw new IllegalArgumentException("invalid protocol in " + value);
+                }
+                final var protocolPorts = ports.computeIfAbsent(protocol, key -> new ArrayList<>());
+                if (separator >= 0) {
+                    protocolPorts.add(entry.substring(separator + 1));
+                }
+            }
+            final var permissions = new JSONArray();
+            ports.forEach((protocol, protocolPorts) -> {
+                final var permission = new JSONObject().put("IPProtocol", protocol);
+                if (!protocolPorts.isEmpty()) {
+                    permission.put("ports", new JSONArray(protocolPorts));
+                }
+                permissions.put(permission);
+            });
+            return permissions;
+        }
+    }
+
+    private static final class FinishedProc extends Proc {
+        private final int result;
+        private final byte[] output;
+
+        private FinishedProc(final int result, final byte[] output) {
+            this.result = result;
+            this.output = output;
+        }
+
+        @Override
+        public boolean isAlive() {
+            return false;
+        }
+
+        @Override
+        public void kill() {}
+
+        @Override
+        public int join() {
+            return result;
+        }
+
+        @Override
+        public InputStream getStdout() {
+            return new ByteArrayInputStream(output);
+        }
+
+        @Override
+        public InputStream getStderr() {
+            return InputStream.nullInputStream();
+        }
+
+        @Override
+        public OutputStream getStdin() {
+            return OutputStream.nullOutputStream();
+        }
+    }
+}
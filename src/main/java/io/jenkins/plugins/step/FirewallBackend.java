@@ -0,0 +1,85 @@
+package io.jenkins.plugins.step;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+import hudson.Launcher;
+import hudson.model.TaskListener;
+import java.util.List;
+import java.util.stream.Collectors;
+import jenkins.model.Jenkins;
+
+/**
+ * Runs the {@code gcloud compute firewall-rules} commands of {@code computeFirewallRulesCreate},
+ * {@code computeFirewallRulesDelete} and {@code computeFirewallRulesList}. A build selects a backend by its id in the
+ * {@value #VARIABLE} variable, otherwise the one of the GCP configuration is used, gcloud by default.
+ */
+public abstract class FirewallBackend implements ExtensionPoint {
+
+    static final String VARIABLE = "GCP_FIREWALL_BACKEND";
+
+    @NonNull
+    public abstract String getId();
+
+    @NonNull
+    public abstract String getDisplayName();
+
+    /**
+     * @return the launcher running the gcloud commands of the steps, or {@code null} to run gcloud on the node, with
+     *     the agent worker or the controller executor when they are enabled
+     */
+    public abstract Launcher getLauncher(TaskListener listener, EnvVars envVars);
+
+    static List<FirewallBackend> all() {
+        return Jenkins.getInstanceOrNull() == null
+                ? List.of(new Gcloud(), new FakeComputeBackend())
+                : ExtensionList.lookup(FirewallBackend.class);
+    }
+
+    /**
+     * @return the launcher of the backend selected for the build, or {@code null} for gcloud
+     */
+    static Launcher launcher(final TaskListener listener, final EnvVars envVars) {
+        var id = envVars == null ? null : envVars.get(VARIABLE);
+        if (id == null || id.isEmpty()) {
+            final var configuration = GcpPluginConfiguration.getOrNull();
+            id = configuration == null ? null : configuration.getFirewallBackend();
+        }
+        if (id == null || id.isEmpty() || Gcloud.ID.equals(id)) {
+            return null;
+        }
+        final var backends = all();
+        for (final var backend : backends) {
+            if (backend.getId().equals(id)) {
+                return backend.getLauncher(listener, envVars);
+            }
+        }
+        throw new IllegalArgumentException("Unknown firewall backend " + id + ", available backends are: "
+                + backends.stream().map(FirewallBackend::getId).collect(Collectors.joining(", ")));
+    }
+
+    @Extension(ordinal = 100)
+    public static class Gcloud extends FirewallBackend {
+
+        static final String ID = "gcloud";
+
+        @NonNull
+        @Override
+        public String getId() {
+            return ID;
+        }
+
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return "gcloud CLI";
+        }
+
+        @Override
+        public Launcher getLauncher(final TaskListener listener, final EnvVars envVars) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package io.jenkins.plugins.step;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import jenkins.model.Jenkins;
+
+/**
+ * Where {@link FirewallMirror} keeps the mirrored firewall rules, selected in the GCP configuration. Every entry has a
+ * version incremented by each change, including invalidations, so controllers sharing a store never overwrite a change
+ * they have not seen.
+ */
+public abstract class FirewallCacheStore implements ExtensionPoint {
+
+    @NonNull
+    public abstract String getId();
+
+    @NonNull
+    public abstract String getDisplayName();
+
+    /**
+     * @return the version of the entry, {@code 0} if it was never written
+     */
+    public abstract long getVersion(@NonNull String key) throws IOException;
+
+    @NonNull
+    public abstract Entry get(@NonNull String key) throws IOException;
+
+    /**
+     * Replaces the value of the entry with version {@code expectedVersion + 1}, unless it changed since that version.
+     *
+     * @return whether the value was replaced
+     */
+    public abstract boolean compareAndSet(@NonNull String key, long expectedVersion, @NonNull String value)
+            throws IOException;
+
+    /**
+     * Removes the value of the entry and increments its version in a single step.
+     *
+     * @return the new version of the entry
+     */
+    public abstract long invalidate(@NonNull String key) throws IOException;
+
+    static List<FirewallCacheStore> all() {
+        return Jenkins.getInstanceOrNull() == null
+                ? List.of(new Memory(), new RedisCacheStore())
+                : ExtensionList.lookup(FirewallCacheStore.class);
+    }
+
+    /**
+     * @return the store selected in the GCP configuration, or {@code null} without Jenkins
+     */
+    static FirewallCacheStore configured() {
+        final var configuration = GcpPluginConfiguration.getOrNull();
+        if (configuration == null) {
+            return null;
+        }
+        final var id = configuration.getCacheStore();
+        final var stores = all();
+        for (final var store : stores) {
+            if (store.getId().equals(id == null || id.isEmpty() ? Memory.ID : id)) {
+                return store;
+            }
+        }
+        throw new IllegalArgumentException("Unknown cache store " + id + ", available stores are: "
+                + stores.stream().map(FirewallCacheStore::getId).collect(Collectors.joining(", ")));
+    }
+
+    /**
+     * Versioned value of an entry, the value is {@code null} if the entry was never written or invalidated since.
+     */
+    public static final class Entry {
+        private final long version;
+        private final String value;
+
+        public Entry(final long version, final String value) {
+            this.version = version;
+            this.value = value;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+
+    /**
+     * Keeps the entries in the memory of the controller.
+     */
+    @Extension(ordinal = 100)
+    public static class Memory extends FirewallCacheStore {
+
+        static final String ID = "memory";
+
+        private static final Entry ABSENT = new Entry(0, null);
+
+        private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+        @NonNull
+        @Override
+        public String getId() {
+            return ID;
+        }
+
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return "Controller memory";
+        }
+
+        @Override
+        public long getVersion(@NonNull final String key) {
+            return get(key).getVersion();
+        }
+
+        @NonNull
+        @Override
+        public Entry get(@NonNull final String key) {
+            return entries.getOrDefault(key, ABSENT);
+        }
+
+        @Override
+        public boolean compareAndSet(
+                @NonNull final String key, final long expectedVersion, @NonNull final String value) {
+            final var replaced = new AtomicBoolean();
+            entries.compute(key, (k, current) -> {
+                final var version = current == null ? 0 : current.getVersion();
+                if (version != expectedVersion) {
+                    return current;
+                }
+                replaced.set(true);
+                return new Entry(version + 1, value);
+            });
+            return replaced.get();
+        }
+
+        @Override
+        public long invalidate(@NonNull final String key) {
+            final var invalidated = entries.compute(
+                    key, (k, current) -> new Entry((current == null ? 0 : current.getVersion()) + 1, null));
+            return invalidated.getVersion();
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package io.jenkins.plugins.step;
+
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.TaskListener;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Applies the firewall changes published to the Pub/Sub subscription of the GCP configuration to the
+ * {@link FirewallMirror}, so the mirror stays current between its refreshes. Messages of Cloud Asset Inventory feeds
+ * carry the changed rule and patch the mirror directly, audit log entries exported by a log sink only name the rule,
+ * which is removed or read again, with one listing per project for all the rules of a pull.
+ */
+@Extension
+public class FirewallChangeSubscriber extends AsyncPeriodicWork {
+
+    static final long PERIOD_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    static final int MAX_MESSAGES = 100;
+    /**
+     * A project with more changed rules in a single pull has its mirror invalidated instead of patched rule by rule.
+     */
+    static final int MAX_RULE_CHANGES = 50;
+
+    private static final Logger LOGGER = Logger.getLogger(FirewallChangeSubscriber.class.getName());
+    private static final int MAX_TRACKED_RULES = 10_000;
+    private static final String FIREWALL_ASSET_TYPE = "compute.googleapis.com/Firewall";
+    private static final Pattern RESOURCE = Pattern.compile("projects/([^/]+)/global/firewalls/([^/]+)$");
+    private static final Pattern AUDITED_METHOD =
+            Pattern.compile("(^|\\.)compute\\.firewalls\\.(insert|patch|update|delete)$");
+
+    private final Map<String, Instant> lastChanges = new ConcurrentHashMap<>();
+    private PubSubClient client;
+    private GcloudWorker.Token token;
+    private String tokenCredentialsId;
+
+    public FirewallChangeSubscriber() {
+        super("GCP firewall change subscriber");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return PERIOD_MILLIS;
+    }
+
+    @Override
+    protected void execute(final TaskListener listener) throws IOException, InterruptedException {
+        final var configuration = GcpPluginConfiguration.get();
+        final var subscription = configuration.getChangeSubscription();
+        final var mirror = FirewallMirror.getOrNull();
+        if (subscription == null || mirror == null) {
+            return;
+        }
+        if (client == null) {
+            client = new PubSubClient(PubSubClient.emulatorEndpoint());
+        }
+
+        try {
+            final var applied = drain(
+                    client,
+                    subscription,
+                    token(configuration.getChangeSubscriptionCredentialsId()),
+                    mirror,
+                    configuration::getMirroredProject,
+                    System.currentTimeMillis() + PERIOD_MILLIS - TimeUnit.SECONDS.toMillis(5));
+            if (applied > 0) {
+                listener.getLogger().println("Applied " + applied + " firewall changes from " + subscription);
+            }
+        } catch (final IOException | IllegalArgumentException e) {
+            listener.error("Failed to pull the firewall changes from " + subscription + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Pulls and applies the changes until no message is waiting or the deadline is reached. Messages are acknowledged
+     * once applied, including the ones unrelated to the mirrored projects.
+     *
+     * @return the number of applied changes
+     */
+    int drain(
+            final PubSubClient client,
+            final String subscription,
+            final String token,
+            final FirewallMirror mirror,
+            final Function<String, GcpProject> mirroredProjects,
+            final long deadline)
+            throws IOException, InterruptedException {
+        var applied = 0;
+        do {
+            final var messages = client.pull(subscription, MAX_MESSAGES, token);
+            if (messages.isEmpty()) {
+                break;
+            }
+            final var changes = new ArrayList<Change>();
+            for (final var message : messages) {
+                final var change = Change.parse(message.getData(), message.getPublishTime());
+                if (change != null && mirroredProjects.apply(change.project) != null && isLatest(change)) {
+                    changes.add(change);
+                }
+            }
+            apply(changes, mirror, mirroredProjects);
+            client.acknowledge(
+                    subscription,
+                    messages.stream().map(PubSubClient.ReceivedMessage::getAckId).collect(Collectors.toList()),
+                    token);
+            applied += changes.size();
+        } while (System.currentTimeMillis() < deadline);
+        return applied;
+    }
+
+    /**
+     * Pub/Sub delivers messages at least once and in any order, a change older than the last one applied to the same
+     * rule is skipped.
+     */
+    private boolean isLatest(final Change change) {
+        if (change.time == null) {
+            return true;
+        }
+        if (lastChanges.size() > MAX_TRACKED_RULES) {
+            lastChanges.clear();
+        }
+        final var latest = new AtomicBoolean();
+        lastChanges.compute(change.project + "/" + change.name, (key, previous) -> {
+            if (previous != null && change.time.isBefore(previous)) {
+                return previous;
+            }
+            latest.set(true);
+            return change.time;
+        });
+        return latest.get();
+    }
+
+    private void apply(
+            final List<Change> changes,
+            final FirewallMirror mirror,
+            final Function<String, GcpProject> mirroredProjects) {
+        final var byProject = changes.stream()
+                .collect(Collectors.groupingBy(change -> change.project, LinkedHashMap::new, Collectors.toList()));
+        for (final var entry : byProject.entrySet()) {
+            final var project = entry.getKey();
+            try {
+                if (entry.getValue().stream().map(change -> change.name).distinct().count() > MAX_RULE_CHANGES) {
+                    mirror.invalidate(project);
+                    continue;
+                }
+                final var unknown = new LinkedHashSet<String>();
+                for (final var change : entry.getValue()) {
+                    if (change.type == Change.Type.DELETE) {
+                        mirror.removeRules(project, List.of(change.name));
+                    } else if (change.type == Change.Type.PATCH) {
+                        mirror.storeRule(project, change.rule);
+                    } else {
+                        unknown.add(change.name);
+                    }
+                }
+                if (!unknown.isEmpty()) {
+                    mirror.refreshRules(mirroredProjects.apply(project), unknown);
+                }
+            } catch (final IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to apply the firewall changes of " + project, e);
+                mirror.invalidateQuietly(project);
+            }
+        }
+    }
+
+    /**
+     * @return the access token of the credentials, or {@code null} for the emulator
+     */
+    private String token(final String credentialsId) throws IOException, InterruptedException {
+        if (client.isEmulator()) {
+            return null;
+        }
+        if (credentialsId == null) {
+            throw new IllegalArgumentException("The change subscription requires credentials");
+        }
+        if (token == null
+                || !credentialsId.equals(tokenCredentialsId)
+                || !token.isValid(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1))) {
+            final var credentials = GcpCredentials.lookup(credentialsId);
+            if (credentials == null) {
+                throw new IllegalArgumentException("Credentials with id " + credentialsId + " not found");
+            }
+            token = new ControllerExecutor.ServiceAccountTokenSource(ControllerExecutor.read(credentials)).fetch();
+            tokenCredentialsId = credentialsId;
+        }
+        return token.getAccessToken();
+    }
+
+    /**
+     * Change of a firewall rule read from a Cloud Asset Inventory feed message or from an audit log entry.
+     */
+    static final class Change {
+        enum Type {
+            PATCH,
+            DELETE,
+            DESCRIBE
+        }
+
+        private final Type type;
+        private final String project;
+        private final String name;
+        private final JSONObject rule;
+        private final Instant time;
+
+        private Change(
+                final Type type, final String project, final String name, final JSONObject rule, final Instant time) {
+            this.type = type;
+            this.project = project;
+            this.name = name;
+            this.rule = rule;
+            this.time = time;
+        }
+
+        /**
+         * @return the change, or {@code null} if the message is not about a firewall rule or about a failed change
+         */
+        static Change parse(final String data, final String publishTime) {
+            try {
+                final var json = new JSONObject(data);
+                final var asset = json.optJSONObject("asset");
+                if (asset != null) {
+                    return fromAsset(json, asset, publishTime);
+                }
+                final var payload = json.optJSONObject("protoPayload");
+                return payload == null ? null : fromAuditLog(json, payload, publishTime);
+            } catch (final JSONException e) {
+                return null;
+            }
+        }
+
+        private static Change fromAsset(final JSONObject json, final JSONObject asset, final String publishTime) {
+            final var resource = RESOURCE.matcher(asset.optString("name"));
+            if (!FIREWALL_ASSET_TYPE.equals(asset.optString("assetType")) || !resource.find()) {
+                return null;
+            }
+            final var window = json.optJSONObject("window");
+            final var time = time(
+                    window == null ? asset.optString("updateTime", publishTime) : window.optString("startTime"));
+            if (json.optBoolean("deleted")) {
+                return new Change(Type.DELETE, resource.group(1), resource.group(2), null, time);
+            }
+            final var data = asset.optJSONObject("resource") == null
+                    ? null
+                    : asset.getJSONObject("resource").optJSONObject("data");
+            return data == null || !resource.group(2).equals(data.optString("name"))
+                    ? new Change(Type.DESCRIBE, resource.group(1), resource.group(2), null, time)
+                    : new Change(Type.PATCH, resource.group(1), resource.group(2), data, time);
+        }
+
+        private static Change fromAuditLog(final JSONObject json, final JSONObject payload, final String publishTime) {
+            final var method = AUDITED_METHOD.matcher(payload.optString("methodName"));
+            final var resource = RESOURCE.matcher(payload.optString("resourceName"));
+            final var operation = json.optJSONObject("operation");
+            final var status = payload.optJSONObject("status");
+            if (!method.find()
+                    || !resource.find()
+                    || operation != null && !operation.optBoolean("last")
+                    || status != null && status.optInt("code") != 0) {
+                return null;
+            }
+            return new Change(
+                    "delete".equals(method.group(2)) ? Type.DELETE : Type.DESCRIBE,
+                    resource.group(1),
+                    resource.group(2),
+                    null,
+                    time(json.optString("timestamp", publishTime)));
+        }
+
+        private static Instant time(final String time) {
+            try {
+                return time == null || time.isEmpty() ? null : OffsetDateTime.parse(time).toInstant();
+            } catch (final DateTimeParseException e) {
+                return null;
+            }
+        }
+
+        Type getType() {
+            return type;
+        }
+
+        String getProject() {
+            return project;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        JSONObject getRule() {
+            return rule;
+        }
+
+        Instant getTime() {
+            return time;
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package io.jenkins.plugins.step;
+
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.ArgumentListBuilder;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Copy of the firewall rules of the projects configured in {@link GcpPluginConfiguration}, refreshed periodically and
+ * patched rule by rule when this plugin creates or deletes a rule. The copy lives in the configured
+ * {@link FirewallCacheStore}: controllers sharing a store share one copy, patched with versioned writes and only
+ * refreshed by one of them per period.
+ */
+@Extension
+public class FirewallMirror extends AsyncPeriodicWork {
+
+    private static final Logger LOGGER = Logger.getLogger(FirewallMirror.class.getName());
+    private static final String KEY_PREFIX = "firewall-rules:";
+    private static final int MAX_WRITE_ATTEMPTS = 8;
+
+    private final FirewallCacheStore fixedStore;
+    private final FirewallCacheStore.Memory local = new FirewallCacheStore.Memory();
+    private final Map<String, Decoded> decoded = new ConcurrentHashMap<>();
+
+    public FirewallMirror() {
+        this(null);
+    }
+
+    /**
+     * @param store where the listings are kept, {@code null} for the store selected in the GCP configuration
+     */
+    FirewallMirror(final FirewallCacheStore store) {
+        super("GCP firewall rules mirror");
+        this.fixedStore = store;
+    }
+
+    static FirewallMirror getOrNull() {
+        return Jenkins.getInstanceOrNull() == null ? null : ExtensionList.lookupSingleton(FirewallMirror.class);
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return TimeUnit.MINUTES.toMillis(Math.max(1, GcpPluginConfiguration.get().getMirrorRefreshMinutes()));
+    }
+
+    @Override
+    protected void execute(final TaskListener listener) throws IOException, InterruptedException {
+        final var configuration = GcpPluginConfiguration.get();
+        decoded.keySet().removeIf(project -> configuration.getMirroredProject(project) == null);
+
+        for (final var project : configuration.getMirroredProjects()) {
+            if (project.getCredentialsId() == null || project.getCredentialsId().isBlank()) {
+                listener.getLogger()
+                        .println("Skipped the firewall rules of " + project.getProject()
+                                + ", mirrored projects require a credentials id");
+                continue;
+            }
+            try {
+                final var now = System.currentTimeMillis();
+                final var recent = lookup(project.getProject(), getRecurrencePeriod() / 2, now);
+                if (recent != null) {
+                    listener.getLogger()
+                            .println("Skipped the firewall rules of " + project.getProject() + ", refreshed "
+                                    + TimeUnit.MILLISECONDS.toSeconds(now - recent.getFetchedAt()) + "s ago");
+                    continue;
+                }
+                final var rules = new JSONArray(gcloud(project, listener, "list", "--format=json"));
+                final var changed = store(project.getProject(), rules, now);
+                listener.getLogger()
+                        .println("Mirrored " + rules.length() + " firewall rules of " + project.getProject()
+                                + (changed ? "" : ", unchanged since the last refresh"));
+            } catch (final IOException | IllegalArgumentException e) {
+                listener.error(
+                        "Failed to mirror the firewall rules of " + project.getProject() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return the mirrored rules of the project, or {@code null} if they are not mirrored, older than the given age or
+     *     the store cannot be reached
+     */
+    Listing lookup(final String project, final long maxStalenessMillis, final long now) {
+        if (project == null) {
+            return null;
+        }
+        final Listing listing;
+        try {
+            listing = read(project);
+        } catch (final IOException | IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "Failed to read the mirrored firewall rules of " + project, e);
+            return null;
+        }
+        return listing == null || now - listing.getFetchedAt() > maxStalenessMillis ? null : listing;
+    }
+
+    /**
+     * The mirror answers without calling GCP, so it is only served to builds that could list the rules themselves:
+     * builds authenticated by {@code withGCP} with the credentials the project is mirrored with.
+     */
+    static boolean isServedTo(final GcpProject project, final Run<?, ?> run, final EnvVars envVars) {
+        final var credentialsId = project.getCredentialsId();
+        final var usage = run == null ? null : run.getAction(GcpCredentialsUsageAction.class);
+        final var account = envVars == null ? null : envVars.get("CLOUDSDK_CORE_ACCOUNT");
+        if (credentialsId == null
+                || usage == null
+                || account == null
+                || !usage.getCredentialsIds().contains(credentialsId)) {
+            return false;
+        }
+        final var credentials = GcpCredentials.lookup(credentialsId);
+        try {
+            return credentials != null
+                    && account.equals(GcpCredentials.extractPublicValues(ControllerExecutor.read(credentials))
+                            .getEmail());
+        } catch (final IOException | JSONException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return whether the rules differ from the previously mirrored ones, a new generation is only created if they do
+     */
+    boolean store(final String project, final JSONArray rules, final long now) throws IOException {
+        final var byName = new TreeMap<String, JSONObject>();
+        for (int i = 0; i < rules.length(); i++) {
+            final var rule = rules.getJSONObject(i);
+            byName.put(rule.getString("name"), rule);
+        }
+        final var listing = Listing.of(byName, 0, now);
+        final var changed = new AtomicBoolean();
+        update(project, previous -> {
+            changed.set(previous == null || !previous.hash.equals(listing.hash));
+            return listing.successorOf(previous);
+        });
+        return changed.get();
+    }
+
+    void storeRule(final String project, final JSONObject rule) throws IOException {
+        update(project, listing -> {
+            if (listing == null) {
+                return null;
+            }
+            final var byName = new TreeMap<>(listing.rules);
+            byName.put(rule.getString("name"), rule);
+            return Listing.of(byName, listing.generation + 1, listing.fetchedAt);
+        });
+    }
+
+    void removeRules(final String project, final Collection<String> names) throws IOException {
+        update(project, listing -> {
+            if (listing == null) {
+                return null;
+            }
+            final var byName = new TreeMap<>(listing.rules);
+            byName.keySet().removeAll(names);
+            return Listing.of(byName, listing.generation + 1, listing.fetchedAt);
+        });
+    }
+
+    void invalidate(final String project) throws IOException {
+        store().invalidate(KEY_PREFIX + project);
+        decoded.remove(project);
+    }
+
+    static void ruleCreated(final EnvVars envVars, final String name) {
+        final var mirror = getOrNull();
+        final var project = mirror == null ? null : mirror.mirroredProject(envVars);
+        if (project == null) {
+            return;
+        }
+
+        Timer.get().submit(() -> mirror.describeRule(project, name));
+    }
+
+    /**
+     * Reads the rule from GCP into the mirror, the rules of the project are invalidated if it cannot be read.
+     */
+    void describeRule(final GcpProject project, final String name) {
+        try {
+            final var rule = new JSONObject(gcloud(project, TaskListener.NULL, "describe", name, "--format=json"));
+            storeRule(project.getProject(), rule);
+        } catch (final IOException | InterruptedException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to mirror the firewall rule " + name, e);
+            invalidateQuietly(project.getProject());
+        }
+    }
+
+    /**
+     * Reads the rules from GCP into the mirror with a single listing, the rules it doesn't return no longer exist. The
+     * rules of the project are invalidated if they cannot be read.
+     */
+    void refreshRules(final GcpProject project, final Collection<String> names) {
+        try {
+            final var filter = FirewallRulesFilter.combine(String.join(" ", names), null, null);
+            final var rules =
+                    new JSONArray(gcloud(project, TaskListener.NULL, "list", "--filter=" + filter, "--format=json"));
+            update(project.getProject(), listing -> {
+                if (listing == null) {
+                    return null;
+                }
+                final var byName = new TreeMap<>(listing.rules);
+                byName.keySet().removeAll(names);
+                for (int i = 0; i < rules.length(); i++) {
+                    final var rule = rules.getJSONObject(i);
+                    byName.put(rule.getString("name"), rule);
+                }
+                return Listing.of(byName, listing.generation + 1, listing.fetchedAt);
+            });
+        } catch (final IOException | InterruptedException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to mirror the firewall rules " + names, e);
+            invalidateQuietly(project.getProject());
+        }
+    }
+
+    static void rulesDeleted(final EnvVars envVars, final Collection<String> names) {
+        final var mirror = getOrNull();
+        final var project = mirror == null ? null : mirror.mirroredProject(envVars);
+        if (project == null) {
+            return;
+        }
+        try {
+            mirror.removeRules(project.getProject(), names);
+        } catch (final IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to remove the deleted firewall rules from the mirror", e);
+            mirror.invalidateQuietly(project.getProject());
+        }
+    }
+
+    void invalidateQuietly(final String project) {
+        try {
+            invalidate(project);
+        } catch (final IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to invalidate the mirrored firewall rules of " + project, e);
+        }
+    }
+
+    private FirewallCacheStore store() {
+        if (fixedStore != null) {
+            return fixedStore;
+        }
+        final var configured = FirewallCacheStore.configured();
+        return configured == null ? local : configured;
+    }
+
+    /**
+     * Reads the listing, only decoding it again when its version changed since the last read.
+     */
+    private Listing read(final String project) throws IOException {
+        final var store = store();
+        final var cached = decoded.get(project);
+        if (cached != null && cached.store == store && cached.version == store.getVersion(KEY_PREFIX + project)) {
+            return cached.listing;
+        }
+        final var entry = store.get(KEY_PREFIX + project);
+        final var listing = entry.getValue() == null ? null : Listing.parse(entry.getValue());
+        decoded.put(project, new Decoded(store, entry.getVersion(), listing));
+        return listing;
+    }
+
+    /**
+     * Applies the change to the latest version of the listing, a {@code null} result leaving it as is. When other
+     * writers keep winning the race, the listing is invalidated rather than left without the change.
+     */
+    private void update(final String project, final UnaryOperator<Listing> change) throws IOException {
+        final var store = store();
+        final var key = KEY_PREFIX + project;
+        for (int attempt = 0; attempt < MAX_WRITE_ATTEMPTS; attempt++) {
+            final var entry = store.get(key);
+            final var next = change.apply(entry.getValue() == null ? null : Listing.parse(entry.getValue()));
+            if (next == null) {
+                return;
+            }
+            if (store.compareAndSet(key, entry.getVersion(), next.toJson())) {
+                decoded.put(project, new Decoded(store, entry.getVersion() + 1, next));
+                return;
+            }
+        }
+        LOGGER.warning(
+                "Too many concurrent changes of the mirrored firewall rules of " + project + ", invalidating them");
+        invalidate(project);
+    }
+
+    private GcpProject mirroredProject(final EnvVars envVars) {
+        return envVars == null
+                ? null
+                : GcpPluginConfiguration.get().getMirroredProject(envVars.get("CLOUDSDK_CORE_PROJECT"));
+    }
+
+    /**
+     * Runs gcloud on the controller. Projects with credentials get a throwaway configuration directory, so the
+     * activated account never leaks into other gcloud invocations.
+     */
+    private static String gcloud(final GcpProject project, final TaskListener listener, final String... args)
+            throws IOException, InterruptedException {
+        final var launcher = new Launcher.LocalLauncher(listener);
+        final var envVars = new EnvVars("CLOUDSDK_CORE_PROJECT", project.getProject());
+        FilePath configDir = null;
+        try {
+            if (project.getCredentialsId() != null) {
+                final var credentials = GcpCredentials.lookup(project.getCredentialsId());
+                if (credentials == null) {
+                    throw new IllegalArgumentException(
+                            "Credentials with id " + project.getCredentialsId() + " not found");
+                }
+                configDir = new FilePath(Files.createTempDirectory("gcloud").toFile());
+                envVars.put("CLOUDSDK_CONFIG", configDir.getRemote());
+                final var keyFile = GcpCredentials.copyToTempFile(credentials, configDir);
+                run(launcher, envVars, "auth", "activate-service-account", "--key-file=" + keyFile.getRemote());
+            }
+
+            final var command = new ArrayList<>(List.of("compute", "firewall-rules"));
+            command.addAll(List.of(args));
+            return run(launcher, envVars, command.toArray(new String[0]));
+        } finally {
+            if (configDir != null) {
+                configDir.deleteRecursive();
+            }
+        }
+    }
+
+    private static String run(final Launcher launcher, final EnvVars envVars, final String... args)
+            throws IOException, InterruptedException {
+        final var cmd = new ArgumentListBuilder("gcloud").add(args);
+        final var outputStream = new ByteArrayOutputStream();
+        final var result = GcloudProfile.of(Jenkins.get().toComputer(), launcher, envVars)
+                .launch(launcher, cmd, envVars)
+                .stdout(outputStream)
+                .join();
+
+        if (result != 0) {
+            throw new IllegalArgumentException("Failed to run this command: " + cmd);
+        }
+        return outputStream.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Immutable mirrored listing. The SHA-256 of the canonical rules acts as its ETag: a refresh returning the same
+     * hash keeps the generation and only renews the timestamp.
+     */
+    static final class Listing {
+        private final TreeMap<String, JSONObject> rules;
+        private final String hash;
+        private final long generation;
+        private final long fetchedAt;
+
+        private Listing(
+                final TreeMap<String, JSONObject> rules,
+                final String hash,
+                final long generation,
+                final long fetchedAt) {
+            this.rules = rules;
+            this.hash = hash;
+            this.generation = generation;
+            this.fetchedAt = fetchedAt;
+        }
+
+        private static Listing of(
+                final TreeMap<String, JSONObject> rules, final long generation, final long fetchedAt) {
+            final var hash = CanonicalJson.sha256(CanonicalJson.toString(new JSONArray(rules.values())));
+            return new Listing(rules, hash, generation, fetchedAt);
+        }
+
+        private static Listing parse(final String json) {
+            final var object = new JSONObject(json);
+            final var rules = object.getJSONArray("rules");
+            final var byName = new TreeMap<String, JSONObject>();
+            for (int i = 0; i < rules.length(); i++) {
+                final var rule = rules.getJSONObject(i);
+                byName.put(rule.getString("name"), rule);
+            }
+            return new Listing(
+                    byName, object.getString("hash"), object.getLong("generation"), object.getLong("fetchedAt"));
+        }
+
+        private String toJson() {
+            return new JSONObject()
+                    .put("generation", generation)
+                    .put("fetchedAt", fetchedAt)
+                    .put("hash", hash)
+                    .put("rules", new JSONArray(rules.values()))
+                    .toString();
+        }
+
+        private Listing successorOf(final Listing previous) {
+            if (previous == null) {
+                return new Listing(rules, hash, 1, fetchedAt);
+            }
+            if (previous.hash.equals(hash)) {
+                return new Listing(previous.rules, hash, previous.generation, fetchedAt);
+            }
+            return new Listing(rules, hash, previous.generation + 1, fetchedAt);
+        }
+
+        Collection<JSONObject> getRules() {
+            return Collections.unmodifiableCollection(rules.values());
+        }
+
+        long getGeneration() {
+            return generation;
+        }
+
+        long getFetchedAt() {
+            return fetchedAt;
+        }
+    }
+
+    private static final class Decoded {
+        private final FirewallCacheStore store;
+        private final long version;
+        private final Listing listing;
+
+        private Decoded(final FirewallCacheStore store, final long version, final Listing listing) {
+            this.store = store;
+            this.version = version;
+            this.listing = listing;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package io.jenkins.plugins.step;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Rules of hierarchical firewall policies, described with the fields of {@link ComputeFirewallRulesCreateStep} and
+ * identified by their priority.
+ */
+final class FirewallPolicyRules {
+
+    /**
+     * Priority of the first default rule of a policy, the default rules cannot be removed.
+     */
+    static final int DEFAULT_RULES_PRIORITY = 2147483644;
+
+    private FirewallPolicyRules() {}
+
+    static JSONArray toRules(final List<ComputeFirewallRulesCreateStep> steps) {
+        final var rules = new JSONArray();
+        final var names = new HashMap<Integer, String>();
+        for (final var step : steps) {
+            final var previous = names.put(step.getPriority(), step.getName());
+            if (previous != null) {
+                throw new IllegalArgumentException("Rules '" + previous + "' and '" + step.getName()
+                        + "' have the same priority " + step.getPriority()
+                        + ", the rules of a firewall policy are identified by their priority");
+            }
+            rules.put(toRule(step));
+        }
+        return rules;
+    }
+
+    static JSONObject toRule(final ComputeFirewallRulesCreateStep step) {
+        final var action = step.getAction();
+        final var allow = step.getAllow();
+        if (action == null && allow == null) {
+            throw new IllegalArgumentException("Either 'action' or 'allow' should be specified!");
+        }
+        unsupported(step, "network", step.getNetwork());
+        unsupported(step, "sourceTags", step.getSourceTags());
+        unsupported(step, "targetTags", step.getTargetTags());
+        unsupported(step, "sourceServiceAccounts", step.getSourceServiceAccounts());
+        unsupported(step, "loggingMetadata", step.getLoggingMetadata());
+        if (step.getPriority() < 0 || step.getPriority() >= DEFAULT_RULES_PRIORITY) {
+            throw new IllegalArgumentException("Invalid priority " + step.getPriority() + " of rule '"
+                    + step.getName() + "', it should be between 0 and " + (DEFAULT_RULES_PRIORITY - 1));
+        }
+
+        final var match =
+                new JSONObject().put("layer4Configs", layer4Configs(action == null ? allow : step.getRules()));
+        if (step.getSourceRanges() != null) {
+            match.put("srcIpRanges", list(step.getSourceRanges()));
+        }
+        if (step.getDestinationRanges() != null) {
+            match.put("destIpRanges", list(step.getDestinationRanges()));
+        }
+
+        final var direction = step.getDirection() == null ? "INGRESS" : step.getDirection();
+        final var rule = new JSONObject()
+                .put("priority", step.getPriority())
+                .put("action", action == null ? "allow" : action.toLowerCase(Locale.ROOT))
+                .put("direction", direction.toUpperCase(Locale.ROOT))
+                .put("match", match)
+                .put("disabled", step.isDisabled())
+                .put("enableLogging", step.isEnableLogging());
+        if (step.getName() != null) {
+            rule.put("ruleName", step.getName());
+        }
+        if (step.getDescription() != null) {
+            rule.put("description", step.getDescription());
+        }
+        if (step.getTargetServiceAccounts() != null) {
+            rule.put("targetServiceAccounts", list(step.getTargetServiceAccounts()));
+        }
+        return rule;
+    }
+
+    /**
+     * @param current the rules of the policy
+     * @param rules the rules to add, replacing the rules of the same priority
+     * @param removed the priorities of the rules to remove
+     * @param replace whether the rules of the policy are replaced, except its default rules
+     * @return the rules of the policy after the update, ordered by priority
+     */
+    static JSONArray merge(
+            final JSONArray current, final JSONArray rules, final List<Integer> removed, final boolean replace) {
+        final var byPriority = new TreeMap<Integer, Object>();
+        if (current != null) {
+            for (int i = 0; i < current.length(); i++) {
+                final var rule = current.getJSONObject(i);
+                final var priority = rule.getInt("priority");
+                if (!replace || priority >= DEFAULT_RULES_PRIORITY) {
+                    byPriority.put(priority, rule);
+                }
+            }
+        }
+        removed.forEach(byPriority::remove);
+        for (int i = 0; i < rules.length(); i++) {
+            final var rule = rules.getJSONObject(i);
+            byPriority.put(rule.getInt("priority"), rule);
+        }
+        return new JSONArray(new ArrayList<>(byPriority.values()));
+    }
+
+    /**
+     * @param protocols protocols and ports like {@code tcp:80-90,tcp:443,icmp}, all protocols when {@code null}
+     */
+    static JSONArray layer4Configs(final String protocols) {
+        final var configs = new JSONArray();
+        if (protocols == null) {
+            return configs.put(new JSONObject().put("ipProtocol", "all"));
+        }
+        final var ports = new LinkedHashMap<String, JSONArray>();
+        for (final var protocol : list(protocols)) {
+            final var separator = protocol.indexOf(':');
+            final var name = (separator < 0 ? protocol : protocol.substring(0, separator)).toLowerCase(Locale.ROOT);
+            final var protocolPorts = ports.computeIfAbsent(name, key -> new JSONArray());
+            if (separator >= 0) {
+                protocolPorts.put(protocol.substring(separator + 1));
+            }
+        }
+        ports.forEach((name, protocolPorts) -> {
+            final var config = new JSONObject().put("ipProtocol", name);
+            if (protocolPorts.length() > 0) {
+                config.put("ports", protocolPorts);
+            }
+            configs.put(config);
+        });
+        return configs;
+    }
+
+    private static List<String> list(final String values) {
+        final var list = new ArrayList<String>();
+        for (final var value : values.split(",")) {
+            if (!value.isBlank()) {
+                list.add(value.trim());
+            }
+        }
+        return list;
+    }
+
+    private static void unsupported(final ComputeFirewallRulesCreateStep step, final String field, final String value) {
+        if (value != null) {
+            throw new IllegalArgumentException(
+                    "'" + field + "' of rule '" + step.getName() + "' is not supported by firewall policies");
+        }
+    }
+}
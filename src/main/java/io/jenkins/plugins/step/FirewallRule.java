@@ -0,0 +1,184 @@
+package io.jenkins.plugins.step;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Read-only view of a VPC firewall rule as returned by {@code gcloud compute firewall-rules list --format=json}.
+ */
+final class FirewallRule {
+
+    static final int DEFAULT_PRIORITY = 1000;
+    static final String INGRESS = "INGRESS";
+    static final String EGRESS = "EGRESS";
+    static final String ALLOW = "ALLOW";
+    static final String DENY = "DENY";
+
+    private final String name;
+    private final int priority;
+    private final String direction;
+    private final boolean disabled;
+    private final String action;
+    private final List<Permission> permissions;
+    private final List<String> sourceRanges;
+    private final List<String> sourceTags;
+    private final List<String> sourceServiceAccounts;
+    private final List<String> destinationRanges;
+    private final List<String> targetTags;
+    private final List<String> targetServiceAccounts;
+
+    private FirewallRule(final JSONObject json) {
+        this.name = json.getString("name");
+        this.priority = json.optInt("priority", DEFAULT_PRIORITY);
+        this.direction = json.optString("direction", INGRESS).toUpperCase(Locale.ROOT);
+        this.disabled = json.optBoolean("disabled");
+        this.action = json.has("denied") ? DENY : ALLOW;
+        this.permissions = Permission.fromJson(json.optJSONArray(json.has("denied") ? "denied" : "allowed"));
+        this.sourceRanges = strings(json.optJSONArray("sourceRanges"));
+        this.sourceTags = strings(json.optJSONArray("sourceTags"));
+        this.sourceServiceAccounts = strings(json.optJSONArray("sourceServiceAccounts"));
+        this.destinationRanges = strings(json.optJSONArray("destinationRanges"));
+        this.targetTags = strings(json.optJSONArray("targetTags"));
+        this.targetServiceAccounts = strings(json.optJSONArray("targetServiceAccounts"));
+    }
+
+    static FirewallRule fromJson(final JSONObject json) {
+        return new FirewallRule(json);
+    }
+
+    static List<FirewallRule> fromJsonArray(final String json) {
+        final var array = new JSONArray(json.isBlank() ? "[]" : json);
+        final var rules = new ArrayList<FirewallRule>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            rules.add(fromJson(array.getJSONObject(i)));
+        }
+        return rules;
+    }
+
+    /**
+     * gcloud accepts protocol numbers as well as names, the index only deals with names.
+     */
+    static String normalizeProtocol(final String protocol) {
+        final var lowerCase = protocol.toLowerCase(Locale.ROOT);
+        switch (lowerCase) {
+            case "1":
+                return "icmp";
+            case "6":
+                return "tcp";
+            case "17":
+                return "udp";
+            default:
+                return lowerCase;
+        }
+    }
+
+    private static List<String> strings(final JSONArray array) {
+        final var values = new ArrayList<String>();
+        if (array != null) {
+            for (int i = 0; i < array.length(); i++) {
+                values.add(array.getString(i));
+            }
+        }
+        return values;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int getPriority() {
+        return priority;
+    }
+
+    String getDirection() {
+        return direction;
+    }
+
+    boolean isDisabled() {
+        return disabled;
+    }
+
+    String getAction() {
+        return action;
+    }
+
+    List<Permission> getPermissions() {
+        return permissions;
+    }
+
+    List<String> getSourceRanges() {
+        return sourceRanges;
+    }
+
+    List<String> getSourceTags() {
+        return sourceTags;
+    }
+
+    List<String> getSourceServiceAccounts() {
+        return sourceServiceAccounts;
+    }
+
+    List<String> getDestinationRanges() {
+        return destinationRanges;
+    }
+
+    List<String> getTargetTags() {
+        return targetTags;
+    }
+
+    List<String> getTargetServiceAccounts() {
+        return targetServiceAccounts;
+    }
+
+    static final class Permission {
+        private final String protocol;
+        private final List<int[]> portRanges;
+
+        private Permission(final String protocol, final List<int[]> portRanges) {
+            this.protocol = protocol;
+            this.portRanges = portRanges;
+        }
+
+        private static List<Permission> fromJson(final JSONArray array) {
+            final var permissions = new ArrayList<Permission>();
+            if (array == null) {
+                return permissions;
+            }
+            for (int i = 0; i < array.length(); i++) {
+                final var permission = array.getJSONObject(i);
+                final var portRanges = new ArrayList<int[]>();
+                for (final var port : strings(permission.optJSONArray("ports"))) {
+                    portRanges.add(parsePortRange(port));
+                }
+                permissions.add(new Permission(normalizeProtocol(permission.getString("IPProtocol")), portRanges));
+            }
+            return permissions;
+        }
+
+        static int[] parsePortRange(final String port) {
+            final var dash = port.indexOf('-');
+            if (dash < 0) {
+                final var value = Integer.parseInt(port.trim());
+                return new int[] {value, value};
+            }
+            return new int[] {
+                Integer.parseInt(port.substring(0, dash).trim()),
+                Integer.parseInt(port.substring(dash + 1).trim())
+            };
+        }
+
+        String getProtocol() {
+            return protocol;
+        }
+
+        /**
+         * Inclusive {@code [from, to]} ranges, empty when the permission covers every port of the protocol.
+         */
+        List<int[]> getPortRanges() {
+            return portRanges;
+        }
+    }
+}
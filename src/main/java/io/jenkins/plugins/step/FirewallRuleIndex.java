@@ -0,0 +1,371 @@
+package io.jenkins.plugins.step;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory index over a project's firewall rules answering "which rules match this packet" without going back to GCP.
+ * Every rule gets a bit position in priority order, so intersecting the candidate sets of the individual criteria
+ * directly yields the matching rules in evaluation order.
+ */
+final class FirewallRuleIndex {
+
+    private static final Comparator<FirewallRule> EVALUATION_ORDER = Comparator.comparingInt(FirewallRule::getPriority)
+            .thenComparing(rule -> FirewallRule.ALLOW.equals(rule.getAction()))
+            .thenComparing(FirewallRule::getName);
+
+    private final List<FirewallRule> rules;
+    private final DirectionIndex ingress = new DirectionIndex();
+    private final DirectionIndex egress = new DirectionIndex();
+
+    FirewallRuleIndex(final Collection<FirewallRule> rules) {
+        this.rules = new ArrayList<>(rules);
+        this.rules.removeIf(FirewallRule::isDisabled);
+        this.rules.sort(EVALUATION_ORDER);
+        for (int i = 0; i < this.rules.size(); i++) {
+            final var rule = this.rules.get(i);
+            if (FirewallRule.EGRESS.equals(rule.getDirection())) {
+                egress.add(i, rule, rule.getDestinationRanges());
+            } else {
+                ingress.add(i, rule, rule.getSourceRanges());
+            }
+        }
+        ingress.build();
+        egress.build();
+    }
+
+    int size() {
+        return rules.size();
+    }
+
+    List<FirewallRule> match(final Query query) {
+        final var direction = FirewallRule.EGRESS.equals(query.direction) ? egress : ingress;
+        final var candidates = direction.match(query);
+        final var matches = new ArrayList<FirewallRule>(candidates.cardinality());
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            matches.add(rules.get(i));
+        }
+        return matches;
+    }
+
+    /**
+     * The action GCP applies to a packet: the first matching rule wins, otherwise the implied rules of the network
+     * deny all ingress and allow all egress traffic.
+     */
+    static String effectiveAction(final Query query, final List<FirewallRule> matches) {
+        if (!matches.isEmpty()) {
+            return matches.get(0).getAction();
+        }
+        return FirewallRule.EGRESS.equals(query.direction) ? FirewallRule.ALLOW : FirewallRule.DENY;
+    }
+
+    private static final class DirectionIndex {
+        private final CidrTrie ranges = new CidrTrie();
+        private final Map<String, BitSet> sourceTags = new HashMap<>();
+        private final Map<String, BitSet> sourceServiceAccounts = new HashMap<>();
+        private final BitSet anyTarget = new BitSet();
+        private final Map<String, BitSet> targetTags = new HashMap<>();
+        private final Map<String, BitSet> targetServiceAccounts = new HashMap<>();
+        private final BitSet anyProtocol = new BitSet();
+        private final Map<String, ProtocolIndex> protocols = new HashMap<>();
+
+        private void add(final int bit, final FirewallRule rule, final List<String> peerRanges) {
+            for (final var range : peerRanges) {
+                ranges.insert(range, bit);
+            }
+            for (final var tag : rule.getSourceTags()) {
+                sourceTags.computeIfAbsent(tag, key -> new BitSet()).set(bit);
+            }
+            for (final var serviceAccount : rule.getSourceServiceAccounts()) {
+                sourceServiceAccounts.computeIfAbsent(serviceAccount, key -> new BitSet()).set(bit);
+            }
+
+            if (rule.getTargetTags().isEmpty() && rule.getTargetServiceAccounts().isEmpty()) {
+                anyTarget.set(bit);
+            }
+            for (final var tag : rule.getTargetTags()) {
+                targetTags.computeIfAbsent(tag, key -> new BitSet()).set(bit);
+            }
+            for (final var serviceAccount : rule.getTargetServiceAccounts()) {
+                targetServiceAccounts.computeIfAbsent(serviceAccount, key -> new BitSet()).set(bit);
+            }
+
+            for (final var permission : rule.getPermissions()) {
+                if ("all".equals(permission.getProtocol())) {
+                    anyProtocol.set(bit);
+                } else {
+                    protocols
+                            .computeIfAbsent(permission.getProtocol(), key -> new ProtocolIndex())
+                            .add(bit, permission.getPortRanges());
+                }
+            }
+        }
+
+        private void build() {
+            protocols.values().forEach(ProtocolIndex::build);
+        }
+
+        private BitSet match(final Query query) {
+            final var result = ranges.match(query.address);
+            for (final var tag : query.sourceTags) {
+                or(result, sourceTags.get(tag));
+            }
+            if (query.sourceServiceAccount != null) {
+                or(result, sourceServiceAccounts.get(query.sourceServiceAccount));
+            }
+
+            final var targets = (BitSet) anyTarget.clone();
+            for (final var tag : query.targetTags) {
+                or(targets, targetTags.get(tag));
+            }
+            if (query.targetServiceAccount != null) {
+                or(targets, targetServiceAccounts.get(query.targetServiceAccount));
+            }
+            result.and(targets);
+
+            final var permitted = (BitSet) anyProtocol.clone();
+            final var protocol = protocols.get(query.protocol);
+            if (protocol != null) {
+                or(permitted, protocol.match(query.port));
+            }
+            result.and(permitted);
+            return result;
+        }
+
+        private static void or(final BitSet target, final BitSet bits) {
+            if (bits != null) {
+                target.or(bits);
+            }
+        }
+    }
+
+    /**
+     * Binary trie over address bits, a lookup collects the rules of every prefix on the path to the address.
+     */
+    private static final class CidrTrie {
+        private final Node ipv4 = new Node();
+        private final Node ipv6 = new Node();
+
+        private void insert(final String cidr, final int bit) {
+            final var slash = cidr.indexOf('/');
+            final var address = parseAddress(slash < 0 ? cidr : cidr.substring(0, slash));
+            final var prefixLength = slash < 0 ? address.length * 8 : Integer.parseInt(cidr.substring(slash + 1));
+            if (prefixLength < 0 || prefixLength > address.length * 8) {
+                throw new IllegalArgumentException("Invalid CIDR range: " + cidr);
+            }
+            var node = address.length == 4 ? ipv4 : ipv6;
+            for (int i = 0; i < prefixLength; i++) {
+                if (bitAt(address, i)) {
+                    node = node.one == null ? (node.one = new Node()) : node.one;
+                } else {
+                    node = node.zero == null ? (node.zero = new Node()) : node.zero;
+                }
+            }
+            node.rules.set(bit);
+        }
+
+        private BitSet match(final byte[] address) {
+            final var result = new BitSet();
+            if (address == null) {
+                return result;
+            }
+            var node = address.length == 4 ? ipv4 : ipv6;
+            for (int i = 0; node != null; i++) {
+                result.or(node.rules);
+                if (i == address.length * 8) {
+                    break;
+                }
+                node = bitAt(address, i) ? node.one : node.zero;
+            }
+            return result;
+        }
+
+        private static boolean bitAt(final byte[] address, final int index) {
+            return (address[index / 8] & (0x80 >>> (index % 8))) != 0;
+        }
+
+        private static final class Node {
+            private final BitSet rules = new BitSet();
+            private Node zero;
+            private Node one;
+        }
+    }
+
+    /**
+     * Port ranges of one protocol kept as an interval tree: intervals sorted by their start, implicitly balanced around
+     * the middle element and augmented with the maximum end of each subtree.
+     */
+    private static final class ProtocolIndex {
+        private final BitSet allPorts = new BitSet();
+        private final BitSet anyPort = new BitSet();
+        private final List<int[]> intervals = new ArrayList<>();
+        private int[] maxEnd;
+
+        private void add(final int bit, final List<int[]> portRanges) {
+            anyPort.set(bit);
+            if (portRanges.isEmpty()) {
+                allPorts.set(bit);
+            }
+            for (final var range : portRanges) {
+                intervals.add(new int[] {range[0], range[1], bit});
+            }
+        }
+
+        private void build() {
+            intervals.sort(Comparator.comparingInt(interval -> interval[0]));
+            maxEnd = new int[intervals.size()];
+            computeMaxEnd(0, intervals.size() - 1);
+        }
+
+        private int computeMaxEnd(final int low, final int high) {
+            if (low > high) {
+                return Integer.MIN_VALUE;
+            }
+            final var mid = (low + high) >>> 1;
+            maxEnd[mid] = Math.max(
+                    intervals.get(mid)[1], Math.max(computeMaxEnd(low, mid - 1), computeMaxEnd(mid + 1, high)));
+            return maxEnd[mid];
+        }
+
+        private BitSet match(final int port) {
+            if (port < 0) {
+                return anyPort;
+            }
+            final var result = (BitSet) allPorts.clone();
+            stab(0, intervals.size() - 1, port, result);
+            return result;
+        }
+
+        private void stab(final int low, final int high, final int port, final BitSet result) {
+            if (low > high) {
+                return;
+            }
+            final var mid = (low + high) >>> 1;
+            if (maxEnd[mid] < port) {
+                return;
+            }
+            stab(low, mid - 1, port, result);
+            final var interval = intervals.get(mid);
+            if (interval[0] <= port) {
+                if (interval[1] >= port) {
+                    result.set(interval[2]);
+                }
+                stab(mid + 1, high, port, result);
+            }
+        }
+    }
+
+    static byte[] parseAddress(final String address) {
+        if (address.indexOf(':') >= 0) {
+            try {
+                // literals containing a colon are parsed as IPv6 without any name resolution
+                return InetAddress.getByName(address).getAddress();
+            } catch (final UnknownHostException e) {
+                throw new IllegalArgumentException("Invalid IP address: " + address, e);
+            }
+        }
+        final var octets = address.split("\\.", -1);
+        if (octets.length != 4) {
+            throw new IllegalArgumentException("Invalid IP address: " + address);
+        }
+        final var bytes = new byte[4];
+        for (int i = 0; i < 4; i++) {
+            try {
+                final var octet = Integer.parseInt(octets[i]);
+                if (octet < 0 || octet > 255) {
+                    throw new IllegalArgumentException("Invalid IP address: " + address);
+                }
+                bytes[i] = (byte) octet;
+            } catch (final NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid IP address: " + address, e);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * A packet description such as {@code source=10.0.0.5 protocol=tcp port=443 targetTag=web}. Using
+     * {@code destination=} instead of {@code source=} queries egress rules.
+     */
+    static final class Query {
+        private final String text;
+        private String direction = FirewallRule.INGRESS;
+        private byte[] address;
+        private String protocol;
+        private int port = -1;
+        private final List<String> sourceTags = new ArrayList<>();
+        private String sourceServiceAccount;
+        private final List<String> targetTags = new ArrayList<>();
+        private String targetServiceAccount;
+
+        private Query(final String text) {
+            this.text = text;
+        }
+
+        static Query parse(final String text) {
+            final var query = new Query(text);
+            for (final var token : text.trim().split("\\s+")) {
+                final var separator = token.indexOf('=');
+                if (separator <= 0) {
+                    throw new IllegalArgumentException("Expected key=value but got '" + token + "' in query: " + text);
+                }
+                final var value = token.substring(separator + 1);
+                switch (token.substring(0, separator)) {
+                    case "source":
+                        query.address = parseAddress(value);
+                        break;
+                    case "destination":
+                        query.direction = FirewallRule.EGRESS;
+                        query.address = parseAddress(value);
+                        break;
+                    case "protocol":
+                        query.protocol = FirewallRule.normalizeProtocol(value);
+                        break;
+                    case "port":
+                        query.port = Integer.parseInt(value);
+                        break;
+                    case "sourceTag":
+                        query.sourceTags.add(value);
+                        break;
+                    case "sourceServiceAccount":
+                        query.sourceServiceAccount = value;
+                        break;
+                    case "targetTag":
+                        query.targetTags.add(value);
+                        break;
+                    case "targetServiceAccount":
+                        query.targetServiceAccount = value;
+                        break;
+                    default:
+                        throw new IllegalArgumentException(
+                                "Unknown key '" + token.substring(0, separator) + "' in query: " + text);
+                }
+            }
+            if (query.protocol == null) {
+                throw new IllegalArgumentException("'protocol' is required in query: " + text);
+            }
+            if (query.address == null && query.sourceTags.isEmpty() && query.sourceServiceAccount == null) {
+                throw new IllegalArgumentException(
+                        "One of 'source', 'destination', 'sourceTag' or 'sourceServiceAccount' is required in query: "
+                                + text);
+            }
+            return query;
+        }
+
+        String getDirection() {
+            return direction;
+        }
+
+        @Override
+        public String toString() {
+            return text.trim();
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package io.jenkins.plugins.step;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Builds the single {@code --filter} expression of a firewall rules listing. gcloud only honors the last
+ * {@code --filter} flag, and only the parts of an expression the Compute API understands are evaluated server-side,
+ * everything else is filtered after all rules have been transferred. Backends without gcloud evaluate the expression
+ * themselves.
+ */
+final class FirewallRulesFilter {
+
+    private static final Pattern WORDS = Pattern.compile("[^\\p{Alnum}_]+");
+
+    private FirewallRulesFilter() {}
+
+    static String combine(final String name, final String regexp, final String filter) {
+        final var criteria = new ArrayList<String>();
+        if (name != null) {
+            criteria.add("name=(" + name + ")");
+        }
+        if (regexp != null) {
+            criteria.add("name~" + quoteIfNeeded(regexp));
+        }
+        if (filter != null) {
+            criteria.add(filter);
+        }
+
+        if (criteria.isEmpty()) {
+            return null;
+        }
+        if (criteria.size() == 1) {
+            return criteria.get(0);
+        }
+        return "(" + String.join(") AND (", criteria) + ")";
+    }
+
+    /**
+     * Restricts the output to the given comma-separated fields, e.g. {@code json(name,priority)}.
+     */
+    static String format(final String format, final String fields) {
+        if (fields == null) {
+            return format;
+        }
+        if (format != null && format.contains("(")) {
+            throw new IllegalArgumentException(
+                    "'fields' can't be combined with a format that has a projection: " + format);
+        }
+        return (format == null ? "json" : format) + "(" + fields + ")";
+    }
+
+    /**
+     * Fails for expressions gcloud can't translate into a Compute API filter: negations, function calls and bare
+     * global terms.
+     */
+    static void validate(final String expression) {
+        new Parser(expression, true).parse();
+    }
+
+    /**
+     * Evaluates an expression on rules like gcloud does, for backends without gcloud. Negations are supported, function
+     * calls and bare global terms are not.
+     */
+    static Predicate<JSONObject> matcher(final String expression) {
+        return new Parser(expression, false).parse();
+    }
+
+    /**
+     * @return the scalar values at the dotted path of the rule, the elements of lists being flattened
+     */
+    static List<String> values(final JSONObject rule, final String key) {
+        final var values = new ArrayList<String>();
+        collect(rule, key.split("\\."), 0, values);
+        return values;
+    }
+
+    private static void collect(final Object value, final String[] path, final int index, final List<String> values) {
+        if (value == null || value == JSONObject.NULL) {
+            return;
+        }
+        if (value instanceof JSONArray) {
+            final var array = (JSONArray) value;
+            for (int i = 0; i < array.length(); i++) {
+                collect(array.get(i), path, index, values);
+            }
+        } else if (index == path.length) {
+            values.add(value.toString());
+        } else if (value instanceof JSONObject) {
+            collect(((JSONObject) value).opt(path[index]), path, index + 1, values);
+        }
+    }
+
+    private static String quoteIfNeeded(final String value) {
+        if (value.chars().noneMatch(c -> Character.isWhitespace(c) || c == '(' || c == ')' || c == '\'' || c == '"')) {
+            return value;
+        }
+        if (value.indexOf('\'') < 0) {
+            return "'" + value + "'";
+        }
+        if (value.indexOf('"') < 0) {
+            return "\"" + value + "\"";
+        }
+        throw new IllegalArgumentException("Can't quote a value containing both kinds of quotes: " + value);
+    }
+
+    private static Predicate<JSONObject> term(final String key, final String operator, final List<String> operands) {
+        switch (operator) {
+            case "=":
+            case ":":
+                final var patterns = globs(operands);
+                final var has = operator.equals(":");
+                return rule -> values(rule, key).stream().anyMatch(value -> matches(value, patterns, has));
+            case "!=":
+                return term(key, "=", operands).negate();
+            case "~":
+            case "!~":
+                final var regexps = operands.stream().map(Pattern::compile).collect(Collectors.toList());
+                final Predicate<JSONObject> found = rule -> values(rule, key).stream()
+                        .anyMatch(value -> regexps.stream().anyMatch(regexp -> regexp.matcher(value).find()));
+                return operator.equals("~") ? found : found.negate();
+            default:
+                return rule -> values(rule, key).stream()
+                        .anyMatch(value -> operands.stream().anyMatch(operand -> compares(value, operator, operand)));
+        }
+    }
+
+    /**
+     * {@code *} matches any characters, and {@code key:*} any value.
+     */
+    private static List<Pattern> globs(final List<String> operands) {
+        return operands.stream()
+                .map(operand -> Pattern.compile(
+                        Arrays.stream(operand.split("\\*", -1)).map(Pattern::quote).collect(Collectors.joining(".*")),
+                        Pattern.CASE_INSENSITIVE))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Matches the whole value, or for {@code :} any of its words.
+     */
+    private static boolean matches(final String value, final List<Pattern> patterns, final boolean has) {
+        for (final var pattern : patterns) {
+            if (pattern.matcher(value).matches()) {
+                return true;
+            }
+            if (has && Arrays.stream(WORDS.split(value)).anyMatch(word -> pattern.matcher(word).matches())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean compares(final String value, final String operator, final String operand) {
+        int comparison;
+        try {
+            comparison = Double.compare(Double.parseDouble(value), Double.parseDouble(operand));
+        } catch (final NumberFormatException e) {
+            comparison = value.compareTo(operand);
+        }
+        switch (operator) {
+            case "<":
+                return comparison < 0;
+            case "<=":
+                return comparison <= 0;
+            case ">":
+                return comparison > 0;
+            default:
+                return comparison >= 0;
+        }
+    }
+
+    private static final class Parser {
+        private static final String[] OPERATORS = {"!=", "!~", "<=", ">=", "=", "~", "<", ">", ":"};
+
+        private final String expression;
+        private final boolean serverSide;
+        private int position;
+
+        private Parser(final String expression, final boolean serverSide) {
+            this.expression = expression;
+            this.serverSide = serverSide;
+        }
+
+        private Predicate<JSONObject> parse() {
+            final var predicate = parseOr();
+            skipWhitespace();
+            if (!atEnd()) {
+                throw invalid("unexpected '" + peek() + "'");
+            }
+            return predicate;
+        }
+
+        private Predicate<JSONObject> parseOr() {
+            var predicate = parseAnd();
+            while (consumeKeyword("OR")) {
+                predicate = predicate.or(parseAnd());
+            }
+            return predicate;
+        }
+
+        private Predicate<JSONObject> parseAnd() {
+            var predicate = parseUnary();
+            while (true) {
+                skipWhitespace();
+                if (atEnd() || peek() == ')' || isKeyword("OR")) {
+                    return predicate;
+                }
+                consumeKeyword("AND");
+                predicate = predicate.and(parseUnary());
+            }
+        }
+
+        private Predicate<JSONObject> parseUnary() {
+            skipWhitespace();
+            if (atEnd()) {
+                throw invalid("unexpected end of expression");
+            }
+            if (isKeyword("NOT") || peek() == '-') {
+                if (serverSide) {
+                    throw notServerSide("negation");
+                }
+                position += peek() == '-' ? 1 : "NOT".length();
+                return parseUnary().negate();
+            }
+            if (peek() == '(') {
+                position++;
+                final var predicate = parseOr();
+                skipWhitespace();
+                expect(')');
+                return predicate;
+            }
+            return parseTerm();
+        }
+
+        private Predicate<JSONObject> parseTerm() {
+            final var start = position;
+            while (!atEnd() && (Character.isLetterOrDigit(peek()) || peek() == '_' || peek() == '.')) {
+                position++;
+            }
+            final var key = expression.substring(start, position);
+            if (key.isEmpty()) {
+                throw invalid("expected a field name at position " + start);
+            }
+            if (!atEnd() && peek() == '(') {
+                throw unsupported("function call " + key + "()");
+            }
+
+            skipWhitespace();
+            for (final var operator : OPERATORS) {
+                if (expression.startsWith(operator, position)) {
+                    position += operator.length();
+                    final var operands = parseValue();
+                    // validating only checks the syntax, gcloud and the Compute API evaluate the expression
+                    return serverSide ? rule -> true : term(key, operator, operands);
+                }
+            }
+            throw unsupported("term without operator '" + key + "'");
+        }
+
+        private List<String> parseValue() {
+            skipWhitespace();
+            if (atEnd()) {
+                throw invalid("missing value at the end of expression");
+            }
+            final var values = new ArrayList<String>();
+            if (peek() == '(') {
+                position++;
+                while (true) {
+                    skipWhitespace();
+                    if (atEnd()) {
+                        throw invalid("unbalanced parentheses");
+                    }
+                    if (peek() == ')') {
+                        position++;
+                        return values;
+                    }
+                    values.add(parseWord());
+                }
+            }
+            values.add(parseWord());
+            return values;
+        }
+
+        private String parseWord() {
+            final var quote = peek();
+            if (quote == '\'' || quote == '"') {
+                final var end = expression.indexOf(quote, position + 1);
+                if (end < 0) {
+                    throw invalid("unterminated string");
+                }
+                final var word = expression.substring(position + 1, end);
+                position = end + 1;
+                return word;
+            }
+            final var start = position;
+            while (!atEnd() && !Character.isWhitespace(peek()) && peek() != '(' && peek() != ')') {
+                position++;
+            }
+            if (start == position) {
+                throw invalid("expected a value at position " + start);
+            }
+            return expression.substring(start, position);
+        }
+
+        private boolean isKeyword(final String keyword) {
+            final var end = position + keyword.length();
+            return expression.startsWith(keyword, position)
+                    && (end == expression.length()
+                            || Character.isWhitespace(expression.charAt(end))
+                            || expression.charAt(end) == '(');
+        }
+
+        private boolean consumeKeyword(final String keyword) {
+            skipWhitespace();
+            if (isKeyword(keyword)) {
+                position += keyword.length();
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(final char expected) {
+            if (atEnd() || peek() != expected) {
+                throw invalid("expected '" + expected + "' at position " + position);
+            }
+            position++;
+        }
+
+        private void skipWhitespace() {
+            while (!atEnd() && Character.isWhitespace(peek())) {
+                position++;
+            }
+        }
+
+        private boolean atEnd() {
+            return position >= expression.length();
+        }
+
+        private char peek() {
+            return expression.charAt(position);
+        }
+
+        private IllegalArgumentException invalid(final String reason) {
+            return new IllegalArgumentException("Invalid filter (" + reason + "): " + expression);
+        }
+
+        private IllegalArgumentException unsupported(final String reason) {
+            return serverSide ? notServerSide(reason) : invalid("unsupported " + reason);
+        }
+
+        private IllegalArgumentException notServerSide(final String reason) {
+            return new IllegalArgumentException("Filter can't be evaluated server-side (" + reason + "): "
+                    + expression + ". Set 'allowClientSideFilter' to filter after listing instead.");
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package io.jenkins.plugins.step;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Gzip-compressed snapshot of firewall rules with one {@code name<TAB>sha256<TAB>canonical json} line per rule, sorted
+ * by name. Two snapshots can be compared by merging them line by line: only the hashes are compared and only the rules
+ * that differ are ever parsed.
+ */
+final class FirewallSnapshot {
+
+    private FirewallSnapshot() {}
+
+    static int write(final JSONArray rules, final OutputStream outputStream) throws IOException {
+        final var lines = new TreeMap<String, String>();
+        for (int i = 0; i < rules.length(); i++) {
+            final var rule = rules.getJSONObject(i);
+            final var canonical = CanonicalJson.toString(rule);
+            lines.put(rule.getString("name"), CanonicalJson.sha256(canonical) + '\t' + canonical);
+        }
+
+        try (var writer = new BufferedWriter(
+                new OutputStreamWriter(new GZIPOutputStream(outputStream), StandardCharsets.UTF_8))) {
+            for (final var line : lines.entrySet()) {
+                writer.write(line.getKey());
+                writer.write('\t');
+                writer.write(line.getValue());
+                writer.write('\n');
+            }
+        }
+        return lines.size();
+    }
+
+    /**
+     * @param base the older snapshot, {@code null} if there is none and every rule of {@code target} is new
+     */
+    static Diff diff(final InputStream base, final InputStream target) throws IOException {
+        final var diff = new Diff();
+        try (var baseReader = base == null ? null : reader(base);
+                var targetReader = reader(target)) {
+            var before = Entry.next(baseReader, null);
+            var after = Entry.next(targetReader, null);
+            while (before != null || after != null) {
+                final var order = before == null ? 1 : after == null ? -1 : before.name.compareTo(after.name);
+                if (order < 0) {
+                    diff.removed.add(before.rule());
+                    before = Entry.next(baseReader, before);
+                } else if (order > 0) {
+                    diff.added.add(after.rule());
+                    after = Entry.next(targetReader, after);
+                } else {
+                    if (!before.hash.equals(after.hash)) {
+                        diff.changed.add(new JSONObject()
+                                .put("name", after.name)
+                                .put("before", before.rule())
+                                .put("after", after.rule()));
+                    }
+                    before = Entry.next(baseReader, before);
+                    after = Entry.next(targetReader, after);
+                }
+            }
+        }
+        return diff;
+    }
+
+    private static BufferedReader reader(final InputStream inputStream) throws IOException {
+        return new BufferedReader(new InputStreamReader(new GZIPInputStream(inputStream), StandardCharsets.UTF_8));
+    }
+
+    static final class Diff {
+        private final List<JSONObject> added = new ArrayList<>();
+        private final List<JSONObject> removed = new ArrayList<>();
+        private final List<JSONObject> changed = new ArrayList<>();
+
+        List<JSONObject> getAdded() {
+            return added;
+        }
+
+        List<JSONObject> getRemoved() {
+            return removed;
+        }
+
+        List<JSONObject> getChanged() {
+            return changed;
+        }
+    }
+
+    private static final class Entry {
+        private final String name;
+        private final String hash;
+        private final String json;
+
+        private Entry(final String name, final String hash, final String json) {
+            this.name = name;
+            this.hash = hash;
+            this.json = json;
+        }
+
+        private static Entry next(final BufferedReader reader, final Entry previous) throws IOException {
+            final var line = reader == null ? null : reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            final var firstTab = line.indexOf('\t');
+            final var secondTab = line.indexOf('\t', firstTab + 1);
+            if (firstTab < 0 || secondTab < 0) {
+                throw new IllegalArgumentException("Not a firewall snapshot line: " + line);
+            }
+            final var entry = new Entry(
+                    line.substring(0, firstTab),
+                    line.substring(firstTab + 1, secondTab),
+                    line.substring(secondTab + 1));
+            if (previous != null && previous.name.compareTo(entry.name) >= 0) {
+                throw new IllegalArgumentException("Firewall snapshot is not sorted by name at: " + entry.name);
+            }
+            return entry;
+        }
+
+        private JSONObject rule() {
+            return new JSONObject(json);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package io.jenkins.plugins.step;
+
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.Launcher;
+import hudson.model.Computer;
+import hudson.model.TaskListener;
+import hudson.slaves.ComputerListener;
+import hudson.slaves.OfflineCause;
+import hudson.util.ArgumentListBuilder;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * How gcloud is started by the steps. Update checks, usage reporting, file logging and prompts are disabled, and the
+ * absolute path of gcloud and its bundled Python, detected once per node and PATH, are used instead of resolving them
+ * from the PATH on every invocation. Variables set by the build take precedence.
+ */
+final class GcloudProfile {
+
+    private static final Logger LOGGER = Logger.getLogger(GcloudProfile.class.getName());
+
+    static final Map<String, String> ENVIRONMENT = Map.of(
+            "CLOUDSDK_COMPONENT_MANAGER_DISABLE_UPDATE_CHECK", "true",
+            "CLOUDSDK_CORE_DISABLE_USAGE_REPORTING", "true",
+            "CLOUDSDK_CORE_DISABLE_PROMPTS", "true",
+            "CLOUDSDK_CORE_DISABLE_FILE_LOGGING", "true",
+            "CLOUDSDK_SURVEY_DISABLE_PROMPTS", "true");
+
+    static final GcloudProfile DEFAULT = new GcloudProfile("gcloud", null, null);
+
+    /**
+     * Profiles keyed by node name and PATH.
+     */
+    private static final Map<String, GcloudProfile> NODES = new ConcurrentHashMap<>();
+
+    private final String executable;
+    private final String python;
+    private final String version;
+
+    GcloudProfile(final String executable, final String python, final String version) {
+        this.executable = executable;
+        this.python = python;
+        this.version = version;
+    }
+
+    /**
+     * A decorated launcher, e.g. of {@code docker.inside} or {@code container}, runs gcloud in another file system than
+     * the one of the node, where the paths detected for the node may not exist.
+     *
+     * @return the profile of the node and PATH, detected with {@code gcloud info} on its first use, or {@link #DEFAULT}
+     *     when the node is unknown, the launcher is decorated or gcloud could not be detected
+     */
+    static GcloudProfile of(final Computer computer, final Launcher launcher, final EnvVars envVars)
+            throws IOException, InterruptedException {
+        if (computer == null || launcher instanceof Launcher.DecoratedLauncher) {
+            return DEFAULT;
+        }
+        final var key = computer.getName() + "\n" + (envVars == null ? null : envVars.get("PATH"));
+        var profile = NODES.get(key);
+        if (profile == null) {
+            profile = detect(launcher, envVars);
+            NODES.put(key, profile);
+        }
+        return profile;
+    }
+
+    static void evict(final Computer computer) {
+        NODES.keySet().removeIf(key -> key.startsWith(computer.getName() + "\n"));
+    }
+
+    static GcloudProfile detect(final Launcher launcher, final EnvVars envVars)
+            throws IOException, InterruptedException {
+        final var outputStream = new ByteArrayOutputStream();
+        final var cmd = new ArgumentListBuilder("gcloud", "info", "--format=json");
+        final var starter = DEFAULT.launch(launcher, cmd, envVars);
+        starter.stdout(outputStream);
+        if (starter.join() != 0) {
+            LOGGER.fine("gcloud info failed, gcloud is resolved from the PATH");
+            return DEFAULT;
+        }
+
+        try {
+            final var info = new JSONObject(outputStream.toString(StandardCharsets.UTF_8));
+            final var sdkRoot = info.getJSONObject("installation").getString("sdk_root");
+            final var basic = info.getJSONObject("basic");
+            final var executable = launcher.isUnix() ? sdkRoot + "/bin/gcloud" : sdkRoot + "\\bin\\gcloud.cmd";
+            return new GcloudProfile(executable, basic.optString("python_location", null), basic.optString("version"));
+        } catch (final JSONException e) {
+            LOGGER.log(Level.FINE, "Unexpected output of gcloud info, gcloud is resolved from the PATH", e);
+            return DEFAULT;
+        }
+    }
+
+    /**
+     * Starts building a quiet gcloud process, {@code cmd} starting with {@code gcloud}.
+     */
+    Launcher.ProcStarter launch(final Launcher launcher, final ArgumentListBuilder cmd, final EnvVars envVars) {
+        final var starter = launcher.launch().cmds(command(cmd)).quiet(true);
+        starter.envs(environment(envVars));
+        return starter;
+    }
+
+    ArgumentListBuilder command(final ArgumentListBuilder cmd) {
+        if (DEFAULT.executable.equals(executable)) {
+            return cmd;
+        }
+        final var args = cmd.toList();
+        return new ArgumentListBuilder(executable).add(args.subList(1, args.size()));
+    }
+
+    Map<String, String> environment(final EnvVars envVars) {
+        final var environment = new EnvVars(ENVIRONMENT);
+        if (python != null) {
+            environment.put("CLOUDSDK_PYTHON", python);
+        }
+        if (envVars != null) {
+            environment.putAll(envVars);
+        }
+        return environment;
+    }
+
+    String getExecutable() {
+        return executable;
+    }
+
+    String getPython() {
+        return python;
+    }
+
+    String getVersion() {
+        return version;
+    }
+
+    /**
+     * Forgets the profile of a node when it reconnects, gcloud may have been updated or moved in the meantime.
+     */
+    @Extension
+    public static class Listener extends ComputerListener {
+
+        @Override
+        public void onOnline(final Computer computer, final TaskListener listener) {
+            evict(computer);
+        }
+
+        @Override
+        public void onOffline(final Computer computer, final OfflineCause cause) {
+            evict(computer);
+        }
+    }
+}
@@ -0,0 +1,510 @@
+package io.jenkins.plugins.step;
+
+import hudson.Launcher;
+import hudson.model.TaskListener;
+import hudson.util.ArgumentListBuilder;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.security.MasterToSlaveCallable;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Long-lived worker running in the JVM of an agent, one per gcloud configuration, account and Compute endpoint, or in
+ * the JVM of the controller for the {@link ControllerExecutor}. Instead of starting gcloud for every call, it gets an
+ * access token once and sends the requests of the steps to the Compute API over kept-alive connections. Requests wait
+ * in a bounded queue, the token is refreshed by a periodic health check before it expires, and the worker shuts down
+ * once idle.
+ */
+final class GcloudWorker {
+
+    static final String BACKEND = "worker";
+    static final String ONE_SHOT_BACKEND = "rest";
+
+    private static final Logger LOGGER = Logger.getLogger(GcloudWorker.class.getName());
+    private static final int THREADS = 4;
+    private static final long HEALTH_CHECK_SECONDS = 30;
+    private static final long TOKEN_REFRESH_MARGIN_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final long DEFAULT_TOKEN_LIFETIME_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    private static final Map<String, GcloudWorker> WORKERS = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService HEALTH_CHECKS = Executors.newSingleThreadScheduledExecutor(
+            new NamingThreadFactory(new DaemonThreadFactory(), "GcloudWorker health check"));
+
+    static {
+        HEALTH_CHECKS.scheduleWithFixedDelay(
+                () -> checkHealth(System.currentTimeMillis()),
+                HEALTH_CHECK_SECONDS,
+                HEALTH_CHECK_SECONDS,
+                TimeUnit.SECONDS);
+    }
+
+    private final String scope;
+    private final ComputeApiClient client;
+    private final TokenSource tokenSource;
+    private final long idleMillis;
+    private final ThreadPoolExecutor executor;
+    private volatile Token token;
+    private volatile long lastUsed;
+
+    GcloudWorker(
+            final String scope,
+            final ComputeApiClient client,
+            final TokenSource tokenSource,
+            final long idleMillis,
+            final int queueCapacity) {
+        this.scope = scope;
+        this.client = client;
+        this.tokenSource = tokenSource;
+        this.idleMillis = idleMillis;
+        this.lastUsed = System.currentTimeMillis();
+        executor = new ThreadPoolExecutor(
+                THREADS,
+                THREADS,
+                1,
+                TimeUnit.MINUTES,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new NamingThreadFactory(new DaemonThreadFactory(), "GcloudWorker " + scope));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return the result of the request, or {@code null} if the queue of the worker is full
+     */
+    String submit(final Request request, final String project) throws IOException, InterruptedException {
+        lastUsed = System.currentTimeMillis();
+        final Future<String> future;
+        try {
+            future = executor.submit(() -> execute(request, project));
+        } catch (final RejectedExecutionException e) {
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    private String execute(final Request request, final String project) throws IOException, InterruptedException {
+        var current = token(false);
+        final var resolvedProject = project(request, project, current);
+        try {
+            return request.run(client, resolvedProject, current.accessToken);
+        } catch (final ComputeApiClient.UnauthorizedException e) {
+            current = token(true);
+            return request.run(client, resolvedProject, current.accessToken);
+        }
+    }
+
+    private static String project(final Request request, final String project, final Token token) throws IOException {
+        final var resolvedProject = project == null ? token.project : project;
+        if (resolvedProject == null && request.requiresProject()) {
+            throw new IOException(
+                    "No project is set, CLOUDSDK_CORE_PROJECT or the gcloud configuration should set one");
+        }
+        return resolvedProject;
+    }
+
+    private synchronized Token token(final boolean refresh) throws IOException, InterruptedException {
+        final var current = token;
+        if (!refresh && current != null && current.isValid(System.currentTimeMillis())) {
+            return current;
+        }
+        token = tokenSource.fetch();
+        return token;
+    }
+
+    /**
+     * Fetches the token ahead of the first request.
+     */
+    void prewarm() throws IOException, InterruptedException {
+        lastUsed = System.currentTimeMillis();
+        token(false);
+    }
+
+    boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    void shutdown() {
+        executor.shutdown();
+        token = null;
+    }
+
+    /**
+     * Shuts down the idle workers and refreshes the tokens about to expire, so the next requests do not wait for
+     * gcloud. A worker failing to refresh its token is discarded, the next request creates a new one.
+     */
+    static void checkHealth(final long now) {
+        for (final var worker : WORKERS.values()) {
+            if (worker.isShutdown()) {
+                WORKERS.remove(worker.scope, worker);
+            } else if (now - worker.lastUsed > worker.idleMillis && worker.executor.getActiveCount() == 0) {
+                LOGGER.fine(() -> "Shutting down the idle gcloud worker " + worker.scope);
+                WORKERS.remove(worker.scope, worker);
+                worker.shutdown();
+            } else {
+                final var current = worker.token;
+                if (current != null && !current.isValid(now + TOKEN_REFRESH_MARGIN_MILLIS)) {
+                    try {
+                        worker.token(true);
+                    } catch (final IOException | RuntimeException e) {
+                        LOGGER.log(
+                                Level.WARNING, "Failed to refresh the token of the gcloud worker " + worker.scope, e);
+                        WORKERS.remove(worker.scope, worker);
+                        worker.shutdown();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    static GcloudWorker get(final String scope, final Function<String, GcloudWorker> factory) {
+        return WORKERS.compute(
+                scope, (key, worker) -> worker == null || worker.isShutdown() ? factory.apply(key) : worker);
+    }
+
+    static void shutdownAll() {
+        WORKERS.values().removeIf(worker -> {
+            worker.shutdown();
+            return true;
+        });
+    }
+
+    /**
+     * A call of the Compute API made by a worker in place of a gcloud command.
+     */
+    interface Request extends Serializable {
+        String run(ComputeApiClient client, String project, String accessToken)
+                throws IOException, InterruptedException;
+
+        /**
+         * @return whether the request fails without a project, organization level requests do not need one
+         */
+        default boolean requiresProject() {
+            return true;
+        }
+    }
+
+    /**
+     * Like {@code gcloud compute firewall-rules list --format=json}.
+     */
+    static final class ListFirewalls implements Request {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public String run(final ComputeApiClient client, final String project, final String accessToken)
+                throws IOException, InterruptedException {
+            return client.listFirewalls(project, accessToken).toString(2);
+        }
+    }
+
+    /**
+     * Like {@code gcloud compute firewall-rules delete}, several rules are deleted with batch requests whose size
+     * adapts to the rate quotas of the project, starting from the size learned by the previous builds.
+     */
+    static final class DeleteFirewalls implements Request {
+        private static final long serialVersionUID = 1L;
+
+        private final ArrayList<String> names;
+        private final int batchLimit;
+
+        DeleteFirewalls(final List<String> names) {
+            this(names, AimdLimit.INITIAL);
+        }
+
+        DeleteFirewalls(final List<String> names, final int batchLimit) {
+            this.names = new ArrayList<>(names);
+            this.batchLimit = batchLimit;
+        }
+
+        /**
+         * @return nothing for a single rule, otherwise the learned size of the batches and the failures, as JSON
+         */
+        @Override
+        public String run(final ComputeApiClient client, final String project, final String accessToken)
+                throws IOException, InterruptedException {
+            if (names.size() == 1) {
+                client.deleteFirewall(project, names.get(0), accessToken);
+                return "";
+            }
+            final var calls = new ArrayList<ComputeBatch.Call>();
+            names.forEach(name -> calls.add(ComputeBatch.Call.deleteFirewall(project, name)));
+            final var limit = new AimdLimit(batchLimit, ComputeBatch.MAX_CALLS);
+            final var output = new JSONObject();
+            try {
+                new ComputeBatch(client, limit).apply(calls, accessToken);
+            } catch (final ComputeApiClient.UnauthorizedException e) {
+                throw e;
+            } catch (final IOException e) {
+                // the learned limit is worth keeping even when some calls failed
+                output.put("error", e.getMessage());
+            }
+            return output.put("batchLimit", limit.get()).toString();
+        }
+    }
+
+    /**
+     * Replaces or patches the rules of a hierarchical firewall policy with a single patch of the policy, instead of one
+     * operation per rule like {@code gcloud compute firewall-policies rules create}. The patch is sent again with the
+     * new fingerprint when the policy changed in the meantime.
+     */
+    static final class UpdateFirewallPolicy implements Request {
+        private static final long serialVersionUID = 1L;
+        private static final int MAX_ATTEMPTS = 3;
+
+        private final String policy;
+        private final String rules;
+        private final ArrayList<Integer> removed;
+        private final boolean replace;
+
+        UpdateFirewallPolicy(
+                final String policy, final JSONArray rules, final List<Integer> removed, final boolean replace) {
+            this.policy = policy;
+            this.rules = rules.toString();
+            this.removed = new ArrayList<>(removed);
+            this.replace = replace;
+        }
+
+        /**
+         * @return the number of rules of the policy and the name of the operation, as JSON
+         */
+        @Override
+        public String run(final ComputeApiClient client, final String project, final String accessToken)
+                throws IOException, InterruptedException {
+            for (int attempt = 1; ; attempt++) {
+                final var current = client.getFirewallPolicy(policy, accessToken);
+                final var merged = FirewallPolicyRules.merge(
+                        current.optJSONArray("rules"), new JSONArray(rules), removed, replace);
+                try {
+                    final var operation = client.patchFirewallPolicy(
+                            policy,
+                            new JSONObject()
+                                    .put("rules", merged)
+                                    .put("fingerprint", current.optString("fingerprint", "")),
+                            accessToken);
+                    return new JSONObject()
+                            .put("rules", merged.length())
+                            .put("operation", operation)
+                            .toString();
+                } catch (final ComputeApiClient.PreconditionFailedException e) {
+                    if (attempt == MAX_ATTEMPTS) {
+                        throw e;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public boolean requiresProject() {
+            return false;
+        }
+    }
+
+    interface TokenSource {
+        Token fetch() throws IOException, InterruptedException;
+    }
+
+    static final class Token {
+        private final String accessToken;
+        private final long expiresAt;
+        private final String project;
+
+        Token(final String accessToken, final long expiresAt, final String project) {
+            this.accessToken = accessToken;
+            this.expiresAt = expiresAt;
+            this.project = project;
+        }
+
+        boolean isValid(final long now) {
+            return now < expiresAt;
+        }
+
+        String getAccessToken() {
+            return accessToken;
+        }
+    }
+
+    /**
+     * Gets the access token and the default project of the gcloud configuration with {@code gcloud config
+     * config-helper}, which refreshes the token when needed.
+     */
+    static final class ConfigHelper implements TokenSource {
+        private final String executable;
+        private final Map<String, String> environment;
+
+        ConfigHelper(final String executable, final Map<String, String> environment) {
+            this.executable = executable;
+            this.environment = environment;
+        }
+
+        @Override
+        public Token fetch() throws IOException, InterruptedException {
+            final var cmd = new ArgumentListBuilder(executable, "config", "config-helper", "--format=json");
+            final var outputStream = new ByteArrayOutputStream();
+            final var result = new Launcher.LocalLauncher(TaskListener.NULL)
+                    .launch()
+                    .cmds(cmd)
+                    .envs(environment)
+                    .stdout(outputStream)
+                    .quiet(true)
+                    .join();
+            if (result != 0) {
+                throw new IOException("Failed to get an access token with this command: " + cmd);
+            }
+            return parse(outputStream.toString(StandardCharsets.UTF_8), System.currentTimeMillis());
+        }
+
+        static Token parse(final String output, final long now) throws IOException {
+            try {
+                final var json = new JSONObject(output);
+                final var credential = json.getJSONObject("credential");
+                final var configuration = json.optJSONObject("configuration");
+                final var properties = configuration == null ? null : configuration.optJSONObject("properties");
+                final var core = properties == null ? null : properties.optJSONObject("core");
+                final var expiry = credential.optString("token_expiry", null);
+                final var expiresAt =
+                        expiry == null ? now + DEFAULT_TOKEN_LIFETIME_MILLIS : Instant.parse(expiry).toEpochMilli();
+                return new Token(
+                        credential.getString("access_token"),
+                        expiresAt,
+                        core == null ? null : core.optString("project", null));
+            } catch (final JSONException | DateTimeParseException e) {
+                throw new IOException("Unexpected output of gcloud config config-helper", e);
+            }
+        }
+    }
+
+    /**
+     * Sent to the agent to run a single request without a worker.
+     */
+    static final class OneShot extends MasterToSlaveCallable<String, IOException> {
+        private static final long serialVersionUID = 1L;
+
+        private final String executable;
+        private final HashMap<String, String> environment;
+        private final Request request;
+
+        OneShot(final String executable, final Map<String, String> environment, final Request request) {
+            this.executable = executable;
+            this.environment = new HashMap<>(environment);
+            this.request = request;
+        }
+
+        Request getRequest() {
+            return request;
+        }
+
+        @Override
+        public String call() throws IOException {
+            try {
+                final var token = new ConfigHelper(executable, environment).fetch();
+                return request.run(
+                        new ComputeApiClient(environment.get("CLOUDSDK_API_ENDPOINT_OVERRIDES_COMPUTE")),
+                        project(request, environment.get("CLOUDSDK_CORE_PROJECT"), token),
+                        token.accessToken);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while calling the Compute API");
+            }
+        }
+    }
+
+    /**
+     * Sent to the agent to run a request with the worker of the given scope, creating the worker if needed.
+     */
+    static final class Call extends MasterToSlaveCallable<String, IOException> {
+        private static final long serialVersionUID = 1L;
+
+        private final String executable;
+        private final HashMap<String, String> environment;
+        private final long idleMillis;
+        private final int queueCapacity;
+        private final Request request;
+
+        Call(
+                final String executable,
+                final Map<String, String> environment,
+                final long idleMillis,
+                final int queueCapacity,
+                final Request request) {
+            this.executable = executable;
+            this.environment = new HashMap<>(environment);
+            this.idleMillis = idleMillis;
+            this.queueCapacity = queueCapacity;
+            this.request = request;
+        }
+
+        private GcloudWorker worker() {
+            return get(
+                    scope(),
+                    scope -> new GcloudWorker(
+                            scope,
+                            new ComputeApiClient(environment.get("CLOUDSDK_API_ENDPOINT_OVERRIDES_COMPUTE")),
+                            new ConfigHelper(executable, environment),
+                            idleMillis,
+                            queueCapacity));
+        }
+
+        String scope() {
+            return environment.get("CLOUDSDK_CONFIG") + "|" + environment.get("CLOUDSDK_CORE_ACCOUNT") + "|"
+                    + environment.get("CLOUDSDK_API_ENDPOINT_OVERRIDES_COMPUTE");
+        }
+
+        /**
+         * @return the result of the request, or {@code null} if the queue of the worker is full
+         */
+        @Override
+        public String call() throws IOException {
+            try {
+                var worker = worker();
+                var result = worker.submit(request, environment.get("CLOUDSDK_CORE_PROJECT"));
+                if (result == null && worker.isShutdown()) {
+                    // shut down by the health check in the meantime
+                    worker = worker();
+                    result = worker.submit(request, environment.get("CLOUDSDK_CORE_PROJECT"));
+                }
+                return result;
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the gcloud worker");
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package io.jenkins.plugins.step;
+
+import hudson.model.Run;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import jenkins.model.RunAction2;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Time, traffic and backends of the GCP steps of a build, aggregated per step and shown on the build page.
+ */
+@ExportedBean
+public class GcpBuildStatsAction implements RunAction2 {
+
+    private final Map<String, StepStats> steps = new TreeMap<>();
+    private transient Run<?, ?> run;
+
+    static void record(final Run<?, ?> run, final String step, final Invocation invocation) {
+        if (run == null) {
+            return;
+        }
+        GcpBuildStatsAction action;
+        synchronized (GcpBuildStatsAction.class) {
+            action = run.getAction(GcpBuildStatsAction.class);
+            if (action == null) {
+                action = new GcpBuildStatsAction();
+                run.addAction(action);
+            }
+        }
+        action.record(step, invocation);
+    }
+
+    synchronized void record(final String step, final Invocation invocation) {
+        steps.computeIfAbsent(step, StepStats::new).add(invocation);
+    }
+
+    @Override
+    public void onAttached(final Run<?, ?> run) {
+        this.run = run;
+    }
+
+    @Override
+    public void onLoad(final Run<?, ?> run) {
+        this.run = run;
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    @Exported
+    public synchronized List<StepStats> getSteps() {
+        return new ArrayList<>(steps.values());
+    }
+
+    @Exported
+    public synchronized long getTotalMillis() {
+        return steps.values().stream().mapToLong(StepStats::getTotalMillis).sum();
+    }
+
+    @Exported
+    public synchronized long getCount() {
+        return steps.values().stream().mapToLong(StepStats::getCount).sum();
+    }
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "GCP time breakdown";
+    }
+
+    @Override
+    public String getUrlName() {
+        return null;
+    }
+
+    /**
+     * What a single step invocation did, filled in while it runs, possibly from several threads.
+     */
+    static final class Invocation {
+        private long nanos;
+        private long bytes;
+        private boolean failed;
+        private String backend;
+        private boolean cacheHit;
+        private int retries;
+        private boolean coalesced;
+
+        synchronized void finished(final long nanos, final boolean failed) {
+            this.nanos = nanos;
+            this.failed = failed;
+        }
+
+        synchronized void transferred(final long bytes) {
+            this.bytes += bytes;
+        }
+
+        synchronized void usedBackend(final String backend) {
+            this.backend = backend;
+        }
+
+        synchronized void cacheHit(final String backend) {
+            this.backend = backend;
+            cacheHit = true;
+        }
+
+        synchronized void retried() {
+            retries++;
+        }
+
+        synchronized void coalesced() {
+            coalesced = true;
+        }
+    }
+
+    @ExportedBean(defaultVisibility = 2)
+    public static final class StepStats {
+        private final String step;
+        private long count;
+        private long failures;
+        private long totalMillis;
+        private long maxMillis;
+        private long bytes;
+        private long cacheHits;
+        private long retries;
+        private long coalesced;
+        private final TreeSet<String> backends = new TreeSet<>();
+
+        private StepStats(final String step) {
+            this.step = step;
+        }
+
+        private void add(final Invocation invocation) {
+            synchronized (invocation) {
+                addLocked(invocation);
+            }
+        }
+
+        private void addLocked(final Invocation invocation) {
+            final var millis = TimeUnit.NANOSECONDS.toMillis(invocation.nanos);
+            count++;
+            failures += invocation.failed ? 1 : 0;
+            totalMillis += millis;
+            maxMillis = Math.max(maxMillis, millis);
+            bytes += invocation.bytes;
+            cacheHits += invocation.cacheHit ? 1 : 0;
+            retries += invocation.retries;
+            coalesced += invocation.coalesced ? 1 : 0;
+            if (invocation.backend != null) {
+                backends.add(invocation.backend);
+            }
+        }
+
+        @Exported
+        public String getStep() {
+            return step;
+        }
+
+        @Exported
+        public long getCount() {
+            return count;
+        }
+
+        @Exported
+        public long getFailures() {
+            return failures;
+        }
+
+        @Exported
+        public long getTotalMillis() {
+            return totalMillis;
+        }
+
+        @Exported
+        public long getMaxMillis() {
+            return maxMillis;
+        }
+
+        @Exported
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Exported
+        public long getCacheHits() {
+            return cacheHits;
+        }
+
+        @Exported
+        public long getRetries() {
+            return retries;
+        }
+
+        @Exported
+        public long getCoalesced() {
+            return coalesced;
+        }
+
+        @Exported
+        public List<String> getBackends() {
+            return new ArrayList<>(backends);
+        }
+    }
+}
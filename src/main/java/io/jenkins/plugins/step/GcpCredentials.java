@@ -0,0 +1,162 @@
+package io.jenkins.plugins.step;
+
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.security.ACL;
+import hudson.util.ArgumentListBuilder;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.plaincredentials.FileCredentials;
+import org.json.JSONObject;
+
+final class GcpCredentials {
+
+    /**
+     * How long credentials looked up ahead of a build by {@link GcpQueuePrewarmer} are used instead of looking them up
+     * again, short so that updated credentials are used soon.
+     */
+    static final long PREWARMED_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+    private static final Map<String, Prewarmed> PREWARMED = new ConcurrentHashMap<>();
+
+    private GcpCredentials() {}
+
+    static FileCredentials lookup(final String credentialsId) {
+        final var prewarmed = PREWARMED.get(credentialsId);
+        if (prewarmed != null && System.currentTimeMillis() - prewarmed.lookedUpAt < PREWARMED_MILLIS) {
+            return prewarmed.credentials;
+        }
+        return lookupInProvider(credentialsId);
+    }
+
+    private static FileCredentials lookupInProvider(final String credentialsId) {
+        final var creds = CredentialsProvider.lookupCredentialsInItemGroup(
+                FileCredentials.class, Jenkins.get(), ACL.SYSTEM2, List.of());
+
+        return creds.stream()
+                .filter(cred -> credentialsId.equals(cred.getId()))
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Looks up the credentials ahead of the steps using them, credentials providers backed by remote secret stores
+     * may take a while to answer.
+     *
+     * @return the credentials, or {@code null} if they could not be found
+     */
+    static FileCredentials prewarm(final String credentialsId) {
+        final var lookedUpAt = System.currentTimeMillis();
+        final var credentials = lookupInProvider(credentialsId);
+        if (credentials == null) {
+            PREWARMED.remove(credentialsId);
+        } else {
+            PREWARMED.put(credentialsId, new Prewarmed(credentials, lookedUpAt));
+        }
+        return credentials;
+    }
+
+    static void forgetPrewarmed() {
+        PREWARMED.clear();
+    }
+
+    static FilePath copyToTempFile(final FileCredentials fileCreds, final FilePath workspace) throws IOException {
+        try {
+            final var fileName = UUID.randomUUID().toString();
+            final var extension = ".json";
+            final var tempFile = workspace.createTempFile(fileName, extension);
+            tempFile.copyFrom(fileCreds.getContent());
+            return tempFile;
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static boolean activate(
+            final GcloudProfile profile,
+            final Launcher launcher,
+            final EnvVars envVars,
+            final FilePath workspace,
+            final FilePath keyFile)
+            throws IOException, InterruptedException {
+        final var cmd = new ArgumentListBuilder();
+        cmd.add("gcloud", "auth", "activate-service-account", "--key-file=" + keyFile);
+        return profile.launch(launcher, cmd, envVars).pwd(workspace).join() == 0;
+    }
+
+    /**
+     * Activates the service account of the credentials in the gcloud configuration, the key file is only kept in the
+     * workspace during the activation.
+     *
+     * @return the account and project of the key file, or {@code null} if they could not be read
+     */
+    static PublicValues authenticate(
+            final FileCredentials fileCreds,
+            final GcloudProfile profile,
+            final Launcher launcher,
+            final EnvVars envVars,
+            final FilePath workspace)
+            throws IOException, InterruptedException {
+        workspace.mkdirs();
+        final var tempFile = copyToTempFile(fileCreds, workspace);
+        try {
+            if (!activate(profile, launcher, envVars, workspace, tempFile)) {
+                throw new IllegalArgumentException(
+                        "Failed to authenticate to GCP using credentials file with id " + fileCreds.getId());
+            }
+            return extractPublicValues(tempFile);
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    static PublicValues extractPublicValues(final FilePath keyFile) {
+        try {
+            return extractPublicValues(keyFile.readToString());
+        } catch (final InterruptedException | IOException e) {
+            return null;
+        }
+    }
+
+    static PublicValues extractPublicValues(final String key) {
+        final var jsonObject = new JSONObject(key);
+        final var email = jsonObject.getString("client_email");
+        final var projectId = jsonObject.getString("project_id");
+        return new PublicValues(email, projectId);
+    }
+
+    private static final class Prewarmed {
+        private final FileCredentials credentials;
+        private final long lookedUpAt;
+
+        private Prewarmed(final FileCredentials credentials, final long lookedUpAt) {
+            this.credentials = credentials;
+            this.lookedUpAt = lookedUpAt;
+        }
+    }
+
+    static final class PublicValues {
+        private final String email;
+        private final String projectId;
+
+        private PublicValues(final String email, final String projectId) {
+            this.email = email;
+            this.projectId = projectId;
+        }
+
+        String getEmail() {
+            return email;
+        }
+
+        String getProjectId() {
+            return projectId;
+        }
+    }
+}
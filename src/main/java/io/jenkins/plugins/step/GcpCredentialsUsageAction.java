@@ -0,0 +1,38 @@
+package io.jenkins.plugins.step;
+
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Credentials used by {@code withGCP} in a build, so {@link GcpQueuePrewarmer} can prepare them for the next builds of
+ * the job while they wait in the queue.
+ */
+public class GcpCredentialsUsageAction extends InvisibleAction {
+
+    private final Set<String> credentialsIds = new TreeSet<>();
+
+    static void record(final Run<?, ?> run, final String credentialsId) {
+        if (run == null || credentialsId == null) {
+            return;
+        }
+        GcpCredentialsUsageAction action;
+        synchronized (GcpCredentialsUsageAction.class) {
+            action = run.getAction(GcpCredentialsUsageAction.class);
+            if (action == null) {
+                action = new GcpCredentialsUsageAction();
+                run.addAction(action);
+            }
+        }
+        action.add(credentialsId);
+    }
+
+    synchronized void add(final String credentialsId) {
+        credentialsIds.add(credentialsId);
+    }
+
+    public synchronized Set<String> getCredentialsIds() {
+        return new TreeSet<>(credentialsIds);
+    }
+}
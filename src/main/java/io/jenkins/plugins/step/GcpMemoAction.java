@@ -0,0 +1,142 @@
+package io.jenkins.plugins.step;
+
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import jenkins.model.RunAction2;
+
+/**
+ * Results of the memoized GCP steps of a build, keyed by step, arguments, project and account. Saved with the build,
+ * so that resumed executions, replays and restarts from a stage can reuse them instead of calling GCP again.
+ */
+public class GcpMemoAction extends InvisibleAction implements RunAction2 {
+
+    /**
+     * How many original builds are searched at most, when replays and restarts are chained.
+     */
+    private static final int MAX_PREVIOUS_BUILDS = 10;
+
+    /**
+     * Causes of the builds rerunning an original build, from plugins this one does not depend on.
+     */
+    private static final Set<String> RERUN_CAUSES = Set.of(
+            "org.jenkinsci.plugins.workflow.cps.replay.ReplayCause",
+            "org.jenkinsci.plugins.pipeline.modeldefinition.causes.RestartDeclarativePipelineCause");
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private transient Run<?, ?> run;
+
+    /**
+     * @param acrossBuilds whether the entries of the builds replayed or restarted by this build are searched too, only
+     *     for read-only steps
+     * @return the entry recorded in this build or in an original build started within the window, if not older than
+     *     the window
+     */
+    static Entry recall(
+            final Run<?, ?> run,
+            final String key,
+            final long windowMillis,
+            final long now,
+            final boolean acrossBuilds) {
+        Run<?, ?> candidate = run;
+        for (int i = 0; candidate != null && i <= MAX_PREVIOUS_BUILDS; i++) {
+            if (candidate != run && now - candidate.getStartTimeInMillis() > windowMillis) {
+                break;
+            }
+            final var action = candidate.getAction(GcpMemoAction.class);
+            final var entry = action == null ? null : action.get(key);
+            if (entry != null && now - entry.recordedAt <= windowMillis) {
+                return entry;
+            }
+            candidate = acrossBuilds ? original(candidate) : null;
+        }
+        return null;
+    }
+
+    /**
+     * @return the build replayed or restarted from a stage by the build, or {@code null} for any other build
+     */
+    static Run<?, ?> original(final Run<?, ?> run) {
+        for (final var cause : run.getCauses()) {
+            for (Class<?> type = cause == null ? null : cause.getClass(); type != null; type = type.getSuperclass()) {
+                if (RERUN_CAUSES.contains(type.getName())) {
+                    try {
+                        final var original = type.getMethod("getOriginal").invoke(cause);
+                        return original instanceof Run ? (Run<?, ?>) original : null;
+                    } catch (final ReflectiveOperationException e) {
+                        return null;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    static void record(final Run<?, ?> run, final String key, final Entry entry) throws IOException {
+        GcpMemoAction action;
+        synchronized (GcpMemoAction.class) {
+            action = run.getAction(GcpMemoAction.class);
+            if (action == null) {
+                action = new GcpMemoAction();
+                run.addAction(action);
+            }
+        }
+        // saving the build serializes the entries without any lock, the map tolerates concurrent writes
+        action.entries.put(key, entry);
+        run.save();
+    }
+
+    Entry get(final String key) {
+        return entries.get(key);
+    }
+
+    @Override
+    public void onAttached(final Run<?, ?> run) {
+        this.run = run;
+    }
+
+    @Override
+    public void onLoad(final Run<?, ?> run) {
+        this.run = run;
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    static final class Entry {
+        private final String step;
+        private final int build;
+        private final long recordedAt;
+        private final GcpResultHandle result;
+
+        Entry(final String step, final int build, final long recordedAt, final GcpResultHandle result) {
+            this.step = step;
+            this.build = build;
+            this.recordedAt = recordedAt;
+            this.result = result;
+        }
+
+        String getStep() {
+            return step;
+        }
+
+        int getBuild() {
+            return build;
+        }
+
+        long getRecordedAt() {
+            return recordedAt;
+        }
+
+        /**
+         * @return the result of a read-only step, {@code null} for a mutating step
+         */
+        GcpResultHandle getResult() {
+            return result;
+        }
+    }
+}
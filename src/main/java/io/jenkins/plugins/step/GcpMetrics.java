@@ -0,0 +1,221 @@
+package io.jenkins.plugins.step;
+
+import hudson.EnvVars;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timers, histograms and counters of the GCP calls made by this plugin, labelled by step, project and backend and
+ * rendered in the Prometheus text format by {@link GcpMetricsAction}.
+ */
+final class GcpMetrics {
+
+    static final String UNKNOWN_PROJECT = "unknown";
+    static final String GCLOUD = "gcloud";
+
+    private static final double[] SECONDS = {0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 300};
+    private static final double[] BYTES = {1 << 10, 10 << 10, 100 << 10, 1 << 20, 10 << 20, 100 << 20};
+
+    private static final Histogram QUEUE = new Histogram(
+            "gcp_step_queue_seconds",
+            "Time between the start of a step and a thread running it",
+            SECONDS,
+            "step",
+            "project");
+    private static final Histogram STEP = new Histogram(
+            "gcp_step_duration_seconds", "Duration of the steps", SECONDS, "step", "project", "result");
+    private static final Histogram CALL = new Histogram(
+            "gcp_call_duration_seconds",
+            "Duration of the gcloud processes or HTTP requests made by the steps",
+            SECONDS,
+            "step",
+            "project",
+            "backend");
+    private static final Histogram AUTH = new Histogram(
+            "gcp_auth_duration_seconds", "Duration of the authentication of withGCP", SECONDS, "project", "result");
+    private static final Histogram OUTPUT = new Histogram(
+            "gcp_call_output_bytes", "Size of the output of the GCP calls", BYTES, "step", "project");
+    private static final Counter FAILURES =
+            new Counter("gcp_call_failures_total", "Failed GCP calls", "step", "project", "backend");
+    private static final Counter RETRIES =
+            new Counter("gcp_call_retries_total", "Retried GCP calls", "step", "project", "backend");
+
+    private GcpMetrics() {}
+
+    static String project(final EnvVars envVars) {
+        final var project = envVars == null ? null : envVars.get("CLOUDSDK_CORE_PROJECT");
+        return project == null ? UNKNOWN_PROJECT : project;
+    }
+
+    static void observeQueue(final String step, final String project, final long nanos) {
+        QUEUE.observe(seconds(nanos), step, project);
+    }
+
+    static void observeStep(final String step, final String project, final long nanos, final boolean failed) {
+        STEP.observe(seconds(nanos), step, project, failed ? "failure" : "success");
+    }
+
+    static void observeCall(
+            final String step, final String project, final String backend, final long nanos, final boolean failed) {
+        CALL.observe(seconds(nanos), step, project, backend);
+        if (failed) {
+            FAILURES.increment(step, project, backend);
+        }
+    }
+
+    static void observeAuth(final String project, final long nanos, final boolean failed) {
+        AUTH.observe(seconds(nanos), project, failed ? "failure" : "success");
+    }
+
+    static void observeOutput(final String step, final String project, final long bytes) {
+        OUTPUT.observe(bytes, step, project);
+    }
+
+    static void retried(final String step, final String project, final String backend) {
+        RETRIES.increment(step, project, backend);
+    }
+
+    static String scrape() {
+        final var builder = new StringBuilder();
+        for (final var histogram : List.of(QUEUE, STEP, CALL, AUTH, OUTPUT)) {
+            histogram.appendTo(builder);
+        }
+        FAILURES.appendTo(builder);
+        RETRIES.appendTo(builder);
+        return builder.toString();
+    }
+
+    private static double seconds(final long nanos) {
+        return nanos / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    private abstract static class Metric<S> {
+        private final String name;
+        private final String help;
+        private final String type;
+        private final String[] labelNames;
+        private final Map<List<String>, S> series = new ConcurrentSkipListMap<>(Metric::compare);
+
+        private Metric(final String name, final String help, final String type, final String... labelNames) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.labelNames = labelNames;
+        }
+
+        private static int compare(final List<String> left, final List<String> right) {
+            return Arrays.compare(left.toArray(new String[0]), right.toArray(new String[0]));
+        }
+
+        S series(final String... labelValues) {
+            return series.computeIfAbsent(List.of(labelValues), key -> newSeries());
+        }
+
+        abstract S newSeries();
+
+        abstract void appendSeries(StringBuilder builder, String name, String labels, S series);
+
+        void appendTo(final StringBuilder builder) {
+            if (series.isEmpty()) {
+                return;
+            }
+            builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            builder.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+            series.forEach((labelValues, value) -> appendSeries(builder, name, labels(labelValues), value));
+        }
+
+        private String labels(final List<String> labelValues) {
+            final var labels = new StringBuilder();
+            for (int i = 0; i < labelNames.length; i++) {
+                labels.append(i == 0 ? "" : ",").append(labelNames[i]).append("=\"");
+                labels.append(labelValues.get(i)
+                        .replace("\\", "\\\\")
+                        .replace("\"", "\\\"")
+                        .replace("\n", "\\n"));
+                labels.append('"');
+            }
+            return labels.toString();
+        }
+    }
+
+    private static final class Histogram extends Metric<Histogram.Series> {
+        private final double[] buckets;
+
+        private Histogram(final String name, final String help, final double[] buckets, final String... labelNames) {
+            super(name, help, "histogram", labelNames);
+            this.buckets = buckets;
+        }
+
+        void observe(final double value, final String... labelValues) {
+            final var series = series(labelValues);
+            var bucket = 0;
+            while (bucket < buckets.length && value > buckets[bucket]) {
+                bucket++;
+            }
+            series.counts[bucket].increment();
+            series.sum.add(value);
+        }
+
+        @Override
+        Series newSeries() {
+            return new Series(buckets.length + 1);
+        }
+
+        @Override
+        void appendSeries(final StringBuilder builder, final String name, final String labels, final Series series) {
+            final var separator = labels.isEmpty() ? "" : ",";
+            long cumulative = 0;
+            for (int i = 0; i <= buckets.length; i++) {
+                cumulative += series.counts[i].sum();
+                final var le = i < buckets.length ? Double.toString(buckets[i]) : "+Inf";
+                builder.append(name)
+                        .append("_bucket{")
+                        .append(labels)
+                        .append(separator)
+                        .append("le=\"")
+                        .append(le)
+                        .append("\"} ")
+                        .append(cumulative)
+                        .append('\n');
+            }
+            builder.append(name).append("_sum{").append(labels).append("} ").append(series.sum.sum()).append('\n');
+            builder.append(name).append("_count{").append(labels).append("} ").append(cumulative).append('\n');
+        }
+
+        private static final class Series {
+            private final LongAdder[] counts;
+            private final DoubleAdder sum = new DoubleAdder();
+
+            private Series(final int buckets) {
+                counts = new LongAdder[buckets];
+                Arrays.setAll(counts, i -> new LongAdder());
+            }
+        }
+    }
+
+    private static final class Counter extends Metric<LongAdder> {
+
+        private Counter(final String name, final String help, final String... labelNames) {
+            super(name, help, "counter", labelNames);
+        }
+
+        void increment(final String... labelValues) {
+            series(labelValues).increment();
+        }
+
+        @Override
+        LongAdder newSeries() {
+            return new LongAdder();
+        }
+
+        @Override
+        void appendSeries(final StringBuilder builder, final String name, final String labels, final LongAdder series) {
+            builder.append(name).append('{').append(labels).append("} ").append(series.sum()).append('\n');
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package io.jenkins.plugins.step;
+
+import hudson.Extension;
+import hudson.model.RootAction;
+import java.io.IOException;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * Exposes {@link GcpMetrics} in the Prometheus text format at {@code /gcp-metrics/}, for administrators only.
+ */
+@Extension
+public class GcpMetricsAction implements RootAction {
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "GCP metrics";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "gcp-metrics";
+    }
+
+    public void doIndex(final StaplerRequest req, final StaplerResponse rsp) throws IOException {
+        Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+        rsp.setContentType("text/plain; version=0.0.4; charset=utf-8");
+        rsp.getWriter().write(GcpMetrics.scrape());
+    }
+}
@@ -0,0 +1,238 @@
+package io.jenkins.plugins.step;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.util.ListBoxModel;
+import hudson.util.Secret;
+import java.util.ArrayList;
+import java.util.List;
+import jenkins.model.GlobalConfiguration;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.StaplerRequest;
+
+@Extension
+public class GcpPluginConfiguration extends GlobalConfiguration {
+
+    private List<GcpProject> mirroredProjects = new ArrayList<>();
+    private int mirrorRefreshMinutes = 5;
+    private boolean agentWorker;
+    private int agentWorkerIdleMinutes = 10;
+    private int agentWorkerQueueSize = 64;
+    private boolean controllerExecutor;
+    private int controllerExecutorQueueSize = 64;
+    private boolean prewarmCredentials = true;
+    private String firewallBackend = FirewallBackend.Gcloud.ID;
+    private String cacheStore = FirewallCacheStore.Memory.ID;
+    private String cacheStoreUri;
+    private Secret cacheStorePassword;
+    private String changeSubscription;
+    private String changeSubscriptionCredentialsId;
+
+    public GcpPluginConfiguration() {
+        load();
+    }
+
+    public static GcpPluginConfiguration get() {
+        return ExtensionList.lookupSingleton(GcpPluginConfiguration.class);
+    }
+
+    static GcpPluginConfiguration getOrNull() {
+        return Jenkins.getInstanceOrNull() == null ? null : get();
+    }
+
+    @DataBoundSetter
+    public void setMirroredProjects(final List<GcpProject> mirroredProjects) {
+        this.mirroredProjects = mirroredProjects == null ? new ArrayList<>() : new ArrayList<>(mirroredProjects);
+        save();
+    }
+
+    @DataBoundSetter
+    public void setMirrorRefreshMinutes(final int mirrorRefreshMinutes) {
+        this.mirrorRefreshMinutes = mirrorRefreshMinutes;
+        save();
+    }
+
+    @DataBoundSetter
+    public void setAgentWorker(final boolean agentWorker) {
+        this.agentWorker = agentWorker;
+        save();
+    }
+
+    @DataBoundSetter
+    public void setAgentWorkerIdleMinutes(final int agentWorkerIdleMinutes) {
+        this.agentWorkerIdleMinutes = agentWorkerIdleMinutes;
+        save();
+    }
+
+    @DataBoundSetter
+    public void setAgentWorkerQueueSize(final int agentWorkerQueueSize) {
+        this.agentWorkerQueueSize = agentWorkerQueueSize;
+        save();
+    }
+
+    @DataBoundSetter
+    public void setControllerExecutor(final boolean controllerExecutor) {
+        this.controllerExecutor = controllerExecutor;
+        save();
+    }
+
+    @DataBoundSetter
+    public void setControllerExecutorQueueSize(final int controllerExecutorQueueSize) {
+        this.controllerExecutorQueueSize = controllerExecutorQueueSize;
+        save();
+    }
+
+    @DataBoundSetter
+    public void setPrewarmCredentials(final boolean prewarmCredentials) {
+        this.prewarmCredentials = prewarmCredentials;
+        save();
+    }
+
+    @DataBoundSetter
+    public void setFirewallBackend(final String firewallBackend) {
+        this.firewallBackend = firewallBackend;
+        save();
+    }
+
+    @DataBoundSetter
+    public void setCacheStore(final String cacheStore) {
+        this.cacheStore = cacheStore;
+        save();
+    }
+
+    @DataBoundSetter
+    public void setCacheStoreUri(final String cacheStoreUri) {
+        this.cacheStoreUri = cacheStoreUri == null || cacheStoreUri.isBlank() ? null : cacheStoreUri.trim();
+        save();
+    }
+
+    @DataBoundSetter
+    public void setCacheStorePassword(final Secret cacheStorePassword) {
+        this.cacheStorePassword = cacheStorePassword;
+        save();
+    }
+
+    @DataBoundSetter
+    public void setChangeSubscription(final String changeSubscription) {
+        this.changeSubscription =
+                changeSubscription == null || changeSubscription.isBlank() ? null : changeSubscription.trim();
+        save();
+    }
+
+    @DataBoundSetter
+    public void setChangeSubscriptionCredentialsId(final String changeSubscriptionCredentialsId) {
+        this.changeSubscriptionCredentialsId =
+                changeSubscriptionCredentialsId == null || changeSubscriptionCredentialsId.isBlank()
+                        ? null
+                        : changeSubscriptionCredentialsId;
+        save();
+    }
+
+    public List<GcpProject> getMirroredProjects() {
+        return mirroredProjects;
+    }
+
+    public int getMirrorRefreshMinutes() {
+        return mirrorRefreshMinutes;
+    }
+
+    public boolean isAgentWorker() {
+        return agentWorker;
+    }
+
+    public int getAgentWorkerIdleMinutes() {
+        return agentWorkerIdleMinutes;
+    }
+
+    public int getAgentWorkerQueueSize() {
+        return agentWorkerQueueSize;
+    }
+
+    public boolean isControllerExecutor() {
+        return controllerExecutor;
+    }
+
+    public int getControllerExecutorQueueSize() {
+        return controllerExecutorQueueSize;
+    }
+
+    public boolean isPrewarmCredentials() {
+        return prewarmCredentials;
+    }
+
+    public String getFirewallBackend() {
+        return firewallBackend;
+    }
+
+    public ListBoxModel doFillFirewallBackendItems() {
+        final var items = new ListBoxModel();
+        FirewallBackend.all().forEach(backend -> items.add(backend.getDisplayName(), backend.getId()));
+        return items;
+    }
+
+    public String getCacheStore() {
+        return cacheStore;
+    }
+
+    public String getCacheStoreUri() {
+        return cacheStoreUri;
+    }
+
+    public Secret getCacheStorePassword() {
+        return cacheStorePassword;
+    }
+
+    public String getChangeSubscription() {
+        return changeSubscription;
+    }
+
+    public String getChangeSubscriptionCredentialsId() {
+        return changeSubscriptionCredentialsId;
+    }
+
+    public ListBoxModel doFillCacheStoreItems() {
+        final var items = new ListBoxModel();
+        FirewallCacheStore.all().forEach(store -> items.add(store.getDisplayName(), store.getId()));
+        return items;
+    }
+
+    /**
+     * @return the mirrored project, {@code null} for projects configured without credentials, which are not mirrored
+     */
+    GcpProject getMirroredProject(final String project) {
+        return mirroredProjects.stream()
+                .filter(mirroredProject -> mirroredProject.getProject().equals(project))
+                .filter(mirroredProject -> mirroredProject.getCredentialsId() != null
+                        && !mirroredProject.getCredentialsId().isBlank())
+                .findFirst()
+                .orElse(null);
+    }
+
+    @Override
+    public boolean configure(final StaplerRequest req, final JSONObject json) throws FormException {
+        checkMirroredProjects(json);
+        mirroredProjects = new ArrayList<>();
+        return super.configure(req, json);
+    }
+
+    /**
+     * The mirror is only served to builds authenticated with the credentials of the project, a project mirrored
+     * without them would be refreshed for nothing.
+     */
+    static void checkMirroredProjects(final JSONObject json) throws FormException {
+        final var projects = json.opt("mirroredProjects");
+        final List<?> entries =
+                projects instanceof JSONArray ? (JSONArray) projects : projects == null ? List.of() : List.of(projects);
+        for (final var entry : entries) {
+            if (entry instanceof JSONObject && ((JSONObject) entry).optString("credentialsId").isBlank()) {
+                throw new FormException(
+                        "The mirrored project " + ((JSONObject) entry).optString("project")
+                                + " requires a credentials id",
+                        "mirroredProjects");
+            }
+        }
+    }
+}
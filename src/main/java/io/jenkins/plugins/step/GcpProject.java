@@ -0,0 +1,45 @@
+package io.jenkins.plugins.step;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import java.io.Serializable;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+public class GcpProject extends AbstractDescribableImpl<GcpProject> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String project;
+    private String credentialsId;
+
+    @DataBoundConstructor
+    public GcpProject(final String project) {
+        this.project = project;
+    }
+
+    @DataBoundSetter
+    public void setCredentialsId(final String credentialsId) {
+        this.credentialsId = credentialsId;
+    }
+
+    public String getProject() {
+        return project;
+    }
+
+    public String getCredentialsId() {
+        return credentialsId;
+    }
+
+    @Extension
+    public static class DescriptorImpl extends Descriptor<GcpProject> {
+
+        @Override
+        @NonNull
+        public String getDisplayName() {
+            return "GCP project";
+        }
+    }
+}
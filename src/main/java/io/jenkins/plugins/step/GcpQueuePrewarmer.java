@@ -0,0 +1,131 @@
+package io.jenkins.plugins.step;
+
+import hudson.Extension;
+import hudson.model.Computer;
+import hudson.model.Job;
+import hudson.model.OneOffExecutor;
+import hudson.model.Queue;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.queue.QueueListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Prepares the credentials of {@code withGCP} while the builds using them wait in the queue, so the step does not pay
+ * for them once the build has an executor: the credentials are looked up, the token of the
+ * {@link ControllerExecutor} is minted, and the gcloud of the agent a node block is assigned to is detected.
+ * The credentials of a job are the ones its last builds used, recorded by {@link GcpCredentialsUsageAction}.
+ */
+@Extension
+public class GcpQueuePrewarmer extends QueueListener {
+
+    private static final Logger LOGGER = Logger.getLogger(GcpQueuePrewarmer.class.getName());
+    private static final int BUILDS = 3;
+
+    private final Map<String, Long> prewarmedAt = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            2,
+            2,
+            1,
+            TimeUnit.MINUTES,
+            new ArrayBlockingQueue<>(64),
+            new NamingThreadFactory(new DaemonThreadFactory(), "GCP credentials pre-warming"),
+            new ThreadPoolExecutor.DiscardPolicy());
+
+    public GcpQueuePrewarmer() {
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void onEnterWaiting(final Queue.WaitingItem wi) {
+        final var configuration = GcpPluginConfiguration.getOrNull();
+        if (configuration == null || !configuration.isPrewarmCredentials()) {
+            return;
+        }
+        final var credentialsIds = credentialsIds(wi.task);
+        if (!credentialsIds.isEmpty()) {
+            executor.execute(() -> prewarm(configuration, credentialsIds, System.currentTimeMillis()));
+        }
+    }
+
+    @Override
+    public void onLeft(final Queue.LeftItem li) {
+        final var configuration = GcpPluginConfiguration.getOrNull();
+        if (li.isCancelled() || configuration == null || !configuration.isPrewarmCredentials()) {
+            return;
+        }
+        final var workUnit = li.outcome == null ? null : li.outcome.getPrimaryWorkUnit();
+        final var assigned = workUnit == null ? null : workUnit.getExecutor();
+        // flyweight tasks, like the build of a pipeline outside of its node blocks, do not run gcloud
+        if (assigned == null || assigned instanceof OneOffExecutor || credentialsIds(li.task).isEmpty()) {
+            return;
+        }
+        final var computer = assigned.getOwner();
+        executor.execute(() -> detectGcloud(computer));
+    }
+
+    /**
+     * @return the credentials used by the latest of the last builds of the job of the task that used any
+     */
+    static Set<String> credentialsIds(final Queue.Task task) {
+        final var owner = task.getOwnerTask();
+        if (!(owner instanceof Job)) {
+            return Set.of();
+        }
+        Run<?, ?> run = ((Job<?, ?>) owner).getLastBuild();
+        for (int i = 0; i < BUILDS && run != null; i++, run = run.getPreviousBuild()) {
+            final var action = run.getAction(GcpCredentialsUsageAction.class);
+            if (action != null) {
+                return action.getCredentialsIds();
+            }
+        }
+        return Set.of();
+    }
+
+    /**
+     * Prepares every credentials at most once per {@link GcpCredentials#PREWARMED_MILLIS}, while they are still fresh.
+     */
+    void prewarm(final GcpPluginConfiguration configuration, final Set<String> credentialsIds, final long now) {
+        for (final var credentialsId : credentialsIds) {
+            final var previous = prewarmedAt.get(credentialsId);
+            if (previous != null && now - previous < GcpCredentials.PREWARMED_MILLIS / 2) {
+                continue;
+            }
+            prewarmedAt.put(credentialsId, now);
+            try {
+                final var fileCreds = GcpCredentials.prewarm(credentialsId);
+                if (fileCreds != null) {
+                    ControllerExecutor.prewarm(configuration, credentialsId, fileCreds);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (final Exception e) {
+                LOGGER.log(Level.FINE, "Failed to pre-warm the GCP credentials " + credentialsId, e);
+            }
+        }
+    }
+
+    private static void detectGcloud(final Computer computer) {
+        final var node = computer.getNode();
+        if (node == null) {
+            return;
+        }
+        try {
+            GcloudProfile.of(computer, node.createLauncher(TaskListener.NULL), computer.getEnvironment());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final Exception e) {
+            LOGGER.log(Level.FINE, "Failed to detect gcloud on " + computer.getName(), e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package io.jenkins.plugins.step;
+
+import hudson.model.Run;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.jenkinsci.plugins.scriptsecurity.sandbox.whitelists.Whitelisted;
+
+/**
+ * Output of a step stored in a gzipped file of the build on the controller. Only the reference is kept in the program
+ * state of the pipeline, the content is loaded when first read and then kept as long as memory allows.
+ */
+public final class GcpResultHandle implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    static final String DIRECTORY = "gcp-results";
+
+    private final String runId;
+    private final String blob;
+    private final long size;
+    private transient SoftReference<String> text;
+
+    private GcpResultHandle(final String runId, final String blob, final long size, final String text) {
+        this.runId = runId;
+        this.blob = blob;
+        this.size = size;
+        this.text = new SoftReference<>(text);
+    }
+
+    static GcpResultHandle store(final Run<?, ?> run, final String text) throws IOException {
+        final var directory = new File(run.getRootDir(), DIRECTORY);
+        Files.createDirectories(directory.toPath());
+        final var blob = UUID.randomUUID() + ".gz";
+        final var bytes = text.getBytes(StandardCharsets.UTF_8);
+        try (var outputStream = new GZIPOutputStream(Files.newOutputStream(new File(directory, blob).toPath()))) {
+            outputStream.write(bytes);
+        }
+        return new GcpResultHandle(run.getExternalizableId(), blob, bytes.length, text);
+    }
+
+    /**
+     * @return the content, loaded from the build when it is not in memory anymore
+     */
+    @Whitelisted
+    public String getText() throws IOException {
+        final var cached = text == null ? null : text.get();
+        if (cached != null) {
+            return cached;
+        }
+        final var loaded = load(getFile());
+        text = new SoftReference<>(loaded);
+        return loaded;
+    }
+
+    /**
+     * @return the size of the content in bytes, without loading it
+     */
+    @Whitelisted
+    public long getSize() {
+        return size;
+    }
+
+    File getFile() {
+        final var run = Run.fromExternalizableId(runId);
+        if (run == null) {
+            throw new IllegalArgumentException("Build " + runId + " holding the result " + blob + " does not exist");
+        }
+        return new File(new File(run.getRootDir(), DIRECTORY), blob);
+    }
+
+    static String load(final File file) throws IOException {
+        try (var inputStream = new GZIPInputStream(Files.newInputStream(file.toPath()))) {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * @return the content, so the handle can be used where the step used to return a string
+     */
+    @Override
+    @Whitelisted
+    public String toString() {
+        try {
+            return getText();
+        } catch (final IOException e) {
+            throw new IllegalArgumentException("Failed to read the result " + blob + " of build " + runId, e);
+        }
+    }
+}
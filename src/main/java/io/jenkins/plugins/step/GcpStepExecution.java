@@ -0,0 +1,379 @@
+package io.jenkins.plugins.step;
+
+import hudson.EnvVars;
+import hudson.Launcher;
+import hudson.model.Computer;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.remoting.Callable;
+import hudson.remoting.VirtualChannel;
+import hudson.util.ArgumentListBuilder;
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.SynchronousStepExecution;
+
+/**
+ * Base of the step executions, recording their queue wait, duration and GCP calls in {@link GcpMetrics},
+ * {@link GcpTracing} and the {@link GcpBuildStatsAction} of the build.
+ */
+abstract class GcpStepExecution<T> extends SynchronousStepExecution<T> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient String functionName;
+    private final transient long createdNanos = System.nanoTime();
+    private transient String project = GcpMetrics.UNKNOWN_PROJECT;
+    private transient GcpTracing.Span span;
+    private transient GcpBuildStatsAction.Invocation invocation;
+    private transient Launcher backendLauncher;
+    private String memoKey;
+    private long memoWindowMillis;
+    private boolean memoAcrossBuilds;
+
+    GcpStepExecution(final StepContext context, final String functionName) {
+        super(context);
+        this.functionName = functionName;
+    }
+
+    @Override
+    protected final T run() throws Exception {
+        final var start = System.nanoTime();
+        invocation = new GcpBuildStatsAction.Invocation();
+        project = GcpMetrics.project(getContext().get(EnvVars.class));
+        GcpMetrics.observeQueue(functionName, project, start - createdNanos);
+
+        var failed = true;
+        try (var span = GcpTracing.start(functionName)) {
+            this.span = span;
+            span.setAttribute("gcp.project", project);
+            try {
+                final var result = execute();
+                failed = false;
+                return result;
+            } catch (final Exception e) {
+                span.recordException(e);
+                throw e;
+            }
+        } finally {
+            final var nanos = System.nanoTime() - start;
+            GcpMetrics.observeStep(functionName, project, nanos, failed);
+            invocation.finished(nanos, failed);
+            GcpBuildStatsAction.record(getContext().get(Run.class), functionName, invocation);
+        }
+    }
+
+    protected abstract T execute() throws Exception;
+
+    /**
+     * A memoized step interrupted by a restart of the controller after recording its result completes with it,
+     * instead of failing as synchronous steps do.
+     */
+    @Override
+    public void onResume() {
+        final var entry = recall();
+        if (entry == null) {
+            super.onResume();
+            return;
+        }
+        try {
+            getContext().onSuccess(resume(entry));
+        } catch (final Exception e) {
+            getContext().onFailure(e);
+        }
+    }
+
+    /**
+     * @return the result of the step from its memoized entry
+     */
+    protected Object resume(final GcpMemoAction.Entry entry) throws Exception {
+        return null;
+    }
+
+    /**
+     * Enables the memoization of this step when the window is positive.
+     *
+     * @param arguments canonical form of the arguments of the step
+     * @param readOnly whether the step only reads from GCP, the entry of a mutating step is only reused when this
+     *     execution resumes, since an identical step may run again on purpose after a step undoing it
+     * @return the entry recorded by an identical read-only step of this build or of the recent build it replays or
+     *     restarts, or {@code null}
+     */
+    GcpMemoAction.Entry recall(final int windowSeconds, final String arguments, final boolean readOnly)
+            throws IOException, InterruptedException {
+        if (windowSeconds <= 0) {
+            return null;
+        }
+        final var envVars = getContext().get(EnvVars.class);
+        final var account = envVars == null ? null : envVars.get("CLOUDSDK_CORE_ACCOUNT");
+        final var execution = readOnly ? "" : "\n" + UUID.randomUUID();
+        memoKey = CanonicalJson.sha256(functionName + "\n" + project + "\n" + account + "\n" + arguments + execution);
+        memoWindowMillis = TimeUnit.SECONDS.toMillis(windowSeconds);
+        memoAcrossBuilds = readOnly;
+        if (!readOnly) {
+            return null;
+        }
+
+        final var entry = recall();
+        final var listener = getContext().get(TaskListener.class);
+        if (entry != null && listener != null) {
+            final var age = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - entry.getRecordedAt());
+            listener.getLogger()
+                    .println("Reusing the result of " + entry.getStep() + " from build #" + entry.getBuild() + ", "
+                            + age + "s ago");
+        }
+        if (entry != null) {
+            observeCacheHit("memo");
+        }
+        return entry;
+    }
+
+    private GcpMemoAction.Entry recall() {
+        final Run<?, ?> run;
+        try {
+            run = memoKey == null ? null : getContext().get(Run.class);
+        } catch (final IOException | InterruptedException e) {
+            return null;
+        }
+        return run == null
+                ? null
+                : GcpMemoAction.recall(run, memoKey, memoWindowMillis, System.currentTimeMillis(), memoAcrossBuilds);
+    }
+
+    boolean isMemoized() {
+        return memoKey != null;
+    }
+
+    /**
+     * Records the completion of a memoized step, with its result for read-only steps.
+     */
+    void remember(final GcpResultHandle result) throws IOException, InterruptedException {
+        final var run = memoKey == null ? null : getContext().get(Run.class);
+        if (run != null) {
+            GcpMemoAction.record(
+                    run,
+                    memoKey,
+                    new GcpMemoAction.Entry(functionName, run.getNumber(), System.currentTimeMillis(), result));
+        }
+    }
+
+    String getFunctionName() {
+        return functionName;
+    }
+
+    String getProject() {
+        return project;
+    }
+
+    /**
+     * Selects the {@link FirewallBackend} of the build for the gcloud commands of a firewall step.
+     *
+     * @return the launcher running them, the one of the node for gcloud
+     */
+    Launcher firewallLauncher(final Launcher launcher, final EnvVars envVars) throws IOException, InterruptedException {
+        backendLauncher = FirewallBackend.launcher(getContext().get(TaskListener.class), envVars);
+        return backendLauncher == null ? launcher : backendLauncher;
+    }
+
+    /**
+     * @return whether the firewall step runs gcloud, the Compute API and the mirror of the rules only apply to it
+     */
+    boolean usesGcloud() {
+        return backendLauncher == null;
+    }
+
+    /**
+     * Starts building a quiet gcloud process with the {@link GcloudProfile} of the node.
+     */
+    Launcher.ProcStarter launch(final Launcher launcher, final ArgumentListBuilder cmd, final EnvVars envVars)
+            throws IOException, InterruptedException {
+        if (launcher == null) {
+            throw new IllegalArgumentException(
+                    functionName + " needs gcloud with these arguments, use it inside a node block!");
+        }
+        if (launcher == backendLauncher) {
+            return GcloudProfile.DEFAULT.launch(launcher, cmd, envVars);
+        }
+        return GcloudProfile.of(getContext().get(Computer.class), launcher, envVars).launch(launcher, cmd, envVars);
+    }
+
+    /**
+     * Runs the request with the {@link GcloudWorker} of the agent when it is enabled, or with the
+     * {@link ControllerExecutor} when the step is used outside of a node.
+     *
+     * @return the output of the request, or {@code null} if the worker is disabled or busy, or another
+     *     {@link FirewallBackend} is selected, and gcloud should be started
+     */
+    String callWorker(final Launcher launcher, final EnvVars envVars, final GcloudWorker.Request request)
+            throws IOException, InterruptedException {
+        if (!usesGcloud()) {
+            return null;
+        }
+        if (launcher == null) {
+            return callController(envVars, request);
+        }
+        final var configuration = GcpPluginConfiguration.getOrNull();
+        final var channel = launcher.getChannel();
+        if (configuration == null || !configuration.isAgentWorker() || channel == null) {
+            return null;
+        }
+
+        final var profile = GcloudProfile.of(getContext().get(Computer.class), launcher, envVars);
+        return callAgent(
+                channel,
+                new GcloudWorker.Call(
+                        profile.getExecutable(),
+                        profile.environment(envVars),
+                        TimeUnit.MINUTES.toMillis(configuration.getAgentWorkerIdleMinutes()),
+                        Math.max(1, configuration.getAgentWorkerQueueSize()),
+                        request),
+                GcloudWorker.BACKEND);
+    }
+
+    /**
+     * Runs a request gcloud has no command for, with the {@link GcloudWorker} of the agent when it is enabled and not
+     * busy, otherwise once on the agent with an access token of gcloud.
+     */
+    String callComputeApi(final Launcher launcher, final EnvVars envVars, final GcloudWorker.Request request)
+            throws IOException, InterruptedException {
+        final var output = callWorker(launcher, envVars, request);
+        if (output != null) {
+            return output;
+        }
+        final var channel = launcher.getChannel();
+        if (channel == null) {
+            throw new IllegalArgumentException(functionName + " requires a node connected to the controller");
+        }
+        final var profile = GcloudProfile.of(getContext().get(Computer.class), launcher, envVars);
+        return callAgent(
+                channel,
+                new GcloudWorker.OneShot(profile.getExecutable(), profile.environment(envVars), request),
+                GcloudWorker.ONE_SHOT_BACKEND);
+    }
+
+    private String callController(final EnvVars envVars, final GcloudWorker.Request request)
+            throws IOException, InterruptedException {
+        final var start = System.nanoTime();
+        try (var callSpan = GcpTracing.start("gcloud " + ControllerExecutor.BACKEND, span)) {
+            final String output;
+            try {
+                output = ControllerExecutor.call(GcpPluginConfiguration.getOrNull(), functionName, envVars, request);
+            } catch (final IOException e) {
+                callSpan.recordException(e);
+                observeCall(ControllerExecutor.BACKEND, start, true);
+                throw new IllegalArgumentException("Failed to call the Compute API: " + e.getMessage(), e);
+            }
+            observeCall(ControllerExecutor.BACKEND, start, false);
+            return output;
+        }
+    }
+
+    private String callAgent(
+            final VirtualChannel channel, final Callable<String, IOException> call, final String backend)
+            throws IOException, InterruptedException {
+        final var start = System.nanoTime();
+        try (var callSpan = GcpTracing.start("gcloud " + backend, span)) {
+            final String output;
+            try {
+                output = channel.call(call);
+            } catch (final IOException e) {
+                callSpan.recordException(e);
+                observeCall(backend, start, true);
+                throw new IllegalArgumentException("Failed to call the Compute API: " + e.getMessage(), e);
+            }
+            if (output != null) {
+                observeCall(backend, start, false);
+            }
+            return output;
+        }
+    }
+
+    int join(final Launcher.ProcStarter starter) throws IOException, InterruptedException {
+        return join(starter, project);
+    }
+
+    /**
+     * Runs gcloud, recording the time until the process exits and whether it failed. The span is explicitly parented
+     * to the one of the step, because some steps run gcloud from other threads.
+     */
+    int join(final Launcher.ProcStarter starter, final String project) throws IOException, InterruptedException {
+        return join(starter, project, starter::join);
+    }
+
+    /**
+     * Like {@link #join(Launcher.ProcStarter, String)}, for gcloud started by {@code process}, e.g. to stream its
+     * output before waiting for it.
+     */
+    int join(final Launcher.ProcStarter starter, final String project, final GcloudProcess process)
+            throws IOException, InterruptedException {
+        final var start = System.nanoTime();
+        invocation().usedBackend(GcpMetrics.GCLOUD);
+        var failed = true;
+        try (var callSpan = GcpTracing.start("gcloud", span)) {
+            if (callSpan.isRecording()) {
+                callSpan.setAttribute("gcp.project", project)
+                        .setAttribute("process.command_line", String.join(" ", starter.cmds()));
+            }
+            final var result = process.run();
+            failed = result != 0;
+            if (failed) {
+                callSpan.recordException(new IOException("gcloud exited with code " + result));
+            }
+            return result;
+        } finally {
+            GcpMetrics.observeCall(functionName, project, GcpMetrics.GCLOUD, System.nanoTime() - start, failed);
+        }
+    }
+
+    interface GcloudProcess {
+        int run() throws IOException, InterruptedException;
+    }
+
+    void observeCall(final long startNanos, final boolean failed) {
+        observeCall(GcpMetrics.GCLOUD, startNanos, failed);
+    }
+
+    private void observeCall(final String backend, final long startNanos, final boolean failed) {
+        invocation().usedBackend(backend);
+        GcpMetrics.observeCall(functionName, project, backend, System.nanoTime() - startNanos, failed);
+    }
+
+    void observeOutput(final long bytes) {
+        invocation().transferred(bytes);
+        GcpMetrics.observeOutput(functionName, project, bytes);
+    }
+
+    void observeOutput(final String project, final long bytes) {
+        invocation().transferred(bytes);
+        GcpMetrics.observeOutput(functionName, project, bytes);
+    }
+
+    /**
+     * Marks the step as answered from a cache instead of GCP.
+     */
+    void observeCacheHit(final String backend) {
+        invocation().cacheHit(backend);
+    }
+
+    void observeRetry(final String backend) {
+        invocation().retried();
+        GcpMetrics.retried(functionName, project, backend);
+    }
+
+    void observeCoalesced() {
+        invocation().coalesced();
+    }
+
+    /**
+     * The invocation being recorded, or a throwaway one when {@link #execute()} is called without {@link #run()}.
+     */
+    private GcpBuildStatsAction.Invocation invocation() {
+        var result = invocation;
+        if (result == null) {
+            result = new GcpBuildStatsAction.Invocation();
+            invocation = result;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,169 @@
+package io.jenkins.plugins.step;
+
+import java.lang.reflect.Method;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+
+/**
+ * Trace spans reported to the OpenTelemetry API when another plugin (e.g. the OpenTelemetry plugin) provides it, and
+ * no-ops otherwise. The API is looked up through the class loader of all plugins, so this plugin does not depend on it.
+ */
+final class GcpTracing {
+
+    private static final Logger LOGGER = Logger.getLogger(GcpTracing.class.getName());
+    private static final String INSTRUMENTATION_SCOPE = "io.jenkins.plugins.pipeline-gcp";
+
+    private static volatile Bridge bridge;
+
+    private GcpTracing() {}
+
+    /**
+     * Starts a span, child of the current span of this thread, and makes it the current span until it is closed.
+     */
+    static Span start(final String name) {
+        return start(name, null);
+    }
+
+    /**
+     * Starts a span, child of the given span, which may have been started by another thread.
+     */
+    static Span start(final String name, final Span parent) {
+        final var bridge = bridge();
+        if (bridge == null) {
+            return Span.NOOP;
+        }
+        try {
+            var builder = bridge.spanBuilder.invoke(bridge.tracer, name);
+            if (parent != null && parent.span != null) {
+                final var parentContext =
+                        bridge.storeInContext.invoke(parent.span, bridge.currentContext.invoke(null));
+                builder = bridge.setParent.invoke(builder, parentContext);
+            }
+            final var span = bridge.startSpan.invoke(builder);
+            return new Span(bridge, span, bridge.makeCurrent.invoke(span));
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "Failed to start span " + name, e);
+            return Span.NOOP;
+        }
+    }
+
+    private static Bridge bridge() {
+        var result = bridge;
+        if (result == null) {
+            result = Bridge.load();
+            bridge = result;
+        }
+        return result == Bridge.NONE ? null : result;
+    }
+
+    static final class Span implements AutoCloseable {
+        private static final Span NOOP = new Span(null, null, null);
+
+        private final Bridge bridge;
+        private final Object span;
+        private final Object scope;
+
+        private Span(final Bridge bridge, final Object span, final Object scope) {
+            this.bridge = bridge;
+            this.span = span;
+            this.scope = scope;
+        }
+
+        boolean isRecording() {
+            return span != null && (boolean) invoke(bridge.isRecording);
+        }
+
+        Span setAttribute(final String key, final String value) {
+            if (span != null && value != null) {
+                invoke(bridge.setAttribute, key, value);
+            }
+            return this;
+        }
+
+        void recordException(final Throwable throwable) {
+            if (span != null) {
+                invoke(bridge.recordException, throwable);
+                invoke(bridge.setStatus, bridge.error);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (span != null) {
+                try {
+                    bridge.closeScope.invoke(scope);
+                } catch (final ReflectiveOperationException | RuntimeException e) {
+                    LOGGER.log(Level.FINE, "Failed to close span scope", e);
+                }
+                invoke(bridge.end);
+            }
+        }
+
+        private Object invoke(final Method method, final Object... args) {
+            try {
+                return method.invoke(span, args);
+            } catch (final ReflectiveOperationException | RuntimeException e) {
+                LOGGER.log(Level.FINE, "Failed to call " + method.getName() + " on span", e);
+                return false;
+            }
+        }
+    }
+
+    private static final class Bridge {
+        private static final Bridge NONE = new Bridge();
+
+        private Object tracer;
+        private Object error;
+        private Method spanBuilder;
+        private Method setParent;
+        private Method startSpan;
+        private Method makeCurrent;
+        private Method currentContext;
+        private Method storeInContext;
+        private Method isRecording;
+        private Method setAttribute;
+        private Method recordException;
+        private Method setStatus;
+        private Method end;
+        private Method closeScope;
+
+        private static Bridge load() {
+            final var jenkins = Jenkins.getInstanceOrNull();
+            final var classLoader =
+                    jenkins == null ? GcpTracing.class.getClassLoader() : jenkins.getPluginManager().uberClassLoader;
+            try {
+                final var globalOpenTelemetry = classLoader.loadClass("io.opentelemetry.api.GlobalOpenTelemetry");
+                final var tracerClass = classLoader.loadClass("io.opentelemetry.api.trace.Tracer");
+                final var spanBuilderClass = classLoader.loadClass("io.opentelemetry.api.trace.SpanBuilder");
+                final var spanClass = classLoader.loadClass("io.opentelemetry.api.trace.Span");
+                final var statusCodeClass = classLoader.loadClass("io.opentelemetry.api.trace.StatusCode");
+                final var contextClass = classLoader.loadClass("io.opentelemetry.context.Context");
+                final var implicitContextKeyedClass =
+                        classLoader.loadClass("io.opentelemetry.context.ImplicitContextKeyed");
+                final var scopeClass = classLoader.loadClass("io.opentelemetry.context.Scope");
+
+                final var bridge = new Bridge();
+                bridge.tracer =
+                        globalOpenTelemetry.getMethod("getTracer", String.class).invoke(null, INSTRUMENTATION_SCOPE);
+                bridge.error = statusCodeClass.getField("ERROR").get(null);
+                bridge.spanBuilder = tracerClass.getMethod("spanBuilder", String.class);
+                bridge.setParent = spanBuilderClass.getMethod("setParent", contextClass);
+                bridge.startSpan = spanBuilderClass.getMethod("startSpan");
+                bridge.makeCurrent = implicitContextKeyedClass.getMethod("makeCurrent");
+                bridge.currentContext = contextClass.getMethod("current");
+                bridge.storeInContext = implicitContextKeyedClass.getMethod("storeInContext", contextClass);
+                bridge.isRecording = spanClass.getMethod("isRecording");
+                bridge.setAttribute = spanClass.getMethod("setAttribute", String.class, String.class);
+                bridge.recordException = spanClass.getMethod("recordException", Throwable.class);
+                bridge.setStatus = spanClass.getMethod("setStatus", statusCodeClass);
+                bridge.end = spanClass.getMethod("end");
+                bridge.closeScope = scopeClass.getMethod("close");
+                return bridge;
+            } catch (final ReflectiveOperationException | LinkageError e) {
+                LOGGER.log(Level.FINE, "OpenTelemetry API not available, tracing is disabled", e);
+                return NONE;
+            }
+        }
+    }
+}
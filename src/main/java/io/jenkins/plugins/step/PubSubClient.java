@@ -0,0 +1,140 @@
+package io.jenkins.plugins.step;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Minimal client pulling and acknowledging the messages of a Pub/Sub subscription, or of the Pub/Sub emulator when
+ * {@value #EMULATOR_HOST} is set.
+ */
+final class PubSubClient {
+
+    static final String DEFAULT_ENDPOINT = "https://pubsub.googleapis.com/v1/";
+    static final String EMULATOR_HOST = "PUBSUB_EMULATOR_HOST";
+
+    private static final Duration TIMEOUT = Duration.ofMinutes(1);
+
+    private final HttpClient httpClient =
+            HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(30)).build();
+    private final String endpoint;
+
+    PubSubClient(final String endpoint) {
+        this.endpoint = endpoint == null ? DEFAULT_ENDPOINT : endpoint.endsWith("/") ? endpoint : endpoint + "/";
+    }
+
+    /**
+     * @return the endpoint of the emulator set in the environment of the controller, or {@code null}
+     */
+    static String emulatorEndpoint() {
+        final var host = System.getenv(EMULATOR_HOST);
+        return host == null || host.isEmpty() ? null : "http://" + host + "/v1/";
+    }
+
+    String getEndpoint() {
+        return endpoint;
+    }
+
+    boolean isEmulator() {
+        return !DEFAULT_ENDPOINT.equals(endpoint);
+    }
+
+    /**
+     * Waits for messages like the Pub/Sub API does when none is available yet, an empty list means none arrived.
+     *
+     * @param subscription the full name of the subscription, {@code projects/<project>/subscriptions/<name>}
+     * @param token the access token, or {@code null} for the emulator
+     */
+    List<ReceivedMessage> pull(final String subscription, final int maxMessages, final String token)
+            throws IOException, InterruptedException {
+        final JSONObject response;
+        try {
+            response = send(subscription + ":pull", new JSONObject().put("maxMessages", maxMessages), token);
+        } catch (final HttpTimeoutException e) {
+            return List.of();
+        }
+        final var received = response.optJSONArray("receivedMessages");
+        final var messages = new ArrayList<ReceivedMessage>();
+        for (int i = 0; received != null && i < received.length(); i++) {
+            final var item = received.getJSONObject(i);
+            final var message = item.optJSONObject("message");
+            final var data = message == null ? "" : message.optString("data");
+            try {
+                messages.add(new ReceivedMessage(
+                        item.getString("ackId"),
+                        new String(Base64.getDecoder().decode(data), StandardCharsets.UTF_8),
+                        message == null ? null : message.optString("publishTime", null)));
+            } catch (final IllegalArgumentException | JSONException e) {
+                throw new IOException("Pull of " + subscription + " returned an invalid message", e);
+            }
+        }
+        return messages;
+    }
+
+    void acknowledge(final String subscription, final List<String> ackIds, final String token)
+            throws IOException, InterruptedException {
+        if (!ackIds.isEmpty()) {
+            send(subscription + ":acknowledge", new JSONObject().put("ackIds", new JSONArray(ackIds)), token);
+        }
+    }
+
+    private JSONObject send(final String path, final JSONObject body, final String token)
+            throws IOException, InterruptedException {
+        final var request = HttpRequest.newBuilder(URI.create(endpoint + path))
+                .timeout(TIMEOUT)
+                .header("Accept", "application/json")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()));
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        final var response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException(
+                    "POST " + path + " returned " + response.statusCode() + ": " + response.body().trim());
+        }
+        try {
+            return response.body().isBlank() ? new JSONObject() : new JSONObject(response.body());
+        } catch (final JSONException e) {
+            throw new IOException("POST " + path + " returned an invalid response", e);
+        }
+    }
+
+    static final class ReceivedMessage {
+        private final String ackId;
+        private final String data;
+        private final String publishTime;
+
+        ReceivedMessage(final String ackId, final String data, final String publishTime) {
+            this.ackId = ackId;
+            this.data = data;
+            this.publishTime = publishTime;
+        }
+
+        String getAckId() {
+            return ackId;
+        }
+
+        String getData() {
+            return data;
+        }
+
+        /**
+         * @return the RFC 3339 time the message was published at, or {@code null}
+         */
+        String getPublishTime() {
+            return publishTime;
+        }
+    }
+}
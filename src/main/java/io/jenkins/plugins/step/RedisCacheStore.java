@@ -0,0 +1,285 @@
+package io.jenkins.plugins.step;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.util.Secret;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Keeps the entries in a server speaking the Redis protocol, shared by every controller configured with it. Each entry
+ * is a hash holding its version and value: a value is only replaced in a transaction watching the hash, and an
+ * invalidation increments the version and removes the value in a single transaction.
+ */
+@Extension
+public class RedisCacheStore extends FirewallCacheStore {
+
+    static final String ID = "redis";
+    static final String KEY_PREFIX = "jenkins-pipeline-gcp:";
+    static final int TIMEOUT_MILLIS = 5000;
+
+    private static final String VERSION = "version";
+    private static final String VALUE = "value";
+
+    private final String fixedUri;
+    private final String fixedPassword;
+    private Connection connection;
+    private String connectionSettings;
+
+    public RedisCacheStore() {
+        this(null, null);
+    }
+
+    /**
+     * @param uri the {@code redis://} or {@code rediss://} URI of the server, {@code null} to read it and the password
+     *     from the GCP configuration
+     */
+    RedisCacheStore(final String uri, final String password) {
+        this.fixedUri = uri;
+        this.fixedPassword = password;
+    }
+
+    @NonNull
+    @Override
+    public String getId() {
+        return ID;
+    }
+
+    @NonNull
+    @Override
+    public String getDisplayName() {
+        return "Redis protocol server";
+    }
+
+    @Override
+    public long getVersion(@NonNull final String key) throws IOException {
+        return call(connection -> version(connection.call("HGET", KEY_PREFIX + key, VERSION)));
+    }
+
+    @NonNull
+    @Override
+    public Entry get(@NonNull final String key) throws IOException {
+        return call(connection -> {
+            final var fields = (List<?>) connection.call("HMGET", KEY_PREFIX + key, VERSION, VALUE);
+            return new Entry(version(fields.get(0)), (String) fields.get(1));
+        });
+    }
+
+    @Override
+    public boolean compareAndSet(@NonNull final String key, final long expectedVersion, @NonNull final String value)
+            throws IOException {
+        final var redisKey = KEY_PREFIX + key;
+        return call(connection -> {
+            connection.call("WATCH", redisKey);
+            final var version = version(connection.call("HGET", redisKey, VERSION));
+            if (version != expectedVersion) {
+                connection.call("UNWATCH");
+                return false;
+            }
+            connection.call("MULTI");
+            connection.call("HSET", redisKey, VERSION, String.valueOf(version + 1), VALUE, value);
+            return connection.call("EXEC") != null;
+        });
+    }
+
+    @Override
+    public long invalidate(@NonNull final String key) throws IOException {
+        final var redisKey = KEY_PREFIX + key;
+        return call(connection -> {
+            connection.call("MULTI");
+            connection.call("HINCRBY", redisKey, VERSION, "1");
+            connection.call("HDEL", redisKey, VALUE);
+            return (Long) ((List<?>) connection.call("EXEC")).get(0);
+        });
+    }
+
+    private static long version(final Object version) {
+        return version == null ? 0 : Long.parseLong((String) version);
+    }
+
+    /**
+     * Runs the commands on the connection of the store, opened on first use and whenever the configured server
+     * changes. A connection failing is closed, and the commands are run again on a new one if the server closed it
+     * while it was idle.
+     */
+    private synchronized <T> T call(final Commands<T> commands) throws IOException {
+        final var uri = fixedUri != null ? fixedUri : GcpPluginConfiguration.get().getCacheStoreUri();
+        final var password = fixedUri != null
+                ? fixedPassword
+                : Secret.toString(GcpPluginConfiguration.get().getCacheStorePassword());
+        if (uri == null || uri.isEmpty()) {
+            throw new IllegalArgumentException("The Redis cache store requires a cache store URI");
+        }
+        final var settings = uri + '\n' + password;
+        if (connection != null && !settings.equals(connectionSettings)) {
+            close();
+        }
+        if (connection != null) {
+            try {
+                return commands.run(connection);
+            } catch (final EOFException | SocketException e) {
+                close();
+            } catch (final IOException | RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+        connection = new Connection(URI.create(uri), password);
+        connectionSettings = settings;
+        try {
+            return commands.run(connection);
+        } catch (final IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    synchronized void close() {
+        if (connection != null) {
+            connection.close();
+            connection = null;
+        }
+    }
+
+    private interface Commands<T> {
+        T run(Connection connection) throws IOException;
+    }
+
+    /**
+     * Minimal client of the Redis serialization protocol, returning simple and bulk strings as {@link String},
+     * integers as {@link Long}, arrays as {@link List} and nulls as {@code null}.
+     */
+    static final class Connection implements Closeable {
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+
+        Connection(final URI uri, final String password) throws IOException {
+            final var tls = "rediss".equals(uri.getScheme());
+            if (!tls && !"redis".equals(uri.getScheme())) {
+                throw new IllegalArgumentException(
+                        "Unsupported cache store URI " + uri + ", use redis:// or rediss://");
+            }
+            socket = tls ? SSLSocketFactory.getDefault().createSocket() : new Socket();
+            try {
+                if (tls) {
+                    // the default factory leaves the host unchecked, verify it against the certificate like HTTPS
+                    final var parameters = ((SSLSocket) socket).getSSLParameters();
+                    parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                    ((SSLSocket) socket).setSSLParameters(parameters);
+                }
+                socket.connect(
+                        new InetSocketAddress(uri.getHost(), uri.getPort() < 0 ? 6379 : uri.getPort()),
+                        TIMEOUT_MILLIS);
+                socket.setSoTimeout(TIMEOUT_MILLIS);
+                in = new BufferedInputStream(socket.getInputStream());
+                out = new BufferedOutputStream(socket.getOutputStream());
+                if (password != null && !password.isEmpty()) {
+                    final var user = uri.getUserInfo();
+                    if (user == null || user.isEmpty()) {
+                        call("AUTH", password);
+                    } else {
+                        call("AUTH", user, password);
+                    }
+                }
+                final var path = uri.getPath();
+                if (path != null && path.length() > 1) {
+                    call("SELECT", path.substring(1));
+                }
+            } catch (final IOException | RuntimeException e) {
+                socket.close();
+                throw e;
+            }
+        }
+
+        Object call(final String... args) throws IOException {
+            out.write(("*" + args.length + "\r\n").getBytes(StandardCharsets.UTF_8));
+            for (final var arg : args) {
+                final var bytes = arg.getBytes(StandardCharsets.UTF_8);
+                out.write(("$" + bytes.length + "\r\n").getBytes(StandardCharsets.UTF_8));
+                out.write(bytes);
+                out.write('\r');
+                out.write('\n');
+            }
+            out.flush();
+            return read();
+        }
+
+        private Object read() throws IOException {
+            final var type = in.read();
+            if (type == -1) {
+                throw new EOFException("Connection to the Redis server closed");
+            }
+            final var line = readLine();
+            switch (type) {
+                case '+':
+                    return line;
+                case '-':
+                    throw new IOException("Redis error: " + line);
+                case ':':
+                    return Long.parseLong(line);
+                case '$':
+                    final var length = Integer.parseInt(line);
+                    if (length < 0) {
+                        return null;
+                    }
+                    final var bytes = in.readNBytes(length + 2);
+                    if (bytes.length < length + 2) {
+                        throw new EOFException("Connection to the Redis server closed");
+                    }
+                    return new String(bytes, 0, length, StandardCharsets.UTF_8);
+                case '*':
+                    final var count = Integer.parseInt(line);
+                    if (count < 0) {
+                        return null;
+                    }
+                    final var elements = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        elements.add(read());
+                    }
+                    return elements;
+                default:
+                    throw new IOException("Unexpected Redis reply type " + (char) type);
+            }
+        }
+
+        private String readLine() throws IOException {
+            final var line = new ByteArrayOutputStream();
+            int previous = -1;
+            int current;
+            while ((current = in.read()) != -1) {
+                if (previous == '\r' && current == '\n') {
+                    final var bytes = line.toByteArray();
+                    return new String(bytes, 0, bytes.length - 1, StandardCharsets.UTF_8);
+                }
+                line.write(current);
+                previous = current;
+            }
+            throw new EOFException("Connection to the Redis server closed");
+        }
+
+        @Override
+        public void close() {
+            try {
+                socket.close();
+            } catch (final IOException e) {
+                // nothing left to release
+            }
+        }
+    }
+}
@@ -0,0 +1,458 @@
+package io.jenkins.plugins.step;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Computer;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.jenkinsci.plugins.plaincredentials.FileCredentials;
+import org.jenkinsci.plugins.workflow.steps.BodyExecution;
+import org.jenkinsci.plugins.workflow.steps.BodyExecutionCallback;
+import org.jenkinsci.plugins.workflow.steps.EnvironmentExpander;
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+public class WithGCPMatrixStep extends Step {
+
+    private final List<GcpProject> projects;
+    private int concurrency = 8;
+    private boolean failFast;
+    private boolean failOnError = true;
+
+    @DataBoundConstructor
+    public WithGCPMatrixStep(final List<GcpProject> projects) {
+        this.projects = projects;
+    }
+
+    @DataBoundSetter
+    public void setConcurrency(final int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    @DataBoundSetter
+    public void setFailFast(final boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    @DataBoundSetter
+    public void setFailOnError(final boolean failOnError) {
+        this.failOnError = failOnError;
+    }
+
+    public List<GcpProject> getProjects() {
+        return projects;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+    public boolean isFailOnError() {
+        return failOnError;
+    }
+
+    @Extension
+    public static class Descriptor extends StepDescriptor {
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+            return Set.of(EnvVars.class, Run.class, Launcher.class, FilePath.class, TaskListener.class);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "withGCPMatrix";
+        }
+
+        @Override
+        @NonNull
+        public String getDisplayName() {
+            return "Run the nested block once per GCP project";
+        }
+
+        @Override
+        public boolean takesImplicitBlockArgument() {
+            return true;
+        }
+    }
+
+    @Override
+    public StepExecution start(final StepContext context) {
+        return new WithGCPMatrixExecution(context, this);
+    }
+
+    /**
+     * Activates every distinct service account once, one after the other and off the CPS VM thread, then runs the body
+     * for every project with its own {@code CLOUDSDK_CORE_PROJECT} and {@code CLOUDSDK_CORE_ACCOUNT}, at most
+     * {@code concurrency} at a time. The bodies share the gcloud configuration of the node, and with it the cached
+     * access tokens of the accounts.
+     */
+    static final class WithGCPMatrixExecution extends StepExecution {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ArrayList<GcpProject> projects;
+        private final int concurrency;
+        private final boolean failFast;
+        private final boolean failOnError;
+        private final HashMap<String, String> accounts = new HashMap<>();
+        private final HashMap<String, Object> results = new HashMap<>();
+        private final HashMap<String, Throwable> failures = new HashMap<>();
+        private final ArrayList<BodyExecution> bodies = new ArrayList<>();
+        private int next;
+        private int running;
+        private boolean authenticated;
+        private boolean done;
+        private Throwable stopCause;
+        private transient ExecutorService activationPool;
+
+        WithGCPMatrixExecution(final StepContext context, final WithGCPMatrixStep step) {
+            super(context);
+            this.projects = step.getProjects() == null ? new ArrayList<>() : new ArrayList<>(step.getProjects());
+            this.concurrency = step.getConcurrency();
+            this.failFast = step.isFailFast();
+            this.failOnError = step.isFailOnError();
+        }
+
+        @Override
+        public boolean start() throws Exception {
+            if (projects.isEmpty()) {
+                throw new IllegalArgumentException("At least one project should be specified!");
+            }
+            if (projects.stream().map(GcpProject::getProject).distinct().count() != projects.size()) {
+                throw new IllegalArgumentException("Every project should be specified only once!");
+            }
+            if (concurrency < 1) {
+                throw new IllegalArgumentException("'concurrency' should be a positive number!");
+            }
+
+            final var start = System.nanoTime();
+            final var invocation = new GcpBuildStatsAction.Invocation();
+            invocation.usedBackend(GcpMetrics.GCLOUD);
+            final var run = getContext().get(Run.class);
+            try (var span = GcpTracing.start("withGCPMatrix")) {
+                span.setAttribute("gcp.projects", String.valueOf(projects.size()));
+                try {
+                    final var credentials = lookup(run);
+                    if (credentials.isEmpty()) {
+                        authenticated(run, start, invocation, null);
+                    } else {
+                        activate(credentials, span, run, start, invocation);
+                    }
+                } catch (final Exception e) {
+                    span.recordException(e);
+                    invocation.finished(System.nanoTime() - start, true);
+                    GcpBuildStatsAction.record(run, "withGCPMatrix", invocation);
+                    throw e;
+                }
+            }
+            return false;
+        }
+
+        private Map<String, FileCredentials> lookup(final Run<?, ?> run) {
+            final var credentials = new LinkedHashMap<String, FileCredentials>();
+            for (final var project : projects) {
+                final var credentialsId = project.getCredentialsId();
+                if (credentialsId != null && !credentials.containsKey(credentialsId)) {
+                    final var fileCreds = GcpCredentials.lookup(credentialsId);
+                    if (fileCreds == null) {
+                        throw new IllegalArgumentException("Couldn't find credentials file with id " + credentialsId);
+                    }
+                    credentials.put(credentialsId, fileCreds);
+                    GcpCredentialsUsageAction.record(run, credentialsId);
+                }
+            }
+            return credentials;
+        }
+
+        /**
+         * Launches {@code gcloud auth activate-service-account} for every account on a thread of its own, so that the
+         * CPS VM thread does not wait for them, and starts the bodies once they all succeeded. The accounts are
+         * activated one at a time, since they all write the credential store of the same gcloud configuration.
+         */
+        private void activate(
+                final Map<String, FileCredentials> credentials,
+                final GcpTracing.Span span,
+                final Run<?, ?> run,
+                final long start,
+                final GcpBuildStatsAction.Invocation invocation)
+                throws IOException, InterruptedException {
+            final var context = getContext();
+            final var launcher = context.get(Launcher.class);
+            final var envVars = context.get(EnvVars.class);
+            final var workspace = context.get(FilePath.class);
+            final var computer = context.get(Computer.class);
+            final var pool = Executors.newSingleThreadExecutor(
+                    new NamingThreadFactory(new DaemonThreadFactory(), "withGCPMatrix"));
+            synchronized (this) {
+                activationPool = pool;
+            }
+            CompletableFuture.supplyAsync(
+                            () -> {
+                                final var emails = new LinkedHashMap<String, String>();
+                                credentials.forEach((credentialsId, fileCreds) -> {
+                                    final var publicValues =
+                                            activate(fileCreds, span, computer, launcher, envVars, workspace);
+                                    emails.put(credentialsId, publicValues == null ? null : publicValues.getEmail());
+                                });
+                                return emails;
+                            },
+                            pool)
+                    .whenComplete((emails, failure) -> {
+                        pool.shutdown();
+                        if (failure == null) {
+                            synchronized (this) {
+                                accounts.putAll(emails);
+                            }
+                        }
+                        authenticated(run, start, invocation, unwrap(failure));
+                    });
+        }
+
+        private static GcpCredentials.PublicValues activate(
+                final FileCredentials fileCreds,
+                final GcpTracing.Span parent,
+                final Computer computer,
+                final Launcher launcher,
+                final EnvVars envVars,
+                final FilePath workspace) {
+            final var authStart = System.nanoTime();
+            var failed = true;
+            try (var span = GcpTracing.start("gcloud auth activate-service-account", parent)) {
+                try {
+                    final var profile = GcloudProfile.of(computer, launcher, envVars);
+                    final var publicValues =
+                            GcpCredentials.authenticate(fileCreds, profile, launcher, envVars, workspace);
+                    failed = false;
+                    return publicValues;
+                } catch (final IOException e) {
+                    span.recordException(e);
+                    throw new UncheckedIOException(e);
+                } catch (final InterruptedException e) {
+                    span.recordException(e);
+                    Thread.currentThread().interrupt();
+                    throw new CompletionException(e);
+                } catch (final RuntimeException e) {
+                    span.recordException(e);
+                    throw e;
+                }
+            } finally {
+                GcpMetrics.observeAuth(GcpMetrics.UNKNOWN_PROJECT, System.nanoTime() - authStart, failed);
+            }
+        }
+
+        private static Throwable unwrap(final Throwable failure) {
+            var cause = failure;
+            while ((cause instanceof CompletionException || cause instanceof UncheckedIOException)
+                    && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            return cause;
+        }
+
+        private synchronized void authenticated(
+                final Run<?, ?> run,
+                final long start,
+                final GcpBuildStatsAction.Invocation invocation,
+                final Throwable failure) {
+            activationPool = null;
+            invocation.finished(System.nanoTime() - start, failure != null);
+            GcpBuildStatsAction.record(run, "withGCPMatrix", invocation);
+            if (failure != null) {
+                fail(failure);
+                return;
+            }
+            authenticated = true;
+            try {
+                startBodies();
+            } catch (final IOException | InterruptedException | RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        private void fail(final Throwable failure) {
+            if (!done) {
+                done = true;
+                getContext().onFailure(failure);
+            }
+        }
+
+        private synchronized void startBodies() throws IOException, InterruptedException {
+            final var context = getContext();
+            while (!done && running < concurrency && next < projects.size()) {
+                final var project = projects.get(next++);
+                running++;
+                bodies.add(context.newBodyInvoker()
+                        .withContext(EnvironmentExpander.merge(
+                                context.get(EnvironmentExpander.class), new ExpanderImpl(environment(project))))
+                        .withDisplayName(project.getProject())
+                        .withCallback(new Callback(this, project.getProject()))
+                        .start());
+            }
+            if (!done && running == 0 && next == projects.size()) {
+                finish();
+            }
+        }
+
+        private Map<String, String> environment(final GcpProject project) {
+            final var environment = new HashMap<String, String>();
+            environment.put("CLOUDSDK_CORE_PROJECT", project.getProject());
+            final var account = project.getCredentialsId() == null ? null : accounts.get(project.getCredentialsId());
+            if (account != null) {
+                environment.put("CLOUDSDK_CORE_ACCOUNT", account);
+            }
+            return environment;
+        }
+
+        synchronized void completed(final String project, final Object result, final Throwable failure) {
+            running--;
+            if (failure == null) {
+                results.put(project, result);
+            } else {
+                failures.put(project, failure);
+                log("withGCPMatrix: " + project + " failed: " + failure);
+                if (failFast && next < projects.size()) {
+                    log("withGCPMatrix: skipping the remaining projects");
+                    next = projects.size();
+                }
+            }
+            try {
+                startBodies();
+            } catch (final IOException | InterruptedException | RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        private void finish() {
+            done = true;
+            if (stopCause != null) {
+                getContext().onFailure(stopCause);
+                return;
+            }
+
+            final var projectResults = new LinkedHashMap<String, Object>();
+            final var projectFailures = new LinkedHashMap<String, String>();
+            final var notRun = new ArrayList<String>();
+            for (final var project : projects) {
+                final var name = project.getProject();
+                if (results.containsKey(name)) {
+                    projectResults.put(name, results.get(name));
+                } else if (failures.containsKey(name)) {
+                    projectFailures.put(name, String.valueOf(failures.get(name).getMessage()));
+                } else {
+                    notRun.add(name);
+                }
+            }
+            notRun.forEach(name -> projectFailures.put(name, "not run because of an earlier failure"));
+
+            if (failOnError && !projectFailures.isEmpty()) {
+                final var exception = new IllegalArgumentException("withGCPMatrix failed for "
+                        + projectFailures.size() + " of " + projects.size() + " projects: "
+                        + String.join(", ", projectFailures.keySet()));
+                failures.values().forEach(exception::addSuppressed);
+                getContext().onFailure(exception);
+                return;
+            }
+            final var output = new LinkedHashMap<String, Object>();
+            output.put("results", projectResults);
+            output.put("failures", projectFailures);
+            getContext().onSuccess(output);
+        }
+
+        private void log(final String message) {
+            try {
+                final var listener = getContext().get(TaskListener.class);
+                if (listener != null) {
+                    listener.getLogger().println(message);
+                }
+            } catch (final IOException | InterruptedException e) {
+                // logging is best effort
+            }
+        }
+
+        @Override
+        public synchronized void onResume() {
+            if (!authenticated) {
+                fail(new IOException("Jenkins restarted while withGCPMatrix was activating the service accounts"));
+            }
+        }
+
+        @Override
+        public synchronized void stop(@NonNull final Throwable cause) throws Exception {
+            stopCause = cause;
+            next = projects.size();
+            if (activationPool != null) {
+                activationPool.shutdownNow();
+            }
+            if (running == 0) {
+                fail(cause);
+                return;
+            }
+            for (final var body : bodies) {
+                body.cancel(cause);
+            }
+        }
+
+        private static final class Callback extends BodyExecutionCallback {
+            private static final long serialVersionUID = 1L;
+
+            private final WithGCPMatrixExecution execution;
+            private final String project;
+
+            private Callback(final WithGCPMatrixExecution execution, final String project) {
+                this.execution = execution;
+                this.project = project;
+            }
+
+            @Override
+            public void onSuccess(final StepContext context, final Object result) {
+                execution.completed(project, result, null);
+            }
+
+            @Override
+            public void onFailure(final StepContext context, final Throwable t) {
+                execution.completed(project, null, t);
+            }
+        }
+
+        private static final class ExpanderImpl extends EnvironmentExpander {
+            private static final long serialVersionUID = 1L;
+
+            private final Map<String, String> envVars;
+
+            private ExpanderImpl(final Map<String, String> envVars) {
+                this.envVars = new HashMap<>(envVars);
+            }
+
+            @Override
+            public void expand(@NonNull final EnvVars env) {
+                env.overrideAll(envVars);
+            }
+        }
+    }
+}
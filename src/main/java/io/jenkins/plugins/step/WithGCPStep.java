@@ -1,20 +1,14 @@
 package io.jenkins.plugins.step;
 
-import com.cloudbees.plugins.credentials.CredentialsProvider;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.EnvVars;
 import hudson.Extension;
 import hudson.FilePath;
 import hudson.Launcher;
+import hudson.model.Computer;
 import hudson.model.Run;
-import hudson.security.ACL;
-import hudson.util.ArgumentListBuilder;
-import java.io.IOException;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
-import jenkins.model.Jenkins;
 import org.jenkinsci.plugins.plaincredentials.FileCredentials;
 import org.jenkinsci.plugins.workflow.steps.BodyExecutionCallback;
 import org.jenkinsci.plugins.workflow.steps.EnvironmentExpander;
@@ -22,7 +16,6 @@ import org.jenkinsci.plugins.workflow.steps.Step;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
 import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
 import org.jenkinsci.plugins.workflow.steps.StepExecution;
-import org.json.JSONObject;
 import org.kohsuke.stapler.DataBoundConstructor;
 
 public class WithGCPStep extends Step {
@@ -43,7 +36,7 @@ public class WithGCPStep extends Step {
 
         @Override
         public Set<? extends Class<?>> getRequiredContext() {
-            return Set.of(EnvVars.class, Run.class, Launcher.class, FilePath.class);
+            return Set.of(EnvVars.class, Run.class);
         }
 
         @Override
@@ -78,78 +71,106 @@ public class WithGCPStep extends Step {
 
         @Override
         public boolean start() throws Exception {
+            final var start = System.nanoTime();
+            final var invocation = new GcpBuildStatsAction.Invocation();
+            invocation.usedBackend(GcpMetrics.GCLOUD);
+            var failed = true;
+            try (var span = GcpTracing.start("withGCP")) {
+                span.setAttribute("gcp.credentials_id", credentialsId);
+                try {
+                    authenticateAndStartBody();
+                    failed = false;
+                    return false;
+                } catch (final Exception e) {
+                    span.recordException(e);
+                    throw e;
+                }
+            } finally {
+                invocation.finished(System.nanoTime() - start, failed);
+                GcpBuildStatsAction.record(getContext().get(Run.class), "withGCP", invocation);
+            }
+        }
+
+        private void authenticateAndStartBody() throws Exception {
             final var context = getContext();
-            final var fileCreds = getFileCredentials();
+            final FileCredentials fileCreds;
+            try (var span = GcpTracing.start("credentials lookup")) {
+                fileCreds = GcpCredentials.lookup(credentialsId);
+            }
 
             if (fileCreds == null) {
                 throw new IllegalArgumentException("Couldn't find credentials file with id " + credentialsId);
             }
+            GcpCredentialsUsageAction.record(context.get(Run.class), credentialsId);
 
             final var launcher = context.get(Launcher.class);
+            if (launcher == null) {
+                startBodyOnController(fileCreds);
+                return;
+            }
             final var workspace = context.get(FilePath.class);
-            workspace.mkdirs();
-
-            final var tempFile = getTempFile(fileCreds, workspace);
-
-            final var cmd = new ArgumentListBuilder();
-            cmd.add("gcloud", "auth", "activate-service-account", "--key-file=" + tempFile);
-            final var result =
-                    launcher.launch().cmds(cmd).pwd(workspace).quiet(true).join();
+            final FilePath tempFile;
+            try (var span = GcpTracing.start("copy key file")) {
+                workspace.mkdirs();
+                tempFile = GcpCredentials.copyToTempFile(fileCreds, workspace);
+            }
 
-            if (result != 0) {
+            final var envVars = context.get(EnvVars.class);
+            final var profile = GcloudProfile.of(context.get(Computer.class), launcher, envVars);
+            final var authStart = System.nanoTime();
+            final boolean activated;
+            try (var span = GcpTracing.start("gcloud auth activate-service-account")) {
+                activated = GcpCredentials.activate(profile, launcher, envVars, workspace, tempFile);
+            }
+            if (!activated) {
+                GcpMetrics.observeAuth(GcpMetrics.UNKNOWN_PROJECT, System.nanoTime() - authStart, true);
                 tempFile.delete();
                 throw new IllegalArgumentException(
                         "Failed to authenticate to GCP using credentials file with id " + credentialsId);
             }
+            final var authNanos = System.nanoTime() - authStart;
 
-            final var envVars = context.get(EnvVars.class);
-            final var publicCredentialValues = extractPublicCredentialValues(tempFile);
+            final GcpCredentials.PublicValues publicCredentialValues;
+            try (var span = GcpTracing.start("read key file")) {
+                publicCredentialValues = GcpCredentials.extractPublicValues(tempFile);
+            }
+            GcpMetrics.observeAuth(
+                    publicCredentialValues == null ? GcpMetrics.UNKNOWN_PROJECT : publicCredentialValues.getProjectId(),
+                    authNanos,
+                    false);
             if (publicCredentialValues != null) {
-                envVars.put("CLOUDSDK_CORE_ACCOUNT", publicCredentialValues.email);
-                envVars.put("CLOUDSDK_CORE_PROJECT", publicCredentialValues.projectId);
+                envVars.put("CLOUDSDK_CORE_ACCOUNT", publicCredentialValues.getEmail());
+                envVars.put("CLOUDSDK_CORE_PROJECT", publicCredentialValues.getProjectId());
             }
-            context.newBodyInvoker()
-                    .withContext(EnvironmentExpander.merge(
-                            context.get(EnvironmentExpander.class), new ExpanderImpl(envVars)))
-                    .withCallback(BodyExecutionCallback.wrap(context))
-                    .start();
+            startBody(envVars);
 
             tempFile.delete();
-            return false;
         }
 
-        private static FilePath getTempFile(final FileCredentials fileCreds, final FilePath workspace)
-                throws IOException {
-            try {
-                final var fileName = UUID.randomUUID().toString();
-                final var extension = ".json";
-                final var tempFile = workspace.createTempFile(fileName, extension);
-                tempFile.copyFrom(fileCreds.getContent());
-                return tempFile;
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
+        /**
+         * Outside of a node there is no gcloud to activate the account in, the nested steps send their requests from
+         * the controller with tokens minted from the key of the credentials.
+         */
+        private void startBodyOnController(final FileCredentials fileCreds) throws Exception {
+            if (!ControllerExecutor.isEnabled(GcpPluginConfiguration.getOrNull())) {
+                throw new IllegalArgumentException(
+                        "withGCP requires a node, unless the controller executor is enabled in the GCP configuration");
             }
+            final var envVars = getContext().get(EnvVars.class);
+            final var publicCredentialValues = GcpCredentials.extractPublicValues(ControllerExecutor.read(fileCreds));
+            envVars.put("CLOUDSDK_CORE_ACCOUNT", publicCredentialValues.getEmail());
+            envVars.put("CLOUDSDK_CORE_PROJECT", publicCredentialValues.getProjectId());
+            envVars.put(ControllerExecutor.CREDENTIALS_ID_VARIABLE, credentialsId);
+            startBody(envVars);
         }
 
-        private FileCredentials getFileCredentials() {
-            final var creds = CredentialsProvider.lookupCredentialsInItemGroup(
-                    FileCredentials.class, Jenkins.get(), ACL.SYSTEM2, List.of());
-
-            return creds.stream()
-                    .filter(cred -> credentialsId.equals(cred.getId()))
-                    .findFirst()
-                    .orElse(null);
-        }
-
-        private static PublicCredentialValues extractPublicCredentialValues(final FilePath fileCreds) {
-            try {
-                final var jsonObject = new JSONObject(fileCreds.readToString());
-                final var email = jsonObject.getString("client_email");
-                final var projectId = jsonObject.getString("project_id");
-                return new PublicCredentialValues(email, projectId);
-            } catch (final InterruptedException | IOException e) {
-                return null;
-            }
+        private void startBody(final EnvVars envVars) throws Exception {
+            final var context = getContext();
+            context.newBodyInvoker()
+                    .withContext(EnvironmentExpander.merge(
+                            context.get(EnvironmentExpander.class), new ExpanderImpl(envVars)))
+                    .withCallback(BodyExecutionCallback.wrap(context))
+                    .start();
         }
 
         private static class ExpanderImpl extends EnvironmentExpander {
@@ -164,15 +185,5 @@ public class WithGCPStep extends Step {
                 env.overrideAll(envVars);
             }
         }
-
-        private static class PublicCredentialValues {
-            private final String email;
-            private final String projectId;
-
-            private PublicCredentialValues(final String email, final String projectId) {
-                this.email = email;
-                this.projectId = projectId;
-            }
-        }
     }
 }
@@ -0,0 +1,70 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import hudson.XmlFile;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AdaptiveLimitsTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testKeepBatchLimits() {
+        final var file = new XmlFile(dir.resolve("limits.xml").toFile());
+        final var limits = new AdaptiveLimits(file);
+
+        assertThat(limits.getBatchLimit("project")).isEqualTo(AimdLimit.INITIAL);
+        limits.setBatchLimit("project", 25, 0);
+        limits.setBatchLimit("other", 400, AdaptiveLimits.SAVE_PERIOD_MILLIS);
+
+        final var reloaded = new AdaptiveLimits(file);
+        assertThat(reloaded.getBatchLimit("project")).isEqualTo(25);
+        assertThat(reloaded.getBatchLimit("other")).isEqualTo(400);
+        assertThat(reloaded.getBatchLimit("unknown")).isEqualTo(AimdLimit.INITIAL);
+    }
+
+    @Test
+    void testInMemory() {
+        final var limits = new AdaptiveLimits(null);
+
+        limits.setBatchLimit("project", 25);
+
+        assertThat(limits.getBatchLimit("project")).isEqualTo(25);
+    }
+
+    @Test
+    void testSaveDecreasesRightAwayAndIncreasesPeriodically() {
+        final var file = new XmlFile(dir.resolve("limits.xml").toFile());
+        final var limits = new AdaptiveLimits(file);
+        final var start = AdaptiveLimits.SAVE_PERIOD_MILLIS;
+
+        limits.setBatchLimit("project", 50, start);
+        limits.setBatchLimit("project", 60, start + 1);
+        limits.setBatchLimit("project", 70, start + 2);
+        assertThat(new AdaptiveLimits(file).getBatchLimit("project")).isEqualTo(50);
+
+        limits.setBatchLimit("other", 35, start + 3);
+        assertThat(new AdaptiveLimits(file).getBatchLimit("project")).isEqualTo(70);
+        assertThat(new AdaptiveLimits(file).getBatchLimit("other")).isEqualTo(35);
+
+        limits.setBatchLimit("other", 45, start + 4);
+        assertThat(new AdaptiveLimits(file).getBatchLimit("other")).isEqualTo(35);
+        limits.setBatchLimit("other", 45, start + 3 + AdaptiveLimits.SAVE_PERIOD_MILLIS);
+        assertThat(new AdaptiveLimits(file).getBatchLimit("other")).isEqualTo(45);
+    }
+
+    @Test
+    void testUnknownProjectNotLearned() {
+        final var file = new XmlFile(dir.resolve("limits.xml").toFile());
+        final var limits = new AdaptiveLimits(file);
+
+        limits.setBatchLimit(GcpMetrics.UNKNOWN_PROJECT, 25);
+
+        assertThat(limits.getBatchLimit(GcpMetrics.UNKNOWN_PROJECT)).isEqualTo(AimdLimit.INITIAL);
+        assertThat(file.exists()).isFalse();
+    }
+}
@@ -0,0 +1,49 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class AimdLimitTest {
+
+    @Test
+    void testIncreaseUpToMax() {
+        final var limit = new AimdLimit(95, 120);
+
+        limit.onSuccess();
+        assertThat(limit.get()).isEqualTo(105);
+        limit.onSuccess();
+        limit.onSuccess();
+        assertThat(limit.get()).isEqualTo(120);
+    }
+
+    @Test
+    void testHalveDownToOne() {
+        final var limit = new AimdLimit(10, 120);
+
+        limit.onRateLimited();
+        assertThat(limit.get()).isEqualTo(5);
+        limit.onRateLimited();
+        limit.onRateLimited();
+        limit.onRateLimited();
+        assertThat(limit.get()).isEqualTo(1);
+        limit.onSuccess();
+        assertThat(limit.get()).isEqualTo(11);
+    }
+
+    @Test
+    void testClampInitialLimit() {
+        assertThat(new AimdLimit(0, 120).get()).isEqualTo(1);
+        assertThat(new AimdLimit(500, 120).get()).isEqualTo(120);
+    }
+
+    @Test
+    void testFixed() {
+        final var limit = AimdLimit.fixed(50);
+
+        limit.onSuccess();
+        limit.onRateLimited();
+
+        assertThat(limit.get()).isEqualTo(50);
+    }
+}
@@ -0,0 +1,36 @@
+package io.jenkins.plugins.step;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks of this package with {@code mvn test -Dtest=BenchmarkRunner -Dbenchmark}, writing the
+ * results to {@code jmh-report.json}. {@link GcloudStartupBenchmark} needs a real gcloud and only runs with
+ * {@code -Dbenchmark.gcloud}.
+ */
+class BenchmarkRunner {
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = ".*")
+    void runJmhBenchmarks() throws Exception {
+        final var options = new OptionsBuilder().include(getClass().getPackageName() + ".*Benchmark");
+        if (System.getProperty("benchmark.gcloud") == null) {
+            options.exclude(GcloudStartupBenchmark.class.getName());
+        }
+        options.mode(Mode.AverageTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .warmupIterations(3)
+                .measurementIterations(5)
+                .forks(1)
+                .shouldFailOnError(true)
+                .shouldDoGC(true)
+                .resultFormat(ResultFormatType.JSON)
+                .result("jmh-report.json");
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,127 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ComputeBatchTest {
+    private ComputeStandIn standIn;
+
+    @AfterEach
+    void after() {
+        if (standIn != null) {
+            standIn.close();
+        }
+    }
+
+    private ComputeBatch batch(final double errorRate, final int maxCalls) throws IOException {
+        standIn = new ComputeStandIn(0, errorRate);
+        return new ComputeBatch(new ComputeApiClient(standIn.getEndpoint()), maxCalls);
+    }
+
+    private List<ComputeBatch.Call> deletes(final int count) {
+        final var calls = new ArrayList<ComputeBatch.Call>();
+        for (int i = 0; i < count; i++) {
+            standIn.putRule("project", "rule-" + i);
+            calls.add(ComputeBatch.Call.deleteFirewall("project", "rule-" + i));
+        }
+        return calls;
+    }
+
+    @Test
+    void testApply() throws Exception {
+        final var batch = batch(0, 40);
+        standIn.putRule("project", "other");
+
+        batch.apply(deletes(100), "token");
+
+        assertThat(standIn.getBatchRequests()).isEqualTo(3);
+        assertThat(standIn.hasRule("project", "rule-0")).isFalse();
+        assertThat(standIn.hasRule("project", "rule-99")).isFalse();
+        assertThat(standIn.hasRule("project", "other")).isTrue();
+    }
+
+    @Test
+    void testRedriveTransientFailures() throws Exception {
+        final var batch = batch(0.3, ComputeBatch.MAX_CALLS);
+
+        batch.apply(deletes(50), "token");
+
+        assertThat(standIn.getErrors()).isPositive();
+        assertThat(standIn.getBatchRequests()).isGreaterThan(1);
+        for (int i = 0; i < 50; i++) {
+            assertThat(standIn.hasRule("project", "rule-" + i)).isFalse();
+        }
+    }
+
+    @Test
+    void testFailuresReportedPerCall() throws Exception {
+        final var batch = batch(0, ComputeBatch.MAX_CALLS);
+        standIn.putRule("project", "rule-0");
+        standIn.putRule("project", "rule-1");
+
+        assertThatCode(() -> batch.apply(
+                        List.of(
+                                ComputeBatch.Call.deleteFirewall("project", "rule-0"),
+                                ComputeBatch.Call.deleteFirewall("project", "missing"),
+                                ComputeBatch.Call.deleteFirewall("project", "rule-1")),
+                        "token"))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("1 of 3 calls failed")
+                .hasMessageContaining("firewalls/missing returned 404");
+        assertThat(standIn.hasRule("project", "rule-0")).isFalse();
+        assertThat(standIn.hasRule("project", "rule-1")).isFalse();
+    }
+
+    @Test
+    void testAdaptBatchSizeToRateQuota() throws Exception {
+        standIn = new ComputeStandIn(0, 0);
+        standIn.limitBatchCalls(30);
+        final var limit = new AimdLimit(AimdLimit.INITIAL, ComputeBatch.MAX_CALLS);
+
+        new ComputeBatch(new ComputeApiClient(standIn.getEndpoint()), limit).apply(deletes(300), "token");
+
+        for (int i = 0; i < 300; i++) {
+            assertThat(standIn.hasRule("project", "rule-" + i)).isFalse();
+        }
+        assertThat(standIn.getRateLimited()).isPositive();
+        assertThat(limit.get()).isBetween(1, 40);
+    }
+
+    @Test
+    void testRateLimitedResponses() {
+        final var quotaExceeded = errorWithReason("rateLimitExceeded");
+        final var forbidden = errorWithReason("forbidden");
+
+        assertThat(new ComputeBatch.Response(429, new JSONObject()).isRateLimited()).isTrue();
+        assertThat(new ComputeBatch.Response(403, quotaExceeded).isRateLimited()).isTrue();
+        assertThat(new ComputeBatch.Response(403, quotaExceeded).isTransient()).isTrue();
+        assertThat(new ComputeBatch.Response(403, forbidden).isTransient()).isFalse();
+        assertThat(new ComputeBatch.Response(503, new JSONObject()).isRateLimited()).isFalse();
+        assertThat(new ComputeBatch.Response(503, new JSONObject()).isTransient()).isTrue();
+    }
+
+    @Test
+    void testMissingResponseIsTransient() throws Exception {
+        final var body = "--b\r\nContent-Type: application/http\r\nContent-ID: <response-item1>\r\n\r\n"
+                + "HTTP/1.1 200 OK\r\nContent-Type: application/json\r\n\r\n{\"status\": \"DONE\"}\r\n--b--\r\n";
+
+        final var responses = ComputeBatch.decode("multipart/mixed; boundary=b", body, 2);
+
+        assertThat(responses.get(0).isTransient()).isTrue();
+        assertThat(responses.get(1).isSuccessful()).isTrue();
+        assertThat(responses.get(1).body.getString("status")).isEqualTo("DONE");
+    }
+
+    private static JSONObject errorWithReason(final String reason) {
+        final var errors = new JSONArray().put(new JSONObject().put("reason", reason));
+        return new JSONObject().put("error", new JSONObject().put("errors", errors));
+    }
+}
@@ -0,0 +1,138 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import hudson.EnvVars;
+import hudson.Launcher;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ComputeFirewallPolicyRulesUpdateStepTest {
+    private static final String POLICY = "123456";
+
+    private final StepContext contextMock = mock(StepContext.class);
+    private final Launcher launcherMock = mock(Launcher.class);
+    private final VirtualChannel channelMock = mock(VirtualChannel.class);
+    private final TaskListener listenerMock = mock(TaskListener.class);
+    private final ByteArrayOutputStream log = new ByteArrayOutputStream();
+    private ComputeStandIn standIn;
+
+    @BeforeEach
+    void before() throws Exception {
+        standIn = new ComputeStandIn(0, 0);
+        standIn.putFirewallPolicy(
+                POLICY,
+                new JSONArray()
+                        .put(new JSONObject().put("priority", 10).put("action", "allow"))
+                        .put(new JSONObject()
+                                .put("priority", FirewallPolicyRules.DEFAULT_RULES_PRIORITY)
+                                .put("action", "goto_next")));
+        final var client = new ComputeApiClient(standIn.getEndpoint());
+
+        when(contextMock.get(Launcher.class)).thenReturn(launcherMock);
+        when(contextMock.get(EnvVars.class)).thenReturn(new EnvVars());
+        when(contextMock.get(TaskListener.class)).thenReturn(listenerMock);
+        when(listenerMock.getLogger()).thenReturn(new PrintStream(log, true, StandardCharsets.UTF_8));
+        when(launcherMock.getChannel()).thenReturn(channelMock);
+        when(channelMock.call(any())).thenAnswer(invocation -> invocation
+                .<GcloudWorker.OneShot>getArgument(0)
+                .getRequest()
+                .run(client, null, "token"));
+    }
+
+    @AfterEach
+    void after() {
+        standIn.close();
+    }
+
+    private static ComputeFirewallRulesCreateStep rule(final int priority) {
+        final var rule = new ComputeFirewallRulesCreateStep("rule-" + priority);
+        rule.setPriority(priority);
+        rule.setAllow("tcp:443");
+        rule.setSourceRanges("0.0.0.0/0");
+        return rule;
+    }
+
+    private JSONArray priorities() {
+        final var priorities = new JSONArray();
+        final var rules = standIn.getFirewallPolicy(POLICY).getJSONArray("rules");
+        for (int i = 0; i < rules.length(); i++) {
+            priorities.put(rules.getJSONObject(i).getInt("priority"));
+        }
+        return priorities;
+    }
+
+    @Test
+    void testDescriptor() {
+        final var descriptor = new ComputeFirewallPolicyRulesUpdateStep.Descriptor();
+        assertThat(descriptor.getDisplayName()).isEqualTo("Update the rules of a firewall policy");
+        assertThat(descriptor.getFunctionName()).isEqualTo("computeFirewallPolicyRulesUpdate");
+        assertThat(descriptor.getRequiredContext()).isEqualTo(Set.of(Run.class, EnvVars.class, TaskListener.class));
+    }
+
+    @Test
+    void testPatch() throws Exception {
+        final var step = new ComputeFirewallPolicyRulesUpdateStep(POLICY);
+        step.setRules(List.of(rule(20), rule(30)));
+        step.setRemove("10");
+
+        ((ComputeFirewallPolicyRulesUpdateStep.ComputeFirewallPolicyRulesUpdateStepExecution) step.start(contextMock))
+                .run();
+
+        assertThat(priorities().toList()).containsExactly(20, 30, FirewallPolicyRules.DEFAULT_RULES_PRIORITY);
+        assertThat(log.toString(StandardCharsets.UTF_8))
+                .contains("Firewall policy 123456 has 3 rules after operation operation-1");
+    }
+
+    @Test
+    void testReplace() throws Exception {
+        final var step = new ComputeFirewallPolicyRulesUpdateStep(POLICY);
+        step.setRules(List.of(rule(20)));
+        step.setReplace(true);
+
+        ((ComputeFirewallPolicyRulesUpdateStep.ComputeFirewallPolicyRulesUpdateStepExecution) step.start(contextMock))
+                .run();
+
+        assertThat(priorities().toList()).containsExactly(20, FirewallPolicyRules.DEFAULT_RULES_PRIORITY);
+    }
+
+    @Test
+    void testRetryOnConcurrentChange() throws Exception {
+        standIn.conflictOnPolicyPatches(2);
+        final var step = new ComputeFirewallPolicyRulesUpdateStep(POLICY);
+        step.setRules(List.of(rule(20)));
+
+        ((ComputeFirewallPolicyRulesUpdateStep.ComputeFirewallPolicyRulesUpdateStepExecution) step.start(contextMock))
+                .run();
+
+        assertThat(priorities().toList()).containsExactly(10, 20, FirewallPolicyRules.DEFAULT_RULES_PRIORITY);
+    }
+
+    @Test
+    void testInvalidRemove() {
+        final var step = new ComputeFirewallPolicyRulesUpdateStep(POLICY);
+        step.setRemove("10 high");
+
+        assertThatCode(() -> ((ComputeFirewallPolicyRulesUpdateStep.ComputeFirewallPolicyRulesUpdateStepExecution)
+                                step.start(contextMock))
+                        .run())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Invalid priority to remove: high");
+    }
+}
@@ -0,0 +1,40 @@
+package io.jenkins.plugins.step;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import hudson.Launcher;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+public class ComputeFirewallRulesCreateStepBenchmark {
+
+    private StepContext context;
+    private ComputeFirewallRulesCreateStep step;
+
+    @Setup
+    public void setup() throws Exception {
+        context = mock(StepContext.class);
+        when(context.get(Launcher.class)).thenReturn(new FakeLauncher(new byte[0]));
+
+        step = new ComputeFirewallRulesCreateStep("allow-https");
+        step.setAllow("tcp:443,tcp:8443");
+        step.setDescription("Allow HTTPS from the load balancers");
+        step.setDirection("INGRESS");
+        step.setEnableLogging(true);
+        step.setLoggingMetadata("include-all");
+        step.setNetwork("default");
+        step.setPriority(1000);
+        step.setSourceRanges("130.211.0.0/22,35.191.0.0/16");
+        step.setTargetTags("web,https-server");
+    }
+
+    @Benchmark
+    public Object create() throws Exception {
+        return new ComputeFirewallRulesCreateStep.ComputeFirewallRulesCreateRuleStepExecution(context, step).run();
+    }
+}
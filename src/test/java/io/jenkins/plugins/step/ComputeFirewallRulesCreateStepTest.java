@@ -13,8 +13,15 @@ import hudson.EnvVars;
 import hudson.Launcher;
 import hudson.model.Run;
 import hudson.util.ArgumentListBuilder;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Collectors;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.json.JSONArray;
+import org.json.JSONObject;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -155,4 +162,190 @@ class ComputeFirewallRulesCreateStepTest {
                         "--target-service-accounts=targetServiceAccounts",
                         "--target-tags=targetTags");
     }
+
+    private void describeAs(final JSONObject rule) throws Exception {
+        when(launcherMock
+                        .launch()
+                        .cmds(any(ArgumentListBuilder.class))
+                        .quiet(true)
+                        .stdout(any(OutputStream.class)))
+                .thenAnswer(invocation -> {
+                    invocation
+                            .getArgument(0, OutputStream.class)
+                            .write(rule.toString().getBytes(StandardCharsets.UTF_8));
+                    return null;
+                });
+    }
+
+    private List<List<String>> commands() {
+        final var cmd = ArgumentCaptor.forClass(ArgumentListBuilder.class);
+        verify(launcherMock.launch(), atLeastOnce()).cmds(cmd.capture());
+        // the stubbing of the deep stubs records calls without arguments
+        return cmd.getAllValues().stream()
+                .filter(Objects::nonNull)
+                .map(ArgumentListBuilder::toList)
+                .collect(Collectors.toList());
+    }
+
+    private String fingerprint() {
+        final var cmd = new ArgumentListBuilder("gcloud", "compute", "firewall-rules", "create", "test");
+        cmd.add("--allow=tcp:443", "--priority=1000", "--source-ranges=0.0.0.0/0");
+        return ComputeFirewallRulesCreateStep.fingerprint(cmd);
+    }
+
+    private void ensureAllowHttps() {
+        step.setEnsure(true);
+        step.setAllow("tcp:443");
+        step.setPriority(1000);
+        step.setSourceRanges("0.0.0.0/0");
+    }
+
+    private void describeFails(final String error) throws Exception {
+        when(launcherMock
+                        .launch()
+                        .cmds(any(ArgumentListBuilder.class))
+                        .quiet(true)
+                        .join())
+                .thenReturn(1, 0);
+        when(launcherMock
+                        .launch()
+                        .cmds(any(ArgumentListBuilder.class))
+                        .quiet(true)
+                        .stderr(any(OutputStream.class)))
+                .thenAnswer(invocation -> {
+                    invocation.getArgument(0, OutputStream.class).write(error.getBytes(StandardCharsets.UTF_8));
+                    return null;
+                });
+    }
+
+    @Test
+    void testEnsureCreatesMissingRule() throws Exception {
+        ensureAllowHttps();
+        describeFails("ERROR: (gcloud.compute.firewall-rules.describe) Could not fetch resource:\n"
+                + " - The resource 'projects/project/global/firewalls/test' was not found");
+
+        new ComputeFirewallRulesCreateStep.ComputeFirewallRulesCreateRuleStepExecution(contextMock, step).run();
+
+        assertThat(commands())
+                .containsExactly(
+                        List.of("gcloud", "compute", "firewall-rules", "describe", "test", "--format=json"),
+                        List.of(
+                                "gcloud",
+                                "compute",
+                                "firewall-rules",
+                                "create",
+                                "test",
+                                "--allow=tcp:443",
+                                "--description=[spec:" + fingerprint() + "]",
+                                "--priority=1000",
+                                "--source-ranges=0.0.0.0/0"));
+    }
+
+    @Test
+    void testEnsureSkipsUpToDateRule() throws Exception {
+        ensureAllowHttps();
+        describeAs(new JSONObject().put("name", "test").put("description", "[spec:" + fingerprint() + "]"));
+
+        new ComputeFirewallRulesCreateStep.ComputeFirewallRulesCreateRuleStepExecution(contextMock, step).run();
+
+        assertThat(commands()).hasSize(1);
+    }
+
+    @Test
+    void testEnsureUpdatesChangedRule() throws Exception {
+        ensureAllowHttps();
+        step.setDescription("web");
+        describeAs(new JSONObject()
+                .put("name", "test")
+                .put("description", "web [spec:0123456789abcdef]")
+                .put("network", "https://www.googleapis.com/compute/v1/projects/project/global/networks/default")
+                .put("allowed", new JSONArray())
+                .put("sourceTags", new JSONArray().put("web")));
+
+        new ComputeFirewallRulesCreateStep.ComputeFirewallRulesCreateRuleStepExecution(contextMock, step).run();
+
+        assertThat(commands().get(1))
+                .containsExactly(
+                        "gcloud",
+                        "compute",
+                        "firewall-rules",
+                        "update",
+                        "test",
+                        "--allow=tcp:443",
+                        "--description=web [spec:"
+                                + ComputeFirewallRulesCreateStep.fingerprint(new ArgumentListBuilder(
+                                        "gcloud",
+                                        "compute",
+                                        "firewall-rules",
+                                        "create",
+                                        "test",
+                                        "--allow=tcp:443",
+                                        "--description=web",
+                                        "--priority=1000",
+                                        "--source-ranges=0.0.0.0/0"))
+                                + "]",
+                        "--no-disabled",
+                        "--no-enable-logging",
+                        "--priority=1000",
+                        "--source-ranges=0.0.0.0/0",
+                        "--source-tags=");
+    }
+
+    @Test
+    void testEnsureKeepsTheRangeFilledInByGcp() throws Exception {
+        step.setEnsure(true);
+        step.setAllow("tcp:443");
+        describeAs(new JSONObject()
+                .put("name", "test")
+                .put("description", "[spec:0123456789abcdef]")
+                .put("direction", "INGRESS")
+                .put("allowed", new JSONArray())
+                .put("sourceRanges", new JSONArray().put("0.0.0.0/0")));
+
+        new ComputeFirewallRulesCreateStep.ComputeFirewallRulesCreateRuleStepExecution(contextMock, step).run();
+
+        assertThat(commands().get(1))
+                .contains("--source-ranges=0.0.0.0/0")
+                .doesNotContain("--source-ranges=", "--destination-ranges=");
+    }
+
+    @Test
+    void testEnsureFailsOnImmutableChange() throws Exception {
+        ensureAllowHttps();
+        describeAs(new JSONObject().put("name", "test").put("denied", new JSONArray()));
+
+        final var execution =
+                new ComputeFirewallRulesCreateStep.ComputeFirewallRulesCreateRuleStepExecution(contextMock, step);
+
+        assertThatCode(execution::run)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Firewall rule test exists with the action DENY instead of ALLOW, which cannot be updated");
+    }
+
+    @Test
+    void testEnsureFailsWhenDescribeFails() throws Exception {
+        ensureAllowHttps();
+        describeFails("ERROR: (gcloud.compute.firewall-rules.describe) Could not fetch resource:\n"
+                + " - Required 'compute.firewalls.get' permission for 'projects/project/global/firewalls/test'");
+
+        final var execution =
+                new ComputeFirewallRulesCreateStep.ComputeFirewallRulesCreateRuleStepExecution(contextMock, step);
+
+        assertThatCode(execution::run)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Required 'compute.firewalls.get' permission");
+        assertThat(commands()).hasSize(1);
+    }
+
+    @Test
+    void testEnsureRequiresRulesWithAction() {
+        step.setEnsure(true);
+        step.setAction("deny");
+        final var execution =
+                new ComputeFirewallRulesCreateStep.ComputeFirewallRulesCreateRuleStepExecution(contextMock, step);
+
+        assertThatCode(execution::run)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("'rules' should be specified with 'action'!");
+    }
 }
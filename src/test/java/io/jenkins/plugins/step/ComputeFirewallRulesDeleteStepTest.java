@@ -4,13 +4,18 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatCode;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import hudson.EnvVars;
 import hudson.Launcher;
+import hudson.model.Action;
 import hudson.model.Run;
 import hudson.util.ArgumentListBuilder;
+import java.util.ArrayList;
 import java.util.Set;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
 import org.junit.jupiter.api.BeforeEach;
@@ -41,7 +46,7 @@ class ComputeFirewallRulesDeleteStepTest {
         final var descriptor = new ComputeFirewallRulesDeleteStep.Descriptor();
         assertThat(descriptor.getDisplayName()).isEqualTo("Delete a firewall rule");
         assertThat(descriptor.getFunctionName()).isEqualTo("computeFirewallRulesDelete");
-        assertThat(descriptor.getRequiredContext()).isEqualTo(Set.of(Run.class, Launcher.class, EnvVars.class));
+        assertThat(descriptor.getRequiredContext()).isEqualTo(Set.of(Run.class, EnvVars.class));
     }
 
     @Test
@@ -83,11 +88,33 @@ class ComputeFirewallRulesDeleteStepTest {
                 .thenReturn(1);
 
         final var execution =
-                new ComputeFirewallRulesDeleteStep.ComputeFirewallRulesDeleteRuleStepExecution(contextMock, NAME);
+                new ComputeFirewallRulesDeleteStep.ComputeFirewallRulesDeleteRuleStepExecution(contextMock, NAME, 0);
 
         assertThatCode(execution::run).isInstanceOf(IllegalArgumentException.class);
     }
 
+    @Test
+    void testMemoizedDeletionIsOnlyReusedOnResume() throws Exception {
+        final var actions = new ArrayList<Action>();
+        final var runMock = mock(Run.class);
+        doAnswer(invocation -> actions.add(invocation.getArgument(0))).when(runMock).addAction(any());
+        when(runMock.getAction(any(Class.class))).thenAnswer(invocation -> actions.stream()
+                .filter(invocation.getArgument(0, Class.class)::isInstance)
+                .findFirst()
+                .orElse(null));
+        when(contextMock.get(Run.class)).thenReturn(runMock);
+        final var first =
+                new ComputeFirewallRulesDeleteStep.ComputeFirewallRulesDeleteRuleStepExecution(contextMock, NAME, 600);
+
+        first.run();
+        new ComputeFirewallRulesDeleteStep.ComputeFirewallRulesDeleteRuleStepExecution(contextMock, NAME, 600).run();
+        first.onResume();
+
+        verify(launcherMock.launch().cmds(any(ArgumentListBuilder.class)).quiet(true), times(2))
+                .join();
+        verify(contextMock).onSuccess(null);
+    }
+
     @Test
     void testStart() {
         final var execution = step.start(contextMock);
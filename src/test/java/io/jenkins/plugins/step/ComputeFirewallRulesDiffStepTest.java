@@ -0,0 +1,101 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import hudson.FilePath;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import jenkins.util.VirtualFile;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.json.JSONArray;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ComputeFirewallRulesDiffStepTest {
+    private final StepContext contextMock = mock(StepContext.class);
+    private final TaskListener taskListenerMock = mock(TaskListener.class, RETURNS_DEEP_STUBS);
+    private final Run<?, ?> runMock = mock(Run.class, RETURNS_DEEP_STUBS);
+    private final FilePath workspaceMock = mock(FilePath.class, RETURNS_DEEP_STUBS);
+
+    private final ComputeFirewallRulesDiffStep step = new ComputeFirewallRulesDiffStep("after.snapshot");
+
+    private static ByteArrayInputStream snapshot(final String rules) throws Exception {
+        final var outputStream = new ByteArrayOutputStream();
+        FirewallSnapshot.write(new JSONArray(rules), outputStream);
+        return new ByteArrayInputStream(outputStream.toByteArray());
+    }
+
+    @BeforeEach
+    void before() throws Exception {
+        when(contextMock.get(TaskListener.class)).thenReturn(taskListenerMock);
+        when(contextMock.get(Run.class)).thenReturn(runMock);
+        when(contextMock.get(FilePath.class)).thenReturn(workspaceMock);
+        when(workspaceMock.child("after.snapshot").read())
+                .thenReturn(snapshot("[{\"name\": \"a\", \"priority\": 2}, {\"name\": \"c\"}]"));
+    }
+
+    @Test
+    void testDescriptor() {
+        final var descriptor = new ComputeFirewallRulesDiffStep.Descriptor();
+        assertThat(descriptor.getDisplayName()).isEqualTo("Compare two firewall rules snapshots");
+        assertThat(descriptor.getFunctionName()).isEqualTo("computeFirewallRulesDiff");
+        assertThat(descriptor.getRequiredContext()).isEqualTo(Set.of(Run.class, TaskListener.class, FilePath.class));
+    }
+
+    @Test
+    void testRunWithBase() throws Exception {
+        when(workspaceMock.child("before.snapshot").read())
+                .thenReturn(snapshot("[{\"name\": \"a\", \"priority\": 1}, {\"name\": \"b\"}]"));
+        step.setBase("before.snapshot");
+        final var execution = new ComputeFirewallRulesDiffStep.ComputeFirewallRulesDiffStepExecution(contextMock, step);
+
+        final var result = execution.run();
+
+        assertThat(result.get("added")).isEqualTo(List.of(Map.of("name", "c")));
+        assertThat(result.get("removed")).isEqualTo(List.of(Map.of("name", "b")));
+        assertThat(result.get("changed"))
+                .isEqualTo(List.of(Map.of(
+                        "name",
+                        "a",
+                        "before",
+                        Map.of("name", "a", "priority", 1),
+                        "after",
+                        Map.of("name", "a", "priority", 2))));
+    }
+
+    @Test
+    void testRunAgainstPreviousSuccessfulBuild() throws Exception {
+        final var artifactMock = mock(VirtualFile.class);
+        when(artifactMock.exists()).thenReturn(true);
+        when(artifactMock.open()).thenReturn(snapshot("[{\"name\": \"a\", \"priority\": 2}]"));
+        when(runMock.getPreviousSuccessfulBuild().getArtifactManager().root().child("after.snapshot"))
+                .thenReturn(artifactMock);
+        step.setPrintOutput(false);
+        final var execution = new ComputeFirewallRulesDiffStep.ComputeFirewallRulesDiffStepExecution(contextMock, step);
+
+        final var result = execution.run();
+
+        assertThat(result.get("added")).isEqualTo(List.of(Map.of("name", "c")));
+        assertThat(result.get("removed")).isEqualTo(List.of());
+        assertThat(result.get("changed")).isEqualTo(List.of());
+    }
+
+    @Test
+    void testRunWithoutPreviousSuccessfulBuild() throws Exception {
+        when(runMock.getPreviousSuccessfulBuild()).thenReturn(null);
+        final var execution = new ComputeFirewallRulesDiffStep.ComputeFirewallRulesDiffStepExecution(contextMock, step);
+
+        final var result = execution.run();
+
+        assertThat(result.get("added")).isEqualTo(List.of(Map.of("name", "a", "priority", 2), Map.of("name", "c")));
+        assertThat(result.get("removed")).isEqualTo(List.of());
+    }
+}
@@ -0,0 +1,182 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.ArgumentListBuilder;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class ComputeFirewallRulesListProjectsStepTest {
+    private static final String RULES = "[{\"name\": \"allow-ssh\"}]";
+
+    private final StepContext contextMock = mock(StepContext.class);
+    private final TaskListener taskListenerMock = mock(TaskListener.class, RETURNS_DEEP_STUBS);
+    private final Launcher launcherMock = mock(Launcher.class, RETURNS_DEEP_STUBS);
+
+    @BeforeEach
+    void before() throws Exception {
+        when(contextMock.get(Launcher.class)).thenReturn(launcherMock);
+        when(contextMock.get(TaskListener.class)).thenReturn(taskListenerMock);
+        when(contextMock.get(EnvVars.class)).thenReturn(mock(EnvVars.class));
+        when(contextMock.get(FilePath.class)).thenReturn(mock(FilePath.class));
+        when(launcherMock
+                        .launch()
+                        .cmds(any(ArgumentListBuilder.class))
+                        .quiet(true)
+                        .stdout(any(OutputStream.class)))
+                .thenAnswer(invocation -> {
+                    invocation.getArgument(0, OutputStream.class).write(RULES.getBytes(StandardCharsets.UTF_8));
+                    return null;
+                });
+        when(launcherMock
+                        .launch()
+                        .cmds(any(ArgumentListBuilder.class))
+                        .quiet(true)
+                        .join())
+                .thenReturn(0);
+    }
+
+    private Map<String, Object> run(final ComputeFirewallRulesListProjectsStep step) throws Exception {
+        return new ComputeFirewallRulesListProjectsStep.ComputeFirewallRulesListProjectsStepExecution(contextMock, step)
+                .run();
+    }
+
+    @Test
+    void testDescriptor() {
+        final var descriptor = new ComputeFirewallRulesListProjectsStep.Descriptor();
+        assertThat(descriptor.getDisplayName()).isEqualTo("List firewall rules of several projects");
+        assertThat(descriptor.getFunctionName()).isEqualTo("computeFirewallRulesListProjects");
+        assertThat(descriptor.getRequiredContext())
+                .isEqualTo(Set.of(Run.class, Launcher.class, EnvVars.class, TaskListener.class, FilePath.class));
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThatCode(() -> run(new ComputeFirewallRulesListProjectsStep(List.of())))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatCode(() -> run(new ComputeFirewallRulesListProjectsStep(
+                        List.of(new GcpProject("project"), new GcpProject("project")))))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        final var step = new ComputeFirewallRulesListProjectsStep(List.of(new GcpProject("project")));
+        step.setConcurrency(0);
+        assertThatCode(() -> run(step)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRunMergesProjectTaggedResults() throws Exception {
+        final var step = new ComputeFirewallRulesListProjectsStep(
+                List.of(new GcpProject("first"), new GcpProject("second"), new GcpProject("third")));
+        step.setConcurrency(2);
+        step.setFilter("network=default");
+
+        final var result = run(step);
+
+        final var rules = (List<Map<String, Object>>) result.get("rules");
+        assertThat(rules).extracting(rule -> rule.get("project")).containsExactly("first", "second", "third");
+        assertThat(rules).extracting(rule -> rule.get("name")).containsOnly("allow-ssh");
+
+        final var projects = (List<Map<String, Object>>) result.get("projects");
+        assertThat(projects).hasSize(3).allSatisfy(project -> {
+            assertThat(project).containsEntry("count", 1);
+            assertThat(project.get("error")).isNull();
+            assertThat(project.get("durationMillis")).isNotNull();
+        });
+
+        final var cmd = ArgumentCaptor.forClass(ArgumentListBuilder.class);
+        verify(launcherMock.launch(), atLeastOnce()).cmds(cmd.capture());
+        assertThat(cmd.getAllValues().stream()
+                        .filter(Objects::nonNull)
+                        .map(ArgumentListBuilder::toList)
+                        .collect(Collectors.toList()))
+                .contains(List.of(
+                        "gcloud",
+                        "compute",
+                        "firewall-rules",
+                        "list",
+                        "--format=json",
+                        "--project=second",
+                        "--filter=network=default"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRunReportsFailuresPerProject() throws Exception {
+        when(launcherMock
+                        .launch()
+                        .cmds(any(ArgumentListBuilder.class))
+                        .quiet(true)
+                        .join())
+                .thenReturn(1);
+        final var step = new ComputeFirewallRulesListProjectsStep(List.of(new GcpProject("project")));
+
+        final var result = run(step);
+
+        assertThat((List<Map<String, Object>>) result.get("rules")).isEmpty();
+        final var projects = (List<Map<String, Object>>) result.get("projects");
+        assertThat(projects).singleElement().satisfies(project -> assertThat((String) project.get("error"))
+                .startsWith("exit code 1"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRunReportsMissingCredentialsPerProject() throws Exception {
+        try (final var credentialsProviderMock = mockStatic(CredentialsProvider.class);
+                final var jenkinsMock = mockStatic(Jenkins.class)) {
+            jenkinsMock.when(Jenkins::get).thenReturn(mock(Jenkins.class));
+            credentialsProviderMock
+                    .when(() -> CredentialsProvider.lookupCredentialsInItemGroup(any(), any(), any(), any()))
+                    .thenReturn(List.of());
+            final var missing = new GcpProject("missing-credentials");
+            missing.setCredentialsId("missing");
+
+            final var result =
+                    run(new ComputeFirewallRulesListProjectsStep(List.of(missing, new GcpProject("project"))));
+
+            assertThat((List<Map<String, Object>>) result.get("rules"))
+                    .extracting(rule -> rule.get("project"))
+                    .containsExactly("project");
+            final var projects = (List<Map<String, Object>>) result.get("projects");
+            assertThat(projects)
+                    .extracting(project -> project.get("error"))
+                    .containsExactly("Couldn't find credentials file with id missing", null);
+        }
+    }
+
+    @Test
+    void testRunRejectsClientSideFilter() {
+        final var step = new ComputeFirewallRulesListProjectsStep(List.of(new GcpProject("project")));
+        step.setFilter("NOT network=default");
+
+        assertThatCode(() -> run(step))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("server-side");
+        verify(launcherMock.launch(), never()).cmds(any(ArgumentListBuilder.class));
+    }
+}
@@ -0,0 +1,74 @@
+package io.jenkins.plugins.step;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import hudson.Launcher;
+import hudson.model.TaskListener;
+import java.nio.charset.StandardCharsets;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+public class ComputeFirewallRulesListStepBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    public int rules;
+
+    @Param({"buffered", "streamed"})
+    public String mode;
+
+    private StepContext context;
+    private ComputeFirewallRulesListStep step;
+
+    @Setup
+    public void setup() throws Exception {
+        final var listing = new JSONArray();
+        for (int i = 0; i < rules; i++) {
+            listing.put(new JSONObject()
+                    .put("id", String.valueOf(1_000_000_000_000L + i))
+                    .put("name", "rule-" + i)
+                    .put("description", "Generated rule " + i)
+                    .put("network", "https://www.googleapis.com/compute/v1/projects/project/global/networks/default")
+                    .put("direction", "INGRESS")
+                    .put("priority", 1000 + i % 1000)
+                    .put("sourceRanges", new JSONArray().put("10." + i % 256 + ".0.0/16"))
+                    .put("targetTags", new JSONArray().put("tag-" + i % 50))
+                    .put(
+                            "allowed",
+                            new JSONArray()
+                                    .put(new JSONObject()
+                                            .put("IPProtocol", "tcp")
+                                            .put("ports", new JSONArray().put("443"))))
+                    .put("disabled", false)
+                    .put("creationTimestamp", "2024-01-01T00:00:00.000-07:00")
+                    .put(
+                            "selfLink",
+                            "https://www.googleapis.com/compute/v1/projects/project/global/firewalls/rule-" + i));
+        }
+
+        context = mock(StepContext.class);
+        when(context.get(Launcher.class))
+                .thenReturn(new FakeLauncher(listing.toString(2).getBytes(StandardCharsets.UTF_8)));
+        when(context.get(TaskListener.class)).thenReturn(TaskListener.NULL);
+
+        step = new ComputeFirewallRulesListStep();
+        step.setPrintOutput(false);
+        if ("streamed".equals(mode)) {
+            step.setStopAfter(Integer.MAX_VALUE);
+        } else {
+            step.setFormat("json");
+        }
+    }
+
+    @Benchmark
+    public Object list() throws Exception {
+        return new ComputeFirewallRulesListStep.ComputeFirewallRulesListRuleStepExecution(context, step).run();
+    }
+}
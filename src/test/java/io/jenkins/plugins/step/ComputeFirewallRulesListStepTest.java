@@ -11,14 +11,22 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import hudson.EnvVars;
+import hudson.FilePath;
 import hudson.Launcher;
+import hudson.Proc;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.util.ArgumentListBuilder;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.Set;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.json.JSONArray;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 
 class ComputeFirewallRulesListStepTest {
@@ -46,8 +54,7 @@ class ComputeFirewallRulesListStepTest {
         final var descriptor = new ComputeFirewallRulesListStep.Descriptor();
         assertThat(descriptor.getDisplayName()).isEqualTo("List firewall rules");
         assertThat(descriptor.getFunctionName()).isEqualTo("computeFirewallRulesList");
-        assertThat(descriptor.getRequiredContext())
-                .isEqualTo(Set.of(Run.class, Launcher.class, EnvVars.class, TaskListener.class));
+        assertThat(descriptor.getRequiredContext()).isEqualTo(Set.of(Run.class, EnvVars.class, TaskListener.class));
     }
 
     @Test
@@ -62,7 +69,9 @@ class ComputeFirewallRulesListStepTest {
                         .join())
                 .thenReturn(1);
 
-        assertThatCode(execution::run).isInstanceOf(IllegalArgumentException.class);
+        assertThatCode(execution::run)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Failed to list firewall rules with this command: ");
     }
 
     @Test
@@ -92,11 +101,27 @@ class ComputeFirewallRulesListStepTest {
         verify(taskListenerMock, never()).getLogger();
     }
 
+    @Test
+    void testReturnHandle(@TempDir final Path rootDir) throws Exception {
+        final Run<?, ?> runMock = mock(Run.class);
+        when(runMock.getRootDir()).thenReturn(rootDir.toFile());
+        when(contextMock.get(Run.class)).thenReturn(runMock);
+        step.setReturnHandle(true);
+        final var execution =
+                new ComputeFirewallRulesListStep.ComputeFirewallRulesListRuleStepExecution(contextMock, step);
+
+        final var result = execution.run();
+
+        assertThat(result).isInstanceOf(GcpResultHandle.class);
+        assertThat(((GcpResultHandle) result).getText()).isEmpty();
+        assertThat(rootDir.resolve(GcpResultHandle.DIRECTORY)).isNotEmptyDirectory();
+    }
+
     @Test
     void testRunAllParamsNotNull() {
         step.setName("name");
         step.setRegexp("regexp");
-        step.setFilter("filter");
+        step.setFilter("network=default");
         step.setLimit("limit");
         step.setPageSize(10);
         step.setSortBy("sort-by");
@@ -116,13 +141,189 @@ class ComputeFirewallRulesListStepTest {
                         "compute",
                         "firewall-rules",
                         "list",
-                        "--filter=name=(name)",
-                        "--filter=name~regexp",
-                        "--filter=filter",
+                        "--filter=(name=(name)) AND (name~regexp) AND (network=default)",
                         "--limit=limit",
                         "--page-size=10",
                         "--sort-by=sort-by",
                         "--uri",
                         "--format=format");
     }
+
+    @Test
+    void testRunSingleCriterionIsNotWrapped() {
+        step.setRegexp("^default-.*");
+        final var execution =
+                new ComputeFirewallRulesListStep.ComputeFirewallRulesListRuleStepExecution(contextMock, step);
+
+        assertThatCode(execution::run).doesNotThrowAnyException();
+        final var cmd = ArgumentCaptor.forClass(ArgumentListBuilder.class);
+        verify(launcherMock.launch(), atLeastOnce()).cmds(cmd.capture());
+        assertThat(cmd.getValue().toList())
+                .containsExactly("gcloud", "compute", "firewall-rules", "list", "--filter=name~^default-.*");
+    }
+
+    @Test
+    void testRunFilterNotServerSide() {
+        step.setFilter("NOT network=default");
+        final var execution =
+                new ComputeFirewallRulesListStep.ComputeFirewallRulesListRuleStepExecution(contextMock, step);
+
+        assertThatCode(execution::run).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testRunFilterNotServerSideAllowed() {
+        step.setFilter("NOT network=default");
+        step.setAllowClientSideFilter(true);
+        final var execution =
+                new ComputeFirewallRulesListStep.ComputeFirewallRulesListRuleStepExecution(contextMock, step);
+
+        assertThatCode(execution::run).doesNotThrowAnyException();
+    }
+
+    @Test
+    void testRunFieldsProjection() {
+        step.setFields("name,priority");
+        final var execution =
+                new ComputeFirewallRulesListStep.ComputeFirewallRulesListRuleStepExecution(contextMock, step);
+
+        assertThatCode(execution::run).doesNotThrowAnyException();
+        final var cmd = ArgumentCaptor.forClass(ArgumentListBuilder.class);
+        verify(launcherMock.launch(), atLeastOnce()).cmds(cmd.capture());
+        assertThat(cmd.getValue().toList())
+                .containsExactly("gcloud", "compute", "firewall-rules", "list", "--format=json(name,priority)");
+    }
+
+    @Test
+    void testIsMirrorable() {
+        step.setFormat("json");
+        assertThat(step.isMirrorable()).isFalse();
+        step.setMaxStaleness(60);
+        step.setName("a b");
+        assertThat(step.isMirrorable()).isTrue();
+        step.setFilter("network=default");
+        assertThat(step.isMirrorable()).isFalse();
+    }
+
+    @Test
+    void testRunMaxStalenessWithoutMirror() {
+        step.setFormat("json");
+        step.setMaxStaleness(60);
+        final var execution =
+                new ComputeFirewallRulesListStep.ComputeFirewallRulesListRuleStepExecution(contextMock, step);
+
+        assertThatCode(execution::run).doesNotThrowAnyException();
+        final var cmd = ArgumentCaptor.forClass(ArgumentListBuilder.class);
+        verify(launcherMock.launch(), atLeastOnce()).cmds(cmd.capture());
+        assertThat(cmd.getValue().toList())
+                .containsExactly("gcloud", "compute", "firewall-rules", "list", "--format=json");
+    }
+
+    private Proc procMock(final String output) {
+        final var procMock = mock(Proc.class);
+        when(procMock.getStdout()).thenReturn(new ByteArrayInputStream(output.getBytes(StandardCharsets.UTF_8)));
+        return procMock;
+    }
+
+    @Test
+    void testRunIncrementalStopsAfterEnoughRules() throws Exception {
+        final var procMock = procMock("[{\"name\": \"a\"}, {\"name\": \"b\"}, {\"name\": \"c\"}]");
+        when(launcherMock
+                        .launch()
+                        .cmds(any(ArgumentListBuilder.class))
+                        .quiet(true)
+                        .start())
+                .thenReturn(procMock);
+        step.setStopAfter(2);
+        step.setPageSize(2);
+        final var execution =
+                new ComputeFirewallRulesListStep.ComputeFirewallRulesListRuleStepExecution(contextMock, step);
+
+        final var result = execution.run();
+
+        assertThat(result).isEqualTo(new JSONArray("[{\"name\": \"a\"}, {\"name\": \"b\"}]").toString(2));
+        verify(procMock).kill();
+        verify(procMock, never()).join();
+        final var cmd = ArgumentCaptor.forClass(ArgumentListBuilder.class);
+        verify(launcherMock.launch(), atLeastOnce()).cmds(cmd.capture());
+        assertThat(cmd.getValue().toList())
+                .containsExactly("gcloud", "compute", "firewall-rules", "list", "--page-size=2", "--format=json");
+    }
+
+    @Test
+    void testRunIncrementalWritesOutputFile() throws Exception {
+        final var procMock = procMock("[{\"name\": \"a\"}, {\"name\": \"b\"}]");
+        when(launcherMock
+                        .launch()
+                        .cmds(any(ArgumentListBuilder.class))
+                        .quiet(true)
+                        .start())
+                .thenReturn(procMock);
+        final var workspaceMock = mock(FilePath.class);
+        final var targetMock = mock(FilePath.class);
+        final var outputStream = new ByteArrayOutputStream();
+        when(contextMock.get(FilePath.class)).thenReturn(workspaceMock);
+        when(workspaceMock.child("rules.ndjson")).thenReturn(targetMock);
+        when(targetMock.getParent()).thenReturn(mock(FilePath.class));
+        when(targetMock.write()).thenReturn(outputStream);
+        step.setOutputFile("rules.ndjson");
+        step.setFields("name");
+        step.setPrintOutput(false);
+        final var execution =
+                new ComputeFirewallRulesListStep.ComputeFirewallRulesListRuleStepExecution(contextMock, step);
+
+        final var result = execution.run();
+
+        assertThat(result).isEqualTo(2);
+        assertThat(outputStream.toString(StandardCharsets.UTF_8).split("\n"))
+                .containsExactly("{\"name\":\"a\"}", "{\"name\":\"b\"}");
+        verify(procMock).join();
+        verify(procMock, never()).kill();
+    }
+
+    private void runIncrementally(final String output, final int exitCode) throws Exception {
+        final var procMock = procMock(output);
+        when(procMock.join()).thenReturn(exitCode);
+        when(launcherMock
+                        .launch()
+                        .cmds(any(ArgumentListBuilder.class))
+                        .quiet(true)
+                        .start())
+                .thenReturn(procMock);
+        step.setStopAfter(5);
+        new ComputeFirewallRulesListStep.ComputeFirewallRulesListRuleStepExecution(contextMock, step).run();
+    }
+
+    @Test
+    void testRunIncrementalFailsWhenGcloudFailsMidStream() {
+        assertThatCode(() -> runIncrementally("[{\"name\": \"a\"}, {\"na", 1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Failed to list firewall rules with this command: ");
+    }
+
+    @Test
+    void testRunIncrementalRejectsUnexpectedOutput() {
+        assertThatCode(() -> runIncrementally("[{\"name\": \"a\"} {\"name\": \"b\"}]", 0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Unexpected output of command: ");
+    }
+
+    @Test
+    void testRunIncrementalRejectsFormat() {
+        step.setStopAfter(1);
+        step.setFormat("table");
+        final var execution =
+                new ComputeFirewallRulesListStep.ComputeFirewallRulesListRuleStepExecution(contextMock, step);
+
+        assertThatCode(execution::run).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testRunIncrementalOutputFileWithoutWorkspace() {
+        step.setOutputFile("rules.ndjson");
+        final var execution =
+                new ComputeFirewallRulesListStep.ComputeFirewallRulesListRuleStepExecution(contextMock, step);
+
+        assertThatCode(execution::run).isInstanceOf(IllegalArgumentException.class);
+    }
 }
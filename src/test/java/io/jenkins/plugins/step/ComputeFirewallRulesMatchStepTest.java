@@ -0,0 +1,135 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import hudson.EnvVars;
+import hudson.Launcher;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.ArgumentListBuilder;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class ComputeFirewallRulesMatchStepTest {
+    private static final String RULES = "[{\"name\": \"allow-ssh\", \"priority\": 1000,"
+            + " \"sourceRanges\": [\"10.0.0.0/8\"], \"allowed\": [{\"IPProtocol\": \"tcp\", \"ports\": [\"22\"]}]}]";
+
+    private final StepContext contextMock = mock(StepContext.class);
+    private final TaskListener taskListenerMock = mock(TaskListener.class, RETURNS_DEEP_STUBS);
+    private final Launcher launcherMock = mock(Launcher.class, RETURNS_DEEP_STUBS);
+
+    @BeforeEach
+    void before() throws Exception {
+        when(contextMock.get(Launcher.class)).thenReturn(launcherMock);
+        when(contextMock.get(TaskListener.class)).thenReturn(taskListenerMock);
+        when(contextMock.get(EnvVars.class)).thenReturn(mock(EnvVars.class));
+        when(launcherMock
+                        .launch()
+                        .cmds(any(ArgumentListBuilder.class))
+                        .quiet(true)
+                        .stdout(any(OutputStream.class)))
+                .thenAnswer(invocation -> {
+                    invocation.getArgument(0, OutputStream.class).write(RULES.getBytes(StandardCharsets.UTF_8));
+                    return null;
+                });
+        when(launcherMock
+                        .launch()
+                        .cmds(any(ArgumentListBuilder.class))
+                        .quiet(true)
+                        .join())
+                .thenReturn(0);
+    }
+
+    @Test
+    void testDescriptor() {
+        final var descriptor = new ComputeFirewallRulesMatchStep.Descriptor();
+        assertThat(descriptor.getDisplayName()).isEqualTo("Find firewall rules matching a packet");
+        assertThat(descriptor.getFunctionName()).isEqualTo("computeFirewallRulesMatch");
+        assertThat(descriptor.getRequiredContext())
+                .isEqualTo(Set.of(Run.class, Launcher.class, EnvVars.class, TaskListener.class));
+    }
+
+    @Test
+    void testRunWithoutQueries() {
+        final var execution = new ComputeFirewallRulesMatchStep.ComputeFirewallRulesMatchStepExecution(
+                contextMock, new ComputeFirewallRulesMatchStep(List.of()));
+
+        assertThatCode(execution::run).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testRunInvalidQuery() {
+        final var execution = new ComputeFirewallRulesMatchStep.ComputeFirewallRulesMatchStepExecution(
+                contextMock, new ComputeFirewallRulesMatchStep(List.of("source=10.0.0.1 port=22")));
+
+        assertThatCode(execution::run).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testRunLauncherCommandNonZeroResult() throws Exception {
+        when(launcherMock
+                        .launch()
+                        .cmds(any(ArgumentListBuilder.class))
+                        .quiet(true)
+                        .join())
+                .thenReturn(1);
+        final var execution = new ComputeFirewallRulesMatchStep.ComputeFirewallRulesMatchStepExecution(
+                contextMock, new ComputeFirewallRulesMatchStep(List.of("source=10.0.0.1 protocol=tcp port=22")));
+
+        assertThatCode(execution::run).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testRunListsOnceForAllQueries() throws Exception {
+        final var step = new ComputeFirewallRulesMatchStep(List.of(
+                "source=10.0.0.1 protocol=tcp port=22",
+                "source=10.0.0.1 protocol=tcp port=80",
+                "source=192.168.0.1 protocol=tcp port=22"));
+        step.setFilter("network=default");
+        final var execution =
+                new ComputeFirewallRulesMatchStep.ComputeFirewallRulesMatchStepExecution(contextMock, step);
+
+        final List<Map<String, Object>> result = execution.run();
+
+        final var cmd = ArgumentCaptor.forClass(ArgumentListBuilder.class);
+        verify(launcherMock.launch(), atLeastOnce()).cmds(cmd.capture());
+        assertThat(cmd.getValue().toList())
+                .containsExactly(
+                        "gcloud", "compute", "firewall-rules", "list", "--format=json", "--filter=network=default");
+        assertThat(result).hasSize(3);
+        assertThat(result.get(0))
+                .containsEntry("action", "ALLOW")
+                .containsEntry("rules", List.of("allow-ssh"));
+        assertThat(result.get(1)).containsEntry("action", "DENY").containsEntry("rules", List.of());
+        assertThat(result.get(2)).containsEntry("action", "DENY").containsEntry("rules", List.of());
+        verify(taskListenerMock, atLeastOnce()).getLogger();
+    }
+
+    @Test
+    void testRunRejectsClientSideFilter() {
+        final var step = new ComputeFirewallRulesMatchStep(List.of("source=10.0.0.1 protocol=tcp port=22"));
+        step.setFilter("NOT network=default");
+        final var execution =
+                new ComputeFirewallRulesMatchStep.ComputeFirewallRulesMatchStepExecution(contextMock, step);
+
+        assertThatCode(execution::run)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("server-side");
+        verify(launcherMock.launch(), never()).cmds(any(ArgumentListBuilder.class));
+    }
+}
@@ -0,0 +1,143 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.BuildListener;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.ArgumentListBuilder;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class ComputeFirewallRulesSnapshotStepTest {
+    private final StepContext contextMock = mock(StepContext.class);
+    private final TaskListener taskListenerMock = mock(TaskListener.class, RETURNS_DEEP_STUBS);
+    private final Launcher launcherMock = mock(Launcher.class, RETURNS_DEEP_STUBS);
+    private final Run<?, ?> runMock = mock(Run.class, RETURNS_DEEP_STUBS);
+    private final FilePath workspaceMock = mock(FilePath.class);
+    private final FilePath targetMock = mock(FilePath.class);
+    private final ByteArrayOutputStream snapshotStream = new ByteArrayOutputStream();
+
+    private final ComputeFirewallRulesSnapshotStep step = new ComputeFirewallRulesSnapshotStep("fw.snapshot");
+
+    @BeforeEach
+    void before() throws Exception {
+        when(contextMock.get(Launcher.class)).thenReturn(launcherMock);
+        when(contextMock.get(TaskListener.class)).thenReturn(taskListenerMock);
+        when(contextMock.get(Run.class)).thenReturn(runMock);
+        when(contextMock.get(FilePath.class)).thenReturn(workspaceMock);
+        when(workspaceMock.child("fw.snapshot")).thenReturn(targetMock);
+        when(targetMock.getParent()).thenReturn(mock(FilePath.class));
+        when(targetMock.write()).thenReturn(snapshotStream);
+        when(launcherMock
+                        .launch()
+                        .cmds(any(ArgumentListBuilder.class))
+                        .quiet(true)
+                        .join())
+                .thenReturn(0);
+        when(launcherMock
+                        .launch()
+                        .cmds(any(ArgumentListBuilder.class))
+                        .quiet(true)
+                        .stdout(any(OutputStream.class)))
+                .thenAnswer(invocation -> {
+                    invocation
+                            .getArgument(0, OutputStream.class)
+                            .write("[{\"name\": \"b\"}, {\"name\": \"a\"}]".getBytes(StandardCharsets.UTF_8));
+                    return null;
+                });
+    }
+
+    @Test
+    void testDescriptor() {
+        final var descriptor = new ComputeFirewallRulesSnapshotStep.Descriptor();
+        assertThat(descriptor.getDisplayName()).isEqualTo("Store a snapshot of firewall rules");
+        assertThat(descriptor.getFunctionName()).isEqualTo("computeFirewallRulesSnapshot");
+        assertThat(descriptor.getRequiredContext())
+                .isEqualTo(Set.of(Run.class, Launcher.class, EnvVars.class, TaskListener.class, FilePath.class));
+    }
+
+    @Test
+    void testRunLauncherCommandNonZeroResult() {
+        final var execution =
+                new ComputeFirewallRulesSnapshotStep.ComputeFirewallRulesSnapshotStepExecution(contextMock, step);
+
+        when(launcherMock
+                        .launch()
+                        .cmds(any(ArgumentListBuilder.class))
+                        .quiet(true)
+                        .join())
+                .thenReturn(1);
+
+        assertThatCode(execution::run).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testRunWritesAndArchivesSnapshot() throws Exception {
+        step.setFilter("network=default");
+        final var execution =
+                new ComputeFirewallRulesSnapshotStep.ComputeFirewallRulesSnapshotStepExecution(contextMock, step);
+
+        final var result = execution.run();
+
+        assertThat(result).isEqualTo(2);
+        final var cmd = ArgumentCaptor.forClass(ArgumentListBuilder.class);
+        verify(launcherMock.launch(), atLeastOnce()).cmds(cmd.capture());
+        assertThat(cmd.getValue().toList())
+                .containsExactly(
+                        "gcloud", "compute", "firewall-rules", "list", "--format=json", "--filter=network=default");
+        final var diff = FirewallSnapshot.diff(null, new ByteArrayInputStream(snapshotStream.toByteArray()));
+        assertThat(diff.getAdded()).extracting(rule -> rule.getString("name")).containsExactly("a", "b");
+        verify(runMock.getArtifactManager())
+                .archive(
+                        eq(workspaceMock),
+                        eq(launcherMock),
+                        any(BuildListener.class),
+                        eq(Map.of("fw.snapshot", "fw.snapshot")));
+    }
+
+    @Test
+    void testRunWithoutArchive() throws Exception {
+        step.setArchive(false);
+        final var runWithoutArtifacts = mock(Run.class);
+        when(contextMock.get(Run.class)).thenReturn(runWithoutArtifacts);
+        final var execution =
+                new ComputeFirewallRulesSnapshotStep.ComputeFirewallRulesSnapshotStepExecution(contextMock, step);
+
+        assertThat(execution.run()).isEqualTo(2);
+        verifyNoInteractions(runWithoutArtifacts);
+    }
+
+    @Test
+    void testRunRejectsClientSideFilter() {
+        step.setFilter("NOT network=default");
+        final var execution =
+                new ComputeFirewallRulesSnapshotStep.ComputeFirewallRulesSnapshotStepExecution(contextMock, step);
+
+        assertThatCode(execution::run)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("server-side");
+        verify(launcherMock.launch(), never()).cmds(any(ArgumentListBuilder.class));
+    }
+}
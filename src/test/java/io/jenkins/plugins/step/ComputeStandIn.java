@@ -0,0 +1,336 @@
+package io.jenkins.plugins.step;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Local stand-in for the firewalls collection, the hierarchical firewall policies and the batch endpoint of the Compute
+ * API, and for the token endpoint of OAuth, with configurable latency, error injection and rate quota.
+ */
+final class ComputeStandIn implements AutoCloseable {
+
+    private static final String PREFIX = "/compute/v1/projects/";
+    private static final String LOCATIONS_PREFIX = "/compute/v1/locations/global/";
+    private static final Reply ERROR =
+            new Reply(503, new JSONObject().put("error", new JSONObject().put("code", 503)));
+    private static final Reply RATE_LIMITED = new Reply(403, error(403, "rateLimitExceeded"));
+
+    private final Map<String, JSONObject> rules = new ConcurrentHashMap<>();
+    private final Map<String, JSONObject> policies = new ConcurrentHashMap<>();
+    private final AtomicInteger policyConflicts = new AtomicInteger();
+    private final AtomicInteger operations = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger batchRequests = new AtomicInteger();
+    private final AtomicInteger errors = new AtomicInteger();
+    private final AtomicInteger tokens = new AtomicInteger();
+    private final AtomicInteger rateLimited = new AtomicInteger();
+    private volatile int batchQuota = Integer.MAX_VALUE;
+    private volatile String lastAssertion;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final long latencyMillis;
+    private final double errorRate;
+
+    ComputeStandIn(final long latencyMillis, final double errorRate) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.errorRate = errorRate;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(PREFIX, this::handle);
+        server.createContext("/batch/compute/v1", this::handleBatch);
+        server.createContext(LOCATIONS_PREFIX, this::handleLocations);
+        server.createContext("/token", this::handleToken);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return the value of {@code CLOUDSDK_API_ENDPOINT_OVERRIDES_COMPUTE} pointing gcloud to this stand-in
+     */
+    String getEndpoint() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/compute/v1/";
+    }
+
+    /**
+     * @return the {@code token_uri} of service account keys pointing to this stand-in
+     */
+    String getTokenUri() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/token";
+    }
+
+    int getTokens() {
+        return tokens.get();
+    }
+
+    String getLastAssertion() {
+        return lastAssertion;
+    }
+
+    int getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * @return the number of batch requests, their calls are counted by {@link #getRequests()}
+     */
+    int getBatchRequests() {
+        return batchRequests.get();
+    }
+
+    boolean hasRule(final String project, final String name) {
+        return rules.containsKey(project + "/" + name);
+    }
+
+    void putRule(final String project, final String name) {
+        rules.put(project + "/" + name, new JSONObject().put("name", name).put("network", "default"));
+    }
+
+    void putFirewallPolicy(final String id, final JSONArray policyRules) {
+        policies.put(id, new JSONObject().put("name", id).put("fingerprint", "0").put("rules", policyRules));
+    }
+
+    JSONObject getFirewallPolicy(final String id) {
+        return policies.get(id);
+    }
+
+    /**
+     * Makes the next patches of a firewall policy fail as if the policy changed since it was read.
+     */
+    void conflictOnPolicyPatches(final int count) {
+        policyConflicts.set(count);
+    }
+
+    /**
+     * Makes the calls of a batch request beyond the quota fail like calls exceeding a rate quota of the Compute API.
+     */
+    void limitBatchCalls(final int quota) {
+        batchQuota = quota;
+    }
+
+    int getRateLimited() {
+        return rateLimited.get();
+    }
+
+    int getErrors() {
+        return errors.get();
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            Thread.sleep(latencyMillis);
+            final var reply = injectError()
+                    ? ERROR
+                    : dispatch(exchange.getRequestMethod(), exchange.getRequestURI(), read(exchange));
+            respond(exchange, reply.status, reply.body);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs every call of a multipart batch request, errors are injected per call.
+     */
+    private void handleBatch(final HttpExchange exchange) throws IOException {
+        try (exchange) {
+            batchRequests.incrementAndGet();
+            Thread.sleep(latencyMillis);
+            final var boundary = "batch_response";
+            final var response = new StringBuilder();
+            final var contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            var calls = 0;
+            for (final var part : ComputeBatch.parts(contentType, read(exchange))) {
+                requests.incrementAndGet();
+                final var requestLine = part.content.split("\r\n", 2)[0].split(" ");
+                final var separator = part.content.indexOf("\r\n\r\n");
+                final var body = separator < 0 ? "" : part.content.substring(separator + 4).trim();
+                final Reply reply;
+                if (++calls > batchQuota) {
+                    rateLimited.incrementAndGet();
+                    reply = RATE_LIMITED;
+                } else {
+                    reply = injectError() ? ERROR : dispatch(requestLine[0], URI.create(requestLine[1]), body);
+                }
+                final var contentId = part.headers.get("content-id").replace("<", "<response-");
+                response.append("--" + boundary + "\r\n")
+                        .append("Content-Type: application/http\r\n")
+                        .append("Content-ID: " + contentId + "\r\n\r\n")
+                        .append("HTTP/1.1 " + reply.status + " Status\r\n")
+                        .append("Content-Type: application/json; charset=UTF-8\r\n\r\n")
+                        .append(reply.body + "\r\n");
+            }
+            response.append("--").append(boundary).append("--\r\n");
+            final var bytes = response.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "multipart/mixed; boundary=" + boundary);
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Grants a token for any JWT bearer assertion, the assertion is kept for the tests to check.
+     */
+    private void handleToken(final HttpExchange exchange) throws IOException {
+        try (exchange) {
+            for (final var parameter : read(exchange).split("&")) {
+                if (parameter.startsWith("assertion=")) {
+                    lastAssertion = parameter.substring("assertion=".length());
+                }
+            }
+            respond(
+                    exchange,
+                    200,
+                    new JSONObject()
+                            .put("access_token", "token-" + tokens.incrementAndGet())
+                            .put("expires_in", 3600)
+                            .put("token_type", "Bearer"));
+        }
+    }
+
+    /**
+     * Hierarchical firewall policies, the operations of their patches are done when first polled.
+     */
+    private void handleLocations(final HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            // firewallPolicies/{id} or operations/{name}
+            final var path = exchange.getRequestURI().getPath().substring(LOCATIONS_PREFIX.length()).split("/");
+            if ("operations".equals(path[0])) {
+                respond(exchange, 200, new JSONObject().put("name", path[1]).put("status", "DONE"));
+                return;
+            }
+            final var policy = policies.get(path[1]);
+            if (policy == null) {
+                respond(exchange, 404, new JSONObject());
+            } else if ("GET".equals(exchange.getRequestMethod())) {
+                respond(exchange, 200, policy);
+            } else if ("PATCH".equals(exchange.getRequestMethod())) {
+                final var patch = new JSONObject(read(exchange));
+                synchronized (policy) {
+                    final var fingerprint = policy.getString("fingerprint");
+                    if (policyConflicts.getAndUpdate(count -> Math.max(0, count - 1)) > 0) {
+                        policy.put("fingerprint", String.valueOf(Integer.parseInt(fingerprint) + 1));
+                        respond(exchange, 412, new JSONObject());
+                        return;
+                    }
+                    if (!fingerprint.equals(patch.optString("fingerprint"))) {
+                        respond(exchange, 412, new JSONObject());
+                        return;
+                    }
+                    policy.put("rules", patch.getJSONArray("rules"));
+                    policy.put("fingerprint", String.valueOf(Integer.parseInt(fingerprint) + 1));
+                }
+                respond(
+                        exchange,
+                        200,
+                        new JSONObject()
+                                .put("name", "operation-" + operations.incrementAndGet())
+                                .put("status", "RUNNING"));
+            } else {
+                respond(exchange, 405, new JSONObject());
+            }
+        }
+    }
+
+    private boolean injectError() {
+        if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+            errors.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private Reply dispatch(final String method, final URI uri, final String body) {
+        // projects/{project}/global/firewalls[/{name}] or projects/{project}/global/operations/{name}[/wait]
+        final var path = uri.getPath().substring(PREFIX.length()).split("/");
+        final var project = path[0];
+        if (path.length > 2 && "operations".equals(path[2])) {
+            return new Reply(200, new JSONObject().put("name", path[3]).put("status", "DONE"));
+        }
+        final var json = body.isEmpty() ? new JSONObject() : new JSONObject(body);
+        final var name = path.length > 3 ? path[3] : json.optString("name", queryName(uri));
+        final var key = project + "/" + name;
+        switch (method) {
+            case "GET":
+                if (path.length > 3) {
+                    final var rule = rules.get(key);
+                    return new Reply(rule == null ? 404 : 200, rule == null ? new JSONObject() : rule);
+                }
+                final var items = new JSONArray();
+                rules.forEach((ruleKey, rule) -> {
+                    if (ruleKey.startsWith(project + "/")) {
+                        items.put(rule);
+                    }
+                });
+                return new Reply(200, new JSONObject().put("kind", "compute#firewallList").put("items", items));
+            case "POST":
+                if (rules.putIfAbsent(key, json.put("name", name).put("network", "default")) != null) {
+                    return new Reply(409, new JSONObject().put("error", new JSONObject().put("code", 409)));
+                }
+                return new Reply(200, new JSONObject().put("kind", "compute#operation").put("status", "DONE"));
+            case "PATCH":
+                final var rule = rules.get(key);
+                if (rule == null) {
+                    return new Reply(404, new JSONObject());
+                }
+                json.keySet().forEach(field -> rule.put(field, json.get(field)));
+                return new Reply(200, new JSONObject().put("status", "DONE"));
+            case "DELETE":
+                return new Reply(rules.remove(key) == null ? 404 : 200, new JSONObject().put("status", "DONE"));
+            default:
+                return new Reply(405, new JSONObject());
+        }
+    }
+
+    private static JSONObject error(final int code, final String reason) {
+        final var errors = new JSONArray().put(new JSONObject().put("reason", reason));
+        return new JSONObject().put("error", new JSONObject().put("code", code).put("errors", errors));
+    }
+
+    private static String read(final HttpExchange exchange) throws IOException {
+        return new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    private static String queryName(final URI uri) {
+        final var query = uri.getQuery();
+        return query != null && query.startsWith("name=") ? query.substring("name=".length()) : null;
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final JSONObject body)
+            throws IOException {
+        final var bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static final class Reply {
+        private final int status;
+        private final JSONObject body;
+
+        private Reply(final int status, final JSONObject body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
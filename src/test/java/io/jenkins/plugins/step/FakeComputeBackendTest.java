@@ -0,0 +1,221 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import hudson.EnvVars;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class FakeComputeBackendTest {
+
+    private final StepContext contextMock = mock(StepContext.class);
+    private final FakeComputeBackend.FakeGcloud gcloud =
+            new FakeComputeBackend.FakeGcloud(FakeComputeBackend.getCompute(null), TaskListener.NULL);
+    private final ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+    @BeforeEach
+    void before() throws Exception {
+        FakeComputeBackend.getCompute(null).reset();
+        final var envVars = new EnvVars(FirewallBackend.VARIABLE, FakeComputeBackend.ID, "CLOUDSDK_CORE_PROJECT", "p");
+        when(contextMock.get(EnvVars.class)).thenReturn(envVars);
+        when(contextMock.get(TaskListener.class)).thenReturn(TaskListener.NULL);
+    }
+
+    private int gcloud(final String... args) {
+        stdout.reset();
+        stderr.reset();
+        final var cmd = new ArrayList<>(List.of("gcloud", "compute", "firewall-rules"));
+        cmd.addAll(List.of(args));
+        return gcloud.run(
+                cmd,
+                "p",
+                new PrintStream(stdout, true, StandardCharsets.UTF_8),
+                new PrintStream(stderr, true, StandardCharsets.UTF_8));
+    }
+
+    private String output() {
+        return stdout.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testCreateAndDescribe() {
+        assertThat(gcloud(
+                        "create",
+                        "allow-web",
+                        "--allow=tcp:80,tcp:443,icmp",
+                        "--priority=900",
+                        "--source-tags=lb,proxy",
+                        "--enable-logging",
+                        "--logging-metadata=include-all"))
+                .isZero();
+        assertThat(stderr.toString(StandardCharsets.UTF_8))
+                .contains("Created [" + FakeCompute.selfLink("p", "allow-web") + "]");
+        assertThat(gcloud("describe", "allow-web", "--format=json")).isZero();
+
+        final var rule = new JSONObject(output());
+        assertThat(rule.getInt("priority")).isEqualTo(900);
+        final var allowed = rule.getJSONArray("allowed");
+        assertThat(allowed.length()).isEqualTo(2);
+        assertThat(allowed.getJSONObject(0).getString("IPProtocol")).isEqualTo("tcp");
+        assertThat(allowed.getJSONObject(0).getJSONArray("ports").toList()).containsExactly("80", "443");
+        assertThat(allowed.getJSONObject(1).toMap()).containsOnlyKeys("IPProtocol");
+        assertThat(rule.getJSONArray("sourceTags").toList()).containsExactly("lb", "proxy");
+        assertThat(rule.has("sourceRanges")).isFalse();
+        assertThat(rule.getJSONObject("logConfig").toMap())
+                .containsEntry("enable", true)
+                .containsEntry("metadata", "INCLUDE_ALL_METADATA");
+
+        assertThat(gcloud("create", "allow-web", "--allow=tcp")).isEqualTo(1);
+        assertThat(stderr.toString(StandardCharsets.UTF_8)).contains("already exists");
+        assertThat(gcloud("describe", "missing", "--format=json")).isEqualTo(1);
+        assertThat(gcloud("create", "no-action")).isEqualTo(2);
+        assertThat(gcloud("create", "unknown", "--allow=tcp", "--unknown=1")).isEqualTo(2);
+        assertThat(gcloud("create", "deny-ssh", "--action=deny", "--rules=tcp:22", "--project=other"))
+                .isZero();
+        assertThat(FakeComputeBackend.getCompute(null).getOperations("other")).hasSize(1);
+    }
+
+    @Test
+    void testUpdate() throws Exception {
+        gcloud("create", "web", "--action=DENY", "--rules=tcp:80", "--source-ranges=10.0.0.0/8");
+
+        assertThat(gcloud(
+                        "update",
+                        "web",
+                        "--rules=tcp:8080",
+                        "--description=web",
+                        "--no-disabled",
+                        "--source-ranges=",
+                        "--source-tags=ci",
+                        "--target-tags=web"))
+                .isZero();
+
+        final var rule = FakeComputeBackend.getCompute(null).get("p", "web");
+        assertThat(rule.getJSONArray("denied").getJSONObject(0).getJSONArray("ports").toList())
+                .containsExactly("8080");
+        assertThat(rule.has("sourceRanges")).isFalse();
+        assertThat(rule.getJSONArray("sourceTags").toList()).containsExactly("ci");
+        assertThat(rule.getJSONArray("targetTags").toList()).containsExactly("web");
+        assertThat(gcloud("update", "web", "--source-tags=")).isEqualTo(1);
+        assertThat(gcloud("update", "web", "--allow=tcp")).isEqualTo(1);
+        assertThat(gcloud("update", "web", "--direction=EGRESS")).isEqualTo(1);
+    }
+
+    @Test
+    void testDeleteExistingRules() {
+        gcloud("create", "a", "--allow=tcp");
+        gcloud("create", "b", "--allow=tcp");
+
+        assertThat(gcloud("delete", "a", "missing", "b")).isEqualTo(1);
+
+        assertThat(stderr.toString(StandardCharsets.UTF_8)).contains("firewalls/missing' was not found");
+        assertThat(gcloud("list", "--format=value(name)")).isZero();
+        assertThat(output()).isEmpty();
+    }
+
+    @Test
+    void testList() {
+        for (int i = 0; i < 1200; i++) {
+            gcloud("create", String.format("rule-%04d", i), "--allow=tcp", "--priority=" + (i % 100));
+        }
+
+        assertThat(gcloud("list", "--filter=name~^rule-00 AND priority<5", "--format=value(name,priority)"))
+                .isZero();
+        assertThat(output().lines())
+                .containsExactly("rule-0000\t0", "rule-0001\t1", "rule-0002\t2", "rule-0003\t3", "rule-0004\t4");
+
+        assertThat(gcloud("list", "--sort-by=~priority,name", "--limit=3", "--page-size=50", "--format=json(name)"))
+                .isZero();
+        assertThat(new JSONArray(output()).toString())
+                .isEqualTo("[{\"name\":\"rule-0099\"},{\"name\":\"rule-0199\"},{\"name\":\"rule-0299\"}]");
+
+        assertThat(gcloud("list", "--limit=2", "--uri")).isZero();
+        assertThat(output().lines())
+                .containsExactly(FakeCompute.selfLink("p", "rule-0000"), FakeCompute.selfLink("p", "rule-0001"));
+
+        assertThat(gcloud("list", "--filter=name=rule-0042")).isZero();
+        assertThat(output().lines())
+                .containsExactly(
+                        "NAME       NETWORK  DIRECTION  PRIORITY  DISABLED",
+                        "rule-0042  default  INGRESS    42        false");
+
+        assertThat(gcloud("list", "--format=yaml")).isEqualTo(2);
+        assertThat(gcloud("list", "--filter=name=(")).isEqualTo(2);
+    }
+
+    @Test
+    void testFirewallSteps() throws Exception {
+        final var create = new ComputeFirewallRulesCreateStep("allow-https");
+        create.setAllow("tcp:443");
+        create.setPriority(1000);
+        create.setEnsure(true);
+        for (int i = 0; i < 2; i++) {
+            final var execution =
+                    new ComputeFirewallRulesCreateStep.ComputeFirewallRulesCreateRuleStepExecution(contextMock, create);
+            assertThatCode(execution::run).doesNotThrowAnyException();
+        }
+        for (int i = 0; i < 1000; i++) {
+            final var step = new ComputeFirewallRulesCreateStep("rule-" + i);
+            step.setAllow("tcp:" + (1000 + i));
+            new ComputeFirewallRulesCreateStep.ComputeFirewallRulesCreateRuleStepExecution(contextMock, step).run();
+        }
+
+        final var list = new ComputeFirewallRulesListStep();
+        list.setFilter("allowed.ports:443");
+        list.setFormat("json");
+        list.setPrintOutput(false);
+        final var output =
+                new ComputeFirewallRulesListStep.ComputeFirewallRulesListRuleStepExecution(contextMock, list).run();
+        final var rules = new JSONArray((String) output);
+        assertThat(rules.length()).isEqualTo(1);
+        assertThat(rules.getJSONObject(0).getString("description")).startsWith("[spec:");
+
+        new ComputeFirewallRulesDeleteStep.ComputeFirewallRulesDeleteRuleStepExecution(
+                        contextMock, "allow-https rule-0 rule-1", 0)
+                .run();
+        final var delete = new ComputeFirewallRulesDeleteStep.ComputeFirewallRulesDeleteRuleStepExecution(
+                contextMock, "allow-https", 0);
+        assertThatCode(delete::run).isInstanceOf(IllegalArgumentException.class);
+        assertThat(FakeComputeBackend.getCompute(null).getOperations("p")).hasSize(1004);
+    }
+
+    @Test
+    void testBuildsHaveTheirOwnRules() throws Exception {
+        final var firstBuild = new EnvVars("JOB_NAME", "folder/job", "BUILD_NUMBER", "1");
+        final var secondBuild = new EnvVars("JOB_NAME", "folder/job", "BUILD_NUMBER", "2");
+        final var rule = new JSONObject()
+                .put("name", "web")
+                .put("allowed", new JSONArray().put(new JSONObject().put("IPProtocol", "tcp")));
+        FakeComputeBackend.getCompute(firstBuild).insert("p", rule);
+
+        assertThat(FakeComputeBackend.getCompute(firstBuild).get("p", "web")).isNotNull();
+        assertThatCode(() -> FakeComputeBackend.getCompute(secondBuild).get("p", "web"))
+                .isInstanceOf(FakeCompute.ApiException.class);
+
+        final Run<?, ?> run = mock(Run.class);
+        final Job<?, ?> job = mock(Job.class);
+        doReturn(job).when(run).getParent();
+        when(job.getFullName()).thenReturn("folder/job");
+        when(run.getNumber()).thenReturn(1);
+        new FakeComputeBackend.Listener().onFinalized(run);
+
+        assertThatCode(() -> FakeComputeBackend.getCompute(firstBuild).insert("p", rule))
+                .doesNotThrowAnyException();
+    }
+}
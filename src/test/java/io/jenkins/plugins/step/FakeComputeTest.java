@@ -0,0 +1,138 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+import java.util.ArrayList;
+import org.assertj.core.api.ThrowableAssert.ThrowingCallable;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+class FakeComputeTest {
+
+    private final FakeCompute compute = new FakeCompute();
+
+    private static JSONObject rule(final String name) {
+        return new JSONObject()
+                .put("name", name)
+                .put("allowed", new JSONArray().put(new JSONObject().put("IPProtocol", "tcp")));
+    }
+
+    @Test
+    void testInsertCompletesDefaults() throws Exception {
+        final var operation = compute.insert("project", rule("allow-tcp"));
+
+        final var rule = compute.get("project", "allow-tcp");
+        assertThat(rule.getInt("priority")).isEqualTo(FirewallRule.DEFAULT_PRIORITY);
+        assertThat(rule.getString("direction")).isEqualTo(FirewallRule.INGRESS);
+        assertThat(rule.getString("network"))
+                .isEqualTo("https://www.googleapis.com/compute/v1/projects/project/global/networks/default");
+        assertThat(rule.getJSONArray("sourceRanges").toList()).containsExactly("0.0.0.0/0");
+        assertThat(rule.getBoolean("disabled")).isFalse();
+        assertThat(rule.getString("selfLink")).isEqualTo(FakeCompute.selfLink("project", "allow-tcp"));
+        assertThat(operation.getString("operationType")).isEqualTo("insert");
+        assertThat(operation.getString("status")).isEqualTo("DONE");
+        assertThat(operation.getString("targetLink")).isEqualTo(rule.getString("selfLink"));
+        assertThat(compute.getOperations("project")).hasSize(1);
+        assertThat(compute.getOperations("other")).isEmpty();
+    }
+
+    @Test
+    void testInsertValidates() throws Exception {
+        compute.insert("project", rule("existing"));
+
+        assertStatus(() -> compute.insert("project", rule("existing")), 409);
+        assertStatus(() -> compute.insert("project", rule("Invalid_Name")), 400);
+        assertStatus(() -> compute.insert("project", rule("priority").put("priority", 65536)), 400);
+        assertStatus(() -> compute.insert("project", new JSONObject().put("name", "no-permission")), 400);
+        assertStatus(
+                () -> compute.insert("project", rule("both").put("denied", new JSONArray().put(new JSONObject()))),
+                400);
+        final var icmpPorts = new JSONObject().put("IPProtocol", "icmp").put("ports", new JSONArray().put("22"));
+        final var icmp = rule("icmp-ports").put("allowed", new JSONArray().put(icmpPorts));
+        assertStatus(() -> compute.insert("project", icmp), 400);
+        final var egress = rule("egress-tags").put("direction", "EGRESS").put("sourceTags", new JSONArray().put("web"));
+        assertStatus(() -> compute.insert("project", egress), 400);
+    }
+
+    @Test
+    void testPatch() throws Exception {
+        compute.insert("project", rule("web").put("sourceRanges", new JSONArray().put("10.0.0.0/8")));
+
+        compute.patch(
+                "project",
+                "web",
+                new JSONObject()
+                        .put("priority", 10)
+                        .put("sourceRanges", new JSONArray())
+                        .put("sourceTags", new JSONArray().put("web"))
+                        .put("description", "web"));
+
+        final var rule = compute.get("project", "web");
+        assertThat(rule.getInt("priority")).isEqualTo(10);
+        assertThat(rule.getString("description")).isEqualTo("web");
+        assertThat(rule.has("sourceRanges")).isFalse();
+        assertThat(rule.getJSONArray("sourceTags").toList()).containsExactly("web");
+        final var noSources = new JSONObject().put("sourceTags", new JSONArray());
+        assertStatus(() -> compute.patch("project", "web", noSources), 400);
+        assertStatus(() -> compute.patch("project", "web", new JSONObject().put("direction", "EGRESS")), 400);
+        assertStatus(() -> compute.patch("project", "web", new JSONObject().put("network", "other")), 400);
+        final var deny = new JSONObject().put("denied", new JSONArray().put(new JSONObject()));
+        assertStatus(() -> compute.patch("project", "web", deny), 400);
+        assertStatus(() -> compute.patch("project", "missing", new JSONObject()), 404);
+    }
+
+    @Test
+    void testPatchRequiresTheDestinationOfEgressRules() throws Exception {
+        compute.insert("project", rule("egress").put("direction", "EGRESS"));
+
+        final var clear = new JSONObject().put("destinationRanges", new JSONArray());
+        assertStatus(() -> compute.patch("project", "egress", clear), 400);
+        assertThat(compute.get("project", "egress").getJSONArray("destinationRanges").toList())
+                .containsExactly("0.0.0.0/0");
+    }
+
+    @Test
+    void testDelete() throws Exception {
+        compute.insert("project", rule("web"));
+
+        compute.delete("project", "web");
+
+        assertStatus(() -> compute.get("project", "web"), 404);
+        assertStatus(() -> compute.delete("project", "web"), 404);
+        assertThat(compute.getOperations("project"))
+                .extracting(operation -> operation.getString("operationType"))
+                .containsExactly("insert", "delete");
+    }
+
+    @Test
+    void testListPages() throws Exception {
+        for (int i = 0; i < 1200; i++) {
+            compute.insert("project", rule(String.format("rule-%04d", i)).put("priority", i));
+        }
+
+        final var names = new ArrayList<String>();
+        var pages = 0;
+        String pageToken = null;
+        do {
+            final var page = compute.list("project", rule -> rule.getInt("priority") % 2 == 0, 0, pageToken);
+            pages++;
+            page.getJSONArray("items").forEach(rule -> names.add(((JSONObject) rule).getString("name")));
+            pageToken = page.optString("nextPageToken", null);
+        } while (pageToken != null);
+
+        assertThat(pages).isEqualTo(2);
+        assertThat(names).hasSize(600).isSorted().startsWith("rule-0000", "rule-0002");
+        assertThat(compute.list("project", rule -> true, 10, null).getJSONArray("items")).hasSize(10);
+        final var last = compute.list("project", rule -> true, 10, "rule-1195");
+        assertThat(last.getJSONArray("items")).hasSize(4);
+        assertThat(last.has("nextPageToken")).isFalse();
+    }
+
+    private static void assertStatus(final ThrowingCallable call, final int status) {
+        assertThatCode(call)
+                .isInstanceOfSatisfying(
+                        FakeCompute.ApiException.class, e -> assertThat(e.getStatus()).isEqualTo(status));
+    }
+}
@@ -0,0 +1,83 @@
+package io.jenkins.plugins.step;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.Proc;
+import hudson.model.TaskListener;
+import hudson.remoting.Channel;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * Launcher answering every command with the same output and exit code, without starting any process.
+ */
+final class FakeLauncher extends Launcher {
+
+    private final byte[] output;
+
+    FakeLauncher(final byte[] output) {
+        super(TaskListener.NULL, null);
+        this.output = output;
+    }
+
+    @Override
+    public Proc launch(@NonNull final ProcStarter starter) throws IOException {
+        final var stdout = starter.stdout();
+        if (stdout != null) {
+            stdout.write(output);
+        }
+        return new FinishedProc(output);
+    }
+
+    @Override
+    public Channel launchChannel(
+            @NonNull final String[] cmd,
+            @NonNull final OutputStream out,
+            final FilePath workDir,
+            @NonNull final Map<String, String> envVars) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void kill(final Map<String, String> modelEnvVars) {}
+
+    private static final class FinishedProc extends Proc {
+        private final byte[] output;
+
+        private FinishedProc(final byte[] output) {
+            this.output = output;
+        }
+
+        @Override
+        public boolean isAlive() {
+            return false;
+        }
+
+        @Override
+        public void kill() {}
+
+        @Override
+        public int join() {
+            return 0;
+        }
+
+        @Override
+        public InputStream getStdout() {
+            return new ByteArrayInputStream(output);
+        }
+
+        @Override
+        public InputStream getStderr() {
+            return InputStream.nullInputStream();
+        }
+
+        @Override
+        public OutputStream getStdin() {
+            return OutputStream.nullOutputStream();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+import hudson.EnvVars;
+import hudson.model.TaskListener;
+import org.junit.jupiter.api.Test;
+
+class FirewallBackendTest {
+
+    @Test
+    void testLauncher() {
+        assertThat(FirewallBackend.launcher(TaskListener.NULL, null)).isNull();
+        assertThat(FirewallBackend.launcher(TaskListener.NULL, new EnvVars())).isNull();
+        assertThat(FirewallBackend.launcher(TaskListener.NULL, new EnvVars(FirewallBackend.VARIABLE, "gcloud")))
+                .isNull();
+        assertThat(FirewallBackend.launcher(TaskListener.NULL, new EnvVars(FirewallBackend.VARIABLE, "fake")))
+                .isInstanceOf(FakeComputeBackend.FakeGcloud.class);
+        assertThatCode(() -> FirewallBackend.launcher(TaskListener.NULL, new EnvVars(FirewallBackend.VARIABLE, "x")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Unknown firewall backend x, available backends are: gcloud, fake");
+    }
+}
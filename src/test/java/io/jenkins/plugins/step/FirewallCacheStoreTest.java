@@ -0,0 +1,32 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class FirewallCacheStoreTest {
+
+    private final FirewallCacheStore.Memory store = new FirewallCacheStore.Memory();
+
+    @Test
+    void testVersionedEntries() {
+        assertThat(store.get("key").getVersion()).isZero();
+        assertThat(store.compareAndSet("key", 0, "a")).isTrue();
+        assertThat(store.compareAndSet("key", 0, "b")).isFalse();
+        assertThat(store.get("key").getValue()).isEqualTo("a");
+
+        assertThat(store.invalidate("key")).isEqualTo(2);
+        assertThat(store.get("key").getValue()).isNull();
+        assertThat(store.compareAndSet("key", 1, "c")).isFalse();
+        assertThat(store.compareAndSet("key", 2, "c")).isTrue();
+        assertThat(store.getVersion("key")).isEqualTo(3);
+    }
+
+    @Test
+    void testStores() {
+        assertThat(FirewallCacheStore.all())
+                .extracting(FirewallCacheStore::getId)
+                .containsExactly(FirewallCacheStore.Memory.ID, RedisCacheStore.ID);
+        assertThat(FirewallCacheStore.configured()).isNull();
+    }
+}
@@ -0,0 +1,208 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+class FirewallChangeSubscriberTest {
+
+    private static final String SUBSCRIPTION = "projects/ops/subscriptions/firewall-changes";
+
+    private final FirewallChangeSubscriber subscriber = new FirewallChangeSubscriber();
+    private final List<String> refreshed = new ArrayList<>();
+    private final FirewallMirror mirror = new FirewallMirror(new FirewallCacheStore.Memory()) {
+        @Override
+        void refreshRules(final GcpProject project, final Collection<String> names) {
+            refreshed.add(project.getProject() + "/" + String.join(",", names));
+        }
+    };
+    private PubSubStandIn standIn;
+
+    @BeforeEach
+    void before() throws Exception {
+        standIn = new PubSubStandIn();
+        mirror.store("project", new JSONArray("[{\"name\": \"a\"}, {\"name\": \"b\", \"priority\": 1}]"), 1000);
+    }
+
+    @AfterEach
+    void after() {
+        standIn.close();
+    }
+
+    private static String assetChange(
+            final String project, final String name, final String time, final boolean deleted) {
+        final var asset = new JSONObject()
+                .put("name", "//compute.googleapis.com/projects/" + project + "/global/firewalls/" + name)
+                .put("assetType", "compute.googleapis.com/Firewall")
+                .put("resource", new JSONObject().put("data", new JSONObject().put("name", name).put("priority", 2)));
+        return new JSONObject()
+                .put("asset", asset)
+                .put("window", new JSONObject().put("startTime", time))
+                .put("deleted", deleted)
+                .toString();
+    }
+
+    private static String auditLog(final String method, final String name, final boolean last) {
+        return new JSONObject()
+                .put("protoPayload", new JSONObject()
+                        .put("methodName", method)
+                        .put("serviceName", "compute.googleapis.com")
+                        .put("resourceName", "projects/project/global/firewalls/" + name))
+                .put("operation", new JSONObject().put("id", "operation-1").put(last ? "last" : "first", true))
+                .put("timestamp", "2026-01-01T00:00:00.000000Z")
+                .toString();
+    }
+
+    private int drain(final PubSubClient client, final String subscription) throws Exception {
+        return subscriber.drain(
+                client,
+                subscription,
+                null,
+                mirror,
+                project -> "project".equals(project) ? new GcpProject(project) : null,
+                0);
+    }
+
+    @Test
+    void testParseAssetFeed() {
+        final var patch = FirewallChangeSubscriber.Change.parse(
+                assetChange("project", "web", "2026-01-01T00:00:00Z", false), null);
+        assertThat(patch.getType()).isEqualTo(FirewallChangeSubscriber.Change.Type.PATCH);
+        assertThat(patch.getProject()).isEqualTo("project");
+        assertThat(patch.getName()).isEqualTo("web");
+        assertThat(patch.getRule().getInt("priority")).isEqualTo(2);
+        assertThat(patch.getTime()).hasToString("2026-01-01T00:00:00Z");
+
+        final var delete = FirewallChangeSubscriber.Change.parse(
+                assetChange("project", "web", "2026-01-01T00:00:00+01:00", true), null);
+        assertThat(delete.getType()).isEqualTo(FirewallChangeSubscriber.Change.Type.DELETE);
+        assertThat(delete.getTime()).hasToString("2025-12-31T23:00:00Z");
+
+        final var network = new JSONObject(assetChange("project", "web", "2026-01-01T00:00:00Z", false));
+        network.getJSONObject("asset").put("assetType", "compute.googleapis.com/Network");
+        assertThat(FirewallChangeSubscriber.Change.parse(network.toString(), null)).isNull();
+        assertThat(FirewallChangeSubscriber.Change.parse("not json", null)).isNull();
+        assertThat(FirewallChangeSubscriber.Change.parse("{}", null)).isNull();
+    }
+
+    @Test
+    void testParseAuditLogs() {
+        final var insert =
+                FirewallChangeSubscriber.Change.parse(auditLog("v1.compute.firewalls.insert", "web", true), null);
+        assertThat(insert.getType()).isEqualTo(FirewallChangeSubscriber.Change.Type.DESCRIBE);
+        assertThat(insert.getName()).isEqualTo("web");
+        final var delete =
+                FirewallChangeSubscriber.Change.parse(auditLog("beta.compute.firewalls.delete", "web", true), null);
+        assertThat(delete.getType()).isEqualTo(FirewallChangeSubscriber.Change.Type.DELETE);
+
+        assertThat(FirewallChangeSubscriber.Change.parse(auditLog("v1.compute.firewalls.insert", "web", false), null))
+                .isNull();
+        assertThat(FirewallChangeSubscriber.Change.parse(auditLog("v1.compute.firewalls.get", "web", true), null))
+                .isNull();
+        final var failed = new JSONObject(auditLog("v1.compute.firewalls.patch", "web", true));
+        failed.getJSONObject("protoPayload").put("status", new JSONObject().put("code", 7));
+        assertThat(FirewallChangeSubscriber.Change.parse(failed.toString(), null)).isNull();
+    }
+
+    @Test
+    void testDrainAppliesTheChanges() throws Exception {
+        standIn.publish(assetChange("project", "c", "2026-01-01T00:00:02Z", false));
+        standIn.publish(assetChange("project", "b", "2026-01-01T00:00:00Z", false));
+        standIn.publish(assetChange("project", "a", "2026-01-01T00:00:00Z", true));
+        standIn.publish(assetChange("project", "c", "2026-01-01T00:00:01Z", true));
+        standIn.publish(assetChange("other-project", "d", "2026-01-01T00:00:00Z", false));
+        standIn.publish(auditLog("v1.compute.firewalls.insert", "e", true));
+        standIn.publish("not json");
+
+        assertThat(drain(new PubSubClient(standIn.getEndpoint()), SUBSCRIPTION)).isEqualTo(4);
+
+        final var listing = mirror.lookup("project", Long.MAX_VALUE, 1000);
+        assertThat(listing.getRules()).extracting(rule -> rule.getString("name")).containsExactly("b", "c");
+        assertThat(listing.getRules()).extracting(rule -> rule.getInt("priority")).containsExactly(2, 2);
+        assertThat(refreshed).containsExactly("project/e");
+        assertThat(standIn.getUnacknowledged()).isZero();
+    }
+
+    @Test
+    void testRulesNamedByAuditLogsAreRefreshedTogether() throws Exception {
+        standIn.publish(auditLog("v1.compute.firewalls.insert", "e", true));
+        standIn.publish(auditLog("v1.compute.firewalls.patch", "f", true));
+        standIn.publish(auditLog("v1.compute.firewalls.update", "e", true));
+
+        drain(new PubSubClient(standIn.getEndpoint()), SUBSCRIPTION);
+
+        assertThat(refreshed).containsExactly("project/e,f");
+    }
+
+    @Test
+    void testManyChangesInvalidate() throws Exception {
+        for (int i = 0; i <= FirewallChangeSubscriber.MAX_RULE_CHANGES; i++) {
+            standIn.publish(assetChange("project", "rule-" + i, "2026-01-01T00:00:00Z", false));
+        }
+
+        drain(new PubSubClient(standIn.getEndpoint()), SUBSCRIPTION);
+
+        assertThat(mirror.lookup("project", Long.MAX_VALUE, 1000)).isNull();
+        assertThat(standIn.getUnacknowledged()).isZero();
+    }
+
+    /**
+     * Runs against the Pub/Sub emulator, e.g. {@code gcloud beta emulators pubsub start --host-port=localhost:8085}
+     * with {@code -DpubsubEmulatorHost=localhost:8085}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "pubsubEmulatorHost", matches = ".+")
+    void testEmulator() throws Exception {
+        final var endpoint = "http://" + System.getProperty("pubsubEmulatorHost") + "/v1/";
+        final var http = HttpClient.newHttpClient();
+        final var suffix = String.valueOf(System.nanoTime());
+        final var topic = "projects/test-project/topics/firewall-changes-" + suffix;
+        final var subscription = "projects/test-project/subscriptions/firewall-changes-" + suffix;
+        send(http, "PUT", endpoint + topic, new JSONObject());
+        send(http, "PUT", endpoint + subscription, new JSONObject().put("topic", topic));
+        final var messages = new JSONArray();
+        for (final var data : List.of(
+                assetChange("project", "c", "2026-01-01T00:00:00Z", false),
+                assetChange("project", "a", "2026-01-01T00:00:00Z", true))) {
+            messages.put(new JSONObject()
+                    .put("data", Base64.getEncoder().encodeToString(data.getBytes(StandardCharsets.UTF_8))));
+        }
+        send(http, "POST", endpoint + topic + ":publish", new JSONObject().put("messages", messages));
+
+        var applied = 0;
+        for (int i = 0; i < 10 && applied < 2; i++) {
+            applied += drain(new PubSubClient(endpoint), subscription);
+        }
+
+        assertThat(applied).isEqualTo(2);
+
+        assertThat(mirror.lookup("project", Long.MAX_VALUE, 1000).getRules())
+                .extracting(rule -> rule.getString("name"))
+                .containsExactly("b", "c");
+    }
+
+    private static void send(final HttpClient http, final String method, final String uri, final JSONObject body)
+            throws Exception {
+        final var response = http.send(
+                HttpRequest.newBuilder(URI.create(uri))
+                        .header("Content-Type", "application/json")
+                        .method(method, HttpRequest.BodyPublishers.ofString(body.toString()))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).as(response.body()).isEqualTo(200);
+    }
+}
@@ -0,0 +1,143 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import hudson.EnvVars;
+import hudson.model.Descriptor;
+import hudson.model.Run;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+class FirewallMirrorTest {
+
+    private final FirewallMirror mirror = new FirewallMirror();
+
+    @Test
+    void testLookupHonorsStaleness() throws Exception {
+        mirror.store("project", new JSONArray("[{\"name\": \"b\"}, {\"name\": \"a\"}]"), 1000);
+
+        assertThat(mirror.lookup("project", 500, 1500).getRules())
+                .extracting(rule -> rule.getString("name"))
+                .containsExactly("a", "b");
+        assertThat(mirror.lookup("project", 499, 1500)).isNull();
+        assertThat(mirror.lookup("other-project", 500, 1500)).isNull();
+        assertThat(mirror.lookup(null, 500, 1500)).isNull();
+    }
+
+    @Test
+    void testStoreKeepsGenerationOfUnchangedRules() throws Exception {
+        assertThat(mirror.store("project", new JSONArray("[{\"name\": \"a\", \"priority\": 1}]"), 1000))
+                .isTrue();
+        assertThat(mirror.store("project", new JSONArray("[{\"priority\": 1, \"name\": \"a\"}]"), 2000))
+                .isFalse();
+
+        final var listing = mirror.lookup("project", 0, 2000);
+        assertThat(listing.getGeneration()).isEqualTo(1);
+        assertThat(listing.getFetchedAt()).isEqualTo(2000);
+
+        assertThat(mirror.store("project", new JSONArray("[{\"name\": \"a\", \"priority\": 2}]"), 3000))
+                .isTrue();
+        assertThat(mirror.lookup("project", 0, 3000).getGeneration()).isEqualTo(2);
+    }
+
+    @Test
+    void testEventsPatchTheListing() throws Exception {
+        mirror.store("project", new JSONArray("[{\"name\": \"a\"}, {\"name\": \"b\"}]"), 1000);
+
+        mirror.storeRule("project", new JSONObject("{\"name\": \"c\"}"));
+        mirror.removeRules("project", List.of("a"));
+        mirror.storeRule("other-project", new JSONObject("{\"name\": \"d\"}"));
+
+        final var listing = mirror.lookup("project", 0, 1000);
+        assertThat(listing.getRules()).extracting(rule -> rule.getString("name")).containsExactly("b", "c");
+        assertThat(listing.getGeneration()).isEqualTo(3);
+        assertThat(listing.getFetchedAt()).isEqualTo(1000);
+        assertThat(mirror.lookup("other-project", 0, 1000)).isNull();
+    }
+
+    @Test
+    void testConcurrentPatchesAreNotLost() throws Exception {
+        final var other = new FirewallMirror[1];
+        final var store = new FirewallCacheStore.Memory() {
+            private boolean raced;
+
+            @Override
+            public boolean compareAndSet(final String key, final long expectedVersion, final String value) {
+                if (!raced && expectedVersion > 0) {
+                    raced = true;
+                    assertThatCode(() -> other[0].storeRule("project", new JSONObject("{\"name\": \"c\"}")))
+                            .doesNotThrowAnyException();
+                }
+                return super.compareAndSet(key, expectedVersion, value);
+            }
+        };
+        final var first = new FirewallMirror(store);
+        other[0] = new FirewallMirror(store);
+        first.store("project", new JSONArray("[{\"name\": \"a\"}, {\"name\": \"b\"}]"), 1000);
+
+        first.removeRules("project", List.of("a"));
+
+        assertThat(first.lookup("project", 0, 1000).getRules())
+                .extracting(rule -> rule.getString("name"))
+                .containsExactly("b", "c");
+        assertThat(store.getVersion("firewall-rules:project")).isEqualTo(3);
+    }
+
+    @Test
+    void testContendedPatchInvalidates() throws Exception {
+        final var store = new FirewallCacheStore.Memory() {
+            @Override
+            public boolean compareAndSet(final String key, final long expectedVersion, final String value) {
+                return expectedVersion == 0 && super.compareAndSet(key, expectedVersion, value);
+            }
+        };
+        final var contended = new FirewallMirror(store);
+        contended.store("project", new JSONArray("[{\"name\": \"a\"}]"), 1000);
+        assertThat(contended.lookup("project", 0, 1000)).isNotNull();
+
+        contended.removeRules("project", List.of("a"));
+
+        assertThat(contended.lookup("project", 0, 1000)).isNull();
+        assertThat(store.get("firewall-rules:project").getVersion()).isEqualTo(2);
+    }
+
+    @Test
+    void testOnlyServedToBuildsAuthenticatedWithTheMirrorCredentials() {
+        final var project = new GcpProject("project");
+        final Run<?, ?> run = mock(Run.class);
+        final var usage = new GcpCredentialsUsageAction();
+        usage.add("other-credentials");
+        when(run.getAction(GcpCredentialsUsageAction.class)).thenReturn(usage);
+        final var envVars = new EnvVars("CLOUDSDK_CORE_ACCOUNT", "mirror@project.iam.gserviceaccount.com");
+
+        assertThat(FirewallMirror.isServedTo(project, run, envVars)).isFalse();
+        project.setCredentialsId("mirror-credentials");
+        assertThat(FirewallMirror.isServedTo(project, run, envVars)).isFalse();
+        assertThat(FirewallMirror.isServedTo(project, null, envVars)).isFalse();
+        usage.add("mirror-credentials");
+        assertThat(FirewallMirror.isServedTo(project, run, new EnvVars())).isFalse();
+    }
+
+    @Test
+    void testMirroredProjectsRequireCredentials() {
+        final var withCredentials =
+                new net.sf.json.JSONObject().element("project", "a").element("credentialsId", "id");
+        final var withoutCredentials =
+                new net.sf.json.JSONObject().element("project", "b").element("credentialsId", "");
+
+        assertThatCode(() -> GcpPluginConfiguration.checkMirroredProjects(
+                        new net.sf.json.JSONObject().element("mirroredProjects", withCredentials)))
+                .doesNotThrowAnyException();
+        assertThatCode(() -> GcpPluginConfiguration.checkMirroredProjects(new net.sf.json.JSONObject()
+                        .element(
+                                "mirroredProjects",
+                                new net.sf.json.JSONArray().element(withCredentials).element(withoutCredentials))))
+                .isInstanceOf(Descriptor.FormException.class)
+                .hasMessage("The mirrored project b requires a credentials id");
+    }
+}
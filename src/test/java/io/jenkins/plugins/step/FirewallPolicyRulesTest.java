@@ -0,0 +1,108 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+class FirewallPolicyRulesTest {
+
+    private static ComputeFirewallRulesCreateStep rule(final String name, final int priority) {
+        final var rule = new ComputeFirewallRulesCreateStep(name);
+        rule.setPriority(priority);
+        rule.setAllow("tcp:443");
+        return rule;
+    }
+
+    private static JSONObject policyRule(final int priority) {
+        return new JSONObject().put("priority", priority).put("action", "goto_next");
+    }
+
+    @Test
+    void testToRule() {
+        final var step = new ComputeFirewallRulesCreateStep("allow-web");
+        step.setPriority(1000);
+        step.setAction("DENY");
+        step.setRules("tcp:80,tcp:8000-8080,icmp");
+        step.setDirection("egress");
+        step.setDestinationRanges("10.0.0.0/8, 192.168.0.0/16");
+        step.setTargetServiceAccounts("web@project.iam.gserviceaccount.com");
+        step.setEnableLogging(true);
+
+        final var rule = FirewallPolicyRules.toRule(step);
+
+        assertThat(rule.getInt("priority")).isEqualTo(1000);
+        assertThat(rule.getString("ruleName")).isEqualTo("allow-web");
+        assertThat(rule.getString("action")).isEqualTo("deny");
+        assertThat(rule.getString("direction")).isEqualTo("EGRESS");
+        assertThat(rule.getBoolean("enableLogging")).isTrue();
+        assertThat(rule.getJSONArray("targetServiceAccounts").getString(0))
+                .isEqualTo("web@project.iam.gserviceaccount.com");
+        final var match = rule.getJSONObject("match");
+        assertThat(match.getJSONArray("destIpRanges").toList()).containsExactly("10.0.0.0/8", "192.168.0.0/16");
+        final var layer4Configs = match.getJSONArray("layer4Configs");
+        assertThat(layer4Configs.length()).isEqualTo(2);
+        assertThat(layer4Configs.getJSONObject(0).getString("ipProtocol")).isEqualTo("tcp");
+        assertThat(layer4Configs.getJSONObject(0).getJSONArray("ports").toList()).containsExactly("80", "8000-8080");
+        assertThat(layer4Configs.getJSONObject(1).has("ports")).isFalse();
+    }
+
+    @Test
+    void testToRuleAllow() {
+        final var rule = FirewallPolicyRules.toRule(rule("allow-https", 10));
+
+        assertThat(rule.getString("action")).isEqualTo("allow");
+        assertThat(rule.getString("direction")).isEqualTo("INGRESS");
+    }
+
+    @Test
+    void testInvalidRules() {
+        final var withoutAction = new ComputeFirewallRulesCreateStep("rule");
+        assertThatCode(() -> FirewallPolicyRules.toRule(withoutAction))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Either 'action' or 'allow' should be specified!");
+
+        final var withNetwork = rule("rule", 10);
+        withNetwork.setNetwork("default");
+        assertThatCode(() -> FirewallPolicyRules.toRule(withNetwork))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("'network' of rule 'rule' is not supported by firewall policies");
+
+        assertThatCode(() -> FirewallPolicyRules.toRules(List.of(rule("first", 10), rule("second", 10))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Rules 'first' and 'second' have the same priority 10");
+    }
+
+    @Test
+    void testMerge() {
+        final var current = new JSONArray()
+                .put(policyRule(10))
+                .put(policyRule(20))
+                .put(policyRule(FirewallPolicyRules.DEFAULT_RULES_PRIORITY));
+        final var rules =
+                new JSONArray().put(new JSONObject().put("priority", 5)).put(policyRule(10).put("action", "deny"));
+
+        final var merged = FirewallPolicyRules.merge(current, rules, List.of(20), false);
+
+        assertThat(merged.length()).isEqualTo(3);
+        assertThat(merged.getJSONObject(0).getInt("priority")).isEqualTo(5);
+        assertThat(merged.getJSONObject(1).getString("action")).isEqualTo("deny");
+        assertThat(merged.getJSONObject(2).getInt("priority")).isEqualTo(FirewallPolicyRules.DEFAULT_RULES_PRIORITY);
+    }
+
+    @Test
+    void testMergeReplace() {
+        final var current =
+                new JSONArray().put(policyRule(10)).put(policyRule(FirewallPolicyRules.DEFAULT_RULES_PRIORITY));
+
+        final var merged = FirewallPolicyRules.merge(
+                current, new JSONArray().put(new JSONObject().put("priority", 30)), List.of(), true);
+
+        assertThat(merged.length()).isEqualTo(2);
+        assertThat(merged.getJSONObject(0).getInt("priority")).isEqualTo(30);
+        assertThat(merged.getJSONObject(1).getInt("priority")).isEqualTo(FirewallPolicyRules.DEFAULT_RULES_PRIORITY);
+    }
+}
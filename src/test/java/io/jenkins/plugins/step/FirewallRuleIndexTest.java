@@ -0,0 +1,98 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class FirewallRuleIndexTest {
+
+    private static final String RULES = "["
+            + "{\"name\": \"allow-internal\", \"priority\": 1000, \"direction\": \"INGRESS\","
+            + " \"sourceRanges\": [\"10.0.0.0/8\"], \"allowed\": [{\"IPProtocol\": \"all\"}]},"
+            + "{\"name\": \"allow-https\", \"priority\": 900, \"direction\": \"INGRESS\","
+            + " \"sourceRanges\": [\"0.0.0.0/0\"], \"targetTags\": [\"web\"],"
+            + " \"allowed\": [{\"IPProtocol\": \"tcp\", \"ports\": [\"443\", \"8000-8080\"]}]},"
+            + "{\"name\": \"deny-ssh\", \"priority\": 900, \"direction\": \"INGRESS\","
+            + " \"sourceRanges\": [\"10.1.0.0/16\"], \"denied\": [{\"IPProtocol\": \"6\", \"ports\": [\"22\"]}]},"
+            + "{\"name\": \"allow-sa\", \"priority\": 500, \"direction\": \"INGRESS\","
+            + " \"sourceServiceAccounts\": [\"app@project.iam.gserviceaccount.com\"],"
+            + " \"targetServiceAccounts\": [\"db@project.iam.gserviceaccount.com\"],"
+            + " \"allowed\": [{\"IPProtocol\": \"tcp\", \"ports\": [\"5432\"]}]},"
+            + "{\"name\": \"deny-egress\", \"priority\": 100, \"direction\": \"EGRESS\","
+            + " \"destinationRanges\": [\"192.168.0.0/24\", \"2001:db8::/32\"],"
+            + " \"denied\": [{\"IPProtocol\": \"udp\"}]},"
+            + "{\"name\": \"disabled\", \"priority\": 1, \"direction\": \"INGRESS\", \"disabled\": true,"
+            + " \"sourceRanges\": [\"0.0.0.0/0\"], \"allowed\": [{\"IPProtocol\": \"all\"}]}"
+            + "]";
+
+    private final FirewallRuleIndex index = new FirewallRuleIndex(FirewallRule.fromJsonArray(RULES));
+
+    private List<String> match(final String query) {
+        return index.match(FirewallRuleIndex.Query.parse(query)).stream()
+                .map(FirewallRule::getName)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void testDisabledRulesAreNotIndexed() {
+        assertThat(index.size()).isEqualTo(5);
+    }
+
+    @Test
+    void testMatchesInPriorityOrderWithDenyFirst() {
+        assertThat(match("source=10.1.2.3 protocol=tcp port=22"))
+                .containsExactly("deny-ssh", "allow-internal");
+        assertThat(match("source=10.1.2.3 protocol=tcp port=443 targetTag=web"))
+                .containsExactly("allow-https", "allow-internal");
+    }
+
+    @Test
+    void testMatchesPortRanges() {
+        assertThat(match("source=8.8.8.8 protocol=tcp port=8042 targetTag=web")).containsExactly("allow-https");
+        assertThat(match("source=8.8.8.8 protocol=tcp port=8081 targetTag=web")).isEmpty();
+        assertThat(match("source=8.8.8.8 protocol=tcp targetTag=web")).containsExactly("allow-https");
+    }
+
+    @Test
+    void testTargetTagsAndServiceAccounts() {
+        assertThat(match("source=8.8.8.8 protocol=tcp port=443")).isEmpty();
+        assertThat(match("sourceServiceAccount=app@project.iam.gserviceaccount.com protocol=tcp port=5432"
+                        + " targetServiceAccount=db@project.iam.gserviceaccount.com"))
+                .containsExactly("allow-sa");
+    }
+
+    @Test
+    void testEgressAndIpv6() {
+        assertThat(match("destination=192.168.0.7 protocol=udp port=53")).containsExactly("deny-egress");
+        assertThat(match("destination=2001:db8::1 protocol=17")).containsExactly("deny-egress");
+        assertThat(match("destination=192.168.1.7 protocol=udp")).isEmpty();
+    }
+
+    @Test
+    void testEffectiveAction() {
+        final var denied = FirewallRuleIndex.Query.parse("source=10.1.2.3 protocol=tcp port=22");
+        assertThat(FirewallRuleIndex.effectiveAction(denied, index.match(denied)))
+                .isEqualTo(FirewallRule.DENY);
+
+        final var implicitEgress = FirewallRuleIndex.Query.parse("destination=1.1.1.1 protocol=tcp port=443");
+        assertThat(FirewallRuleIndex.effectiveAction(implicitEgress, index.match(implicitEgress)))
+                .isEqualTo(FirewallRule.ALLOW);
+    }
+
+    @Test
+    void testInvalidQueries() {
+        assertThatCode(() -> FirewallRuleIndex.Query.parse("source=10.0.0.1"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatCode(() -> FirewallRuleIndex.Query.parse("protocol=tcp"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatCode(() -> FirewallRuleIndex.Query.parse("source=10.0.0.300 protocol=tcp"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatCode(() -> FirewallRuleIndex.Query.parse("source=example.com protocol=tcp"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatCode(() -> FirewallRuleIndex.Query.parse("src 10.0.0.1 protocol=tcp"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,116 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+class FirewallRulesFilterTest {
+
+    @Test
+    void testCombine() {
+        assertThat(FirewallRulesFilter.combine(null, null, null)).isNull();
+        assertThat(FirewallRulesFilter.combine("a b", null, null)).isEqualTo("name=(a b)");
+        assertThat(FirewallRulesFilter.combine(null, null, "network=default")).isEqualTo("network=default");
+        assertThat(FirewallRulesFilter.combine("a", "^default-.*", "network=default OR priority<1000"))
+                .isEqualTo("(name=(a)) AND (name~^default-.*) AND (network=default OR priority<1000)");
+    }
+
+    @Test
+    void testCombineQuotesRegexp() {
+        assertThat(FirewallRulesFilter.combine(null, "^(a|b)$", null)).isEqualTo("name~'^(a|b)$'");
+        assertThat(FirewallRulesFilter.combine(null, "it's", null)).isEqualTo("name~\"it's\"");
+        assertThatCode(() -> FirewallRulesFilter.combine(null, "'\"", null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testFormat() {
+        assertThat(FirewallRulesFilter.format(null, null)).isNull();
+        assertThat(FirewallRulesFilter.format("table", null)).isEqualTo("table");
+        assertThat(FirewallRulesFilter.format(null, "name,priority")).isEqualTo("json(name,priority)");
+        assertThat(FirewallRulesFilter.format("csv", "name")).isEqualTo("csv(name)");
+        assertThatCode(() -> FirewallRulesFilter.format("table(name)", "priority"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testValidateAcceptsServerSideExpressions() {
+        for (final var expression : new String[] {
+            "network=default",
+            "name=(a b 'c d')",
+            "(name~'^default-.*') AND (network:default OR priority>=1000)",
+            "direction=INGRESS disabled=false",
+            "sourceRanges:0.0.0.0/0 AND network=https://www.googleapis.com/compute/v1/projects/p/global/networks/n",
+            "priority < 1000"
+        }) {
+            assertThatCode(() -> FirewallRulesFilter.validate(expression))
+                    .as(expression)
+                    .doesNotThrowAnyException();
+        }
+    }
+
+    @Test
+    void testValidateRejectsClientSideExpressions() {
+        for (final var expression : new String[] {
+            "NOT network=default",
+            "-network=default",
+            "network=default AND NOT disabled=true",
+            "creationTimestamp.date('%Y')>2020",
+            "default",
+            "network=default OR ssh"
+        }) {
+            assertThatCode(() -> FirewallRulesFilter.validate(expression))
+                    .as(expression)
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("server-side");
+        }
+    }
+
+    @Test
+    void testValidateRejectsInvalidExpressions() {
+        for (final var expression : new String[] {"(network=default", "network=default)", "name='a", "name=", "=a"}) {
+            assertThatCode(() -> FirewallRulesFilter.validate(expression))
+                    .as(expression)
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("Invalid filter");
+        }
+    }
+
+    @Test
+    void testMatcher() {
+        final var ssh = new JSONObject().put("IPProtocol", "tcp").put("ports", new JSONArray().put("22"));
+        final var rule = new JSONObject()
+                .put("name", "default-allow-ssh")
+                .put("network", "https://www.googleapis.com/compute/v1/projects/p/global/networks/default")
+                .put("priority", 65534)
+                .put("sourceRanges", new JSONArray().put("0.0.0.0/0"))
+                .put("allowed", new JSONArray().put(ssh));
+
+        for (final var expression : new String[] {
+            "name=DEFAULT-ALLOW-SSH",
+            "name=(a default-allow-ssh)",
+            "name=default-*",
+            "name~^default- AND network:default",
+            "priority>1000 priority<=65534",
+            "allowed.IPProtocol=tcp allowed.ports:22",
+            "sourceRanges:0.0.0.0/0",
+            "NOT name=other",
+            "-disabled:* OR name=other",
+            "name!=other",
+            "name!~^other"
+        }) {
+            assertThat(FirewallRulesFilter.matcher(expression).test(rule)).as(expression).isTrue();
+        }
+        for (final var expression : new String[] {
+            "name=default", "network=default", "priority<1000", "allowed.IPProtocol=udp", "name=a OR name=b"
+        }) {
+            assertThat(FirewallRulesFilter.matcher(expression).test(rule)).as(expression).isFalse();
+        }
+        assertThatCode(() -> FirewallRulesFilter.matcher("name.startswith(a)"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Invalid filter");
+    }
+}
@@ -0,0 +1,91 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.json.JSONArray;
+import org.junit.jupiter.api.Test;
+
+class FirewallSnapshotTest {
+
+    private static byte[] snapshot(final String rules) throws Exception {
+        final var outputStream = new ByteArrayOutputStream();
+        FirewallSnapshot.write(new JSONArray(rules), outputStream);
+        return outputStream.toByteArray();
+    }
+
+    @Test
+    void testWriteSortsByNameWithCanonicalJson() throws Exception {
+        final var outputStream = new ByteArrayOutputStream();
+
+        final var count = FirewallSnapshot.write(
+                new JSONArray("[{\"priority\": 10, \"name\": \"b\"}, {\"name\": \"a\", \"network\": \"default\"}]"),
+                outputStream);
+
+        assertThat(count).isEqualTo(2);
+        try (var inputStream = new GZIPInputStream(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            assertThat(new String(inputStream.readAllBytes(), StandardCharsets.UTF_8).split("\n"))
+                    .satisfiesExactly(
+                            line -> assertThat(line)
+                                    .startsWith("a\t")
+                                    .endsWith("\t{\"name\":\"a\",\"network\":\"default\"}"),
+                            line -> assertThat(line).startsWith("b\t").endsWith("\t{\"name\":\"b\",\"priority\":10}"));
+        }
+    }
+
+    @Test
+    void testDiff() throws Exception {
+        final var base = snapshot("[{\"name\": \"a\", \"priority\": 1}, {\"name\": \"b\"}, {\"name\": \"c\"}]");
+        final var target = snapshot("[{\"name\": \"c\"}, {\"priority\": 2, \"name\": \"a\"}, {\"name\": \"d\"}]");
+
+        final var diff = FirewallSnapshot.diff(new ByteArrayInputStream(base), new ByteArrayInputStream(target));
+
+        assertThat(diff.getAdded()).extracting(rule -> rule.getString("name")).containsExactly("d");
+        assertThat(diff.getRemoved()).extracting(rule -> rule.getString("name")).containsExactly("b");
+        assertThat(diff.getChanged()).singleElement().satisfies(change -> {
+            assertThat(change.getString("name")).isEqualTo("a");
+            assertThat(change.getJSONObject("before").getInt("priority")).isEqualTo(1);
+            assertThat(change.getJSONObject("after").getInt("priority")).isEqualTo(2);
+        });
+    }
+
+    @Test
+    void testDiffIgnoresKeyOrder() throws Exception {
+        final var base = snapshot("[{\"name\": \"a\", \"network\": \"default\", \"priority\": 1}]");
+        final var target = snapshot("[{\"priority\": 1, \"network\": \"default\", \"name\": \"a\"}]");
+
+        final var diff = FirewallSnapshot.diff(new ByteArrayInputStream(base), new ByteArrayInputStream(target));
+
+        assertThat(diff.getAdded()).isEmpty();
+        assertThat(diff.getRemoved()).isEmpty();
+        assertThat(diff.getChanged()).isEmpty();
+    }
+
+    @Test
+    void testDiffWithoutBase() throws Exception {
+        final var target = snapshot("[{\"name\": \"a\"}, {\"name\": \"b\"}]");
+
+        final var diff = FirewallSnapshot.diff(null, new ByteArrayInputStream(target));
+
+        assertThat(diff.getAdded()).extracting(rule -> rule.getString("name")).containsExactly("a", "b");
+        assertThat(diff.getRemoved()).isEmpty();
+    }
+
+    @Test
+    void testDiffRejectsUnsortedSnapshot() throws Exception {
+        final var outputStream = new ByteArrayOutputStream();
+        try (var writer = new OutputStreamWriter(new GZIPOutputStream(outputStream), StandardCharsets.UTF_8)) {
+            writer.write("b\th\t{\"name\":\"b\"}\na\th\t{\"name\":\"a\"}\n");
+        }
+
+        assertThatCode(() -> FirewallSnapshot.diff(null, new ByteArrayInputStream(outputStream.toByteArray())))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("not sorted");
+    }
+}
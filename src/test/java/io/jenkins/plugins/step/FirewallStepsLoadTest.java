@@ -0,0 +1,219 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SecretBytes;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import hudson.ExtensionList;
+import hudson.Functions;
+import hudson.Launcher;
+import hudson.LauncherDecorator;
+import hudson.model.Node;
+import hudson.model.Result;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.jenkinsci.plugins.plaincredentials.impl.FileCredentialsImpl;
+import org.jenkinsci.plugins.workflow.actions.BodyInvocationAction;
+import org.jenkinsci.plugins.workflow.actions.TimingAction;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.graph.BlockEndNode;
+import org.jenkinsci.plugins.workflow.graph.StepNode;
+import org.jenkinsci.plugins.workflow.graphanalysis.DepthFirstScanner;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+/**
+ * Runs parallel pipelines of {@code withGCP} and firewall steps against a fake gcloud backed by {@link ComputeStandIn}
+ * and reports step latency percentiles, controller threads and heap. Skipped unless {@code -DloadTest} is given, e.g.
+ * {@code mvn test -Dtest=FirewallStepsLoadTest -DloadTest -DloadTest.pipelines=50 -DloadTest.latencyMillis=100}.
+ */
+@WithJenkins
+class FirewallStepsLoadTest {
+
+    private static final int PIPELINES = Integer.getInteger("loadTest.pipelines", 20);
+    private static final int ITERATIONS = Integer.getInteger("loadTest.iterations", 5);
+    private static final long LATENCY_MILLIS = Long.getLong("loadTest.latencyMillis", 50);
+    private static final double ERROR_RATE = Double.parseDouble(System.getProperty("loadTest.errorRate", "0"));
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @EnabledIfSystemProperty(named = "loadTest", matches = ".*")
+    void testParallelPipelines(final JenkinsRule j) throws Exception {
+        assumeFalse(Functions.isWindows(), "the fake gcloud is a shell script");
+
+        try (var standIn = new ComputeStandIn(LATENCY_MILLIS, ERROR_RATE)) {
+            installFakeGcloud(standIn.getEndpoint());
+            SystemCredentialsProvider.getInstance()
+                    .getCredentials()
+                    .add(new FileCredentialsImpl(
+                            CredentialsScope.GLOBAL,
+                            "gcp",
+                            "load test",
+                            "key.json",
+                            SecretBytes.fromBytes(new JSONObject()
+                                    .put("client_email", "load-test@load-test.iam.gserviceaccount.com")
+                                    .put("project_id", "load-test")
+                                    .toString()
+                                    .getBytes(StandardCharsets.UTF_8))));
+            j.jenkins.setNumExecutors(PIPELINES);
+
+            final var jobs = new ArrayList<WorkflowJob>();
+            for (int i = 0; i < PIPELINES; i++) {
+                final var job = j.createProject(WorkflowJob.class, "load-" + i);
+                job.setDefinition(new CpsFlowDefinition(script(i), true));
+                jobs.add(job);
+            }
+
+            final var threads = ManagementFactory.getThreadMXBean();
+            final var memory = ManagementFactory.getMemoryMXBean();
+            final var maxHeap = new AtomicLong();
+            threads.resetPeakThreadCount();
+            final var threadsBefore = threads.getThreadCount();
+            final var sampler = Executors.newSingleThreadScheduledExecutor();
+            sampler.scheduleAtFixedRate(
+                    () -> maxHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                    0,
+                    100,
+                    TimeUnit.MILLISECONDS);
+
+            final var start = System.nanoTime();
+            final var futures = jobs.stream().map(job -> job.scheduleBuild2(0)).collect(Collectors.toList());
+            final var runs = new ArrayList<WorkflowRun>();
+            for (final var future : futures) {
+                runs.add(future.get());
+            }
+            final var elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            sampler.shutdownNow();
+
+            final var latencies = new TreeMap<String, List<Long>>();
+            runs.forEach(run -> collectStepLatencies(run, latencies));
+            final var failed = runs.stream().filter(run -> run.getResult() != Result.SUCCESS).count();
+
+            System.out.printf(
+                    "%d pipelines x %d iterations in %d ms, %d failed, %d requests (%d injected errors)%n",
+                    PIPELINES, ITERATIONS, elapsedMillis, failed, standIn.getRequests(), standIn.getErrors());
+            latencies.forEach((step, values) -> System.out.printf(
+                    "%-32s n=%-6d p50=%-6d p90=%-6d p99=%-6d max=%d ms%n",
+                    step,
+                    values.size(),
+                    percentile(values, 50),
+                    percentile(values, 90),
+                    percentile(values, 99),
+                    percentile(values, 100)));
+            System.out.printf(
+                    "threads: %d before, %d peak; heap: %d MB max used%n",
+                    threadsBefore, threads.getPeakThreadCount(), maxHeap.get() / (1024 * 1024));
+
+            assertThat(runs).noneMatch(WorkflowRun::isBuilding);
+            if (ERROR_RATE == 0) {
+                assertThat(failed).isZero();
+            }
+        }
+    }
+
+    private static String script(final int pipeline) {
+        return "node {\n"
+                + "  withGCP(credentialsId: 'gcp') {\n"
+                + "    for (int i = 0; i < " + ITERATIONS + "; i++) {\n"
+                + "      def name = \"load-" + pipeline + "-${i}\"\n"
+                + "      computeFirewallRulesCreate(name: name, allow: 'tcp:443', network: 'default')\n"
+                + "      computeFirewallRulesList(name: name, format: 'json', printOutput: false)\n"
+                + "      computeFirewallRulesDelete(name: name)\n"
+                + "    }\n"
+                + "  }\n"
+                + "}";
+    }
+
+    /**
+     * Java resolves executables with the PATH of the controller process, so every command launched on a node is
+     * prefixed with a wrapper putting the fake gcloud first on the PATH.
+     */
+    private void installFakeGcloud(final String endpoint) throws Exception {
+        final var bin = Files.createDirectories(tempDir.resolve("bin"));
+        final var gcloud = bin.resolve("gcloud");
+        Files.writeString(
+                gcloud,
+                "#!/bin/sh\n"
+                        + "url=\"" + endpoint + "projects/${CLOUDSDK_CORE_PROJECT:-load-test}/global/firewalls\"\n"
+                        + "case \"$1 $2\" in\n"
+                        + "  'auth activate-service-account') exit 0 ;;\n"
+                        + "esac\n"
+                        + "case \"$1 $2 $3\" in\n"
+                        + "  'compute firewall-rules list') exec curl -sf \"$url\" ;;\n"
+                        + "  'compute firewall-rules describe') exec curl -sf \"$url/$4\" ;;\n"
+                        + "  'compute firewall-rules create') exec curl -sf -o /dev/null -X POST \"$url?name=$4\" ;;\n"
+                        + "  'compute firewall-rules delete') exec curl -sf -o /dev/null -X DELETE \"$url/$4\" ;;\n"
+                        + "esac\n"
+                        + "echo \"unsupported command: gcloud $*\" >&2\n"
+                        + "exit 2\n");
+        final var wrapper = bin.resolve("with-fake-gcloud");
+        Files.writeString(wrapper, "#!/bin/sh\nPATH=\"" + bin + ":$PATH\"\nexport PATH\nexec \"$@\"\n");
+        for (final var script : List.of(gcloud, wrapper)) {
+            assertThat(script.toFile().setExecutable(true)).isTrue();
+        }
+
+        ExtensionList.lookup(LauncherDecorator.class).add(new LauncherDecorator() {
+            @Override
+            public Launcher decorate(final Launcher launcher, final Node node) {
+                return launcher.decorateByPrefix(wrapper.toString());
+            }
+        });
+    }
+
+    /**
+     * The latency of a step is the time between its flow node and the next one, for block steps this is the time
+     * until their body starts.
+     */
+    private static void collectStepLatencies(final WorkflowRun run, final Map<String, List<Long>> latencies) {
+        final var nodes = new DepthFirstScanner().allNodes(run.getExecution());
+        final var nextStart = new HashMap<String, Long>();
+        for (final var node : nodes) {
+            for (final var parent : node.getParents()) {
+                nextStart.merge(parent.getId(), TimingAction.getStartTime(node), Math::min);
+            }
+        }
+
+        for (final var node : nodes) {
+            if (!(node instanceof StepNode)
+                    || node instanceof BlockEndNode
+                    || node.getAction(BodyInvocationAction.class) != null) {
+                continue;
+            }
+            final var descriptor = ((StepNode) node).getDescriptor();
+            final var next = nextStart.get(node.getId());
+            if (descriptor != null
+                    && next != null
+                    && descriptor.getClass().getPackageName().equals(FirewallStepsLoadTest.class.getPackageName())) {
+                latencies
+                        .computeIfAbsent(descriptor.getFunctionName(), key -> new ArrayList<>())
+                        .add(next - TimingAction.getStartTime(node));
+            }
+        }
+    }
+
+    private static long percentile(final List<Long> values, final int percentile) {
+        final var sorted = values.stream().sorted().collect(Collectors.toList());
+        return sorted.get(Math.max(0, (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1));
+    }
+}
@@ -0,0 +1,143 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import hudson.EnvVars;
+import hudson.Launcher;
+import hudson.model.Computer;
+import hudson.util.ArgumentListBuilder;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class GcloudProfileTest {
+    private static final String INFO = "{\"basic\": {\"version\": \"470.0.0\", \"python_location\": "
+            + "\"/opt/google-cloud-sdk/platform/bundledpythonunix/bin/python3\"}, "
+            + "\"installation\": {\"sdk_root\": \"/opt/google-cloud-sdk\"}}";
+
+    private final Launcher launcherMock = mock(Launcher.class, RETURNS_DEEP_STUBS);
+
+    @Test
+    void testDefaultCommand() {
+        final var cmd = new ArgumentListBuilder("gcloud", "compute", "firewall-rules", "list");
+
+        assertThat(GcloudProfile.DEFAULT.command(cmd)).isSameAs(cmd);
+    }
+
+    @Test
+    void testCommand() {
+        final var profile = new GcloudProfile("/opt/google-cloud-sdk/bin/gcloud", null, null);
+
+        assertThat(profile.command(new ArgumentListBuilder("gcloud", "compute", "firewall-rules", "list"))
+                        .toList())
+                .isEqualTo(List.of("/opt/google-cloud-sdk/bin/gcloud", "compute", "firewall-rules", "list"));
+    }
+
+    @Test
+    void testEnvironment() {
+        final var profile = new GcloudProfile("/opt/google-cloud-sdk/bin/gcloud", "/usr/bin/python3", null);
+        final var envVars = new EnvVars("CLOUDSDK_CORE_DISABLE_PROMPTS", "false", "CLOUDSDK_CORE_PROJECT", "project");
+
+        assertThat(profile.environment(envVars))
+                .containsEntry("CLOUDSDK_COMPONENT_MANAGER_DISABLE_UPDATE_CHECK", "true")
+                .containsEntry("CLOUDSDK_CORE_DISABLE_USAGE_REPORTING", "true")
+                .containsEntry("CLOUDSDK_SURVEY_DISABLE_PROMPTS", "true")
+                .containsEntry("CLOUDSDK_PYTHON", "/usr/bin/python3")
+                .containsEntry("CLOUDSDK_CORE_DISABLE_PROMPTS", "false")
+                .containsEntry("CLOUDSDK_CORE_PROJECT", "project");
+        assertThat(GcloudProfile.DEFAULT.environment(null))
+                .isEqualTo(GcloudProfile.ENVIRONMENT)
+                .doesNotContainKey("CLOUDSDK_PYTHON");
+    }
+
+    private void gcloudInfo() throws Exception {
+        when(launcherMock.isUnix()).thenReturn(true);
+        when(launcherMock
+                        .launch()
+                        .cmds(any(ArgumentListBuilder.class))
+                        .quiet(true)
+                        .stdout(any(OutputStream.class)))
+                .thenAnswer(invocation -> {
+                    invocation.getArgument(0, OutputStream.class).write(INFO.getBytes(StandardCharsets.UTF_8));
+                    return null;
+                });
+        when(launcherMock
+                        .launch()
+                        .cmds(any(ArgumentListBuilder.class))
+                        .quiet(true)
+                        .join())
+                .thenReturn(0);
+    }
+
+    @Test
+    void testDetect() throws Exception {
+        gcloudInfo();
+
+        final var profile = GcloudProfile.detect(launcherMock, null);
+
+        assertThat(profile.getExecutable()).isEqualTo("/opt/google-cloud-sdk/bin/gcloud");
+        assertThat(profile.getPython()).isEqualTo("/opt/google-cloud-sdk/platform/bundledpythonunix/bin/python3");
+        assertThat(profile.getVersion()).isEqualTo("470.0.0");
+    }
+
+    @Test
+    void testDetectWithoutGcloud() throws Exception {
+        when(launcherMock
+                        .launch()
+                        .cmds(any(ArgumentListBuilder.class))
+                        .quiet(true)
+                        .join())
+                .thenReturn(127);
+
+        assertThat(GcloudProfile.detect(launcherMock, null)).isSameAs(GcloudProfile.DEFAULT);
+    }
+
+    @Test
+    void testDetectUnexpectedOutput() throws Exception {
+        when(launcherMock
+                        .launch()
+                        .cmds(any(ArgumentListBuilder.class))
+                        .quiet(true)
+                        .join())
+                .thenReturn(0);
+
+        assertThat(GcloudProfile.detect(launcherMock, null)).isSameAs(GcloudProfile.DEFAULT);
+    }
+
+    @Test
+    void testWithoutComputer() throws Exception {
+        assertThat(GcloudProfile.of(null, launcherMock, null)).isSameAs(GcloudProfile.DEFAULT);
+    }
+
+    @Test
+    void testDetectedPerNodeAndPath() throws Exception {
+        gcloudInfo();
+        final var computerMock = mock(Computer.class);
+        when(computerMock.getName()).thenReturn("agent-" + System.nanoTime());
+        final var path = new EnvVars("PATH", "/usr/bin");
+
+        final var profile = GcloudProfile.of(computerMock, launcherMock, path);
+
+        assertThat(profile.getExecutable()).isEqualTo("/opt/google-cloud-sdk/bin/gcloud");
+        assertThat(GcloudProfile.of(computerMock, launcherMock, new EnvVars("PATH", "/usr/bin")))
+                .isSameAs(profile);
+        assertThat(GcloudProfile.of(computerMock, launcherMock, new EnvVars("PATH", "/opt/bin")))
+                .isNotSameAs(profile);
+        GcloudProfile.evict(computerMock);
+        assertThat(GcloudProfile.of(computerMock, launcherMock, path)).isNotSameAs(profile);
+    }
+
+    @Test
+    void testDecoratedLauncher() throws Exception {
+        final var computerMock = mock(Computer.class);
+        when(computerMock.getName()).thenReturn("agent-" + System.nanoTime());
+
+        assertThat(GcloudProfile.of(computerMock, mock(Launcher.DecoratedLauncher.class), new EnvVars()))
+                .isSameAs(GcloudProfile.DEFAULT);
+    }
+}
@@ -0,0 +1,45 @@
+package io.jenkins.plugins.step;
+
+import hudson.EnvVars;
+import hudson.Launcher;
+import hudson.model.TaskListener;
+import hudson.util.ArgumentListBuilder;
+import java.io.OutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Startup time of a real gcloud, resolved from the PATH with the environment of the build or started with the
+ * {@link GcloudProfile} detected on this machine.
+ */
+@State(Scope.Benchmark)
+public class GcloudStartupBenchmark {
+
+    @Param({"path", "profile"})
+    public String invocation;
+
+    private Launcher launcher;
+    private EnvVars envVars;
+    private GcloudProfile profile;
+
+    @Setup
+    public void setup() throws Exception {
+        launcher = new Launcher.LocalLauncher(TaskListener.NULL);
+        envVars = new EnvVars();
+        profile = "profile".equals(invocation) ? GcloudProfile.detect(launcher, envVars) : null;
+        if (profile == GcloudProfile.DEFAULT) {
+            throw new IllegalStateException("gcloud is not installed");
+        }
+    }
+
+    @Benchmark
+    public int version() throws Exception {
+        final var cmd = new ArgumentListBuilder("gcloud", "version");
+        final var starter =
+                profile == null ? launcher.launch().cmds(cmd).quiet(true) : profile.launch(launcher, cmd, envVars);
+        return starter.stdout(OutputStream.nullOutputStream()).join();
+    }
+}
@@ -0,0 +1,125 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class GcloudWorkerTest {
+    private final AtomicInteger fetches = new AtomicInteger();
+    private ComputeStandIn standIn;
+    private ComputeApiClient client;
+
+    @BeforeEach
+    void before() throws Exception {
+        standIn = new ComputeStandIn(0, 0);
+        client = new ComputeApiClient(standIn.getEndpoint());
+    }
+
+    @AfterEach
+    void after() {
+        GcloudWorker.shutdownAll();
+        standIn.close();
+    }
+
+    private GcloudWorker worker(final long idleMillis) {
+        return GcloudWorker.get("scope", scope -> new GcloudWorker(scope, client, () -> {
+            fetches.incrementAndGet();
+            return new GcloudWorker.Token("token", System.currentTimeMillis() + 60_000, "default-project");
+        }, idleMillis, 8));
+    }
+
+    @Test
+    void testListAndDelete() throws Exception {
+        client.send("POST", "projects/project/global/firewalls?name=first", null, "token");
+        client.send("POST", "projects/project/global/firewalls?name=second", null, "token");
+        final var worker = worker(60_000);
+
+        final var rules = new JSONArray(worker.submit(new GcloudWorker.ListFirewalls(), "project"));
+        assertThat(rules.length()).isEqualTo(2);
+
+        assertThat(worker.submit(new GcloudWorker.DeleteFirewalls(List.of("first")), "project"))
+                .isEmpty();
+        assertThat(new JSONArray(worker.submit(new GcloudWorker.ListFirewalls(), "project")).length())
+                .isEqualTo(1);
+        assertThat(fetches).hasValue(1);
+    }
+
+    @Test
+    void testDefaultProject() throws Exception {
+        client.send("POST", "projects/default-project/global/firewalls?name=rule", null, "token");
+
+        final var rules = new JSONArray(worker(60_000).submit(new GcloudWorker.ListFirewalls(), null));
+
+        assertThat(rules.getJSONObject(0).getString("name")).isEqualTo("rule");
+    }
+
+    @Test
+    void testFailure() {
+        final var worker = worker(60_000);
+
+        assertThatCode(() -> worker.submit(new GcloudWorker.DeleteFirewalls(List.of("missing")), "project"))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("404");
+    }
+
+    @Test
+    void testDeleteInBatchesUnderRateQuota() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            client.send("POST", "projects/project/global/firewalls?name=rule-" + i, null, "token");
+        }
+        standIn.limitBatchCalls(10);
+        final var names = new ArrayList<String>();
+        for (int i = 0; i < 50; i++) {
+            names.add("rule-" + i);
+        }
+        names.add("missing");
+
+        final var output =
+                new JSONObject(worker(60_000).submit(new GcloudWorker.DeleteFirewalls(names, 40), "project"));
+
+        assertThat(output.getInt("batchLimit")).isBetween(1, 20);
+        assertThat(output.getString("error")).contains("1 of 51 calls failed").contains("firewalls/missing");
+        assertThat(standIn.hasRule("project", "rule-49")).isFalse();
+    }
+
+    @Test
+    void testIdleShutdown() {
+        final var worker = worker(1_000);
+
+        GcloudWorker.checkHealth(System.currentTimeMillis());
+        assertThat(worker.isShutdown()).isFalse();
+
+        GcloudWorker.checkHealth(System.currentTimeMillis() + 2_000);
+        assertThat(worker.isShutdown()).isTrue();
+        assertThat(worker(1_000)).isNotSameAs(worker);
+    }
+
+    @Test
+    void testParseConfigHelper() throws Exception {
+        final var token = GcloudWorker.ConfigHelper.parse(
+                "{\"configuration\": {\"properties\": {\"core\": {\"project\": \"project\"}}}, "
+                        + "\"credential\": {\"access_token\": \"token\", \"token_expiry\": \"2030-01-01T00:00:00Z\"}}",
+                0);
+
+        final var expiry = Instant.parse("2030-01-01T00:00:00Z").toEpochMilli();
+        assertThat(token.isValid(expiry - 1)).isTrue();
+        assertThat(token.isValid(expiry)).isFalse();
+
+        final var withoutExpiry =
+                GcloudWorker.ConfigHelper.parse("{\"credential\": {\"access_token\": \"token\"}}", 0);
+        assertThat(withoutExpiry.isValid(TimeUnit.MINUTES.toMillis(29))).isTrue();
+
+        assertThatCode(() -> GcloudWorker.ConfigHelper.parse("{}", 0)).isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,66 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class GcpBuildStatsActionTest {
+
+    @Test
+    void testRecord() {
+        final var action = new GcpBuildStatsAction();
+
+        final var first = new GcpBuildStatsAction.Invocation();
+        first.usedBackend("gcloud");
+        first.transferred(100);
+        first.transferred(50);
+        first.retried();
+        first.finished(TimeUnit.MILLISECONDS.toNanos(300), false);
+        action.record("computeFirewallRulesList", first);
+
+        final var second = new GcpBuildStatsAction.Invocation();
+        second.cacheHit("mirror");
+        second.finished(TimeUnit.MILLISECONDS.toNanos(10), false);
+        action.record("computeFirewallRulesList", second);
+
+        final var third = new GcpBuildStatsAction.Invocation();
+        third.usedBackend("gcloud");
+        third.coalesced();
+        third.finished(TimeUnit.MILLISECONDS.toNanos(1000), true);
+        action.record("computeFirewallRulesCreate", third);
+
+        assertThat(action.getCount()).isEqualTo(3);
+        assertThat(action.getTotalMillis()).isEqualTo(1310);
+
+        final var steps = action.getSteps();
+        assertThat(steps)
+                .extracting(GcpBuildStatsAction.StepStats::getStep)
+                .containsExactly("computeFirewallRulesCreate", "computeFirewallRulesList");
+
+        final var create = steps.get(0);
+        assertThat(create.getCount()).isEqualTo(1);
+        assertThat(create.getFailures()).isEqualTo(1);
+        assertThat(create.getCoalesced()).isEqualTo(1);
+        assertThat(create.getBackends()).isEqualTo(List.of("gcloud"));
+
+        final var list = steps.get(1);
+        assertThat(list.getCount()).isEqualTo(2);
+        assertThat(list.getFailures()).isZero();
+        assertThat(list.getTotalMillis()).isEqualTo(310);
+        assertThat(list.getMaxMillis()).isEqualTo(300);
+        assertThat(list.getBytes()).isEqualTo(150);
+        assertThat(list.getCacheHits()).isEqualTo(1);
+        assertThat(list.getRetries()).isEqualTo(1);
+        assertThat(list.getCoalesced()).isZero();
+        assertThat(list.getBackends()).isEqualTo(List.of("gcloud", "mirror"));
+    }
+
+    @Test
+    void testRecordWithoutRun() {
+        assertThatCode(() -> GcpBuildStatsAction.record(null, "withGCP", new GcpBuildStatsAction.Invocation()))
+                .doesNotThrowAnyException();
+    }
+}
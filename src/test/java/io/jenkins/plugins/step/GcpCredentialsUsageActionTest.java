@@ -0,0 +1,29 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import hudson.model.Run;
+import org.junit.jupiter.api.Test;
+
+class GcpCredentialsUsageActionTest {
+
+    @Test
+    void testRecord() {
+        final var run = mock(Run.class);
+        final var action = new GcpCredentialsUsageAction();
+        when(run.getAction(GcpCredentialsUsageAction.class)).thenReturn(null, action);
+
+        GcpCredentialsUsageAction.record(run, "second");
+        GcpCredentialsUsageAction.record(run, "first");
+        GcpCredentialsUsageAction.record(run, "second");
+        GcpCredentialsUsageAction.record(run, null);
+        GcpCredentialsUsageAction.record(null, "third");
+
+        verify(run).addAction(any(GcpCredentialsUsageAction.class));
+        assertThat(action.getCredentialsIds()).containsExactly("first", "second");
+    }
+}
@@ -0,0 +1,90 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import hudson.model.Cause;
+import hudson.model.Run;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jenkinsci.plugins.workflow.cps.replay.ReplayCause;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class GcpMemoActionTest {
+    private static final long NOW = TimeUnit.HOURS.toMillis(1);
+    private static final long WINDOW = TimeUnit.MINUTES.toMillis(10);
+
+    private final WorkflowRun previousRun = mock(WorkflowRun.class);
+    private final Run<?, ?> run = mock(Run.class);
+    private final GcpMemoAction previousAction = new GcpMemoAction();
+    private final GcpMemoAction action = new GcpMemoAction();
+
+    @BeforeEach
+    void before() {
+        when(previousRun.getAction(GcpMemoAction.class)).thenReturn(previousAction);
+        when(run.getAction(GcpMemoAction.class)).thenReturn(action);
+        doReturn(previousRun).when(run).getPreviousBuild();
+    }
+
+    private void replay() {
+        final var cause = mock(ReplayCause.class);
+        when(cause.getOriginal()).thenReturn(previousRun);
+        doReturn(List.of(cause)).when(run).getCauses();
+    }
+
+    @Test
+    void testRecallFromSameBuild() throws Exception {
+        GcpMemoAction.record(run, "key", new GcpMemoAction.Entry("step", 2, NOW - 1000, null));
+
+        final var entry = GcpMemoAction.recall(run, "key", WINDOW, NOW, true);
+
+        assertThat(entry).isNotNull();
+        assertThat(entry.getStep()).isEqualTo("step");
+        assertThat(entry.getBuild()).isEqualTo(2);
+        assertThat(GcpMemoAction.recall(run, "other", WINDOW, NOW, true)).isNull();
+        verify(run).save();
+    }
+
+    @Test
+    void testRecallExpired() throws Exception {
+        GcpMemoAction.record(run, "key", new GcpMemoAction.Entry("step", 2, NOW - WINDOW - 1, null));
+
+        assertThat(GcpMemoAction.recall(run, "key", WINDOW, NOW, true)).isNull();
+    }
+
+    @Test
+    void testRecallFromRecentReplayedBuild() throws Exception {
+        replay();
+        when(previousRun.getStartTimeInMillis()).thenReturn(NOW - 60_000);
+        GcpMemoAction.record(previousRun, "key", new GcpMemoAction.Entry("step", 1, NOW - 30_000, null));
+
+        assertThat(GcpMemoAction.recall(run, "key", WINDOW, NOW, true))
+                .isNotNull()
+                .extracting(GcpMemoAction.Entry::getBuild)
+                .isEqualTo(1);
+        assertThat(GcpMemoAction.recall(run, "key", WINDOW, NOW, false)).isNull();
+    }
+
+    @Test
+    void testIgnoreOldReplayedBuild() throws Exception {
+        replay();
+        when(previousRun.getStartTimeInMillis()).thenReturn(NOW - WINDOW - 1);
+        GcpMemoAction.record(previousRun, "key", new GcpMemoAction.Entry("step", 1, NOW - 30_000, null));
+
+        assertThat(GcpMemoAction.recall(run, "key", WINDOW, NOW, true)).isNull();
+    }
+
+    @Test
+    void testIgnorePreviousBuildNotReplayed() throws Exception {
+        doReturn(List.of(mock(Cause.class))).when(run).getCauses();
+        when(previousRun.getStartTimeInMillis()).thenReturn(NOW - 60_000);
+        GcpMemoAction.record(previousRun, "key", new GcpMemoAction.Entry("step", 1, NOW - 30_000, null));
+
+        assertThat(GcpMemoAction.recall(run, "key", WINDOW, NOW, true)).isNull();
+    }
+}
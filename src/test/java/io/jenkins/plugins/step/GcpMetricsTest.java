@@ -0,0 +1,42 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import hudson.EnvVars;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class GcpMetricsTest {
+
+    @Test
+    void testProject() {
+        assertThat(GcpMetrics.project(null)).isEqualTo("unknown");
+        assertThat(GcpMetrics.project(new EnvVars())).isEqualTo("unknown");
+        assertThat(GcpMetrics.project(new EnvVars("CLOUDSDK_CORE_PROJECT", "project"))).isEqualTo("project");
+    }
+
+    @Test
+    void testHistogram() {
+        GcpMetrics.observeCall("testHistogram", "project", "gcloud", TimeUnit.MILLISECONDS.toNanos(20), false);
+        GcpMetrics.observeCall("testHistogram", "project", "gcloud", TimeUnit.MILLISECONDS.toNanos(200), true);
+
+        final var labels = "{step=\"testHistogram\",project=\"project\",backend=\"gcloud\"";
+        assertThat(GcpMetrics.scrape())
+                .contains("# TYPE gcp_call_duration_seconds histogram\n")
+                .contains("gcp_call_duration_seconds_bucket" + labels + ",le=\"0.01\"} 0\n")
+                .contains("gcp_call_duration_seconds_bucket" + labels + ",le=\"0.025\"} 1\n")
+                .contains("gcp_call_duration_seconds_bucket" + labels + ",le=\"0.25\"} 2\n")
+                .contains("gcp_call_duration_seconds_bucket" + labels + ",le=\"+Inf\"} 2\n")
+                .contains("gcp_call_duration_seconds_count" + labels + "} 2\n")
+                .contains("gcp_call_failures_total" + labels + "} 1\n");
+    }
+
+    @Test
+    void testLabelValuesAreEscaped() {
+        GcpMetrics.observeOutput("testLabelValuesAreEscaped", "a\"b\\c", 2048);
+
+        assertThat(GcpMetrics.scrape())
+                .contains("gcp_call_output_bytes_bucket{step=\"testLabelValuesAreEscaped\",project=\"a\\\"b\\\\c\","
+                        + "le=\"10240.0\"} 1\n");
+    }
+}
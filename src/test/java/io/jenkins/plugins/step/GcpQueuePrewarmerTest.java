@@ -0,0 +1,98 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import hudson.model.Job;
+import hudson.model.Queue;
+import hudson.model.Run;
+import java.util.List;
+import java.util.Set;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.plaincredentials.FileCredentials;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class GcpQueuePrewarmerTest {
+    private static final String CREDENTIALS_ID = "id";
+
+    private final GcpPluginConfiguration configurationMock = mock(GcpPluginConfiguration.class);
+    private final FileCredentials credentialsMock = mock(FileCredentials.class);
+
+    @AfterEach
+    void after() {
+        GcpCredentials.forgetPrewarmed();
+    }
+
+    @Test
+    void testCredentialsIdsOfLastBuilds() {
+        final var task = mock(Queue.Task.class);
+        final var job = mock(Job.class, withSettings().extraInterfaces(Queue.Task.class));
+        final var running = mock(Run.class);
+        final var previous = mock(Run.class);
+        final var action = new GcpCredentialsUsageAction();
+        action.add("second");
+        action.add("first");
+        when(task.getOwnerTask()).thenReturn((Queue.Task) job);
+        doReturn(running).when(job).getLastBuild();
+        doReturn(previous).when(running).getPreviousBuild();
+        when(previous.getAction(GcpCredentialsUsageAction.class)).thenReturn(action);
+
+        assertThat(GcpQueuePrewarmer.credentialsIds(task)).containsExactly("first", "second");
+
+        doReturn(null).when(running).getPreviousBuild();
+        assertThat(GcpQueuePrewarmer.credentialsIds(task)).isEmpty();
+
+        final var otherTask = mock(Queue.Task.class);
+        when(otherTask.getOwnerTask()).thenReturn(otherTask);
+        assertThat(GcpQueuePrewarmer.credentialsIds(otherTask)).isEmpty();
+    }
+
+    @Test
+    void testPrewarmedCredentialsAreReused() {
+        when(credentialsMock.getId()).thenReturn(CREDENTIALS_ID);
+        final var prewarmer = new GcpQueuePrewarmer();
+        final var now = System.currentTimeMillis();
+
+        try (final var credentialsProviderMock = mockStatic(CredentialsProvider.class);
+                final var jenkinsMock = mockStatic(Jenkins.class)) {
+            jenkinsMock.when(Jenkins::get).thenReturn(mock(Jenkins.class));
+            credentialsProviderMock
+                    .when(() -> CredentialsProvider.lookupCredentialsInItemGroup(any(), any(), any(), any()))
+                    .thenReturn(List.of(credentialsMock));
+
+            prewarmer.prewarm(configurationMock, Set.of(CREDENTIALS_ID), now);
+            prewarmer.prewarm(configurationMock, Set.of(CREDENTIALS_ID), now + 1000);
+            assertThat(GcpCredentials.lookup(CREDENTIALS_ID)).isSameAs(credentialsMock);
+
+            credentialsProviderMock.verify(
+                    () -> CredentialsProvider.lookupCredentialsInItemGroup(any(), any(), any(), any()), times(1));
+        }
+    }
+
+    @Test
+    void testMissingCredentialsAreNotPrewarmed() {
+        final var prewarmer = new GcpQueuePrewarmer();
+
+        try (final var credentialsProviderMock = mockStatic(CredentialsProvider.class);
+                final var jenkinsMock = mockStatic(Jenkins.class)) {
+            jenkinsMock.when(Jenkins::get).thenReturn(mock(Jenkins.class));
+            credentialsProviderMock
+                    .when(() -> CredentialsProvider.lookupCredentialsInItemGroup(any(), any(), any(), any()))
+                    .thenReturn(List.of());
+
+            prewarmer.prewarm(configurationMock, Set.of(CREDENTIALS_ID), System.currentTimeMillis());
+            assertThat(GcpCredentials.lookup(CREDENTIALS_ID)).isNull();
+
+            credentialsProviderMock.verify(
+                    () -> CredentialsProvider.lookupCredentialsInItemGroup(any(), any(), any(), any()), times(2));
+        }
+    }
+}
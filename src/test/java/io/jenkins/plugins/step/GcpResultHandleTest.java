@@ -0,0 +1,57 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import hudson.model.Run;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GcpResultHandleTest {
+    private static final String TEXT = "[{\"name\": \"rule\"}]".repeat(1000);
+
+    @TempDir
+    Path rootDir;
+
+    private final Run<?, ?> runMock = mock(Run.class);
+
+    @BeforeEach
+    void before() {
+        when(runMock.getRootDir()).thenReturn(rootDir.toFile());
+        when(runMock.getExternalizableId()).thenReturn("job#1");
+    }
+
+    @Test
+    void testStore() throws Exception {
+        final var handle = GcpResultHandle.store(runMock, TEXT);
+
+        assertThat(handle.getText()).isEqualTo(TEXT);
+        assertThat(handle.toString()).isEqualTo(TEXT);
+        assertThat(handle.getSize()).isEqualTo(TEXT.getBytes(StandardCharsets.UTF_8).length);
+
+        final var files = new File(rootDir.toFile(), GcpResultHandle.DIRECTORY).listFiles();
+        assertThat(files).singleElement().satisfies(file -> {
+            assertThat(file.length()).isLessThan(TEXT.length());
+            assertThat(GcpResultHandle.load(file)).isEqualTo(TEXT);
+        });
+    }
+
+    @Test
+    void testSerializedWithoutContent() throws Exception {
+        final var handle = GcpResultHandle.store(runMock, TEXT);
+
+        final var outputStream = new ByteArrayOutputStream();
+        try (var objectOutputStream = new ObjectOutputStream(outputStream)) {
+            objectOutputStream.writeObject(handle);
+        }
+
+        assertThat(outputStream.size()).isLessThan(500);
+    }
+}
@@ -0,0 +1,23 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+import org.junit.jupiter.api.Test;
+
+class GcpTracingTest {
+
+    @Test
+    void testNoOpWithoutOpenTelemetry() {
+        assertThatCode(() -> {
+                    try (var span = GcpTracing.start("parent")) {
+                        assertThat(span.isRecording()).isFalse();
+                        span.setAttribute("key", "value").setAttribute("key", null);
+                        try (var child = GcpTracing.start("child", span)) {
+                            child.recordException(new IllegalArgumentException());
+                        }
+                    }
+                })
+                .doesNotThrowAnyException();
+    }
+}
@@ -0,0 +1,98 @@
+package io.jenkins.plugins.step;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Local stand-in for the pull and acknowledge methods of Pub/Sub subscriptions, like the Pub/Sub emulator serves them.
+ * Pulled messages stay outstanding until they are acknowledged.
+ */
+final class PubSubStandIn implements AutoCloseable {
+
+    private final ArrayDeque<JSONObject> pending = new ArrayDeque<>();
+    private final Map<String, JSONObject> outstanding = new HashMap<>();
+    private final AtomicInteger ids = new AtomicInteger();
+    private final AtomicInteger pulls = new AtomicInteger();
+    private final HttpServer server;
+
+    PubSubStandIn() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/v1/", this::handle);
+        server.start();
+    }
+
+    String getEndpoint() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/v1/";
+    }
+
+    synchronized void publish(final String data) {
+        final var id = String.valueOf(ids.incrementAndGet());
+        pending.add(new JSONObject()
+                .put("messageId", id)
+                .put("publishTime", Instant.now().toString())
+                .put("data", Base64.getEncoder().encodeToString(data.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    synchronized int getUnacknowledged() {
+        return pending.size() + outstanding.size();
+    }
+
+    int getPulls() {
+        return pulls.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        try (exchange) {
+            final var path = exchange.getRequestURI().getPath();
+            final var body =
+                    new JSONObject(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            final JSONObject response;
+            if (path.endsWith(":pull")) {
+                pulls.incrementAndGet();
+                response = pull(body.optInt("maxMessages", 1));
+            } else if (path.endsWith(":acknowledge")) {
+                acknowledge(body.getJSONArray("ackIds"));
+                response = new JSONObject();
+            } else {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            final var bytes = response.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        }
+    }
+
+    private synchronized JSONObject pull(final int maxMessages) {
+        final var received = new JSONArray();
+        while (!pending.isEmpty() && received.length() < maxMessages) {
+            final var message = pending.poll();
+            final var ackId = "ack-" + message.getString("messageId");
+            outstanding.put(ackId, message);
+            received.put(new JSONObject().put("ackId", ackId).put("message", message));
+        }
+        return received.isEmpty() ? new JSONObject() : new JSONObject().put("receivedMessages", received);
+    }
+
+    private synchronized void acknowledge(final JSONArray ackIds) {
+        ackIds.forEach(outstanding::remove);
+    }
+}
@@ -0,0 +1,129 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class RedisCacheStoreTest {
+
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    @AfterEach
+    void after() throws Exception {
+        for (final var resource : resources) {
+            resource.close();
+        }
+    }
+
+    private RespStandIn server(final String password) throws IOException {
+        final var server = new RespStandIn(password);
+        resources.add(server);
+        return server;
+    }
+
+    private RedisCacheStore store(final RespStandIn server, final String password) {
+        final var store = new RedisCacheStore(server.getUri(), password);
+        resources.add(store::close);
+        return store;
+    }
+
+    @Test
+    void testVersionedEntries() throws Exception {
+        final var server = server(null);
+        final var store = store(server, null);
+
+        assertThat(store.get("key").getVersion()).isZero();
+        assertThat(store.get("key").getValue()).isNull();
+        assertThat(store.compareAndSet("key", 0, "a")).isTrue();
+        assertThat(store.compareAndSet("key", 0, "b")).isFalse();
+        assertThat(store.get("key").getValue()).isEqualTo("a");
+        assertThat(store.getVersion("key")).isEqualTo(1);
+
+        assertThat(store.invalidate("key")).isEqualTo(2);
+        assertThat(store.get("key").getValue()).isNull();
+        assertThat(store.compareAndSet("key", 1, "c")).isFalse();
+        assertThat(store.compareAndSet("key", 2, "c")).isTrue();
+        assertThat(server.getHash(RedisCacheStore.KEY_PREFIX + "key"))
+                .containsEntry("version", "3")
+                .containsEntry("value", "c");
+        assertThat(store.invalidate("other")).isEqualTo(1);
+    }
+
+    @Test
+    void testConcurrentWritersNeverLoseAChange() throws Exception {
+        final var server = server(null);
+        final var executor = Executors.newFixedThreadPool(4);
+        resources.add(executor::shutdownNow);
+
+        final var writers = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < 4; i++) {
+            final var store = store(server, null);
+            writers.add(() -> {
+                for (int j = 0; j < 50; j++) {
+                    FirewallCacheStore.Entry entry;
+                    do {
+                        entry = store.get("counter");
+                    } while (!store.compareAndSet(
+                            "counter",
+                            entry.getVersion(),
+                            String.valueOf(entry.getValue() == null ? 1 : Integer.parseInt(entry.getValue()) + 1)));
+                }
+                return null;
+            });
+        }
+        for (final var writer : executor.invokeAll(writers)) {
+            writer.get();
+        }
+
+        final var entry = store(server, null).get("counter");
+        assertThat(entry.getValue()).isEqualTo("200");
+        assertThat(entry.getVersion()).isEqualTo(200);
+    }
+
+    @Test
+    void testAuthenticatesAndReconnects() throws Exception {
+        final var server = server("secret");
+
+        assertThatCode(() -> store(server, null).get("key"))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("NOAUTH");
+        assertThatCode(() -> store(server, "wrong").get("key")).hasMessageContaining("WRONGPASS");
+
+        final var store = store(server, "secret");
+        assertThat(store.compareAndSet("key", 0, "a")).isTrue();
+        server.disconnectClients();
+        assertThat(store.get("key").getValue()).isEqualTo("a");
+        assertThatCode(() -> new RedisCacheStore("http://localhost", null).get("key"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testMirrorsShareTheRules() throws Exception {
+        final var server = server(null);
+        final var first = new FirewallMirror(store(server, null));
+        final var second = new FirewallMirror(store(server, null));
+
+        first.store("project", new JSONArray("[{\"name\": \"a\"}, {\"name\": \"b\"}]"), 1000);
+        second.storeRule("project", new JSONObject("{\"name\": \"c\"}"));
+        first.removeRules("project", List.of("a"));
+
+        final var listing = second.lookup("project", 0, 1000);
+        assertThat(listing.getRules()).extracting(rule -> rule.getString("name")).containsExactly("b", "c");
+        assertThat(listing.getGeneration()).isEqualTo(3);
+        final var commands = server.getCommands();
+        assertThat(second.lookup("project", 0, 1000)).isSameAs(listing);
+        assertThat(server.getCommands() - commands).isEqualTo(1);
+
+        first.invalidate("project");
+        assertThat(second.lookup("project", 0, 1000)).isNull();
+    }
+}
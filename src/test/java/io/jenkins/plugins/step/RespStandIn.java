@@ -0,0 +1,290 @@
+package io.jenkins.plugins.step;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for a Redis server, speaking the Redis protocol for the hash commands and the optimistic transactions
+ * used by {@link RedisCacheStore}, with optional authentication.
+ */
+final class RespStandIn implements AutoCloseable {
+
+    private final Map<String, Map<String, String>> hashes = new HashMap<>();
+    private final Map<String, Long> modifications = new HashMap<>();
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger commands = new AtomicInteger();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final ServerSocket server;
+    private final String password;
+
+    /**
+     * @param password the password clients must authenticate with, or {@code null}
+     */
+    RespStandIn(final String password) throws IOException {
+        this.password = password;
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        executor.submit(this::accept);
+    }
+
+    String getUri() {
+        return "redis://" + server.getInetAddress().getHostAddress() + ":" + server.getLocalPort() + "/1";
+    }
+
+    int getCommands() {
+        return commands.get();
+    }
+
+    synchronized Map<String, String> getHash(final String key) {
+        return new TreeMap<>(hashes.getOrDefault(key, Map.of()));
+    }
+
+    /**
+     * Closes the connections of every client, like a server dropping idle connections.
+     */
+    void disconnectClients() throws IOException {
+        for (final var client : clients) {
+            client.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        disconnectClients();
+        executor.shutdownNow();
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                final var client = server.accept();
+                clients.add(client);
+                executor.submit(() -> serve(client));
+            } catch (final IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(final Socket client) {
+        try (client) {
+            final var in = new BufferedInputStream(client.getInputStream());
+            final var out = new BufferedOutputStream(client.getOutputStream());
+            final var session = new Session();
+            List<String> command;
+            while ((command = readCommand(in)) != null) {
+                commands.incrementAndGet();
+                write(out, session.handle(command));
+                out.flush();
+            }
+        } catch (final IOException e) {
+            // the client went away
+        } finally {
+            clients.remove(client);
+        }
+    }
+
+    private final class Session {
+        private boolean authenticated = password == null;
+        private final Map<String, Long> watched = new HashMap<>();
+        private List<List<String>> queued;
+
+        Object handle(final List<String> command) {
+            final var name = command.get(0).toUpperCase(Locale.ROOT);
+            if ("AUTH".equals(name)) {
+                authenticated = command.get(command.size() - 1).equals(password);
+                return authenticated ? new Simple("OK") : new Failure("WRONGPASS invalid password");
+            }
+            if (!authenticated) {
+                return new Failure("NOAUTH Authentication required.");
+            }
+            switch (name) {
+                case "MULTI":
+                    queued = new ArrayList<>();
+                    return new Simple("OK");
+                case "EXEC":
+                    return exec();
+                case "DISCARD":
+                    queued = null;
+                    watched.clear();
+                    return new Simple("OK");
+                case "WATCH":
+                    synchronized (RespStandIn.this) {
+                        command.subList(1, command.size())
+                                .forEach(key -> watched.put(key, modifications.getOrDefault(key, 0L)));
+                    }
+                    return new Simple("OK");
+                case "UNWATCH":
+                    watched.clear();
+                    return new Simple("OK");
+                default:
+                    if (queued != null) {
+                        queued.add(command);
+                        return new Simple("QUEUED");
+                    }
+                    synchronized (RespStandIn.this) {
+                        return execute(command);
+                    }
+            }
+        }
+
+        private Object exec() {
+            if (queued == null) {
+                return new Failure("ERR EXEC without MULTI");
+            }
+            try {
+                synchronized (RespStandIn.this) {
+                    for (final var key : watched.entrySet()) {
+                        if (!modifications.getOrDefault(key.getKey(), 0L).equals(key.getValue())) {
+                            return null;
+                        }
+                    }
+                    final var replies = new ArrayList<>();
+                    queued.forEach(command -> replies.add(execute(command)));
+                    return replies;
+                }
+            } finally {
+                queued = null;
+                watched.clear();
+            }
+        }
+    }
+
+    private Object execute(final List<String> command) {
+        final var name = command.get(0).toUpperCase(Locale.ROOT);
+        final var key = command.size() > 1 ? command.get(1) : null;
+        final var hash = key == null ? Map.<String, String>of() : hashes.getOrDefault(key, Map.of());
+        switch (name) {
+            case "PING":
+                return new Simple("PONG");
+            case "SELECT":
+                return new Simple("OK");
+            case "HGET":
+                return hash.get(command.get(2));
+            case "HMGET":
+                final var values = new ArrayList<>();
+                command.subList(2, command.size()).forEach(field -> values.add(hash.get(field)));
+                return values;
+            case "HSET":
+                var added = 0L;
+                for (int i = 2; i + 1 < command.size(); i += 2) {
+                    if (modify(key).put(command.get(i), command.get(i + 1)) == null) {
+                        added++;
+                    }
+                }
+                return added;
+            case "HINCRBY":
+                final var incremented = Long.parseLong(hash.getOrDefault(command.get(2), "0"))
+                        + Long.parseLong(command.get(3));
+                modify(key).put(command.get(2), String.valueOf(incremented));
+                return incremented;
+            case "HDEL":
+                var removed = 0L;
+                for (final var field : command.subList(2, command.size())) {
+                    if (modify(key).remove(field) != null) {
+                        removed++;
+                    }
+                }
+                return removed;
+            default:
+                return new Failure("ERR unknown command '" + name + "'");
+        }
+    }
+
+    private Map<String, String> modify(final String key) {
+        modifications.merge(key, 1L, Long::sum);
+        return hashes.computeIfAbsent(key, k -> new HashMap<>());
+    }
+
+    private static List<String> readCommand(final InputStream in) throws IOException {
+        final var type = in.read();
+        if (type == -1) {
+            return null;
+        }
+        if (type != '*') {
+            throw new IOException("Unsupported inline command");
+        }
+        final var count = Integer.parseInt(readLine(in));
+        final var command = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            if (in.read() != '$') {
+                throw new IOException("Expected a bulk string");
+            }
+            final var length = Integer.parseInt(readLine(in));
+            final var bytes = in.readNBytes(length + 2);
+            command.add(new String(bytes, 0, length, StandardCharsets.UTF_8));
+        }
+        return command;
+    }
+
+    private static String readLine(final InputStream in) throws IOException {
+        final var line = new ByteArrayOutputStream();
+        int current;
+        while ((current = in.read()) != '\r') {
+            if (current == -1) {
+                throw new IOException("Connection closed");
+            }
+            line.write(current);
+        }
+        in.read();
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    private static void write(final OutputStream out, final Object reply) throws IOException {
+        if (reply == null) {
+            out.write("$-1\r\n".getBytes(StandardCharsets.UTF_8));
+        } else if (reply instanceof Simple) {
+            out.write(("+" + ((Simple) reply).text + "\r\n").getBytes(StandardCharsets.UTF_8));
+        } else if (reply instanceof Failure) {
+            out.write(("-" + ((Failure) reply).text + "\r\n").getBytes(StandardCharsets.UTF_8));
+        } else if (reply instanceof Long) {
+            out.write((":" + reply + "\r\n").getBytes(StandardCharsets.UTF_8));
+        } else if (reply instanceof List) {
+            final var elements = (List<?>) reply;
+            out.write(("*" + elements.size() + "\r\n").getBytes(StandardCharsets.UTF_8));
+            for (final var element : elements) {
+                write(out, element);
+            }
+        } else {
+            final var bytes = ((String) reply).getBytes(StandardCharsets.UTF_8);
+            out.write(("$" + bytes.length + "\r\n").getBytes(StandardCharsets.UTF_8));
+            out.write(bytes);
+            out.write("\r\n".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static final class Simple {
+        private final String text;
+
+        private Simple(final String text) {
+            this.text = text;
+        }
+    }
+
+    private static final class Failure {
+        private final String text;
+
+        private Failure(final String text) {
+            this.text = text;
+        }
+    }
+}
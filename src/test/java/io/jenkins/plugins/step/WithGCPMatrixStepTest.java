@@ -0,0 +1,232 @@
+package io.jenkins.plugins.step;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import hudson.EnvVars;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.TaskListener;
+import hudson.util.ArgumentListBuilder;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.plaincredentials.FileCredentials;
+import org.jenkinsci.plugins.workflow.steps.BodyExecution;
+import org.jenkinsci.plugins.workflow.steps.BodyExecutionCallback;
+import org.jenkinsci.plugins.workflow.steps.BodyInvoker;
+import org.jenkinsci.plugins.workflow.steps.EnvironmentExpander;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class WithGCPMatrixStepTest {
+    private static final String CREDENTIALS_ID = "id";
+    private static final String ACCOUNT = "email";
+
+    private final StepContext contextMock = mock(StepContext.class);
+    private final BodyInvoker invokerMock = mock(BodyInvoker.class);
+    private final Launcher launcherMock = mock(Launcher.class);
+    private final Launcher.ProcStarter procStarterMock = mock(Launcher.ProcStarter.class);
+    private final FilePath workspaceMock = mock(FilePath.class);
+    private final FilePath tempFileMock = mock(FilePath.class);
+    private final FileCredentials credentialsMock = mock(FileCredentials.class);
+    private final FileCredentials otherCredentialsMock = mock(FileCredentials.class);
+    private final TaskListener listenerMock = mock(TaskListener.class);
+    private final List<BodyExecutionCallback> callbacks = new CopyOnWriteArrayList<>();
+    private final List<EnvironmentExpander> expanders = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void before() throws Exception {
+        when(contextMock.get(Launcher.class)).thenReturn(launcherMock);
+        when(contextMock.get(FilePath.class)).thenReturn(workspaceMock);
+        when(contextMock.get(EnvVars.class)).thenReturn(new EnvVars());
+        when(contextMock.get(TaskListener.class)).thenReturn(listenerMock);
+        when(listenerMock.getLogger())
+                .thenReturn(new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8));
+
+        when(launcherMock.launch()).thenReturn(procStarterMock);
+        when(procStarterMock.cmds(any(ArgumentListBuilder.class))).thenReturn(procStarterMock);
+        when(procStarterMock.quiet(true)).thenReturn(procStarterMock);
+        when(procStarterMock.pwd(workspaceMock)).thenReturn(procStarterMock);
+        when(workspaceMock.createTempFile(anyString(), anyString())).thenReturn(tempFileMock);
+        when(tempFileMock.readToString())
+                .thenReturn(String.format("{project_id: \"%s\", client_email: \"%s\"}", "key-project", ACCOUNT));
+        when(credentialsMock.getId()).thenReturn(CREDENTIALS_ID);
+        when(otherCredentialsMock.getId()).thenReturn("other");
+
+        when(contextMock.newBodyInvoker()).thenReturn(invokerMock);
+        when(invokerMock.withContext(any())).thenAnswer(invocation -> {
+            expanders.add(invocation.getArgument(0, EnvironmentExpander.class));
+            return invokerMock;
+        });
+        when(invokerMock.withDisplayName(anyString())).thenReturn(invokerMock);
+        when(invokerMock.withCallback(any())).thenAnswer(invocation -> {
+            callbacks.add(invocation.getArgument(0, BodyExecutionCallback.class));
+            return invokerMock;
+        });
+        when(invokerMock.start()).thenReturn(mock(BodyExecution.class));
+    }
+
+    private static GcpProject project(final String name, final String credentialsId) {
+        final var project = new GcpProject(name);
+        project.setCredentialsId(credentialsId);
+        return project;
+    }
+
+    private void start(final WithGCPMatrixStep step) throws Exception {
+        try (final var credentialsProviderMock = mockStatic(CredentialsProvider.class);
+                final var jenkinsMock = mockStatic(Jenkins.class)) {
+            jenkinsMock.when(Jenkins::get).thenReturn(mock(Jenkins.class));
+            credentialsProviderMock
+                    .when(() -> CredentialsProvider.lookupCredentialsInItemGroup(any(), any(), any(), any()))
+                    .thenReturn(List.of(credentialsMock, otherCredentialsMock));
+
+            assertThat(step.start(contextMock).start()).isFalse();
+        }
+    }
+
+    private static Map<String, String> expand(final EnvironmentExpander expander) throws Exception {
+        final var env = new EnvVars();
+        expander.expand(env);
+        return env;
+    }
+
+    @Test
+    void testDescriptor() {
+        final var descriptor = new WithGCPMatrixStep.Descriptor();
+        assertThat(descriptor.getFunctionName()).isEqualTo("withGCPMatrix");
+        assertThat(descriptor.getDisplayName()).isEqualTo("Run the nested block once per GCP project");
+        assertThat(descriptor.takesImplicitBlockArgument()).isTrue();
+    }
+
+    @Test
+    void testRunBodiesUnderConcurrencyLimit() throws Exception {
+        final var step = new WithGCPMatrixStep(List.of(
+                project("first", CREDENTIALS_ID), project("second", CREDENTIALS_ID), project("third", null)));
+        step.setConcurrency(2);
+
+        start(step);
+
+        verify(invokerMock, timeout(5000).times(2)).start();
+        verify(launcherMock, times(1)).launch();
+        assertThat(callbacks).hasSize(2);
+        assertThat(expand(expanders.get(0)))
+                .containsEntry("CLOUDSDK_CORE_PROJECT", "first")
+                .containsEntry("CLOUDSDK_CORE_ACCOUNT", ACCOUNT);
+
+        callbacks.get(0).onSuccess(contextMock, "first result");
+        assertThat(callbacks).hasSize(3);
+        assertThat(expand(expanders.get(2)))
+                .containsEntry("CLOUDSDK_CORE_PROJECT", "third")
+                .doesNotContainKey("CLOUDSDK_CORE_ACCOUNT");
+
+        callbacks.get(2).onSuccess(contextMock, "third result");
+        verify(contextMock, never()).onSuccess(any());
+        callbacks.get(1).onSuccess(contextMock, "second result");
+
+        verify(contextMock)
+                .onSuccess(Map.of(
+                        "results",
+                        Map.of("first", "first result", "second", "second result", "third", "third result"),
+                        "failures",
+                        Map.of()));
+    }
+
+    @Test
+    void testFailureAfterAllBodies() throws Exception {
+        start(new WithGCPMatrixStep(List.of(project("first", null), project("second", null))));
+
+        callbacks.get(1).onFailure(contextMock, new IllegalStateException("broken"));
+        verify(contextMock, never()).onFailure(any());
+        callbacks.get(0).onSuccess(contextMock, null);
+
+        final var failure = ArgumentCaptor.forClass(Throwable.class);
+        verify(contextMock).onFailure(failure.capture());
+        assertThat(failure.getValue())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("withGCPMatrix failed for 1 of 2 projects: second");
+        assertThat(failure.getValue().getSuppressed()).hasSize(1);
+    }
+
+    @Test
+    void testFailFastReturningFailures() throws Exception {
+        final var step = new WithGCPMatrixStep(
+                List.of(project("first", null), project("second", null), project("third", null)));
+        step.setConcurrency(1);
+        step.setFailFast(true);
+        step.setFailOnError(false);
+        start(step);
+
+        callbacks.get(0).onFailure(contextMock, new IllegalStateException("broken"));
+
+        assertThat(callbacks).hasSize(1);
+        verify(contextMock)
+                .onSuccess(Map.of(
+                        "results",
+                        Map.of(),
+                        "failures",
+                        Map.of(
+                                "first",
+                                "broken",
+                                "second",
+                                "not run because of an earlier failure",
+                                "third",
+                                "not run because of an earlier failure")));
+    }
+
+    @Test
+    void testActivateAccountsOneAtATime() throws Exception {
+        final var active = new AtomicInteger();
+        final var maxActive = new AtomicInteger();
+        when(procStarterMock.join()).thenAnswer(invocation -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            Thread.sleep(50);
+            active.decrementAndGet();
+            return 0;
+        });
+
+        start(new WithGCPMatrixStep(List.of(project("first", CREDENTIALS_ID), project("second", "other"))));
+
+        verify(invokerMock, timeout(5000).times(2)).start();
+        verify(procStarterMock, times(2)).join();
+        assertThat(maxActive).hasValue(1);
+    }
+
+    @Test
+    void testFailedActivationFailsWithoutRunningBodies() throws Exception {
+        when(procStarterMock.join()).thenReturn(1);
+
+        start(new WithGCPMatrixStep(List.of(project("first", CREDENTIALS_ID))));
+
+        verify(contextMock, timeout(5000)).onFailure(any(IllegalArgumentException.class));
+        assertThat(callbacks).isEmpty();
+    }
+
+    @Test
+    void testInvalidProjects() {
+        final var execution = new WithGCPMatrixStep(List.of(project("first", null), project("first", null)))
+                .start(contextMock);
+
+        assertThatCode(execution::start)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Every project should be specified only once!");
+        assertThat(callbacks).isEmpty();
+    }
+}
@@ -122,13 +122,32 @@ class WithGCPStepTest {
         }
     }
 
+    @Test
+    void testOutsideOfNodeWithoutControllerExecutor() {
+        try (final var credentialsProviderMock = mockStatic(CredentialsProvider.class);
+                final var jenkinsMock = mockStatic(Jenkins.class)) {
+            jenkinsMock.when(Jenkins::get).thenReturn(mock(Jenkins.class));
+            credentialsProviderMock
+                    .when(() -> CredentialsProvider.lookupCredentialsInItemGroup(any(), any(), any(), any()))
+                    .thenReturn(List.of(credentialsMock));
+            when(stepContextMock.get(Launcher.class)).thenReturn(null);
+
+            final var result = new WithGCPStep(CREDENTIALS_ID).start(stepContextMock);
+
+            assertThatCode(result::start)
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("withGCP requires a node, unless the controller executor is enabled in the GCP"
+                            + " configuration");
+            verifyNoInteractions(envVarsMock);
+        }
+    }
+
     @Test
     void testDescriptor() {
         final var descriptor = new WithGCPStep.Descriptor();
         assertThat(descriptor.getDisplayName()).isEqualTo("Set GCP credentials for nested block");
         assertThat(descriptor.getFunctionName()).isEqualTo("withGCP");
         assertThat(descriptor.takesImplicitBlockArgument()).isTrue();
-        assertThat(descriptor.getRequiredContext())
-                .isEqualTo(Set.of(EnvVars.class, Run.class, Launcher.class, FilePath.class));
+        assertThat(descriptor.getRequiredContext()).isEqualTo(Set.of(EnvVars.class, Run.class));
     }
 }